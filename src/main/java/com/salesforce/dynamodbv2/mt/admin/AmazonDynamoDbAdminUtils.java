@@ -12,13 +12,21 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.awaitility.Awaitility.await;
 
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AmazonDynamoDBException;
 import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
 import com.amazonaws.services.dynamodbv2.model.DeleteTableRequest;
 import com.amazonaws.services.dynamodbv2.model.ResourceInUseException;
 import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
+import com.amazonaws.services.dynamodbv2.model.StreamSpecification;
+import com.amazonaws.services.dynamodbv2.model.StreamViewType;
 import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.amazonaws.services.dynamodbv2.model.UpdateTableRequest;
 import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescription;
 import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescriptionImpl;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import org.awaitility.Duration;
 import org.awaitility.pollinterval.FixedPollInterval;
 import org.slf4j.Logger;
@@ -47,14 +55,33 @@ public class AmazonDynamoDbAdminUtils {
      *     created
      */
     public void createTableIfNotExists(CreateTableRequest createTableRequest, int pollIntervalSeconds) {
+        createTableIfNotExists(createTableRequest, pollIntervalSeconds, true);
+    }
+
+    /**
+     * Like {@link #createTableIfNotExists(CreateTableRequest, int)}, but optionally ignores the stream specification
+     * when comparing an existing table to the create table request, e.g., so that clients that differ only in whether
+     * they enable a stream with {@link #enableStreamIfDisabled(String, StreamViewType, int)} can share a table.
+     *
+     * @param createTableRequest the description of the table to be created
+     * @param pollIntervalSeconds the interval in seconds between attempts at checking the status of the table being
+     *     created
+     * @param compareStreamSpecification whether an existing table must have the stream specification of the request
+     */
+    public void createTableIfNotExists(CreateTableRequest createTableRequest, int pollIntervalSeconds,
+                                       boolean compareStreamSpecification) {
         try {
             if (!tableExists(createTableRequest.getTableName())) {
                 String tableName = createTableRequest.getTableName();
                 amazonDynamoDb.createTable(createTableRequest);
                 awaitTableActive(tableName, pollIntervalSeconds, TABLE_DDL_OPERATION_TIMEOUT_SECONDS);
             } else {
-                DynamoTableDescription existingTableDesc = new DynamoTableDescriptionImpl(describeTable(
-                    createTableRequest.getTableName()));
+                TableDescription existingTable = describeTable(createTableRequest.getTableName());
+                if (!compareStreamSpecification) {
+                    existingTable = existingTable.clone()
+                        .withStreamSpecification(createTableRequest.getStreamSpecification());
+                }
+                DynamoTableDescription existingTableDesc = new DynamoTableDescriptionImpl(existingTable);
                 DynamoTableDescription createTableRequestDesc = new DynamoTableDescriptionImpl(createTableRequest);
                 checkArgument(existingTableDesc.equals(createTableRequestDesc),
                     "existing table does not match create table request, "
@@ -71,6 +98,101 @@ public class AmazonDynamoDbAdminUtils {
         }
     }
 
+    /**
+     * Enables a stream of the given view type on the table, unless it already has one, and waits until the table is
+     * active again.  Tolerates the stream being enabled concurrently, e.g., by another client starting up.
+     *
+     * @param tableName the name of the table to enable the stream on
+     * @param streamViewType the view type of the stream
+     * @param pollIntervalSeconds the interval in seconds between attempts at checking the status of the table being
+     *     updated
+     * @throws IllegalArgumentException if the table has a stream of a different view type
+     */
+    public void enableStreamIfDisabled(String tableName, StreamViewType streamViewType, int pollIntervalSeconds) {
+        if (hasStream(tableName, streamViewType)) {
+            return;
+        }
+        try {
+            amazonDynamoDb.updateTable(new UpdateTableRequest().withTableName(tableName)
+                .withStreamSpecification(new StreamSpecification()
+                    .withStreamEnabled(true)
+                    .withStreamViewType(streamViewType)));
+        } catch (AmazonDynamoDBException e) {
+            // the table may be in the middle of being updated by another client enabling the stream
+            awaitTableActive(tableName, pollIntervalSeconds, TABLE_DDL_OPERATION_TIMEOUT_SECONDS);
+            if (!hasStream(tableName, streamViewType)) {
+                throw e;
+            }
+            log.info("stream on table=" + tableName + " was enabled concurrently");
+            return;
+        }
+        awaitTableActive(tableName, pollIntervalSeconds, TABLE_DDL_OPERATION_TIMEOUT_SECONDS);
+    }
+
+    private boolean hasStream(String tableName, StreamViewType streamViewType) {
+        StreamSpecification streamSpecification = describeTable(tableName).getStreamSpecification();
+        if (streamSpecification == null || !Boolean.TRUE.equals(streamSpecification.getStreamEnabled())) {
+            return false;
+        }
+        checkArgument(streamViewType.toString().equals(streamSpecification.getStreamViewType()),
+            "table=" + tableName + " has a stream of type " + streamSpecification.getStreamViewType()
+                + " rather than " + streamViewType);
+        return true;
+    }
+
+    /**
+     * Creates the tables that do not exist yet and waits until all of them are active.  Unlike calling
+     * {@link #createTableIfNotExists(CreateTableRequest, int)} for each table, which waits for each table to become
+     * active before creating the next one, this issues all create requests first, and then checks all pending tables
+     * in each poll, so that the tables are created concurrently.  Existing tables are used as they are.
+     *
+     * @param createTableRequests the descriptions of the tables to be created
+     * @param pollIntervalSeconds the interval in seconds between attempts at checking the status of the tables being
+     *     created
+     * @param timeoutSeconds the time in seconds to wait for all tables to become active
+     */
+    public void createTablesIfNotExist(Collection<CreateTableRequest> createTableRequests,
+                                       int pollIntervalSeconds,
+                                       int timeoutSeconds) {
+        Set<String> pendingTableNames = new LinkedHashSet<>();
+        for (CreateTableRequest createTableRequest : createTableRequests) {
+            String tableName = createTableRequest.getTableName();
+            try {
+                if (!getTableStatus(tableName).equals("ACTIVE")) {
+                    pendingTableNames.add(tableName);
+                }
+            } catch (ResourceNotFoundException e) {
+                try {
+                    amazonDynamoDb.createTable(createTableRequest);
+                } catch (ResourceInUseException e2) {
+                    // created concurrently, e.g., by another instance starting up
+                    log.info("table=" + tableName + " was created concurrently");
+                }
+                pendingTableNames.add(tableName);
+            } catch (TableInUseException e) {
+                if (!e.getStatus().toUpperCase().equals("CREATING")) {
+                    throw new ResourceInUseException("table=" + tableName + " is in " + e.getStatus() + " status");
+                }
+                pendingTableNames.add(tableName);
+            }
+        }
+        if (pendingTableNames.isEmpty()) {
+            return;
+        }
+        log.info("awaiting " + timeoutSeconds + "s for tables=" + pendingTableNames + " to become active ...");
+        await().pollInSameThread()
+            .pollInterval(new FixedPollInterval(new Duration(pollIntervalSeconds, SECONDS)))
+            .atMost(timeoutSeconds, SECONDS)
+            .until(() -> {
+                for (Iterator<String> it = pendingTableNames.iterator(); it.hasNext(); ) {
+                    if (tableActive(it.next())) {
+                        it.remove();
+                    }
+                }
+                return pendingTableNames.isEmpty();
+            });
+    }
+
     /**
      * TODO: write Javadoc.
      *
@@ -148,9 +270,16 @@ public class AmazonDynamoDbAdminUtils {
         }
     }
 
+    /*
+     * Fails fast if the table is being deleted, since it will never become active.
+     */
     private boolean tableActive(String tableName) throws TableInUseException {
         try {
-            return getTableStatus(tableName).equals("ACTIVE");
+            String status = getTableStatus(tableName);
+            if (status.equals("DELETING")) {
+                throw new ResourceInUseException("table=" + tableName + " is in " + status + " status");
+            }
+            return status.equals("ACTIVE");
         } catch (ResourceNotFoundException e) {
             return false;
         }
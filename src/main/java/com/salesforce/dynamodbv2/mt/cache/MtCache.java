@@ -7,47 +7,149 @@
 
 package com.salesforce.dynamodbv2.mt.cache;
 
+import com.google.common.base.Splitter;
+import com.google.common.base.Ticker;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
 import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
 import com.google.common.collect.ImmutableMap;
 import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
 
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 /**
- * TODO: write Javadoc.
+ * A cache whose keys are scoped to the tenant context of the calling thread.  Callers that already hold the tenant
+ * context may pass it explicitly to skip looking it up.
+ *
+ * <p>By default the cache is unbounded and does not record statistics.  A Guava {@link CacheBuilderSpec} string, e.g.,
+ * {@code "maximumSize=10000,expireAfterAccess=1h,recordStats"}, may be provided to bound the number of entries, expire
+ * them, and record statistics.  {@code refreshAfterWrite} is not supported, since values are loaded by the callers of
+ * {@link #get(String, Callable)} rather than by the cache; use {@code expireAfterWrite} to have entries reloaded after
+ * a fixed interval instead.
+ *
+ * <p>If statistics are recorded, {@link #getTenantStats()} additionally reports hit, miss, load, and eviction counts
+ * and total load time for each tenant context that accessed the cache.  To keep the heap used by statistics bounded
+ * regardless of the number of tenants, statistics are kept for at most {@value #MAX_TRACKED_TENANTS} tenant contexts;
+ * the statistics of the least recently active contexts are discarded first.
  *
  * @author msgroi
  */
 public class MtCache<V> implements Cache<String, V> {
 
-    private static final String DELIMITER = "-";
+    private static final String RECORD_STATS = "recordStats";
+    static final int MAX_TRACKED_TENANTS = 10_000;
     private final MtAmazonDynamoDbContextProvider contextProvider;
-    private final Cache<Object, V> cache;
+    private final Cache<CacheKey, V> cache;
+    private final Cache<String, TenantStats> tenantStats;
+    private final Ticker ticker;
 
     public MtCache(MtAmazonDynamoDbContextProvider contextProvider) {
+        this(contextProvider, null);
+    }
+
+    /**
+     * Creates a cache configured by the given spec.
+     *
+     * @param contextProvider the provider of the tenant context that keys are scoped to
+     * @param cacheSpec a {@link CacheBuilderSpec} string, or {@code null} for an unbounded cache without statistics
+     */
+    public MtCache(MtAmazonDynamoDbContextProvider contextProvider, String cacheSpec) {
+        this(contextProvider, cacheSpec, Ticker.systemTicker());
+    }
+
+    MtCache(MtAmazonDynamoDbContextProvider contextProvider, String cacheSpec, Ticker ticker) {
+        this(contextProvider, cacheSpec, ticker, MAX_TRACKED_TENANTS);
+    }
+
+    MtCache(MtAmazonDynamoDbContextProvider contextProvider, String cacheSpec, Ticker ticker, int maxTrackedTenants) {
         this.contextProvider = contextProvider;
-        this.cache = CacheBuilder.newBuilder().build();
+        this.ticker = ticker;
+        if (cacheSpec == null) {
+            this.cache = CacheBuilder.newBuilder().build();
+            this.tenantStats = null;
+        } else {
+            if (Splitter.on(',').trimResults().splitToList(cacheSpec).contains(RECORD_STATS)) {
+                this.tenantStats = CacheBuilder.newBuilder().maximumSize(maxTrackedTenants).build();
+                RemovalListener<CacheKey, V> evictionCounter = notification -> {
+                    if (notification.wasEvicted()) {
+                        // don't start tracking a tenant just to count an eviction
+                        TenantStats stats = tenantStats.getIfPresent(notification.getKey().context);
+                        if (stats != null) {
+                            stats.evictionCount.increment();
+                        }
+                    }
+                };
+                this.cache = CacheBuilder.from(cacheSpec).ticker(ticker).removalListener(evictionCounter).build();
+            } else {
+                this.tenantStats = null;
+                this.cache = CacheBuilder.from(cacheSpec).ticker(ticker).build();
+            }
+        }
     }
 
-    private String getKey(Object key) {
-        return contextProvider.getContext() + DELIMITER + key;
+    private CacheKey getKey(Object key) {
+        return new CacheKey(contextProvider.getContext(), key);
     }
 
     @Override
     public V getIfPresent(Object key) {
-        return cache.getIfPresent(getKey(key));
+        return getIfPresent(contextProvider.getContext(), key);
+    }
+
+    /**
+     * Returns the value associated with the key in the given tenant context, if any.
+     *
+     * @param context the tenant context of the key
+     * @param key the key within the tenant context
+     * @return the cached value, or {@code null} if there is none
+     */
+    public V getIfPresent(String context, Object key) {
+        V value = cache.getIfPresent(new CacheKey(context, key));
+        if (tenantStats != null) {
+            TenantStats stats = getTenantStats(context);
+            (value == null ? stats.missCount : stats.hitCount).increment();
+        }
+        return value;
     }
 
     @Override
     public V get(String key, Callable<? extends V> valueLoader) throws ExecutionException {
-        return cache.get(getKey(key), valueLoader);
+        return get(contextProvider.getContext(), key, valueLoader);
+    }
+
+    /**
+     * Returns the value associated with the key in the given tenant context, loading it if necessary.
+     *
+     * @param context the tenant context of the key
+     * @param key the key within the tenant context
+     * @param valueLoader loads the value if it is not cached
+     * @return the cached or loaded value
+     * @throws ExecutionException if the value loader threw a checked exception
+     */
+    public V get(String context, String key, Callable<? extends V> valueLoader) throws ExecutionException {
+        CacheKey cacheKey = new CacheKey(context, key);
+        if (tenantStats == null) {
+            return cache.get(cacheKey, valueLoader);
+        }
+        TenantStats stats = getTenantStats(context);
+        boolean[] loaded = new boolean[1];
+        V value = cache.get(cacheKey, () -> {
+            loaded[0] = true;
+            return stats.load(valueLoader, ticker);
+        });
+        if (!loaded[0]) {
+            stats.hitCount.increment();
+        }
+        return value;
     }
 
     @Override
@@ -55,6 +157,29 @@ public class MtCache<V> implements Cache<String, V> {
         cache.put(getKey(key), value);
     }
 
+    /**
+     * Associates the value with the key in the given tenant context.
+     *
+     * @param context the tenant context of the key
+     * @param key the key within the tenant context
+     * @param value the value to cache
+     */
+    public void put(String context, String key, V value) {
+        cache.put(new CacheKey(context, key), value);
+    }
+
+    /**
+     * Replaces the value associated with the key in the given tenant context, but only if there is one.
+     *
+     * @param context the tenant context of the key
+     * @param key the key within the tenant context
+     * @param value the value to cache
+     * @return whether a value was replaced
+     */
+    public boolean replace(String context, String key, V value) {
+        return cache.asMap().replace(new CacheKey(context, key), value) != null;
+    }
+
     @Override
     public void putAll(Map<? extends String, ? extends V> m) {
         m.forEach(this::put);
@@ -65,6 +190,16 @@ public class MtCache<V> implements Cache<String, V> {
         cache.invalidate(getKey(key));
     }
 
+    /**
+     * Discards the value associated with the key in the given tenant context, if any.
+     *
+     * @param context the tenant context of the key
+     * @param key the key within the tenant context
+     */
+    public void invalidate(String context, Object key) {
+        cache.invalidate(new CacheKey(context, key));
+    }
+
     @Override
     public void invalidateAll(Iterable<?> keys) {
         cache.invalidateAll(StreamSupport.stream(keys.spliterator(), false)
@@ -86,6 +221,24 @@ public class MtCache<V> implements Cache<String, V> {
         return cache.stats();
     }
 
+    /**
+     * Returns a snapshot of the statistics of each tenant context that recently accessed the cache.  The map is empty
+     * unless the cache spec enables {@code recordStats}.
+     *
+     * @return cache statistics by tenant context
+     */
+    public Map<String, CacheStats> getTenantStats() {
+        if (tenantStats == null) {
+            return ImmutableMap.of();
+        }
+        return tenantStats.asMap().entrySet().stream().collect(ImmutableMap.toImmutableMap(Map.Entry::getKey,
+            entry -> entry.getValue().snapshot()));
+    }
+
+    private TenantStats getTenantStats(String context) {
+        return tenantStats.asMap().computeIfAbsent(context, c -> new TenantStats());
+    }
+
     @Override
     public void cleanUp() {
         cache.cleanUp();
@@ -101,4 +254,75 @@ public class MtCache<V> implements Cache<String, V> {
         throw new UnsupportedOperationException();
     }
 
+    /*
+     * Key of a value in a tenant context.  Unlike a concatenation of context and key, it does not have to be built
+     * char by char on every access, and contexts or keys that contain a delimiter cannot collide.
+     */
+    private static final class CacheKey {
+
+        private final String context;
+        private final Object key;
+        private final int hash;
+
+        private CacheKey(String context, Object key) {
+            this.context = context;
+            this.key = key;
+            this.hash = 31 * Objects.hashCode(context) + key.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return hash == other.hash && Objects.equals(context, other.context) && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return context + "/" + key;
+        }
+    }
+
+    /*
+     * Counters of a single tenant context.  Loads count as misses.
+     */
+    private static final class TenantStats {
+
+        private final LongAdder hitCount = new LongAdder();
+        private final LongAdder missCount = new LongAdder();
+        private final LongAdder loadSuccessCount = new LongAdder();
+        private final LongAdder loadExceptionCount = new LongAdder();
+        private final LongAdder totalLoadTime = new LongAdder();
+        private final LongAdder evictionCount = new LongAdder();
+
+        private <V> V load(Callable<? extends V> valueLoader, Ticker ticker) throws Exception {
+            missCount.increment();
+            long start = ticker.read();
+            boolean success = false;
+            try {
+                V value = valueLoader.call();
+                success = true;
+                return value;
+            } finally {
+                totalLoadTime.add(ticker.read() - start);
+                (success ? loadSuccessCount : loadExceptionCount).increment();
+            }
+        }
+
+        private CacheStats snapshot() {
+            return new CacheStats(hitCount.sum(), missCount.sum(), loadSuccessCount.sum(), loadExceptionCount.sum(),
+                totalLoadTime.sum(), evictionCount.sum());
+        }
+    }
+
 }
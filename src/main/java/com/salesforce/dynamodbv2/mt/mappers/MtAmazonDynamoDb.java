@@ -1,6 +1,7 @@
 package com.salesforce.dynamodbv2.mt.mappers;
 
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
 import com.amazonaws.services.dynamodbv2.model.Identity;
 import com.amazonaws.services.dynamodbv2.model.OperationType;
 import com.amazonaws.services.dynamodbv2.model.Record;
@@ -103,6 +104,38 @@ public interface MtAmazonDynamoDb extends AmazonDynamoDB {
         }
     }
 
+    /**
+     * A {@link BatchGetItemResult} that additionally reports how many times unprocessed keys were resubmitted to
+     * DynamoDB while serving the request.
+     */
+    class MtBatchGetItemResult extends BatchGetItemResult {
+
+        private static final long serialVersionUID = 2311963526498823406L;
+
+        private int retryRounds;
+
+        public int getRetryRounds() {
+            return retryRounds;
+        }
+
+        public void setRetryRounds(int retryRounds) {
+            this.retryRounds = retryRounds;
+        }
+
+        public MtBatchGetItemResult withRetryRounds(int retryRounds) {
+            setRetryRounds(retryRounds);
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return "MtBatchGetItemResult{"
+                + "retryRounds=" + retryRounds
+                + ", resultFields=" + super.toString()
+                + '}';
+        }
+    }
+
     default void invalidateCaches() {}
 
 }
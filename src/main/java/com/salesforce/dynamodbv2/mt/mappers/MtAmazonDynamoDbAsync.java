@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.google.common.base.Preconditions;
+import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Exposes the item operations of a multitenant {@code AmazonDynamoDB} (for example, one built by
+ * {@code SharedTableBuilder}) as methods returning {@code CompletableFuture}s, so that callers can issue many requests
+ * concurrently.
+ *
+ * <p>The tenant context is captured on the calling thread when a request is submitted.  The request, including the
+ * mapping of virtual to physical tables, is then executed on the provided executor with that context set, and the
+ * executor thread's previous context is restored afterwards.  Since the underlying mappers use the synchronous
+ * {@code AmazonDynamoDB} API, each in-flight request occupies an executor thread; size the executor accordingly.
+ *
+ * <p>Supported: batchGet|batchWrite|get|put|update|deleteItem, query, scan
+ */
+public class MtAmazonDynamoDbAsync {
+
+    private final MtAmazonDynamoDbContextProvider mtContext;
+    private final AmazonDynamoDB amazonDynamoDb;
+    private final Executor executor;
+
+    private MtAmazonDynamoDbAsync(MtAmazonDynamoDbContextProvider mtContext,
+                                  AmazonDynamoDB amazonDynamoDb,
+                                  Executor executor) {
+        this.mtContext = mtContext;
+        this.amazonDynamoDb = amazonDynamoDb;
+        this.executor = executor;
+    }
+
+    public CompletableFuture<BatchGetItemResult> batchGetItemAsync(BatchGetItemRequest batchGetItemRequest) {
+        return submit(amazonDynamoDb::batchGetItem, batchGetItemRequest);
+    }
+
+    public CompletableFuture<BatchWriteItemResult> batchWriteItemAsync(BatchWriteItemRequest batchWriteItemRequest) {
+        return submit(amazonDynamoDb::batchWriteItem, batchWriteItemRequest);
+    }
+
+    public CompletableFuture<DeleteItemResult> deleteItemAsync(DeleteItemRequest deleteItemRequest) {
+        return submit(amazonDynamoDb::deleteItem, deleteItemRequest);
+    }
+
+    public CompletableFuture<GetItemResult> getItemAsync(GetItemRequest getItemRequest) {
+        return submit(amazonDynamoDb::getItem, getItemRequest);
+    }
+
+    public CompletableFuture<PutItemResult> putItemAsync(PutItemRequest putItemRequest) {
+        return submit(amazonDynamoDb::putItem, putItemRequest);
+    }
+
+    public CompletableFuture<QueryResult> queryAsync(QueryRequest queryRequest) {
+        return submit(amazonDynamoDb::query, queryRequest);
+    }
+
+    public CompletableFuture<ScanResult> scanAsync(ScanRequest scanRequest) {
+        return submit(amazonDynamoDb::scan, scanRequest);
+    }
+
+    public CompletableFuture<UpdateItemResult> updateItemAsync(UpdateItemRequest updateItemRequest) {
+        return submit(amazonDynamoDb::updateItem, updateItemRequest);
+    }
+
+    /*
+     * Captures the caller's tenant context and applies the function to the request on the executor in that context.
+     */
+    private <T, R> CompletableFuture<R> submit(Function<T, R> function, T request) {
+        final String context = mtContext.getContext();
+        return CompletableFuture.supplyAsync(() -> mtContext.withContext(context, function, request), executor);
+    }
+
+    public static MtAmazonDynamoDbAsyncBuilder builder() {
+        return new MtAmazonDynamoDbAsyncBuilder();
+    }
+
+    public static class MtAmazonDynamoDbAsyncBuilder {
+
+        private AmazonDynamoDB amazonDynamoDb;
+        private MtAmazonDynamoDbContextProvider mtContext;
+        private Executor executor;
+
+        public MtAmazonDynamoDbAsyncBuilder withAmazonDynamoDb(AmazonDynamoDB amazonDynamoDb) {
+            this.amazonDynamoDb = amazonDynamoDb;
+            return this;
+        }
+
+        public MtAmazonDynamoDbAsyncBuilder withContext(MtAmazonDynamoDbContextProvider mtContext) {
+            this.mtContext = mtContext;
+            return this;
+        }
+
+        public MtAmazonDynamoDbAsyncBuilder withExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Builds an instance that executes requests against the configured multitenant {@code AmazonDynamoDB} on the
+         * configured executor, in the tenant context of the thread that submits them.  The {@code AmazonDynamoDB},
+         * context provider, and executor are all required.
+         *
+         * @return a newly created {@code MtAmazonDynamoDbAsync} based on the contents of the
+         *     {@code MtAmazonDynamoDbAsyncBuilder}
+         */
+        public MtAmazonDynamoDbAsync build() {
+            Preconditions.checkNotNull(amazonDynamoDb, "amazonDynamoDb is required");
+            Preconditions.checkNotNull(mtContext, "mtContext is required");
+            Preconditions.checkNotNull(executor, "executor is required");
+            return new MtAmazonDynamoDbAsync(mtContext, amazonDynamoDb, executor);
+        }
+    }
+
+}
@@ -167,7 +167,7 @@ public class MtAmazonDynamoDbBase implements MtAmazonDynamoDb {
 
     @Override
     public BatchWriteItemResult batchWriteItem(Map<String, List<WriteRequest>> requestItems) {
-        throw new UnsupportedOperationException();
+        return batchWriteItem(new BatchWriteItemRequest().withRequestItems(requestItems));
     }
 
     @Override
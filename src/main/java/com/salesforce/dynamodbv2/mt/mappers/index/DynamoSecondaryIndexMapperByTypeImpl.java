@@ -7,6 +7,10 @@
 
 package com.salesforce.dynamodbv2.mt.mappers.index;
 
+import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.S;
+import static com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.MtAmazonDynamoDbBySharedTable.TENANT_INDEX_NAME;
+
+import com.amazonaws.services.dynamodbv2.model.ScalarAttributeType;
 import com.salesforce.dynamodbv2.mt.mappers.MappingException;
 import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescription;
 
@@ -20,17 +24,32 @@ import java.util.stream.Collectors;
  */
 public class DynamoSecondaryIndexMapperByTypeImpl implements DynamoSecondaryIndexMapper {
 
-    private static final PrimaryKeyMapper PRIMARY_KEY_MAPPER = new PrimaryKeyMapperByTypeImpl(true);
+    private final PrimaryKeyMapper primaryKeyMapper;
+
+    public DynamoSecondaryIndexMapperByTypeImpl() {
+        this(S);
+    }
+
+    /**
+     * Creates a mapper that maps virtual indexes to physical indexes whose HASH key is of the given type.
+     *
+     * @param hashKeyType the type of the HASH keys of the physical indexes, S or B
+     */
+    public DynamoSecondaryIndexMapperByTypeImpl(ScalarAttributeType hashKeyType) {
+        this.primaryKeyMapper = new PrimaryKeyMapperByTypeImpl(true, hashKeyType);
+    }
 
     @Override
     public DynamoSecondaryIndex lookupPhysicalSecondaryIndex(DynamoSecondaryIndex virtualSi,
                                                              DynamoTableDescription physicalTable)
         throws MappingException {
-        return (DynamoSecondaryIndex) PRIMARY_KEY_MAPPER.mapPrimaryKey(virtualSi.getPrimaryKey(),
+        return (DynamoSecondaryIndex) primaryKeyMapper.mapPrimaryKey(virtualSi.getPrimaryKey(),
             physicalTable.getSis().stream()
                 .filter(dynamoSecondaryIndex -> dynamoSecondaryIndex.getType() == virtualSi.getType())
+                // the tenant index is maintained by the mapper itself and never serves a virtual index
+                .filter(dynamoSecondaryIndex -> !TENANT_INDEX_NAME.equals(dynamoSecondaryIndex.getIndexName()))
                 .map((Function<DynamoSecondaryIndex, HasPrimaryKey>) dynamoSecondaryIndex -> dynamoSecondaryIndex)
                 .collect(Collectors.toList()));
     }
 
-}
\ No newline at end of file
+}
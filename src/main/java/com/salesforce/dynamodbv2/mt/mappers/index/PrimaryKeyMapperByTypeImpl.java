@@ -34,6 +34,9 @@ import java.util.stream.Collectors;
  *   key of type S, then RANGE key of type N, then RANGE key of type B
  * - otherwise, throw MappingException
  *
+ * <p>The HASH key type that is looked for may be changed from S to B for physical tables that hold binary qualified
+ * hash keys.
+ *
  * <p>If any of the above steps finds more than one primary key, then a MappingException is thrown.
  *
  * @author msgroi
@@ -41,9 +44,15 @@ import java.util.stream.Collectors;
 public class PrimaryKeyMapperByTypeImpl implements PrimaryKeyMapper {
 
     private final boolean strictMode;
+    private final ScalarAttributeType hashKeyType;
 
     public PrimaryKeyMapperByTypeImpl(boolean strictMode) {
+        this(strictMode, S);
+    }
+
+    public PrimaryKeyMapperByTypeImpl(boolean strictMode, ScalarAttributeType hashKeyType) {
         this.strictMode = strictMode;
+        this.hashKeyType = hashKeyType;
     }
 
     @Override
@@ -61,7 +70,7 @@ public class PrimaryKeyMapperByTypeImpl implements PrimaryKeyMapper {
         for (Optional<ScalarAttributeType> rangeKeyType : rangeKeyTypePrecedence) {
             Optional<HasPrimaryKey> primaryKeysFound = mapPrimaryKeyExactMatch(
                 new PrimaryKey(primaryKeyToFind.getHashKey(),
-                    S,
+                    hashKeyType,
                     rangeKeyType.map((Function<ScalarAttributeType, String>) Enum::name),
                     rangeKeyType),
                 primaryKeys);
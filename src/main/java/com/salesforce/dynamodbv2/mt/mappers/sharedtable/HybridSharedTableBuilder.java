@@ -1,5 +1,7 @@
 package com.salesforce.dynamodbv2.mt.mappers.sharedtable;
 
+import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.S;
+
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
 import com.google.common.annotations.VisibleForTesting;
@@ -31,6 +33,7 @@ public class HybridSharedTableBuilder {
     private long provisionedThroughput = 1L;
     private Optional<String> tablePrefix = Optional.empty();
     private int pollIntervalSeconds = 0;
+    private int precreateTablesTimeoutSeconds = 600;
     private CreateTableRequestFactory primaryCreateTableRequestFactory;
 
     public static HybridSharedTableBuilder builder() {
@@ -48,7 +51,8 @@ public class HybridSharedTableBuilder {
             new CreateTableRequestFactoryEnsemble(ImmutableList.of(
                 primaryCreateTableRequestFactory,
                 new SharedTableCreateTableRequestFactory(
-                    SharedTableBuilder.buildDefaultCreateTableRequests(provisionedThroughput, streamsEnabled),
+                    SharedTableBuilder.buildDefaultCreateTableRequests(provisionedThroughput, streamsEnabled, false,
+                        S),
                     tablePrefix)
             ));
 
@@ -62,7 +66,8 @@ public class HybridSharedTableBuilder {
                 ".",
                 amazonDynamoDb,
                 true,
-                pollIntervalSeconds),
+                pollIntervalSeconds,
+                precreateTablesTimeoutSeconds),
             MtDynamoDbTableDescriptionRepo.builder()
                 .withAmazonDynamoDb(amazonDynamoDb)
                 .withContext(mtContext)
@@ -109,6 +114,11 @@ public class HybridSharedTableBuilder {
         return this;
     }
 
+    public HybridSharedTableBuilder withPrecreateTablesTimeoutSeconds(int precreateTablesTimeoutSeconds) {
+        this.precreateTablesTimeoutSeconds = precreateTablesTimeoutSeconds;
+        return this;
+    }
+
     @VisibleForTesting
     static class CreateTableRequestFactoryEnsemble implements CreateTableRequestFactory {
 
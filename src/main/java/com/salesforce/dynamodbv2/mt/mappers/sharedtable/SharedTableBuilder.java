@@ -60,6 +60,21 @@ import java.util.stream.Collectors;
  *
  * Optionally ...
  * - a list of {@code CreateTableRequest}s representing physical tables.  Default: See enumerated list of tables below.
+ * - {@code tenantScanIndex}: a {@code boolean} to indicate whether the default physical tables should have an
+ *   additional GSI, gsi_tenant, whose hash key holds the tenant and virtual table prefix of each item, followed by one
+ *   of a fixed number of shard bytes, so that a large virtual table does not write to a single index partition.
+ *   Scans of a virtual table are then served by querying the index shards of the table in turn, so their cost is
+ *   proportional to the size of the tenant's table rather than the size of the physical table.  Only items written
+ *   while the index exists are found by such scans, so the option must be enabled before any data is written.  Custom
+ *   physical tables may define the index themselves: see {@code MtAmazonDynamoDbBySharedTable.TENANT_INDEX_NAME}.
+ *   Default: FALSE.
+ * - {@code binaryHashKeys}: a {@code boolean} to indicate whether the hash keys of the default physical tables and
+ *   their indexes should be of type B rather than S.  Qualified hash key values are then a binary header holding the
+ *   tenant and virtual table or index name, each preceded by its length, followed by the raw bytes of the virtual
+ *   value.  Virtual binary hash keys are stored as is rather than decoded as UTF-8, so they round-trip unchanged, and
+ *   keys are shorter.  The tables are named as below, with the first S replaced by B, e.g.,
+ *   mt_sharedtablestatic_b_s.  Since the encoding of existing data is not converted, the option must be chosen before
+ *   any data is written.  Default: FALSE.
  *
  * See {@code SharedTableCustomDynamicBuilder} for optional arguments and limitations.
  *
@@ -83,7 +98,7 @@ import java.util.stream.Collectors;
  * Design constraints:
  *
  * - In order to support multitenancy, all HKs (table and index-level) must be prefixed with the alphanumeric tenant ID.
- *   Therefore, all HKs must be of type S.
+ *   Therefore, all HKs must be of type S (or B, see {@code binaryHashKeys}).
  * - Tables with LSIs are limited to 10GB
  *   (https://docs.aws.amazon.com/amazondynamodb/latest/developerguide/LSI.html#LSI.ItemCollections.SizeLimit).
  *   Therefore, we have two sets of tables, one set with LSIs and one set without.
@@ -104,6 +119,8 @@ public class SharedTableBuilder extends SharedTableCustomDynamicBuilder {
     private Long defaultProvisionedThroughput; /* TODO if this is ever going to be used in production we will need
                                                        more granularity, like at the table, index, read, write level */
     private Boolean streamsEnabled;
+    private Boolean tenantScanIndex;
+    private Boolean binaryHashKeys;
 
     public static SharedTableBuilder builder() {
         return new SharedTableBuilder();
@@ -128,6 +145,16 @@ public class SharedTableBuilder extends SharedTableCustomDynamicBuilder {
         return this;
     }
 
+    public SharedTableBuilder withTenantScanIndex(boolean tenantScanIndex) {
+        this.tenantScanIndex = tenantScanIndex;
+        return this;
+    }
+
+    public SharedTableBuilder withBinaryHashKeys(boolean binaryHashKeys) {
+        this.binaryHashKeys = binaryHashKeys;
+        return this;
+    }
+
     public SharedTableBuilder withDefaultProvisionedThroughput(long defaultProvisionedThroughput) {
         this.defaultProvisionedThroughput = defaultProvisionedThroughput;
         return this;
@@ -140,8 +167,8 @@ public class SharedTableBuilder extends SharedTableCustomDynamicBuilder {
         setDefaults();
         withName("SharedTableBuilder");
         withCreateTableRequestFactory(new SharedTableCreateTableRequestFactory(createTableRequests,
-            getTablePrefix()));
-        withDynamoSecondaryIndexMapper(new DynamoSecondaryIndexMapperByTypeImpl());
+            getTablePrefix(), getHashKeyType()));
+        withDynamoSecondaryIndexMapper(new DynamoSecondaryIndexMapperByTypeImpl(getHashKeyType()));
         return super.build();
     }
 
@@ -152,13 +179,23 @@ public class SharedTableBuilder extends SharedTableCustomDynamicBuilder {
         if (streamsEnabled == null) {
             streamsEnabled = true;
         }
+        if (tenantScanIndex == null) {
+            tenantScanIndex = false;
+        }
+        if (binaryHashKeys == null) {
+            binaryHashKeys = false;
+        }
         if (this.createTableRequests == null || this.createTableRequests.isEmpty()) {
             this.createTableRequests = buildDefaultCreateTableRequests(this.defaultProvisionedThroughput,
-                this.streamsEnabled);
+                this.streamsEnabled, this.tenantScanIndex, getHashKeyType());
         }
         super.setDefaults();
     }
 
+    private ScalarAttributeType getHashKeyType() {
+        return binaryHashKeys ? B : S;
+    }
+
     private static final String HASH_KEY_FIELD = "hk";
     private static final String RANGE_KEY_FIELD = "rk";
 
@@ -166,29 +203,30 @@ public class SharedTableBuilder extends SharedTableCustomDynamicBuilder {
      * Builds the tables underlying the SharedTable implementation as described in the class-level Javadoc.
      */
     static List<CreateTableRequest> buildDefaultCreateTableRequests(long provisionedThroughput,
-        boolean streamsEnabled) {
+        boolean streamsEnabled, boolean tenantScanIndex, ScalarAttributeType hashKeyType) {
 
+        String tableNamePrefix = "mt_sharedtablestatic_" + hashKeyType.name().toLowerCase();
         CreateTableRequestBuilder mtSharedTableStaticSs = CreateTableRequestBuilder.builder()
-            .withTableName("mt_sharedtablestatic_s_s")
-            .withTableKeySchema(HASH_KEY_FIELD, S, RANGE_KEY_FIELD, S);
+            .withTableName(tableNamePrefix + "_s")
+            .withTableKeySchema(HASH_KEY_FIELD, hashKeyType, RANGE_KEY_FIELD, S);
         CreateTableRequestBuilder mtSharedTableStaticSn = CreateTableRequestBuilder.builder()
-            .withTableName("mt_sharedtablestatic_s_n")
-            .withTableKeySchema(HASH_KEY_FIELD, S, RANGE_KEY_FIELD, N);
+            .withTableName(tableNamePrefix + "_n")
+            .withTableKeySchema(HASH_KEY_FIELD, hashKeyType, RANGE_KEY_FIELD, N);
         CreateTableRequestBuilder mtSharedTableStaticSb = CreateTableRequestBuilder.builder()
-            .withTableName("mt_sharedtablestatic_s_b")
-            .withTableKeySchema(HASH_KEY_FIELD, S, RANGE_KEY_FIELD, B);
+            .withTableName(tableNamePrefix + "_b")
+            .withTableKeySchema(HASH_KEY_FIELD, hashKeyType, RANGE_KEY_FIELD, B);
         CreateTableRequestBuilder mtSharedTableStaticsNoLsi = CreateTableRequestBuilder.builder()
-            .withTableName("mt_sharedtablestatic_s_nolsi")
-            .withTableKeySchema(HASH_KEY_FIELD, S);
+            .withTableName(tableNamePrefix + "_nolsi")
+            .withTableKeySchema(HASH_KEY_FIELD, hashKeyType);
         CreateTableRequestBuilder mtSharedTableStaticSsNoLsi = CreateTableRequestBuilder.builder()
-            .withTableName("mt_sharedtablestatic_s_s_nolsi")
-            .withTableKeySchema(HASH_KEY_FIELD, S, RANGE_KEY_FIELD, S);
+            .withTableName(tableNamePrefix + "_s_nolsi")
+            .withTableKeySchema(HASH_KEY_FIELD, hashKeyType, RANGE_KEY_FIELD, S);
         CreateTableRequestBuilder mtSharedTableStaticSnNoLsi = CreateTableRequestBuilder.builder()
-            .withTableName("mt_sharedtablestatic_s_n_nolsi")
-            .withTableKeySchema(HASH_KEY_FIELD, S, RANGE_KEY_FIELD, N);
+            .withTableName(tableNamePrefix + "_n_nolsi")
+            .withTableKeySchema(HASH_KEY_FIELD, hashKeyType, RANGE_KEY_FIELD, N);
         CreateTableRequestBuilder mtSharedTableStaticSbNoLsi = CreateTableRequestBuilder.builder()
-            .withTableName("mt_sharedtablestatic_s_b_nolsi")
-            .withTableKeySchema(HASH_KEY_FIELD, S, RANGE_KEY_FIELD, B);
+            .withTableName(tableNamePrefix + "_b_nolsi")
+            .withTableKeySchema(HASH_KEY_FIELD, hashKeyType, RANGE_KEY_FIELD, B);
 
         return ImmutableList.of(mtSharedTableStaticSs,
             mtSharedTableStaticSn,
@@ -198,25 +236,42 @@ public class SharedTableBuilder extends SharedTableCustomDynamicBuilder {
             mtSharedTableStaticSnNoLsi,
             mtSharedTableStaticSbNoLsi
         ).stream().map(createTableRequestBuilder -> {
-            addSis(createTableRequestBuilder, provisionedThroughput);
+            addSis(createTableRequestBuilder, hashKeyType, provisionedThroughput);
+            if (tenantScanIndex) {
+                addTenantScanIndex(createTableRequestBuilder, provisionedThroughput);
+            }
             addStreamSpecification(createTableRequestBuilder, streamsEnabled);
             return createTableRequestBuilder.withProvisionedThroughput(provisionedThroughput,
                 provisionedThroughput).build();
         }).collect(Collectors.toList());
     }
 
-    private static void addSis(CreateTableRequestBuilder createTableRequestBuilder, long defaultProvisionedThroughput) {
-        addSi(createTableRequestBuilder, GSI, S, empty(), defaultProvisionedThroughput);
-        addSi(createTableRequestBuilder, GSI, S, of(S), defaultProvisionedThroughput);
-        addSi(createTableRequestBuilder, GSI, S, of(N), defaultProvisionedThroughput);
-        addSi(createTableRequestBuilder, GSI, S, of(B), defaultProvisionedThroughput);
+    private static void addSis(CreateTableRequestBuilder createTableRequestBuilder, ScalarAttributeType hashKeyType,
+                               long defaultProvisionedThroughput) {
+        addSi(createTableRequestBuilder, GSI, hashKeyType, empty(), defaultProvisionedThroughput);
+        addSi(createTableRequestBuilder, GSI, hashKeyType, of(S), defaultProvisionedThroughput);
+        addSi(createTableRequestBuilder, GSI, hashKeyType, of(N), defaultProvisionedThroughput);
+        addSi(createTableRequestBuilder, GSI, hashKeyType, of(B), defaultProvisionedThroughput);
         if (!createTableRequestBuilder.getTableName().toLowerCase().endsWith("nolsi")) {
-            addSi(createTableRequestBuilder, LSI, S, of(S), defaultProvisionedThroughput);
-            addSi(createTableRequestBuilder, LSI, S, of(N), defaultProvisionedThroughput);
-            addSi(createTableRequestBuilder, LSI, S, of(B), defaultProvisionedThroughput);
+            addSi(createTableRequestBuilder, LSI, hashKeyType, of(S), defaultProvisionedThroughput);
+            addSi(createTableRequestBuilder, LSI, hashKeyType, of(N), defaultProvisionedThroughput);
+            addSi(createTableRequestBuilder, LSI, hashKeyType, of(B), defaultProvisionedThroughput);
         }
     }
 
+    /*
+     * The index is never considered a counterpart of a virtual secondary index; see
+     * DynamoSecondaryIndexMapperByTypeImpl.  It has no range key, since DynamoDB does not allow query filters on index
+     * key attributes, and the mapped scan filter references the table's hash key.
+     */
+    private static void addTenantScanIndex(CreateTableRequestBuilder createTableRequestBuilder,
+                                           long defaultProvisionedThroughput) {
+        createTableRequestBuilder.addSi(MtAmazonDynamoDbBySharedTable.TENANT_INDEX_NAME,
+            GSI,
+            new PrimaryKey(MtAmazonDynamoDbBySharedTable.TENANT_INDEX_HASH_KEY, B),
+            defaultProvisionedThroughput);
+    }
+
     private static void addStreamSpecification(CreateTableRequestBuilder createTableRequestBuilder,
         boolean streamsEnabled) {
         createTableRequestBuilder.withStreamSpecification(streamsEnabled
@@ -271,7 +326,7 @@ public class SharedTableBuilder extends SharedTableCustomDynamicBuilder {
      */
     static class SharedTableCreateTableRequestFactory implements CreateTableRequestFactory {
 
-        private final PrimaryKeyMapper primaryKeyMapper = new PrimaryKeyMapperByTypeImpl(false);
+        private final PrimaryKeyMapper primaryKeyMapper;
         private final List<CreateTableRequest> createTableRequests;
 
         /**
@@ -279,6 +334,13 @@ public class SharedTableBuilder extends SharedTableCustomDynamicBuilder {
          */
         SharedTableCreateTableRequestFactory(List<CreateTableRequest> createTableRequests,
                                              Optional<String> tablePrefix) {
+            this(createTableRequests, tablePrefix, S);
+        }
+
+        SharedTableCreateTableRequestFactory(List<CreateTableRequest> createTableRequests,
+                                             Optional<String> tablePrefix,
+                                             ScalarAttributeType hashKeyType) {
+            this.primaryKeyMapper = new PrimaryKeyMapperByTypeImpl(false, hashKeyType);
             this.createTableRequests = createTableRequests.stream()
                 .map(createTableRequest -> createTableRequest.withTableName(
                     prefix(tablePrefix, createTableRequest.getTableName())))
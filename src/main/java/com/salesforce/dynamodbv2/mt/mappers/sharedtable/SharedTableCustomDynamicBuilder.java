@@ -12,13 +12,17 @@ import static java.util.Optional.empty;
 import static java.util.Optional.of;
 
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreams;
 import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
 import com.salesforce.dynamodbv2.mt.mappers.index.DynamoSecondaryIndexMapper;
 import com.salesforce.dynamodbv2.mt.mappers.index.DynamoSecondaryIndexMapperByNameImpl;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.BatchGetItemRetryPolicy;
 import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.MtAmazonDynamoDbBySharedTable;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ScanBudget;
 import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.TableMappingFactory;
 import com.salesforce.dynamodbv2.mt.repo.MtDynamoDbTableDescriptionRepo;
 import com.salesforce.dynamodbv2.mt.repo.MtTableDescriptionRepo;
+import com.salesforce.dynamodbv2.mt.repo.TableDescriptionCodec;
 import java.util.Optional;
 
 /**
@@ -67,12 +71,33 @@ import java.util.Optional;
  *   table is dropped.  Default: FALSE.
  * - {@code precreateTables}: a {@code boolean} to indicate whether the physical tables should be created eagerly.
  *   Default: TRUE.
+ * - {@code precreateTablesTimeoutSeconds}: an {@code Integer} representing the time in seconds to wait for all
+ *   eagerly created physical tables to become active.  Missing tables are created concurrently and awaited together.
+ *   Default: 600.
  * - {@code tableMappingFactory}: the {@code TableMappingFactory} that maps virtual to physical table instances.
  *   Default: a table mapping factory that implements shared table behavior.
  * - {@code name}: a {@code String} representing the name of the multitenant AmazonDynamoDB instance.
  *   Default: "MtAmazonDynamoDbBySharedTable".
  * - {@code pollIntervalSeconds}: an {@code Integer} representing the interval in seconds between attempts at checking
  *   the status of the table being created.  Default: 0.
+ * - {@code batchGetItemRetryPolicy}: a {@code BatchGetItemRetryPolicy} that, when provided, makes batchGetItem split
+ *   requests of more than 100 keys and resubmit unprocessed keys with jittered exponential backoff.  Default: none,
+ *   requests are passed through as is and unprocessed keys are returned to the caller.
+ * - {@code scanBudget}: a {@code ScanBudget} that bounds the physical pages, read capacity, or time a single scan call
+ *   spends skipping pages without items of the current tenant.  When it runs out, an empty page is returned whose last
+ *   evaluated key continues the scan.  Its continuation key must be the same on all instances that serve the same
+ *   tables.  Default: none, scans read until an item is found or the table ends.
+ * - {@code cacheSpec}: a {@code CacheBuilderSpec} {@code String} that configures the per-tenant caches of table
+ *   mappings and, unless a {@code MtTableDescriptionRepo} is provided, table descriptions, e.g.,
+ *   "maximumSize=100000,expireAfterAccess=1h,recordStats".  See {@code MtCache} for supported options.
+ *   Default: none, caches are unbounded.
+ * - {@code cacheInvalidationStreams}: an {@code AmazonDynamoDBStreams} client that, unless a
+ *   {@code MtTableDescriptionRepo} is provided, is used to poll the stream of the table description table, so that
+ *   cached table descriptions and mappings of tables created or deleted by other instances are refreshed within about
+ *   a second.  See {@code MtDynamoDbTableDescriptionRepo} for details.  Default: none, caches are not invalidated.
+ * - {@code tableDescriptionCodec}: a {@code TableDescriptionCodec} that, unless a {@code MtTableDescriptionRepo} is
+ *   provided, determines the format in which table descriptions are stored.  Default:
+ *   {@code BinaryTableDescriptionCodec}, which also reads table descriptions stored as JSON.
  *
  * <p>Limitations ...
  *
@@ -101,7 +126,13 @@ public class SharedTableCustomDynamicBuilder {
     private Boolean truncateOnDeleteTable;
     private Boolean precreateTables;
     private Integer pollIntervalSeconds;
+    private Integer precreateTablesTimeoutSeconds;
     private Optional<String> tablePrefix = empty();
+    private BatchGetItemRetryPolicy batchGetItemRetryPolicy;
+    private ScanBudget scanBudget;
+    private String cacheSpec;
+    private AmazonDynamoDBStreams cacheInvalidationStreams;
+    private TableDescriptionCodec tableDescriptionCodec;
 
     /**
      * TODO: write Javadoc.
@@ -120,7 +151,8 @@ public class SharedTableCustomDynamicBuilder {
                 delimiter,
                 amazonDynamoDb,
                 precreateTables,
-                pollIntervalSeconds
+                pollIntervalSeconds,
+                precreateTablesTimeoutSeconds
             );
         }
         return new MtAmazonDynamoDbBySharedTable(name,
@@ -129,7 +161,11 @@ public class SharedTableCustomDynamicBuilder {
             tableMappingFactory,
             mtTableDescriptionRepo,
             deleteTableAsync,
-            truncateOnDeleteTable);
+            truncateOnDeleteTable,
+            new MtAmazonDynamoDbBySharedTable.Options()
+                .withBatchGetItemRetryPolicy(batchGetItemRetryPolicy)
+                .withTableMappingCacheSpec(cacheSpec)
+                .withScanBudget(scanBudget));
     }
 
     public static SharedTableCustomDynamicBuilder builder() {
@@ -198,6 +234,38 @@ public class SharedTableCustomDynamicBuilder {
         return this;
     }
 
+    public SharedTableCustomDynamicBuilder withPrecreateTablesTimeoutSeconds(Integer precreateTablesTimeoutSeconds) {
+        this.precreateTablesTimeoutSeconds = precreateTablesTimeoutSeconds;
+        return this;
+    }
+
+    public SharedTableCustomDynamicBuilder withBatchGetItemRetryPolicy(
+        BatchGetItemRetryPolicy batchGetItemRetryPolicy) {
+        this.batchGetItemRetryPolicy = batchGetItemRetryPolicy;
+        return this;
+    }
+
+    public SharedTableCustomDynamicBuilder withScanBudget(ScanBudget scanBudget) {
+        this.scanBudget = scanBudget;
+        return this;
+    }
+
+    public SharedTableCustomDynamicBuilder withCacheSpec(String cacheSpec) {
+        this.cacheSpec = cacheSpec;
+        return this;
+    }
+
+    public SharedTableCustomDynamicBuilder withCacheInvalidationStreams(
+        AmazonDynamoDBStreams cacheInvalidationStreams) {
+        this.cacheInvalidationStreams = cacheInvalidationStreams;
+        return this;
+    }
+
+    public SharedTableCustomDynamicBuilder withTableDescriptionCodec(TableDescriptionCodec tableDescriptionCodec) {
+        this.tableDescriptionCodec = tableDescriptionCodec;
+        return this;
+    }
+
     protected Optional<String> getTablePrefix() {
         return tablePrefix;
     }
@@ -230,13 +298,19 @@ public class SharedTableCustomDynamicBuilder {
         if (pollIntervalSeconds == null) {
             pollIntervalSeconds = 0;
         }
+        if (precreateTablesTimeoutSeconds == null) {
+            precreateTablesTimeoutSeconds = 600;
+        }
         if (mtTableDescriptionRepo == null) {
             mtTableDescriptionRepo = MtDynamoDbTableDescriptionRepo.builder()
                 .withAmazonDynamoDb(amazonDynamoDb)
                 .withContext(mtContext)
                 .withTableDescriptionTableName(DEFAULT_TABLE_DESCRIPTION_TABLENAME)
                 .withPollIntervalSeconds(pollIntervalSeconds)
-                .withTablePrefix(tablePrefix).build();
+                .withTablePrefix(tablePrefix)
+                .withCacheSpec(cacheSpec)
+                .withCacheInvalidationStreams(cacheInvalidationStreams)
+                .withTableDescriptionCodec(tableDescriptionCodec).build();
         }
     }
 
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.salesforce.dynamodbv2.mt.util.Sleeper;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Controls how {@link MtAmazonDynamoDbBySharedTable#batchGetItem} resubmits keys that DynamoDB returns as unprocessed.
+ * Before each retry round the caller sleeps for a random duration between zero and an exponentially growing ceiling
+ * ("full jitter"), so that many clients throttled at the same time do not retry in lockstep.
+ *
+ * <p>Once {@code maxRetries} rounds have been spent, any keys that are still unprocessed are returned to the caller as
+ * {@code UnprocessedKeys}, mapped back to their virtual tables.
+ */
+public class BatchGetItemRetryPolicy {
+
+    /**
+     * Builder for creating retry policies.
+     */
+    public static class Builder {
+
+        private static final int DEFAULT_MAX_RETRIES = 10;
+        private static final long DEFAULT_BASE_BACKOFF_IN_MILLIS = 50L;
+        private static final long DEFAULT_MAX_BACKOFF_IN_MILLIS = 5000L;
+
+        private Sleeper sleeper;
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+        private long baseBackoffInMillis = DEFAULT_BASE_BACKOFF_IN_MILLIS;
+        private long maxBackoffInMillis = DEFAULT_MAX_BACKOFF_IN_MILLIS;
+
+        /**
+         * Maximum number of times unprocessed keys are resubmitted for a single batchGetItem call.
+         *
+         * @param maxRetries Maximum number of retry rounds.
+         * @return This builder.
+         */
+        public Builder withMaxRetries(int maxRetries) {
+            checkArgument(maxRetries >= 0);
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * Backoff ceiling for the first retry round. The ceiling doubles with each subsequent round.
+         *
+         * @param baseBackoffInMillis Base backoff time in millis.
+         * @return This builder.
+         */
+        public Builder withBaseBackoffInMillis(long baseBackoffInMillis) {
+            checkArgument(baseBackoffInMillis >= 0);
+            this.baseBackoffInMillis = baseBackoffInMillis;
+            return this;
+        }
+
+        /**
+         * Upper bound for the backoff ceiling, regardless of how many rounds have been attempted.
+         *
+         * @param maxBackoffInMillis Maximum backoff time in millis.
+         * @return This builder.
+         */
+        public Builder withMaxBackoffInMillis(long maxBackoffInMillis) {
+            checkArgument(maxBackoffInMillis >= 0);
+            this.maxBackoffInMillis = maxBackoffInMillis;
+            return this;
+        }
+
+        /**
+         * Sleep function to use for retry backoff. Defaults to {@link Thread#sleep(long)}.
+         *
+         * @param sleeper Sleeper implementation.
+         * @return This builder.
+         */
+        public Builder withSleeper(Sleeper sleeper) {
+            this.sleeper = sleeper;
+            return this;
+        }
+
+        /**
+         * Build instance using the configured properties.
+         *
+         * @return a newly created {@code BatchGetItemRetryPolicy} based on the contents of the {@code Builder}
+         */
+        public BatchGetItemRetryPolicy build() {
+            checkArgument(baseBackoffInMillis <= maxBackoffInMillis,
+                "baseBackoffInMillis must not exceed maxBackoffInMillis");
+            if (sleeper == null) {
+                sleeper = Sleeper.threadSleeper();
+            }
+            return new BatchGetItemRetryPolicy(sleeper, maxRetries, baseBackoffInMillis, maxBackoffInMillis);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final Sleeper sleeper;
+    private final int maxRetries;
+    private final long baseBackoffInMillis;
+    private final long maxBackoffInMillis;
+
+    private BatchGetItemRetryPolicy(Sleeper sleeper, int maxRetries, long baseBackoffInMillis,
+                                    long maxBackoffInMillis) {
+        this.sleeper = sleeper;
+        this.maxRetries = maxRetries;
+        this.baseBackoffInMillis = baseBackoffInMillis;
+        this.maxBackoffInMillis = maxBackoffInMillis;
+    }
+
+    int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /*
+     * Sleeps before the given (zero-based) retry round.
+     */
+    void backoff(int retry) {
+        long ceiling = getBackoffCeilingInMillis(retry);
+        if (ceiling > 0) {
+            sleeper.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        }
+    }
+
+    /*
+     * Returns base * 2^retry, capped at the maximum backoff and guarded against overflow.
+     */
+    long getBackoffCeilingInMillis(int retry) {
+        if (baseBackoffInMillis == 0) {
+            return 0;
+        }
+        int shift = Math.min(retry, Long.numberOfLeadingZeros(baseBackoffInMillis) - 1);
+        return Math.min(maxBackoffInMillis, baseBackoffInMillis << shift);
+    }
+
+}
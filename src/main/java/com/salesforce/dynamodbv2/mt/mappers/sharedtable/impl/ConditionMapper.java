@@ -2,43 +2,93 @@ package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
 
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.google.common.annotations.VisibleForTesting;
-import java.util.Collection;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.Binary;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.Path;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.Projection;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.UpdateAction;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.Value;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 /**
  * Applies mapping and prefixing to condition query and conditional update expressions.
  *
+ * <p>Expressions are parsed into an {@link Expression} tree, on which field references are resolved.  Since a table
+ * mapping typically sees the same few expressions over and over, parsed expressions and the result of converting
+ * field name literals, which depends on the expression and its expression attribute names, are cached, so that
+ * requests of a known shape are mapped without parsing.
+ *
  * @author msgroi
  */
 class ConditionMapper {
 
     static final String NAME_PLACEHOLDER = "#___name___";
+    private static final int MAX_CACHED_EXPRESSIONS = 100;
 
     private final TableMapping tableMapping;
     private final FieldMapper fieldMapper;
+    private final Cache<String, Expression> parsedExpressions =
+        CacheBuilder.newBuilder().maximumSize(MAX_CACHED_EXPRESSIONS).build();
+    private final Cache<String, Projection> parsedProjections =
+        CacheBuilder.newBuilder().maximumSize(MAX_CACHED_EXPRESSIONS).build();
+    private final Cache<ExpressionKey, ConvertedExpression> convertedExpressions =
+        CacheBuilder.newBuilder().maximumSize(MAX_CACHED_EXPRESSIONS).build();
 
     ConditionMapper(TableMapping tableMapping, FieldMapper fieldMapper) {
         this.tableMapping = tableMapping;
         this.fieldMapper = fieldMapper;
     }
 
+    /**
+     * Returns the syntax tree of the given expression, parsing it only if it has not been parsed recently.
+     *
+     * @throws IllegalArgumentException if the expression is not well-formed
+     */
+    Expression parse(String expression) {
+        Expression parsed = parsedExpressions.getIfPresent(expression);
+        if (parsed == null) {
+            parsed = ExpressionParser.parse(expression);
+            parsedExpressions.put(expression, parsed);
+        }
+        return parsed;
+    }
+
+    /**
+     * Returns the syntax tree of the given projection expression, parsing it only if it has not been parsed recently.
+     *
+     * @throws IllegalArgumentException if the expression is not well-formed
+     */
+    Projection parseProjection(String expression) {
+        Projection parsed = parsedProjections.getIfPresent(expression);
+        if (parsed == null) {
+            parsed = ExpressionParser.parseProjection(expression);
+            parsedProjections.put(expression, parsed);
+        }
+        return parsed;
+    }
+
     /**
      * Extracts literals referenced in primary and filter expressions and turns them into references to
      * expression names and values.
      */
     void convertFieldNameLiteralsToExpressionNames(RequestWrapper request) {
-        Collection<FieldMapping> fieldMappings =
-            tableMapping.getAllVirtualToPhysicalFieldMappingsDeduped().values();
         request.setPrimaryExpression(
-            convertFieldNameLiteralsToExpressionNamesInternal(fieldMappings, request.getPrimaryExpression(), request));
+            convertFieldNameLiteralsToExpressionNamesInternal(request.getPrimaryExpression(), request));
         request.setFilterExpression(
-            convertFieldNameLiteralsToExpressionNamesInternal(fieldMappings, request.getFilterExpression(), request));
+            convertFieldNameLiteralsToExpressionNamesInternal(request.getFilterExpression(), request));
     }
 
     /**
@@ -81,8 +131,12 @@ class ConditionMapper {
                 .filter(entry -> entry.getValue().equals(virtualAttrName)).map(Entry::getKey).findAny()
                 : Optional.empty(); // Optional[#field1]
             if (keyFieldName.isPresent() && !keyFieldName.get().equals(NAME_PLACEHOLDER)) {
-                Optional<String> virtualValuePlaceholderOpt =
-                    findVirtualValuePlaceholder(primaryExpression, filterExpression, keyFieldName.get()); // ":value"
+                Optional<String> virtualValuePlaceholderOpt = Stream.of(primaryExpression, filterExpression)
+                    .filter(Objects::nonNull)
+                    .map(expression -> findVirtualValuePlaceholder(parse(expression), keyFieldName.get()))
+                    .filter(Optional::isPresent)
+                    .map(Optional::get)
+                    .findFirst(); // ":value"
                 if (virtualValuePlaceholderOpt.isPresent()) {
                     String virtualValuePlaceholder = virtualValuePlaceholderOpt.get();
                     AttributeValue virtualAttr =
@@ -98,36 +152,63 @@ class ConditionMapper {
         }
     }
 
+    /*
+     * Converts the field name literals in the given expression, if not cached already, and adds the expression
+     * attribute names of the converted literals to the request.
+     */
+    private String convertFieldNameLiteralsToExpressionNamesInternal(String expression, RequestWrapper request) {
+        if (expression == null) {
+            return null;
+        }
+        ExpressionKey key = new ExpressionKey(expression, request.getExpressionAttributeNames());
+        ConvertedExpression converted = convertedExpressions.getIfPresent(key);
+        if (converted == null) {
+            converted = convertFieldNameLiterals(expression, request.getExpressionAttributeNames());
+            convertedExpressions.put(key.copy(), converted);
+        }
+        converted.expressionAttributeNames.forEach(request::putExpressionAttributeName);
+        return converted.expression;
+    }
+
     /**
-     * Extracts literals referenced in expressions and turns them into references to expression names and values.
+     * Replaces literals that refer to virtual fields with references to expression names.  Each literal is replaced
+     * in place, so the rest of the expression is left exactly as is.
      *
      * <p>Comments show expected variable values with a sample set of inputs.
      */
-    private String convertFieldNameLiteralsToExpressionNamesInternal(
-        Collection<FieldMapping> fieldMappings, // source = "field", target="field"
-        String conditionExpression, // "field = :value and field2 = :value2 and field = :value3"
-        RequestWrapper request) {
-        String newConditionExpression = conditionExpression;
-        if (conditionExpression != null) {
-            AtomicInteger counter = new AtomicInteger(1);
-            for (FieldMapping fieldMapping : fieldMappings) {
-                String virtualFieldName = fieldMapping.getSource().getName(); // "field"
-                String toFind = " " + virtualFieldName + " ="; // " field ="
-                int start = (" " + newConditionExpression).indexOf(toFind); // 0 - TODO add support for non-EQ operators
-                while (start >= 0) {
-                    String fieldLiteral =
-                            newConditionExpression.substring(start, start + virtualFieldName.length()); // "field"
-                    String fieldPlaceholder =
-                            getNextFieldPlaceholder(request.getExpressionAttributeNames(), counter); // "#field1"
-                    newConditionExpression = conditionExpression
-                        .replaceAll(fieldLiteral + " ", fieldPlaceholder + " ");
-                    // "#field1 = :value and field2 = :value2 and #field1 = :value3"
-                    request.putExpressionAttributeName(fieldPlaceholder, fieldLiteral);
-                    start = (" " + newConditionExpression).indexOf(toFind); // -1
-                }
+    private ConvertedExpression convertFieldNameLiterals(
+        String expression, // "field = :value and field2 = :value2 and field = :value3"
+        Map<String, String> expressionAttributeNames) {
+        Set<String> virtualFieldNames = tableMapping.getAllVirtualToPhysicalFieldMappingsDeduped().keySet(); // "field"
+        List<Path> literals = new ArrayList<>();
+        parse(expression).forEach(node -> {
+            if (node instanceof Path && !((Path) node).isPlaceholder()
+                && virtualFieldNames.contains(((Path) node).getHead())) {
+                literals.add((Path) node);
             }
+        });
+        if (literals.isEmpty()) {
+            return new ConvertedExpression(expression, ImmutableMap.of());
+        }
+        literals.sort(Comparator.comparingInt(Path::getStart));
+        AtomicInteger counter = new AtomicInteger(1);
+        Map<String, String> placeholders = new LinkedHashMap<>(); // "field" -> "#field1"
+        StringBuilder converted = new StringBuilder(expression.length() + 8 * literals.size());
+        int end = 0;
+        for (Path literal : literals) {
+            String placeholder = placeholders.computeIfAbsent(literal.getHead(), head -> {
+                String fieldPlaceholder = getNextFieldPlaceholder(expressionAttributeNames, counter);
+                counter.incrementAndGet();
+                return fieldPlaceholder;
+            });
+            converted.append(expression, end, literal.getStart()).append(placeholder);
+            end = literal.getStart() + literal.getHead().length();
         }
-        return newConditionExpression;
+        converted.append(expression, end, expression.length());
+        // "#field1 = :value and field2 = :value2 and #field1 = :value3"
+        Map<String, String> names = new HashMap<>();
+        placeholders.forEach((literal, placeholder) -> names.put(placeholder, literal)); // "#field1" -> "field"
+        return new ConvertedExpression(converted.toString(), names);
     }
 
     /*
@@ -161,19 +242,105 @@ class ConditionMapper {
 
     /**
      * Finds the value in the right-hand side operand of an expression where the left-hand operator is a given field.
-     *
-     * <p>Comments show expected variable values with a sample set of inputs.
      */
     @VisibleForTesting
     static Optional<String> findVirtualValuePlaceholder(String conditionExpression, String keyFieldName) {
-        if (conditionExpression == null) {
-            return Optional.empty();
+        return conditionExpression == null
+            ? Optional.empty()
+            : findVirtualValuePlaceholder(ExpressionParser.parse(conditionExpression), keyFieldName);
+    }
+
+    /*
+     * Finds the first equality comparison of the given field with a value, either in a condition or in a SET action of
+     * an update expression, e.g., ":value" for "#field = :value".  Only refers to the field as a whole, i.e., does not
+     * match nested paths like "#field.attribute", and accepts the operands in either order.
+     */
+    private static Optional<String> findVirtualValuePlaceholder(Expression expression, String keyFieldName) {
+        List<String> placeholders = new ArrayList<>(1);
+        expression.forEach(node -> {
+            if (!placeholders.isEmpty()) {
+                return;
+            }
+            if (node instanceof Binary && ((Binary) node).getOperator().equals(Binary.EQ)) {
+                Binary comparison = (Binary) node;
+                Optional<String> placeholder =
+                    getValuePlaceholder(comparison.getLeft(), comparison.getRight(), keyFieldName);
+                if (!placeholder.isPresent()) {
+                    placeholder = getValuePlaceholder(comparison.getRight(), comparison.getLeft(), keyFieldName);
+                }
+                placeholder.ifPresent(placeholders::add);
+            } else if (node instanceof UpdateAction && ((UpdateAction) node).getClause().equals(UpdateAction.SET)) {
+                UpdateAction action = (UpdateAction) node;
+                getValuePlaceholder(action.getPath(), action.getValue(), keyFieldName).ifPresent(placeholders::add);
+            }
+        });
+        return placeholders.stream().findFirst();
+    }
+
+    /*
+     * Returns the placeholder of the given value if the given path refers to the given field as a whole.
+     */
+    private static Optional<String> getValuePlaceholder(Expression path, Expression value, String fieldName) {
+        return path instanceof Path && ((Path) path).isTopLevel() && ((Path) path).getHead().equals(fieldName)
+            && value instanceof Value
+            ? Optional.of(((Value) value).getPlaceholder())
+            : Optional.empty();
+    }
+
+    /*
+     * Identifies a converted expression by its text and expression attribute names.  Keys used for lookups refer to
+     * the request's expression attribute names, which may change afterwards, so only copies are added to the cache.
+     */
+    private static final class ExpressionKey {
+
+        private final String expression;
+        private final Map<String, String> expressionAttributeNames;
+
+        private ExpressionKey(String expression, Map<String, String> expressionAttributeNames) {
+            this.expression = expression;
+            this.expressionAttributeNames = expressionAttributeNames == null
+                ? ImmutableMap.of()
+                : expressionAttributeNames;
+        }
+
+        ExpressionKey copy() {
+            return new ExpressionKey(expression, ImmutableMap.copyOf(expressionAttributeNames));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ExpressionKey that = (ExpressionKey) o;
+            return expression.equals(that.expression)
+                && expressionAttributeNames.equals(that.expressionAttributeNames);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * expression.hashCode() + expressionAttributeNames.hashCode();
+        }
+
+    }
+
+    /*
+     * An expression whose field name literals have been converted, along with the expression attribute names of the
+     * converted literals.
+     */
+    private static final class ConvertedExpression {
+
+        private final String expression;
+        private final Map<String, String> expressionAttributeNames;
+
+        private ConvertedExpression(String expression, Map<String, String> expressionAttributeNames) {
+            this.expression = expression;
+            this.expressionAttributeNames = expressionAttributeNames;
         }
 
-        // TODO add support for non-EQ operators
-        final Pattern p = Pattern.compile(keyFieldName + " = ([^ ,]*)");
-        final Matcher m = p.matcher(conditionExpression);
-        return m.find() ? Optional.of(m.group(1)) : Optional.empty();
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A node of the abstract syntax tree of a DynamoDB condition, key condition, filter, update, or projection expression,
+ * as produced by {@link ExpressionParser}.  Nodes are immutable.  Paths remember where they start in the expression
+ * text, so that expressions can be rewritten by replacing attribute names without otherwise changing the text.
+ */
+abstract class Expression {
+
+    /**
+     * Returns the direct children of this node in the order they appear in the expression text.
+     */
+    abstract List<Expression> getChildren();
+
+    /**
+     * Calls the consumer with this node and all of its descendants in the order they appear in the expression text.
+     */
+    void forEach(Consumer<Expression> consumer) {
+        consumer.accept(this);
+        getChildren().forEach(child -> child.forEach(consumer));
+    }
+
+    /**
+     * A document path, e.g., {@code #name}, {@code attribute}, or {@code #list[1].attribute}.  Only the first element,
+     * which names a top-level attribute, is kept.
+     */
+    static final class Path extends Expression {
+
+        private final String head;
+        private final int start;
+        private final boolean nested;
+
+        Path(String head, int start, boolean nested) {
+            this.head = head;
+            this.start = start;
+            this.nested = nested;
+        }
+
+        /**
+         * Returns the first element of the path, either an expression attribute name placeholder or a literal.
+         */
+        String getHead() {
+            return head;
+        }
+
+        /**
+         * Returns the position of the first element of the path in the expression text.
+         */
+        int getStart() {
+            return start;
+        }
+
+        boolean isPlaceholder() {
+            return head.charAt(0) == '#';
+        }
+
+        /**
+         * Returns whether the path refers to a top-level attribute as a whole, i.e., consists of a single element.
+         */
+        boolean isTopLevel() {
+            return !nested;
+        }
+
+        @Override
+        List<Expression> getChildren() {
+            return ImmutableList.of();
+        }
+
+    }
+
+    /**
+     * An expression attribute value placeholder, e.g., {@code :value}.
+     */
+    static final class Value extends Expression {
+
+        private final String placeholder;
+
+        Value(String placeholder) {
+            this.placeholder = placeholder;
+        }
+
+        String getPlaceholder() {
+            return placeholder;
+        }
+
+        @Override
+        List<Expression> getChildren() {
+            return ImmutableList.of();
+        }
+
+    }
+
+    /**
+     * A function call, e.g., {@code begins_with(#name, :value)} or {@code if_not_exists(#name, :value)}.
+     */
+    static final class FunctionCall extends Expression {
+
+        private final String name;
+        private final List<Expression> arguments;
+
+        FunctionCall(String name, List<Expression> arguments) {
+            this.name = name;
+            this.arguments = ImmutableList.copyOf(arguments);
+        }
+
+        String getName() {
+            return name;
+        }
+
+        @Override
+        List<Expression> getChildren() {
+            return arguments;
+        }
+
+    }
+
+    /**
+     * A binary operation whose operator is either a comparator ({@code =, <>, <, <=, >, >=}), a logical operator
+     * ({@code AND, OR}, upper case), or an arithmetic operator of an update expression ({@code +, -}).
+     */
+    static final class Binary extends Expression {
+
+        static final String EQ = "=";
+        static final String AND = "AND";
+        static final String OR = "OR";
+
+        private final String operator;
+        private final Expression left;
+        private final Expression right;
+
+        Binary(String operator, Expression left, Expression right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        String getOperator() {
+            return operator;
+        }
+
+        Expression getLeft() {
+            return left;
+        }
+
+        Expression getRight() {
+            return right;
+        }
+
+        @Override
+        List<Expression> getChildren() {
+            return ImmutableList.of(left, right);
+        }
+
+    }
+
+    /**
+     * A negated condition, i.e., {@code NOT condition}.
+     */
+    static final class Not extends Expression {
+
+        private final Expression condition;
+
+        Not(Expression condition) {
+            this.condition = condition;
+        }
+
+        @Override
+        List<Expression> getChildren() {
+            return ImmutableList.of(condition);
+        }
+
+    }
+
+    /**
+     * A range or membership condition, i.e., {@code operand BETWEEN lower AND upper} or
+     * {@code operand IN (candidate, ...)}.  The first child is the operand.
+     */
+    static final class Range extends Expression {
+
+        private final List<Expression> operands;
+
+        Range(List<Expression> operands) {
+            this.operands = ImmutableList.copyOf(operands);
+        }
+
+        @Override
+        List<Expression> getChildren() {
+            return operands;
+        }
+
+    }
+
+    /**
+     * A single action of an update expression, i.e., {@code SET path = value}, {@code REMOVE path},
+     * {@code ADD path value}, or {@code DELETE path value}.  The clause is upper case and the value is null for
+     * {@code REMOVE}.
+     */
+    static final class UpdateAction extends Expression {
+
+        static final String SET = "SET";
+
+        private final String clause;
+        private final Path path;
+        private final Expression value;
+
+        UpdateAction(String clause, Path path, Expression value) {
+            this.clause = clause;
+            this.path = path;
+            this.value = value;
+        }
+
+        String getClause() {
+            return clause;
+        }
+
+        Path getPath() {
+            return path;
+        }
+
+        Expression getValue() {
+            return value;
+        }
+
+        @Override
+        List<Expression> getChildren() {
+            return value == null ? ImmutableList.of(path) : ImmutableList.of(path, value);
+        }
+
+    }
+
+    /**
+     * An update expression, i.e., a sequence of update actions.
+     */
+    static final class Update extends Expression {
+
+        private final List<Expression> actions;
+
+        Update(List<Expression> actions) {
+            this.actions = ImmutableList.copyOf(actions);
+        }
+
+        @Override
+        List<Expression> getChildren() {
+            return actions;
+        }
+
+    }
+
+    /**
+     * A projection expression, i.e., a list of paths.
+     */
+    static final class Projection extends Expression {
+
+        private final List<Path> paths;
+
+        Projection(List<Path> paths) {
+            this.paths = ImmutableList.copyOf(paths);
+        }
+
+        List<Path> getPaths() {
+            return paths;
+        }
+
+        @Override
+        List<Expression> getChildren() {
+            return ImmutableList.copyOf(paths);
+        }
+
+    }
+
+}
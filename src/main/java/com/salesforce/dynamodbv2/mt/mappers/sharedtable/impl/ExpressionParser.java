@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
+
+import com.google.common.collect.ImmutableSet;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.Binary;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.FunctionCall;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.Not;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.Path;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.Projection;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.Range;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.Update;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.UpdateAction;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.Value;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Parses DynamoDB condition, key condition, filter, update, and projection expressions into an {@link Expression}
+ * tree.  An expression that starts with one of the update clauses {@code SET, REMOVE, ADD, DELETE} is parsed as an
+ * update expression, any other expression as a condition.  Projection expressions, which cannot be told apart from
+ * conditions consisting of a single path, are parsed separately.  Keywords and function names are case-insensitive.
+ *
+ * <p>See https://docs.aws.amazon.com/amazondynamodb/latest/developerguide/Expressions.html for the grammar.
+ */
+final class ExpressionParser {
+
+    private static final Set<String> UPDATE_CLAUSES = ImmutableSet.of("SET", "REMOVE", "ADD", "DELETE");
+    private static final Set<String> COMPARATORS = ImmutableSet.of("=", "<>", "<", "<=", ">", ">=");
+
+    private enum TokenType { NAME, VALUE, IDENTIFIER, NUMBER, OPERATOR, END }
+
+    private static final class Token {
+
+        private final TokenType type;
+        private final String text;
+        private final int start;
+
+        private Token(TokenType type, String text, int start) {
+            this.type = type;
+            this.text = text;
+            this.start = start;
+        }
+
+        private boolean is(String operator) {
+            return type == TokenType.OPERATOR && text.equals(operator);
+        }
+
+        private boolean isKeyword(String keyword) {
+            return type == TokenType.IDENTIFIER && text.equalsIgnoreCase(keyword);
+        }
+
+    }
+
+    private final String expression;
+    private final List<Token> tokens;
+    private int position;
+
+    private ExpressionParser(String expression) {
+        this.expression = expression;
+        this.tokens = tokenize(expression);
+    }
+
+    /**
+     * Parses the given expression.
+     *
+     * @param expression a condition or update expression
+     * @return the root of the expression's syntax tree
+     * @throws IllegalArgumentException if the expression is not well-formed
+     */
+    static Expression parse(String expression) {
+        ExpressionParser parser = new ExpressionParser(expression);
+        Token first = parser.peek();
+        Expression root = first.type == TokenType.IDENTIFIER
+            && UPDATE_CLAUSES.contains(first.text.toUpperCase(Locale.ROOT))
+            ? parser.parseUpdate()
+            : parser.parseCondition();
+        parser.expect(TokenType.END, "end of expression");
+        return root;
+    }
+
+    /**
+     * Parses the given projection expression.
+     *
+     * @param expression a projection expression, i.e., a comma-separated list of paths
+     * @return the projection's syntax tree
+     * @throws IllegalArgumentException if the expression is not well-formed
+     */
+    static Projection parseProjection(String expression) {
+        ExpressionParser parser = new ExpressionParser(expression);
+        List<Path> paths = new ArrayList<>();
+        do {
+            paths.add(parser.parsePath());
+        } while (parser.accept(","));
+        parser.expect(TokenType.END, "end of expression");
+        return new Projection(paths);
+    }
+
+    private Expression parseUpdate() {
+        List<Expression> actions = new ArrayList<>();
+        do {
+            Token clauseToken = expect(TokenType.IDENTIFIER, "update clause");
+            String clause = clauseToken.text.toUpperCase(Locale.ROOT);
+            if (!UPDATE_CLAUSES.contains(clause)) {
+                throw invalid(clauseToken, "update clause");
+            }
+            do {
+                actions.add(parseUpdateAction(clause));
+            } while (accept(","));
+        } while (peek().type != TokenType.END);
+        return new Update(actions);
+    }
+
+    private Expression parseUpdateAction(String clause) {
+        Path path = parsePath();
+        switch (clause) {
+            case "SET":
+                expectOperator("=");
+                Expression left = parseOperand();
+                Token operator = peek();
+                if (operator.is("+") || operator.is("-")) {
+                    position++;
+                    return new UpdateAction(clause, path, new Binary(operator.text, left, parseOperand()));
+                }
+                return new UpdateAction(clause, path, left);
+            case "REMOVE":
+                return new UpdateAction(clause, path, null);
+            default:
+                return new UpdateAction(clause, path, parseOperand());
+        }
+    }
+
+    /*
+     * condition ::= conjunction (OR conjunction)*
+     */
+    private Expression parseCondition() {
+        Expression condition = parseConjunction();
+        while (acceptKeyword(Binary.OR)) {
+            condition = new Binary(Binary.OR, condition, parseConjunction());
+        }
+        return condition;
+    }
+
+    /*
+     * conjunction ::= negation (AND negation)*
+     */
+    private Expression parseConjunction() {
+        Expression conjunction = parseNegation();
+        while (acceptKeyword(Binary.AND)) {
+            conjunction = new Binary(Binary.AND, conjunction, parseNegation());
+        }
+        return conjunction;
+    }
+
+    /*
+     * negation ::= NOT negation | predicate
+     */
+    private Expression parseNegation() {
+        return acceptKeyword("NOT") ? new Not(parseNegation()) : parsePredicate();
+    }
+
+    /*
+     * predicate ::= ( condition ) | operand comparator operand | operand BETWEEN operand AND operand
+     *             | operand IN ( operand (, operand)* ) | function
+     */
+    private Expression parsePredicate() {
+        if (accept("(")) {
+            Expression condition = parseCondition();
+            expectOperator(")");
+            return condition;
+        }
+        Expression operand = parseOperand();
+        Token next = peek();
+        if (next.type == TokenType.OPERATOR && COMPARATORS.contains(next.text)) {
+            position++;
+            return new Binary(next.text, operand, parseOperand());
+        }
+        List<Expression> operands = new ArrayList<>();
+        operands.add(operand);
+        if (acceptKeyword("BETWEEN")) {
+            operands.add(parseOperand());
+            if (!acceptKeyword(Binary.AND)) {
+                throw invalid(peek(), Binary.AND);
+            }
+            operands.add(parseOperand());
+            return new Range(operands);
+        }
+        if (acceptKeyword("IN")) {
+            expectOperator("(");
+            do {
+                operands.add(parseOperand());
+            } while (accept(","));
+            expectOperator(")");
+            return new Range(operands);
+        }
+        if (operand instanceof FunctionCall) {
+            return operand;
+        }
+        throw invalid(next, "comparator");
+    }
+
+    /*
+     * operand ::= path | value | function
+     */
+    private Expression parseOperand() {
+        Token token = peek();
+        if (token.type == TokenType.VALUE) {
+            position++;
+            return new Value(token.text);
+        }
+        if (token.type == TokenType.IDENTIFIER && tokens.get(position + 1).is("(")) {
+            position += 2;
+            List<Expression> arguments = new ArrayList<>();
+            if (!accept(")")) {
+                do {
+                    arguments.add(parseOperand());
+                } while (accept(","));
+                expectOperator(")");
+            }
+            return new FunctionCall(token.text.toLowerCase(Locale.ROOT), arguments);
+        }
+        return parsePath();
+    }
+
+    /*
+     * path ::= element (. element | [ number ])*
+     */
+    private Path parsePath() {
+        Token head = peek();
+        if (head.type != TokenType.NAME && head.type != TokenType.IDENTIFIER) {
+            throw invalid(head, "attribute name");
+        }
+        position++;
+        boolean nested = false;
+        while (true) {
+            if (accept(".")) {
+                Token element = peek();
+                if (element.type != TokenType.NAME && element.type != TokenType.IDENTIFIER) {
+                    throw invalid(element, "attribute name");
+                }
+                position++;
+            } else if (accept("[")) {
+                expect(TokenType.NUMBER, "list index");
+                expectOperator("]");
+            } else {
+                return new Path(head.text, head.start, nested);
+            }
+            nested = true;
+        }
+    }
+
+    private Token peek() {
+        return tokens.get(position);
+    }
+
+    private boolean accept(String operator) {
+        if (peek().is(operator)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean acceptKeyword(String keyword) {
+        if (peek().isKeyword(keyword)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expectOperator(String operator) {
+        if (!accept(operator)) {
+            throw invalid(peek(), "'" + operator + "'");
+        }
+    }
+
+    private Token expect(TokenType type, String description) {
+        Token token = peek();
+        if (token.type != type) {
+            throw invalid(token, description);
+        }
+        position++;
+        return token;
+    }
+
+    private IllegalArgumentException invalid(Token token, String expected) {
+        String found = token.type == TokenType.END ? "end of expression" : "'" + token.text + "'";
+        return new IllegalArgumentException("invalid expression '" + expression + "': expected " + expected
+            + " but found " + found + " at position " + token.start);
+    }
+
+    /*
+     * Splits the expression into tokens, ending with an END token.  Placeholders, identifiers, and numbers are
+     * sequences of letters, digits, and underscores; names and values are prefixed with '#' and ':' respectively.
+     */
+    private static List<Token> tokenize(String expression) {
+        List<Token> tokens = new ArrayList<>();
+        int length = expression.length();
+        int i = 0;
+        while (i < length) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            TokenType type;
+            if (c == '#' || c == ':') {
+                type = c == '#' ? TokenType.NAME : TokenType.VALUE;
+                i = skipWord(expression, i + 1);
+                if (i == start + 1) {
+                    throw new IllegalArgumentException("invalid expression '" + expression
+                        + "': expected placeholder name at position " + i);
+                }
+            } else if (isWordCharacter(c)) {
+                type = Character.isDigit(c) ? TokenType.NUMBER : TokenType.IDENTIFIER;
+                i = skipWord(expression, i);
+            } else {
+                type = TokenType.OPERATOR;
+                if ((c == '<' || c == '>') && i + 1 < length
+                    && (expression.charAt(i + 1) == '=' || c == '<' && expression.charAt(i + 1) == '>')) {
+                    i += 2;
+                } else if ("=<>(),.[]+-".indexOf(c) >= 0) {
+                    i++;
+                } else {
+                    throw new IllegalArgumentException("invalid expression '" + expression
+                        + "': unexpected character '" + c + "' at position " + i);
+                }
+            }
+            tokens.add(new Token(type, expression.substring(start, i), start));
+        }
+        tokens.add(new Token(TokenType.END, "", length));
+        return tokens;
+    }
+
+    private static int skipWord(String expression, int start) {
+        int i = start;
+        while (i < expression.length() && isWordCharacter(expression.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWordCharacter(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+}
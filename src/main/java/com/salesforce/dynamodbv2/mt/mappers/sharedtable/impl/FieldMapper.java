@@ -7,6 +7,7 @@
 
 package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
 
+import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.B;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.FieldMapping.IndexType.TABLE;
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -14,6 +15,9 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ScalarAttributeType;
 import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.FieldMapping.Field;
+import java.nio.ByteBuffer;
+import java.util.Optional;
 
 /**
  * Adds and removes prefixes to fields based on the tenant context.
@@ -35,18 +39,44 @@ class FieldMapper {
     }
 
     AttributeValue apply(FieldMapping fieldMapping, AttributeValue unqualifiedAttribute) {
+        String tableIndex = fieldMapping.getIndexType() == TABLE
+            ? virtualTableName
+            : fieldMapping.getVirtualIndexName();
+        if (isBinary(fieldMapping.getTarget())) {
+            return new AttributeValue().withB(
+                fieldPrefixFunction.qualifyBinary(mtContext,
+                    tableIndex,
+                    convertToBytesNotNull(fieldMapping.getSource().getType(),
+                        unqualifiedAttribute)));
+        }
         return new AttributeValue(
-            fieldPrefixFunction.apply(mtContext,
-                fieldMapping.getIndexType() == TABLE
-                    ? virtualTableName
-                    : fieldMapping.getVirtualIndexName(),
+            fieldPrefixFunction.qualify(mtContext,
+                tableIndex,
                 convertToStringNotNull(fieldMapping.getSource().getType(),
-                    unqualifiedAttribute)).getQualifiedValue());
+                    unqualifiedAttribute)));
     }
 
     AttributeValue reverse(FieldMapping fieldMapping, AttributeValue qualifiedAttribute) {
+        if (isBinary(fieldMapping.getSource())) {
+            return convertFromBytes(fieldMapping.getTarget().getType(),
+                fieldPrefixFunction.unqualifyBinary(qualifiedAttribute.getB()));
+        }
         return convertFromString(fieldMapping.getTarget().getType(),
-            fieldPrefixFunction.reverse(qualifiedAttribute.getS()).getUnqualifiedValue());
+            fieldPrefixFunction.unqualify(qualifiedAttribute.getS()));
+    }
+
+    /*
+     * Physical fields of type B hold binary qualified values; see FieldPrefixFunction.
+     */
+    private static boolean isBinary(Field physicalField) {
+        return physicalField != null && physicalField.getType() == B;
+    }
+
+    /*
+     * Returns the prefix of qualified table-level key values in the current context.
+     */
+    String getTablePrefix() {
+        return fieldPrefixFunction.getPrefix(mtContext.getContext(), virtualTableName);
     }
 
     private String convertToStringNotNull(ScalarAttributeType type, AttributeValue attributeValue) {
@@ -72,6 +102,26 @@ class FieldMapper {
         }
     }
 
+    /*
+     * Returns the bytes to qualify for the given attribute.  Binary attributes are returned as is, without decoding
+     * them, so that any bytes round-trip unchanged.
+     */
+    private ByteBuffer convertToBytesNotNull(ScalarAttributeType type, AttributeValue attributeValue) {
+        checkNotNull(type, "null attribute type");
+        ByteBuffer convertedBytes = type == B
+            ? attributeValue.getB()
+            : Optional.ofNullable(convertToString(type, attributeValue)).map(UTF_8::encode).orElse(null);
+        checkNotNull(convertedBytes, "attributeValue=" + attributeValue
+                     + " of type=" + type.name() + " could not be converted");
+        return convertedBytes;
+    }
+
+    private AttributeValue convertFromBytes(ScalarAttributeType type, ByteBuffer value) {
+        return type == B
+            ? new AttributeValue().withB(value)
+            : convertFromString(type, UTF_8.decode(value.duplicate()).toString());
+    }
+
     private AttributeValue convertFromString(ScalarAttributeType type, String value) {
         AttributeValue unqualifiedAttribute = new AttributeValue();
         switch (type) {
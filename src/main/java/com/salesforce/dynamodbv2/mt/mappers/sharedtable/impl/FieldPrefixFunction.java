@@ -7,9 +7,15 @@
 
 package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
 
-import com.google.common.base.Splitter;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
 
 /**
  * TODO: write Javadoc.
@@ -18,32 +24,175 @@ import java.util.List;
  */
 class FieldPrefixFunction {
 
+    private static final int MAX_HEADER_FIELD_LENGTH = 0xFFFF;
+
     private final String delimiter;
+    private final ConcurrentMap<String, ConcurrentMap<String, String>> prefixCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentMap<String, byte[]>> binaryPrefixCache = new ConcurrentHashMap<>();
 
     FieldPrefixFunction(String delimiter) {
         this.delimiter = delimiter;
     }
 
     FieldValue apply(MtAmazonDynamoDbContextProvider mtContext, String tableIndex, String value) {
-        return new FieldValue(mtContext.getContext(),
+        String context = mtContext.getContext();
+        return new FieldValue(context,
             tableIndex,
-            mtContext.getContext() + delimiter + tableIndex + delimiter + value,
+            getPrefix(context, tableIndex).concat(value),
             value);
     }
 
+    /*
+     * Like apply(), but returns only the qualified value, so that no FieldValue needs to be created.
+     */
+    String qualify(MtAmazonDynamoDbContextProvider mtContext, String tableIndex, String value) {
+        return getPrefix(mtContext.getContext(), tableIndex).concat(value);
+    }
+
+    /*
+     * Binary counterpart of qualify() for physical tables with hash keys of type B.  The qualified value is a header
+     * holding the context and the table index, each preceded by its UTF-8 length as an unsigned 16-bit integer,
+     * followed by the raw bytes of the value.  Since nothing needs to be escaped, any bytes round-trip unchanged.  The
+     * position of the given buffer is not modified.
+     */
+    ByteBuffer qualifyBinary(MtAmazonDynamoDbContextProvider mtContext, String tableIndex, ByteBuffer value) {
+        byte[] header = getBinaryPrefix(mtContext.getContext(), tableIndex);
+        ByteBuffer qualifiedValue = ByteBuffer.allocate(header.length + value.remaining());
+        qualifiedValue.put(header).put(value.duplicate());
+        qualifiedValue.flip();
+        return qualifiedValue;
+    }
+
+    /*
+     * Returns the prefix that qualifies values of the given table or index in the given context.  Prefixes are cached,
+     * since a FieldPrefixFunction is used for the (usually single) context of one table mapping, so the same few
+     * prefixes are otherwise rebuilt for every key that is qualified.
+     */
+    String getPrefix(String context, String tableIndex) {
+        return getCached(prefixCache, context, tableIndex, (c, t) -> c + delimiter + t + delimiter);
+    }
+
+    /*
+     * Returns the binary header that qualifies values of the given table or index in the given context.  Callers must
+     * not modify the returned array.
+     */
+    byte[] getBinaryPrefix(String context, String tableIndex) {
+        return getCached(binaryPrefixCache, context, tableIndex, FieldPrefixFunction::buildBinaryPrefix);
+    }
+
+    private static <T> T getCached(ConcurrentMap<String, ConcurrentMap<String, T>> cache, String context,
+                                   String tableIndex, BiFunction<String, String, T> factory) {
+        ConcurrentMap<String, T> prefixes = cache.get(context);
+        if (prefixes == null) {
+            prefixes = cache.computeIfAbsent(context, c -> new ConcurrentHashMap<>());
+        }
+        T prefix = prefixes.get(tableIndex);
+        if (prefix == null) {
+            prefix = prefixes.computeIfAbsent(tableIndex, t -> factory.apply(context, t));
+        }
+        return prefix;
+    }
+
+    private static byte[] buildBinaryPrefix(String context, String tableIndex) {
+        byte[] contextBytes = context.getBytes(UTF_8);
+        byte[] tableIndexBytes = tableIndex.getBytes(UTF_8);
+        checkArgument(contextBytes.length <= MAX_HEADER_FIELD_LENGTH, "context is too long: " + context);
+        checkArgument(tableIndexBytes.length <= MAX_HEADER_FIELD_LENGTH, "table index is too long: " + tableIndex);
+        return ByteBuffer.allocate(4 + contextBytes.length + tableIndexBytes.length)
+            .putShort((short) contextBytes.length)
+            .put(contextBytes)
+            .putShort((short) tableIndexBytes.length)
+            .put(tableIndexBytes)
+            .array();
+    }
+
     FieldValue reverse(String qualifiedValue) {
+        final int firstDelimiterOccurrence = indexOfFirstDelimiter(qualifiedValue);
+        final int prefixSeparatorIndex = indexOfPrefixSeparator(qualifiedValue, firstDelimiterOccurrence);
+        return new FieldValue(qualifiedValue.substring(0, firstDelimiterOccurrence),
+            qualifiedValue.substring(firstDelimiterOccurrence + delimiter.length(), prefixSeparatorIndex),
+            qualifiedValue,
+            qualifiedValue.substring(prefixSeparatorIndex + delimiter.length()));
+    }
+
+    /*
+     * Like reverse(), but returns only the unqualified value, which is sliced off the qualified value by offset without
+     * extracting the context and table index.
+     */
+    String unqualify(String qualifiedValue) {
+        final int prefixSeparatorIndex = indexOfPrefixSeparator(qualifiedValue, indexOfFirstDelimiter(qualifiedValue));
+        return qualifiedValue.substring(prefixSeparatorIndex + delimiter.length());
+    }
+
+    /*
+     * Binary counterpart of reverse().  The returned FieldValue holds the context and the table index only; its
+     * qualified and unqualified values are null.
+     */
+    FieldValue reverseBinary(ByteBuffer qualifiedValue) {
+        ByteBuffer buffer = qualifiedValue.duplicate();
+        return new FieldValue(readHeaderField(buffer, qualifiedValue), readHeaderField(buffer, qualifiedValue),
+            null, null);
+    }
+
+    /*
+     * Binary counterpart of unqualify().  Returns a view of the raw bytes that follow the header without copying them.
+     */
+    ByteBuffer unqualifyBinary(ByteBuffer qualifiedValue) {
+        ByteBuffer buffer = qualifiedValue.duplicate();
+        skipHeaderField(buffer, qualifiedValue);
+        skipHeaderField(buffer, qualifiedValue);
+        return buffer.slice();
+    }
+
+    private static String readHeaderField(ByteBuffer buffer, ByteBuffer qualifiedValue) {
+        int length = readHeaderFieldLength(buffer, qualifiedValue);
+        ByteBuffer field = buffer.slice();
+        field.limit(length);
+        buffer.position(buffer.position() + length);
+        return UTF_8.decode(field).toString();
+    }
+
+    private static void skipHeaderField(ByteBuffer buffer, ByteBuffer qualifiedValue) {
+        int length = readHeaderFieldLength(buffer, qualifiedValue);
+        buffer.position(buffer.position() + length);
+    }
+
+    private static int readHeaderFieldLength(ByteBuffer buffer, ByteBuffer qualifiedValue) {
+        if (buffer.remaining() < 2) {
+            throw invalidBinaryQualifiedValue(qualifiedValue);
+        }
+        int length = buffer.getShort() & MAX_HEADER_FIELD_LENGTH;
+        if (buffer.remaining() < length) {
+            throw invalidBinaryQualifiedValue(qualifiedValue);
+        }
+        return length;
+    }
+
+    private static IllegalArgumentException invalidBinaryQualifiedValue(ByteBuffer qualifiedValue) {
+        return new IllegalArgumentException("Input parameter " + qualifiedValue
+            + " should start with a length-prefixed context and table index");
+    }
+
+    private int indexOfFirstDelimiter(String qualifiedValue) {
         final int firstDelimiterOccurrence = qualifiedValue.indexOf(delimiter);
-        final int prefixSeparatorIndex = qualifiedValue.indexOf(delimiter, firstDelimiterOccurrence + 1);
-        if (firstDelimiterOccurrence == -1 || prefixSeparatorIndex == -1) {
-            throw new IllegalArgumentException("Input parameter \"" + qualifiedValue
-                + "\" should have at least two occurrences of " + delimiter);
+        if (firstDelimiterOccurrence == -1) {
+            throw invalidQualifiedValue(qualifiedValue);
         }
-        List<String> prefixList = Splitter.on(delimiter).splitToList(qualifiedValue.substring(0, prefixSeparatorIndex));
-        return new FieldValue(prefixList.get(0),
-            prefixList.get(1),
-            qualifiedValue,
-            qualifiedValue.substring(prefixSeparatorIndex + 1));
+        return firstDelimiterOccurrence;
+    }
+
+    private int indexOfPrefixSeparator(String qualifiedValue, int firstDelimiterOccurrence) {
+        final int prefixSeparatorIndex = qualifiedValue.indexOf(delimiter,
+            firstDelimiterOccurrence + delimiter.length());
+        if (prefixSeparatorIndex == -1) {
+            throw invalidQualifiedValue(qualifiedValue);
+        }
+        return prefixSeparatorIndex;
+    }
 
+    private IllegalArgumentException invalidQualifiedValue(String qualifiedValue) {
+        return new IllegalArgumentException("Input parameter \"" + qualifiedValue
+            + "\" should have at least two occurrences of " + delimiter);
     }
 
     static class FieldValue {
@@ -88,8 +237,8 @@ class FieldPrefixFunction {
 
             return mtContext.equals(that.mtContext)
                     && tableIndex.equals(that.tableIndex)
-                    && qualifiedValue.equals(that.qualifiedValue)
-                    && unqualifiedValue.equals(that.unqualifiedValue);
+                    && Objects.equals(qualifiedValue, that.qualifiedValue)
+                    && Objects.equals(unqualifiedValue, that.unqualifiedValue);
         }
     }
 
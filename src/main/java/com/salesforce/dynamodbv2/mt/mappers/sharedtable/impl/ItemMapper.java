@@ -7,13 +7,20 @@
 
 package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
 
-import static com.amazonaws.util.CollectionUtils.isNullOrEmpty;
+import static com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.MtAmazonDynamoDbBySharedTable.TENANT_INDEX_HASH_KEY;
+import static com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.MtAmazonDynamoDbBySharedTable.TENANT_INDEX_NAME;
+import static com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.MtAmazonDynamoDbBySharedTable.TENANT_INDEX_SHARDS;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
-
+import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescription;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.BiFunction;
 
 /**
  * Maps items representing records in virtual tables so they can be read from and written to their physical table
@@ -27,10 +34,14 @@ class ItemMapper {
 
     private final FieldMapper fieldMapper;
     private final TableMapping tableMapping;
+    private final MappingPlan applyPlan;
+    private final MappingPlan reversePlan;
 
     ItemMapper(TableMapping tableMapping, FieldMapper fieldMapper) {
         this.fieldMapper = fieldMapper;
         this.tableMapping = tableMapping;
+        this.applyPlan = new MappingPlan(tableMapping.getAllVirtualToPhysicalFieldMappings());
+        this.reversePlan = new MappingPlan(tableMapping.getAllPhysicalToVirtualFieldMappings());
     }
 
     /*
@@ -41,24 +52,52 @@ class ItemMapper {
      * Used for adding context to GetItemRequest, PutItemRequest, UpdateItemRequest, or DeleteItemRequest objects.
      */
     Map<String, AttributeValue> apply(Map<String, AttributeValue> unqualifiedItem) {
-        Map<String, AttributeValue> qualifiedItem = new HashMap<>();
-        Map<String, List<FieldMapping>> virtualToPhysicalFieldMappings =
-            tableMapping.getAllVirtualToPhysicalFieldMappings();
-        unqualifiedItem.forEach((field, attribute) -> {
-            List<FieldMapping> fieldMappings = virtualToPhysicalFieldMappings.get(field);
-            if (!isNullOrEmpty(fieldMappings)) {
-                fieldMappings.forEach(fieldMapping -> qualifiedItem.put(fieldMapping.getTarget().getName(),
-                    fieldMapping.isContextAware()
-                        ? fieldMapper.apply(fieldMapping, attribute)
-                        : attribute));
-            } else {
-                qualifiedItem.put(field, attribute);
-            }
-        });
+        return applyPlan.map(unqualifiedItem, 1, fieldMapper::apply);
+    }
 
+    /*
+     * Like apply(), but for complete items that are about to be written, rather than keys.  If the physical table has a
+     * tenant index, the item is additionally tagged with the tenant index hash key, so that it can be found by
+     * querying the tenant index.
+     *
+     * Used for mapping items in PutItemRequest and BatchWriteItemRequest objects.
+     */
+    Map<String, AttributeValue> applyForWrite(Map<String, AttributeValue> unqualifiedItem) {
+        Map<String, AttributeValue> qualifiedItem = apply(unqualifiedItem);
+        if (hasTenantIndex(tableMapping.getPhysicalTable())) {
+            qualifiedItem.put(TENANT_INDEX_HASH_KEY, getTenantIndexValue(getTenantIndexShard(qualifiedItem)));
+        }
         return qualifiedItem;
     }
 
+    /*
+     * Returns the tenant index shard of the item with the given qualified key.  The items of a virtual table are
+     * spread over TENANT_INDEX_SHARDS index hash key values by a hash of their physical hash key value, so that a
+     * large virtual table does not concentrate its index writes on a single index partition.  The hash must never
+     * change, since it determines where existing items are indexed.
+     */
+    int getTenantIndexShard(Map<String, AttributeValue> qualifiedKey) {
+        AttributeValue hashKeyValue = qualifiedKey.get(tableMapping.getPhysicalTable().getPrimaryKey().getHashKey());
+        int hash = hashKeyValue.getS() != null ? hashKeyValue.getS().hashCode() : hashKeyValue.getB().hashCode();
+        return Math.floorMod(hash, TENANT_INDEX_SHARDS);
+    }
+
+    /*
+     * Returns the value of the tenant index hash key for the given shard of the current tenant's virtual table: the
+     * context and virtual table prefix as UTF-8 text, regardless of whether physical hash keys are strings or binary,
+     * followed by the shard number as a single byte.
+     */
+    AttributeValue getTenantIndexValue(int shard) {
+        byte[] prefix = fieldMapper.getTablePrefix().getBytes(UTF_8);
+        byte[] value = Arrays.copyOf(prefix, prefix.length + 1);
+        value[prefix.length] = (byte) shard;
+        return new AttributeValue().withB(ByteBuffer.wrap(value));
+    }
+
+    static boolean hasTenantIndex(DynamoTableDescription physicalTable) {
+        return physicalTable.getGsi(TENANT_INDEX_NAME).isPresent();
+    }
+
     /*
      * Takes a map representing a record in a physical table that is effectively qualified with multitenant context and
      * returns a map representing a record in the virtual table with qualifications removed.
@@ -69,21 +108,68 @@ class ItemMapper {
         if (qualifiedItem == null) {
             return null;
         }
-        Map<String, AttributeValue> unqualifiedItem = new HashMap<>();
-        Map<String, List<FieldMapping>> physicalToVirtualFieldMappings =
-            tableMapping.getAllPhysicalToVirtualFieldMappings();
-        qualifiedItem.forEach((field, attribute) -> {
-            List<FieldMapping> fieldMappings = physicalToVirtualFieldMappings.get((field));
-            if (fieldMappings != null && !fieldMappings.isEmpty()) {
-                fieldMappings.forEach(fieldMapping -> unqualifiedItem.put(fieldMapping.getTarget().getName(),
-                    fieldMapping.isContextAware()
-                        ? fieldMapper.reverse(fieldMapping, attribute)
-                        : attribute));
-            } else {
-                unqualifiedItem.put(field, attribute);
-            }
-        });
+        Map<String, AttributeValue> unqualifiedItem = reversePlan.map(qualifiedItem, 0, fieldMapper::reverse);
+        unqualifiedItem.remove(TENANT_INDEX_HASH_KEY);
         return unqualifiedItem;
     }
 
+    /*
+     * The mapping of one table's items in one direction, compiled once per TableMapping: a flat array of the fields
+     * that are mapped, each with the fields it maps to.  Items are mapped by copying them in bulk into a map that is
+     * sized up front, and then replacing only the mapped fields, so attributes that are not part of any key are never
+     * looked up or copied individually.
+     */
+    private static final class MappingPlan {
+
+        private final String[] sources;
+        private final FieldMapping[][] targets;
+        private final int addedFields;
+
+        private MappingPlan(Map<String, List<FieldMapping>> fieldMappings) {
+            int size = fieldMappings.size();
+            sources = new String[size];
+            targets = new FieldMapping[size][];
+            int i = 0;
+            int added = 0;
+            for (Entry<String, List<FieldMapping>> entry : fieldMappings.entrySet()) {
+                sources[i] = entry.getKey();
+                targets[i] = entry.getValue().toArray(new FieldMapping[0]);
+                added += Math.max(0, targets[i].length - 1);
+                i++;
+            }
+            addedFields = added;
+        }
+
+        /*
+         * Maps the given item.  Mapped fields are removed before any targets are added, since a target field may have
+         * the same name as another source field.  Room is reserved for extraFields fields the caller adds afterwards.
+         */
+        private Map<String, AttributeValue> map(Map<String, AttributeValue> item, int extraFields,
+                                                BiFunction<FieldMapping, AttributeValue, AttributeValue> mapper) {
+            Map<String, AttributeValue> mappedItem = new HashMap<>(capacity(item.size() + addedFields + extraFields));
+            mappedItem.putAll(item);
+            AttributeValue[] values = new AttributeValue[sources.length];
+            for (int i = 0; i < sources.length; i++) {
+                values[i] = mappedItem.remove(sources[i]);
+            }
+            for (int i = 0; i < sources.length; i++) {
+                AttributeValue value = values[i];
+                if (value != null) {
+                    for (FieldMapping fieldMapping : targets[i]) {
+                        mappedItem.put(fieldMapping.getTarget().getName(),
+                            fieldMapping.isContextAware() ? mapper.apply(fieldMapping, value) : value);
+                    }
+                }
+            }
+            return mappedItem;
+        }
+
+        /*
+         * Returns the initial capacity at which a HashMap holds the given number of entries without resizing.
+         */
+        private static int capacity(int expectedSize) {
+            return (int) (expectedSize / 0.75f) + 1;
+        }
+    }
+
 }
\ No newline at end of file
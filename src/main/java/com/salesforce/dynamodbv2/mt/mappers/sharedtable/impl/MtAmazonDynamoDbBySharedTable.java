@@ -15,11 +15,15 @@ import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
 import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
 import com.amazonaws.services.dynamodbv2.model.Condition;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
 import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
 import com.amazonaws.services.dynamodbv2.model.CreateTableResult;
 import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
 import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.DeleteRequest;
 import com.amazonaws.services.dynamodbv2.model.DeleteTableRequest;
 import com.amazonaws.services.dynamodbv2.model.DeleteTableResult;
 import com.amazonaws.services.dynamodbv2.model.DescribeTableRequest;
@@ -30,33 +34,47 @@ import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
 import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
 import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
 import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
 import com.amazonaws.services.dynamodbv2.model.QueryRequest;
 import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
 import com.amazonaws.services.dynamodbv2.model.ScanRequest;
 import com.amazonaws.services.dynamodbv2.model.ScanResult;
 import com.amazonaws.services.dynamodbv2.model.StreamSpecification;
 import com.amazonaws.services.dynamodbv2.model.TableDescription;
 import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
 import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.cache.Cache;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.salesforce.dynamodbv2.mt.cache.MtCache;
 import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
+import com.salesforce.dynamodbv2.mt.mappers.MtAmazonDynamoDb.MtBatchGetItemResult;
 import com.salesforce.dynamodbv2.mt.mappers.MtAmazonDynamoDbBase;
 import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescriptionImpl;
 import com.salesforce.dynamodbv2.mt.mappers.metadata.PrimaryKey;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.UpdateAction;
 import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.FieldPrefixFunction.FieldValue;
 import com.salesforce.dynamodbv2.mt.repo.MtTableDescriptionRepo;
 import com.salesforce.dynamodbv2.mt.util.StreamArn;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -72,7 +90,7 @@ import org.slf4j.LoggerFactory;
  * <p>SharedTableCustomDynamicBuilder provides a series of static methods that providing builders that are
  * preconfigured to support a number of common mappings.  See Javadoc for each provided builder for details.
  *
- * <p>Supported methods: create|describe|delete* Table, get|put|update** Item, query***, scan***
+ * <p>Supported methods: create|describe|delete* Table, batchGet|batchWrite|get|put|update** Item, query***, scan***
  *
  * <p>See deleteTableAsync and truncateOnDeleteTable in the SharedTableCustomDynamicBuilder for details on how to
  * control behavior that is specific to deleteTable.
@@ -92,14 +110,35 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
 
     private static final Logger log = LoggerFactory.getLogger(MtAmazonDynamoDbBySharedTable.class);
 
+    // limits imposed by DynamoDB on a single BatchWriteItem call
+    static final int MAX_BATCH_WRITE_ITEMS = 25;
+    static final long MAX_BATCH_WRITE_BYTES = 16L * 1024 * 1024;
+    // limit imposed by DynamoDB on a single BatchGetItem call
+    static final int MAX_BATCH_GET_ITEMS = 100;
+
+    /**
+     * Name of the optional global secondary index on physical tables that allows scans of virtual tables to be served
+     * by querying only the current tenant's items.  Its hash key holds the context and virtual table prefix of an
+     * item as UTF-8 text, followed by a shard byte derived from the item's physical hash key, so that the items of a
+     * virtual table are spread over {@link #TENANT_INDEX_SHARDS} index partitions.  The hash key is of type B, so that
+     * the index can never be chosen as the counterpart of a virtual secondary index.
+     */
+    public static final String TENANT_INDEX_NAME = "gsi_tenant";
+    public static final String TENANT_INDEX_HASH_KEY = "gsi_tenant_hk";
+    static final int TENANT_INDEX_SHARDS = 16;
+    private static final String TENANT_NAME_PLACEHOLDER = "#___tenant___";
+    private static final String TENANT_VALUE_PLACEHOLDER = ":___tenant___";
+
     private final String name;
 
     private final MtTableDescriptionRepo mtTableDescriptionRepo;
-    private final Cache<String, TableMapping> tableMappingCache;
+    private final MtCache<TableMapping> tableMappingCache;
     private final TableMappingFactory tableMappingFactory;
     private final boolean deleteTableAsync;
     private final boolean truncateOnDeleteTable;
     private final Map<String, CreateTableRequest> mtTables;
+    private final Optional<BatchGetItemRetryPolicy> batchGetItemRetryPolicy;
+    private final Optional<ScanBudget> scanBudget;
 
     /**
      * TODO: write Javadoc.
@@ -119,17 +158,92 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
                                          MtTableDescriptionRepo mtTableDescriptionRepo,
                                          boolean deleteTableAsync,
                                          boolean truncateOnDeleteTable) {
+        this(name, mtContext, amazonDynamoDb, tableMappingFactory, mtTableDescriptionRepo, deleteTableAsync,
+            truncateOnDeleteTable, new Options());
+    }
+
+    /**
+     * Creates an instance with optional behavior configured by the given {@code Options}.  Options that are not set
+     * keep the behavior of the constructor without options.
+     *
+     * @param name the name of the multitenant AmazonDynamoDB instance
+     * @param mtContext the multitenant context provider
+     * @param amazonDynamoDb the underlying {@code AmazonDynamoDB} delegate
+     * @param tableMappingFactory the table-mapping factory for mapping virtual to physical table instances
+     * @param mtTableDescriptionRepo the {@code MtTableDescriptionRepo} impl
+     * @param deleteTableAsync a flag indicating whether to perform delete-table operations async. (as opposed to sync.)
+     * @param truncateOnDeleteTable a flag indicating whether to delete all table data when a virtual table is deleted
+     * @param options the optional behavior
+     */
+    public MtAmazonDynamoDbBySharedTable(String name,
+                                         MtAmazonDynamoDbContextProvider mtContext,
+                                         AmazonDynamoDB amazonDynamoDb,
+                                         TableMappingFactory tableMappingFactory,
+                                         MtTableDescriptionRepo mtTableDescriptionRepo,
+                                         boolean deleteTableAsync,
+                                         boolean truncateOnDeleteTable,
+                                         Options options) {
         super(mtContext, amazonDynamoDb);
         this.name = name;
         this.mtTableDescriptionRepo = mtTableDescriptionRepo;
-        this.tableMappingCache = new MtCache<>(mtContext);
+        this.tableMappingCache = new MtCache<>(mtContext, options.tableMappingCacheSpec);
+        mtTableDescriptionRepo.addTableDescriptionChangeListener(tableMappingCache::invalidate);
+        mtTableDescriptionRepo.addTableDescriptionResetListener(tableMappingCache::invalidateAll);
         this.tableMappingFactory = tableMappingFactory;
         this.deleteTableAsync = deleteTableAsync;
         this.truncateOnDeleteTable = truncateOnDeleteTable;
+        this.batchGetItemRetryPolicy = Optional.ofNullable(options.batchGetItemRetryPolicy);
+        this.scanBudget = Optional.ofNullable(options.scanBudget);
         this.mtTables = tableMappingFactory.getCreateTableRequestFactory().getPhysicalTables().stream()
                 .collect(Collectors.toMap(CreateTableRequest::getTableName, Function.identity()));
     }
 
+    /**
+     * Optional behavior of {@code MtAmazonDynamoDbBySharedTable}.  Each option defaults to none.
+     */
+    public static class Options {
+
+        private BatchGetItemRetryPolicy batchGetItemRetryPolicy;
+        private String tableMappingCacheSpec;
+        private ScanBudget scanBudget;
+
+        /**
+         * Policy for splitting batchGetItem requests and retrying unprocessed keys.  Defaults to none, requests are
+         * passed through as is.
+         *
+         * @param batchGetItemRetryPolicy the retry policy, or {@code null}
+         * @return these options
+         */
+        public Options withBatchGetItemRetryPolicy(BatchGetItemRetryPolicy batchGetItemRetryPolicy) {
+            this.batchGetItemRetryPolicy = batchGetItemRetryPolicy;
+            return this;
+        }
+
+        /**
+         * {@code CacheBuilderSpec} string configuring the table mapping cache.  Defaults to none, the cache is
+         * unbounded.
+         *
+         * @param tableMappingCacheSpec the cache spec, or {@code null}
+         * @return these options
+         */
+        public Options withTableMappingCacheSpec(String tableMappingCacheSpec) {
+            this.tableMappingCacheSpec = tableMappingCacheSpec;
+            return this;
+        }
+
+        /**
+         * Budget for skipping physical pages without items of the current tenant in a single scan call.  Defaults to
+         * none, scans read until an item is found or the table ends.
+         *
+         * @param scanBudget the scan budget, or {@code null}
+         * @return these options
+         */
+        public Options withScanBudget(ScanBudget scanBudget) {
+            this.scanBudget = scanBudget;
+            return this;
+        }
+    }
+
     protected boolean isMtTable(String tableName) {
         return mtTables.containsKey(tableName);
     }
@@ -143,8 +257,10 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
                 .map(KeySchemaElement::getAttributeName)
                 .findFirst().orElseThrow(IllegalStateException::new);
         FieldPrefixFunction fpf = new FieldPrefixFunction(".");
-        // TODO support non-string physical table hash key
-        return key -> fpf.reverse(key.get(hashKeyName).getS());
+        return key -> {
+            AttributeValue hashKey = key.get(hashKeyName);
+            return hashKey.getB() != null ? fpf.reverseBinary(hashKey.getB()) : fpf.reverse(hashKey.getS());
+        };
     }
 
     @Override
@@ -153,7 +269,23 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
     }
 
     /**
-     * Retrieves batches of items using their primary key.
+     * Returns a snapshot of the table mapping cache statistics of each tenant context.  Empty unless the cache spec
+     * enables {@code recordStats}.
+     *
+     * @return table mapping cache statistics by tenant context
+     */
+    public Map<String, CacheStats> getTableMappingCacheStats() {
+        return tableMappingCache.getTenantStats();
+    }
+
+    /**
+     * Retrieves batches of items using their primary key.  Keys are mapped to their physical tables and the items
+     * returned, as well as any unprocessed keys, are mapped back to their virtual tables.
+     *
+     * <p>If a {@code BatchGetItemRetryPolicy} was provided, requests with more than 100 keys are split into several
+     * physical calls, and unprocessed keys are resubmitted with jittered exponential backoff until none remain or the
+     * policy's retry limit is reached.  The number of retry rounds spent is reported by the returned
+     * {@code MtBatchGetItemResult}.
      */
     public BatchGetItemResult batchGetItem(BatchGetItemRequest unqualifiedBatchGetItemRequest) {
         // clone request and clear items
@@ -165,9 +297,10 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
         Map<String, TableMapping> tableMappingByPhysicalTableName = new HashMap<>();
 
         // for each table in the batch request, map table name and keys
+        String context = getMtContext().getContext();
         unqualifiedKeysByTable.forEach((unqualifiedTableName, unqualifiedKeys) -> {
             // map table name
-            TableMapping tableMapping = getTableMapping(unqualifiedTableName);
+            TableMapping tableMapping = getTableMapping(context, unqualifiedTableName);
             String qualifiedTableName = tableMapping.getPhysicalTable().getTableName();
             tableMappingByPhysicalTableName.put(qualifiedTableName, tableMapping);
             // map key
@@ -177,15 +310,50 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
                     key -> tableMapping.getItemMapper().apply(key)).collect(Collectors.toList())));
         });
 
-        // batch get
-        final BatchGetItemResult qualifiedBatchGetItemResult = getAmazonDynamoDb()
-            .batchGetItem(qualifiedBatchGetItemRequest);
-        Map<String, List<Map<String, AttributeValue>>> qualifiedItemsByTable = qualifiedBatchGetItemResult
-                .getResponses();
+        // batch get, splitting and retrying only if a retry policy was provided
+        List<Map<String, KeysAndAttributes>> batches = batchGetItemRetryPolicy.isPresent()
+            ? partitionKeys(qualifiedBatchGetItemRequest.getRequestItems())
+            : Collections.singletonList(qualifiedBatchGetItemRequest.getRequestItems());
+        int maxRetries = batchGetItemRetryPolicy.map(BatchGetItemRetryPolicy::getMaxRetries).orElse(0);
+        Map<String, List<Map<String, AttributeValue>>> qualifiedItemsByTable = new HashMap<>();
+        Map<String, KeysAndAttributes> qualifiedUnprocessedKeysByTable = new HashMap<>();
+        List<ConsumedCapacity> consumedCapacity = new ArrayList<>();
+        int retryRounds = 0;
+        for (Map<String, KeysAndAttributes> batch : batches) {
+            Map<String, KeysAndAttributes> pendingKeysByTable = batch;
+            for (int retry = 0; ; retry++) {
+                BatchGetItemResult qualifiedBatchGetItemResult = getAmazonDynamoDb().batchGetItem(
+                    qualifiedBatchGetItemRequest.clone().withRequestItems(pendingKeysByTable));
+                Optional.ofNullable(qualifiedBatchGetItemResult.getResponses()).ifPresent(responses ->
+                    responses.forEach((qualifiedTableName, qualifiedItems) -> qualifiedItemsByTable
+                        .computeIfAbsent(qualifiedTableName, t -> new ArrayList<>()).addAll(qualifiedItems)));
+                if (qualifiedBatchGetItemResult.getConsumedCapacity() != null) {
+                    consumedCapacity.addAll(qualifiedBatchGetItemResult.getConsumedCapacity());
+                }
+
+                pendingKeysByTable = qualifiedBatchGetItemResult.getUnprocessedKeys();
+                if (pendingKeysByTable == null || pendingKeysByTable.isEmpty()) {
+                    break;
+                }
+                if (retry == maxRetries) {
+                    // out of retries: hand whatever is left back to the caller
+                    pendingKeysByTable.forEach((qualifiedTableName, keysAndAttributes) ->
+                        qualifiedUnprocessedKeysByTable.merge(qualifiedTableName, keysAndAttributes,
+                            (existing, additional) -> {
+                                existing.getKeys().addAll(additional.getKeys());
+                                return existing;
+                            }));
+                    break;
+                }
+                batchGetItemRetryPolicy.get().backoff(retry);
+                retryRounds++;
+            }
+        }
 
         // map result
-        final BatchGetItemResult unqualifiedBatchGetItemResult = qualifiedBatchGetItemResult.clone();
-        unqualifiedBatchGetItemResult.clearResponsesEntries();
+        MtBatchGetItemResult unqualifiedBatchGetItemResult = new MtBatchGetItemResult().withRetryRounds(retryRounds);
+        unqualifiedBatchGetItemResult.setResponses(new HashMap<>());
+        unqualifiedBatchGetItemResult.setUnprocessedKeys(new HashMap<>());
         qualifiedItemsByTable.forEach((qualifiedTableName, qualifiedItems) -> {
             TableMapping tableMapping = tableMappingByPhysicalTableName.get(qualifiedTableName);
             unqualifiedBatchGetItemResult.addResponsesEntry(
@@ -193,10 +361,213 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
                 qualifiedItems.stream().map(keysAndAttributes ->
                     tableMapping.getItemMapper().reverse(keysAndAttributes)).collect(Collectors.toList()));
         });
+        qualifiedUnprocessedKeysByTable.forEach((qualifiedTableName, qualifiedKeys) -> {
+            TableMapping tableMapping = tableMappingByPhysicalTableName.get(qualifiedTableName);
+            unqualifiedBatchGetItemResult.addUnprocessedKeysEntry(
+                tableMapping.getVirtualTable().getTableName(),
+                qualifiedKeys.clone().withKeys(qualifiedKeys.getKeys().stream().map(key ->
+                    tableMapping.getItemMapper().reverse(key)).collect(Collectors.toList())));
+        });
+        unqualifiedBatchGetItemResult.setConsumedCapacity(consumedCapacity.isEmpty() ? null : consumedCapacity);
 
         return unqualifiedBatchGetItemResult;
     }
 
+    /*
+     * Splits the given keys into batches of no more than MAX_BATCH_GET_ITEMS keys.  Keys for the same physical table
+     * are kept in order and retain the table's other KeysAndAttributes settings.
+     */
+    @VisibleForTesting
+    static List<Map<String, KeysAndAttributes>> partitionKeys(Map<String, KeysAndAttributes> keysByTable) {
+        List<Map<String, KeysAndAttributes>> batches = new ArrayList<>();
+        Map<String, KeysAndAttributes> batch = new LinkedHashMap<>();
+        int batchItems = 0;
+        for (Map.Entry<String, KeysAndAttributes> entry : keysByTable.entrySet()) {
+            List<Map<String, AttributeValue>> keys = entry.getValue().getKeys();
+            int from = 0;
+            while (from < keys.size()) {
+                if (batchItems == MAX_BATCH_GET_ITEMS) {
+                    batches.add(batch);
+                    batch = new LinkedHashMap<>();
+                    batchItems = 0;
+                }
+                int to = Math.min(keys.size(), from + MAX_BATCH_GET_ITEMS - batchItems);
+                batch.put(entry.getKey(), entry.getValue().clone().withKeys(keys.subList(from, to)));
+                batchItems += to - from;
+                from = to;
+            }
+        }
+        if (batchItems > 0) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Puts or deletes multiple items across one or more virtual tables.  Each virtual table's write requests are
+     * mapped to their physical table and regrouped by physical table.  Since many virtual tables may share a
+     * physical table, the mapped requests are then split into as many physical batches as necessary to stay within
+     * DynamoDB's limit of 25 write requests and 16MB per call.  Any unprocessed items returned by DynamoDB are mapped
+     * back to their virtual table names and unqualified items or keys, so callers can resubmit them as is.
+     */
+    public BatchWriteItemResult batchWriteItem(BatchWriteItemRequest unqualifiedBatchWriteItemRequest) {
+        // map each virtual table's write requests to its physical table, remembering where each came from
+        Map<String, List<WriteRequest>> qualifiedWriteRequestsByTable = new LinkedHashMap<>();
+        Map<String, Map<WriteRequest, TableMapping>> tableMappingByQualifiedWriteRequest = new HashMap<>();
+        String context = getMtContext().getContext();
+        unqualifiedBatchWriteItemRequest.getRequestItems().forEach((unqualifiedTableName, unqualifiedWriteRequests) -> {
+            TableMapping tableMapping = getTableMapping(context, unqualifiedTableName);
+            String qualifiedTableName = tableMapping.getPhysicalTable().getTableName();
+            for (WriteRequest unqualifiedWriteRequest : unqualifiedWriteRequests) {
+                WriteRequest qualifiedWriteRequest = mapWriteRequest(tableMapping.getItemMapper()::applyForWrite,
+                    tableMapping.getItemMapper()::apply, unqualifiedWriteRequest);
+                qualifiedWriteRequestsByTable.computeIfAbsent(qualifiedTableName, t -> new ArrayList<>())
+                    .add(qualifiedWriteRequest);
+                tableMappingByQualifiedWriteRequest.computeIfAbsent(qualifiedTableName, t -> new HashMap<>())
+                    .put(qualifiedWriteRequest, tableMapping);
+            }
+        });
+
+        // batch write in chunks that respect DynamoDB limits
+        Map<String, List<WriteRequest>> unqualifiedUnprocessedItems = new HashMap<>();
+        List<ConsumedCapacity> consumedCapacity = new ArrayList<>();
+        for (Map<String, List<WriteRequest>> batch : partitionWriteRequests(qualifiedWriteRequestsByTable)) {
+            BatchWriteItemResult qualifiedBatchWriteItemResult = getAmazonDynamoDb().batchWriteItem(
+                unqualifiedBatchWriteItemRequest.clone().withRequestItems(batch));
+            if (qualifiedBatchWriteItemResult.getConsumedCapacity() != null) {
+                consumedCapacity.addAll(qualifiedBatchWriteItemResult.getConsumedCapacity());
+            }
+
+            // map unprocessed items back to their virtual tables
+            Optional.ofNullable(qualifiedBatchWriteItemResult.getUnprocessedItems()).ifPresent(unprocessedItems ->
+                unprocessedItems.forEach((qualifiedTableName, qualifiedWriteRequests) -> {
+                    qualifiedWriteRequests.forEach(qualifiedWriteRequest -> {
+                        TableMapping tableMapping = tableMappingByQualifiedWriteRequest.get(qualifiedTableName)
+                            .get(qualifiedWriteRequest);
+                        checkArgument(tableMapping != null,
+                            "unprocessed item does not correspond to a submitted request: " + qualifiedWriteRequest);
+                        unqualifiedUnprocessedItems
+                            .computeIfAbsent(tableMapping.getVirtualTable().getTableName(), t -> new ArrayList<>())
+                            .add(mapWriteRequest(tableMapping.getItemMapper()::reverse,
+                                tableMapping.getItemMapper()::reverse, qualifiedWriteRequest));
+                    });
+                }));
+        }
+
+        return new BatchWriteItemResult()
+            .withUnprocessedItems(unqualifiedUnprocessedItems)
+            .withConsumedCapacity(consumedCapacity.isEmpty() ? null : consumedCapacity);
+    }
+
+    /*
+     * Returns a copy of the given write request with its item (put) transformed by the given item mapper or its key
+     * (delete) transformed by the given key mapper.
+     */
+    private static WriteRequest mapWriteRequest(
+        Function<Map<String, AttributeValue>, Map<String, AttributeValue>> itemMapper,
+        Function<Map<String, AttributeValue>, Map<String, AttributeValue>> keyMapper,
+        WriteRequest writeRequest) {
+        if (writeRequest.getPutRequest() != null) {
+            return new WriteRequest().withPutRequest(
+                new PutRequest().withItem(itemMapper.apply(writeRequest.getPutRequest().getItem())));
+        } else if (writeRequest.getDeleteRequest() != null) {
+            return new WriteRequest().withDeleteRequest(
+                new DeleteRequest().withKey(keyMapper.apply(writeRequest.getDeleteRequest().getKey())));
+        } else {
+            throw new IllegalArgumentException("write request must contain either a put or a delete request");
+        }
+    }
+
+    /*
+     * Splits the given write requests into batches of no more than MAX_BATCH_WRITE_ITEMS requests and no more than
+     * MAX_BATCH_WRITE_BYTES bytes of item data.  Requests for the same physical table are kept in order.
+     */
+    @VisibleForTesting
+    static List<Map<String, List<WriteRequest>>> partitionWriteRequests(
+        Map<String, List<WriteRequest>> writeRequestsByTable) {
+        List<Map<String, List<WriteRequest>>> batches = new ArrayList<>();
+        Map<String, List<WriteRequest>> batch = new LinkedHashMap<>();
+        int batchItems = 0;
+        long batchBytes = 0;
+        for (Map.Entry<String, List<WriteRequest>> entry : writeRequestsByTable.entrySet()) {
+            for (WriteRequest writeRequest : entry.getValue()) {
+                long size = getWriteRequestSize(writeRequest);
+                if (batchItems == MAX_BATCH_WRITE_ITEMS
+                    || (batchItems > 0 && batchBytes + size > MAX_BATCH_WRITE_BYTES)) {
+                    batches.add(batch);
+                    batch = new LinkedHashMap<>();
+                    batchItems = 0;
+                    batchBytes = 0;
+                }
+                batch.computeIfAbsent(entry.getKey(), t -> new ArrayList<>()).add(writeRequest);
+                batchItems++;
+                batchBytes += size;
+            }
+        }
+        if (batchItems > 0) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    private static long getWriteRequestSize(WriteRequest writeRequest) {
+        return getItemSize(writeRequest.getPutRequest() != null
+            ? writeRequest.getPutRequest().getItem()
+            : writeRequest.getDeleteRequest().getKey());
+    }
+
+    /*
+     * Estimates the size of an item the way DynamoDB accounts for it: the sum of the UTF-8 lengths of the attribute
+     * names plus the sizes of the attribute values.
+     */
+    @VisibleForTesting
+    static long getItemSize(Map<String, AttributeValue> item) {
+        return item.entrySet().stream()
+            .mapToLong(entry -> utf8Length(entry.getKey()) + getAttributeValueSize(entry.getValue()))
+            .sum();
+    }
+
+    private static long getAttributeValueSize(AttributeValue value) {
+        if (value.getS() != null) {
+            return utf8Length(value.getS());
+        } else if (value.getN() != null) {
+            return value.getN().length();
+        } else if (value.getB() != null) {
+            return value.getB().remaining();
+        } else if (value.getSS() != null) {
+            return value.getSS().stream().mapToLong(MtAmazonDynamoDbBySharedTable::utf8Length).sum();
+        } else if (value.getNS() != null) {
+            return value.getNS().stream().mapToLong(String::length).sum();
+        } else if (value.getBS() != null) {
+            return value.getBS().stream().mapToLong(ByteBuffer::remaining).sum();
+        } else if (value.getM() != null) {
+            return 3 + getItemSize(value.getM());
+        } else if (value.getL() != null) {
+            return 3 + value.getL().stream()
+                .mapToLong(element -> 1 + getAttributeValueSize(element)).sum();
+        } else {
+            return 1; // BOOL or NULL
+        }
+    }
+
+    private static long utf8Length(String s) {
+        long length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
     /**
      * TODO: write Javadoc.
      */
@@ -281,8 +652,16 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
     }
 
     TableMapping getTableMapping(String virtualTableName) {
+        return getTableMapping(getMtContext().getContext(), virtualTableName);
+    }
+
+    /*
+     * Looks up the table mapping in the given context, which must be the current tenant context.  Allows callers that
+     * map several tables in one request to look up the context only once.
+     */
+    TableMapping getTableMapping(String context, String virtualTableName) {
         try {
-            return tableMappingCache.get(virtualTableName, () ->
+            return tableMappingCache.get(context, virtualTableName, () ->
                 tableMappingFactory.getTableMapping(
                     new DynamoTableDescriptionImpl(mtTableDescriptionRepo.getTableDescription(virtualTableName))));
         } catch (ExecutionException e) {
@@ -290,6 +669,54 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
         }
     }
 
+    /**
+     * Loads the table descriptions of all tenants and adds them, as well as the table mappings built from them, to the
+     * caches, so that requests do not have to load them on first access.  Intended to be called at startup, before the
+     * instance takes traffic.  Blocks until all table descriptions have been loaded and all table mappings built.
+     *
+     * <p>Table descriptions are only loaded if the {@code MtTableDescriptionRepo} supports it.  If the caches are
+     * bounded to fewer entries than are loaded, some loaded entries are evicted right away.
+     *
+     * @param totalSegments the number of segments to read the table descriptions in, in parallel
+     * @param executor the executor to read segments and build table mappings on
+     * @return the number of table mappings added to the cache
+     */
+    public int warmUp(int totalSegments, Executor executor) {
+        return warmUp(tenant -> true, totalSegments, executor);
+    }
+
+    /**
+     * Like {@link #warmUp(int, Executor)}, but only warms up the caches for the given tenants, e.g., the most active
+     * ones.
+     *
+     * @param tenants the tenant contexts to load table descriptions and build table mappings for
+     * @param totalSegments the number of segments to read the table descriptions in, in parallel
+     * @param executor the executor to read segments and build table mappings on
+     * @return the number of table mappings added to the cache
+     */
+    public int warmUp(Set<String> tenants, int totalSegments, Executor executor) {
+        return warmUp(tenants::contains, totalSegments, executor);
+    }
+
+    private int warmUp(Predicate<String> tenantFilter, int totalSegments, Executor executor) {
+        Map<String, List<TableDescription>> tableDescriptions =
+            mtTableDescriptionRepo.loadTableDescriptions(tenantFilter, totalSegments, executor);
+        // build table mappings in each tenant's context, since a multitenant delegate resolves physical tables by it
+        List<CompletableFuture<Integer>> tenants = tableDescriptions.entrySet().stream()
+            .map(entry -> CompletableFuture.supplyAsync(() -> getMtContext().withContext(entry.getKey(),
+                tenantTableDescriptions -> {
+                    for (TableDescription tableDescription : tenantTableDescriptions) {
+                        tableMappingCache.put(entry.getKey(), tableDescription.getTableName(),
+                            tableMappingFactory.getTableMapping(new DynamoTableDescriptionImpl(tableDescription)));
+                    }
+                    return tenantTableDescriptions.size();
+                }, entry.getValue()), executor))
+            .collect(Collectors.toList());
+        int count = tenants.stream().mapToInt(CompletableFuture::join).sum();
+        log.info("warmed up " + count + " table mappings of " + tableDescriptions.size() + " tenants");
+        return count;
+    }
+
     /**
      * TODO: write Javadoc.
      */
@@ -303,7 +730,7 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
         tableMapping.getConditionMapper().apply(new PutItemRequestWrapper(putItemRequest));
 
         // map item
-        putItemRequest.setItem(tableMapping.getItemMapper().apply(putItemRequest.getItem()));
+        putItemRequest.setItem(tableMapping.getItemMapper().applyForWrite(putItemRequest.getItem()));
 
         // put
         return getAmazonDynamoDb().putItem(putItemRequest);
@@ -330,34 +757,67 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
     }
 
     /**
-     * TODO: write Javadoc.
+     * Streams the items of a virtual table query.  The request is mapped to the physical table once, and the next
+     * physical page is read on the given executor, in the caller's tenant context, while the caller consumes the
+     * current one.  At most {@code pageQueueCapacity} pages are buffered.  See {@link QueryStream} for details.
      */
-    public ScanResult scan(ScanRequest scanRequest) {
-        TableMapping tableMapping = getTableMapping(scanRequest.getTableName());
-        PrimaryKey key = scanRequest.getIndexName() == null ? tableMapping.getVirtualTable().getPrimaryKey()
-            : tableMapping.getVirtualTable().findSi(scanRequest.getIndexName()).getPrimaryKey();
-
-        // Projection must include primary key, since we use it for paging.
-        // (We could add key fields into projection and filter result in the future)
-        checkArgument(projectionContainsKey(scanRequest, key),
-            "Multitenant scans must include key in projection expression");
-
+    public QueryStream queryStream(QueryRequest queryRequest, Executor executor, int pageQueueCapacity) {
         // map table name
-        ScanRequest clonedScanRequest = scanRequest.clone();
-        clonedScanRequest.withTableName(tableMapping.getPhysicalTable().getTableName());
+        QueryRequest qualifiedQueryRequest = queryRequest.clone();
+        TableMapping tableMapping = getTableMapping(qualifiedQueryRequest.getTableName());
+        qualifiedQueryRequest.withTableName(tableMapping.getPhysicalTable().getTableName());
+
+        // map query request here, since mapping depends on the tenant context of the calling thread
+        tableMapping.getQueryAndScanMapper().apply(qualifiedQueryRequest);
+
+        return new QueryStream(getAmazonDynamoDb(),
+            qualifiedQueryRequest,
+            tableMapping.getItemMapper()::reverse,
+            inCurrentContext(executor),
+            pageQueueCapacity);
+    }
 
-        // map query request
-        clonedScanRequest.setExpressionAttributeNames(Optional.ofNullable(clonedScanRequest.getFilterExpression())
-            .map(s -> new HashMap<>(clonedScanRequest.getExpressionAttributeNames())).orElseGet(HashMap::new));
-        clonedScanRequest.setExpressionAttributeValues(Optional.ofNullable(clonedScanRequest.getFilterExpression())
-            .map(s -> new HashMap<>(clonedScanRequest.getExpressionAttributeValues())).orElseGet(HashMap::new));
-        tableMapping.getQueryAndScanMapper().apply(clonedScanRequest);
+    /*
+     * Returns an executor that runs tasks on the given executor in the tenant context of the calling thread, so that a
+     * multitenant delegate serves the physical requests of the tasks from the caller's tenant.
+     */
+    private Executor inCurrentContext(Executor executor) {
+        String context = getMtContext().getContext();
+        return task -> executor.execute(() -> getMtContext().withContext(context, task));
+    }
+
+    /**
+     * Scans a virtual table.  Unless the physical table has a tenant index, physical pages are read until one contains
+     * an item of the current tenant or the table ends.  If a {@code ScanBudget} was provided and runs out first, an
+     * empty page is returned whose last evaluated key continues the scan where it left off.
+     */
+    public ScanResult scan(ScanRequest scanRequest) {
+        TableMapping tableMapping = getTableMapping(scanRequest.getTableName());
+        PrimaryKey key = getScanKey(scanRequest, tableMapping);
+        Set<String> unprojectedKeyFields =
+            tableMapping.getQueryAndScanMapper().getUnprojectedFields(scanRequest, getKeyFields(key));
+        // bind continuations to the segment as well, so that they cannot be replayed against another part of the table
+        String continuationScope = getMtContext().getContext() + '/' + scanRequest.getTableName() + '/'
+            + scanRequest.getIndexName() + '/' + scanRequest.getSegment() + '/' + scanRequest.getTotalSegments();
+        Map<String, AttributeValue> continuationStartKey = scanBudget.map(budget ->
+            budget.getContinuationStartKey(scanRequest.getExclusiveStartKey(), continuationScope)).orElse(null);
+        ScanRequest clonedScanRequest = mapScanRequest(continuationStartKey == null ? scanRequest
+            : scanRequest.clone().withExclusiveStartKey(null), tableMapping, unprojectedKeyFields);
+        if (continuationStartKey != null) {
+            clonedScanRequest.setExclusiveStartKey(continuationStartKey);
+        }
 
-        // scan until we find at least one record for current tenant or reach end
+        // scan until we find at least one record for current tenant, reach end, or run out of budget
         ScanResult scanResult;
-        while ((scanResult = getAmazonDynamoDb().scan(clonedScanRequest)).getItems().isEmpty()
-            && scanResult.getLastEvaluatedKey() != null) {
-            clonedScanRequest.setExclusiveStartKey(scanResult.getLastEvaluatedKey());
+        if (canScanByTenantIndex(clonedScanRequest, tableMapping)) {
+            scanResult = scanByTenantIndex(clonedScanRequest, tableMapping);
+        } else if (scanBudget.isPresent()) {
+            scanResult = scanWithBudget(clonedScanRequest, scanBudget.get(), continuationScope);
+        } else {
+            while ((scanResult = getAmazonDynamoDb().scan(clonedScanRequest)).getItems().isEmpty()
+                && scanResult.getLastEvaluatedKey() != null) {
+                clonedScanRequest.setExclusiveStartKey(scanResult.getLastEvaluatedKey());
+            }
         }
 
         // map result
@@ -367,43 +827,202 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
             if (scanResult.getLastEvaluatedKey() != null) {
                 scanResult.setLastEvaluatedKey(getKeyFromItem(Iterables.getLast(scanResult.getItems()), key));
             }
-        } // else: while loop ensures that getLastEvaluatedKey is null (no need to map)
+            if (!unprojectedKeyFields.isEmpty()) {
+                // key fields were only read to compute the last evaluated key
+                scanResult.getItems().forEach(item -> item.keySet().removeAll(unprojectedKeyFields));
+            }
+        } // else: last evaluated key is either null or a continuation (no need to map)
 
         return scanResult;
     }
 
-    @VisibleForTesting
-    static boolean projectionContainsKey(ScanRequest request, PrimaryKey key) {
-        String projection = request.getProjectionExpression();
-        List<String> legacyProjection = request.getAttributesToGet();
+    /*
+     * Reads physical pages until one contains an item of the current tenant, the table ends, or the budget runs out.
+     * In the latter case, returns an empty page whose last evaluated key is a continuation.
+     */
+    private ScanResult scanWithBudget(ScanRequest qualifiedScanRequest, ScanBudget budget, String continuationScope) {
+        String returnConsumedCapacity = qualifiedScanRequest.getReturnConsumedCapacity();
+        boolean addConsumedCapacity = budget.isCapacityBounded() && (returnConsumedCapacity == null
+            || ReturnConsumedCapacity.NONE.toString().equals(returnConsumedCapacity));
+        if (addConsumedCapacity) {
+            qualifiedScanRequest.setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        }
+        long start = System.nanoTime();
+        int pages = 0;
+        double capacityUnits = 0;
+        ScanResult scanResult;
+        while (true) {
+            scanResult = getAmazonDynamoDb().scan(qualifiedScanRequest);
+            pages++;
+            ConsumedCapacity consumedCapacity = scanResult.getConsumedCapacity();
+            if (consumedCapacity != null && consumedCapacity.getCapacityUnits() != null) {
+                capacityUnits += consumedCapacity.getCapacityUnits();
+            }
+            if (!scanResult.getItems().isEmpty() || scanResult.getLastEvaluatedKey() == null) {
+                break;
+            }
+            if (budget.isExhausted(pages, capacityUnits, System.nanoTime() - start)) {
+                scanResult.setLastEvaluatedKey(
+                    budget.newContinuation(scanResult.getLastEvaluatedKey(), continuationScope));
+                break;
+            }
+            qualifiedScanRequest.setExclusiveStartKey(scanResult.getLastEvaluatedKey());
+        }
+        if (addConsumedCapacity) {
+            scanResult.setConsumedCapacity(null);
+        }
+        return scanResult;
+    }
 
-        // vacuously true if projection not specified
-        if (projection == null && legacyProjection == null) {
-            return true;
-        } else {
-            Map<String, String> expressionNames = request.getExpressionAttributeNames();
-            return projectionContainsKey(projection, expressionNames, legacyProjection, key.getHashKey()) && key
-                .getRangeKey()
-                .map(rangeKey -> projectionContainsKey(projection, expressionNames, legacyProjection, rangeKey))
-                .orElse(true);
-        }
-    }
-
-    private static boolean projectionContainsKey(String projection, Map<String, String> expressionNames,
-                                          List<String> legacyProjection, String key) {
-        if (projection != null) {
-            // TODO we should probably parse expressions or use more sophisticated matching
-            if (expressionNames != null) {
-                String name = expressionNames.get(key);
-                if (name != null && projection.contains(name)) {
-                    return true;
+    /*
+     * Physical tables that have a tenant index can serve table scans by querying the index for the tenant's prefix,
+     * except for features that index queries do not support: consistent reads and parallel scans.  Legacy projections
+     * have been converted to projection expressions by the time this is called.
+     */
+    private static boolean canScanByTenantIndex(ScanRequest qualifiedScanRequest, TableMapping tableMapping) {
+        return ItemMapper.hasTenantIndex(tableMapping.getPhysicalTable())
+            && qualifiedScanRequest.getIndexName() == null
+            && qualifiedScanRequest.getSegment() == null
+            && qualifiedScanRequest.getTotalSegments() == null
+            && !Boolean.TRUE.equals(qualifiedScanRequest.getConsistentRead());
+    }
+
+    /*
+     * Reads the current tenant's items of a virtual table by querying the tenant index of its physical table, so that
+     * only the tenant's items are read rather than those of every tenant sharing the table.  The index shards of the
+     * virtual table are queried in order; a scan resumes in the shard of its exclusive start key.  The mapped scan
+     * filter is retained as the query filter.
+     */
+    private ScanResult scanByTenantIndex(ScanRequest qualifiedScanRequest, TableMapping tableMapping) {
+        ItemMapper itemMapper = tableMapping.getItemMapper();
+        Map<String, String> expressionAttributeNames =
+            new HashMap<>(qualifiedScanRequest.getExpressionAttributeNames());
+        expressionAttributeNames.put(TENANT_NAME_PLACEHOLDER, TENANT_INDEX_HASH_KEY);
+        QueryRequest queryRequest = new QueryRequest()
+            .withTableName(qualifiedScanRequest.getTableName())
+            .withIndexName(TENANT_INDEX_NAME)
+            .withKeyConditionExpression(TENANT_NAME_PLACEHOLDER + " = " + TENANT_VALUE_PLACEHOLDER)
+            .withFilterExpression(qualifiedScanRequest.getFilterExpression())
+            .withProjectionExpression(qualifiedScanRequest.getProjectionExpression())
+            .withExpressionAttributeNames(expressionAttributeNames)
+            .withSelect(qualifiedScanRequest.getSelect())
+            .withLimit(qualifiedScanRequest.getLimit())
+            .withReturnConsumedCapacity(qualifiedScanRequest.getReturnConsumedCapacity());
+        int shard = 0;
+        Map<String, AttributeValue> exclusiveStartKey = qualifiedScanRequest.getExclusiveStartKey();
+        if (exclusiveStartKey != null) {
+            // index queries must be resumed from a key that includes the index key
+            shard = itemMapper.getTenantIndexShard(exclusiveStartKey);
+            exclusiveStartKey = new HashMap<>(exclusiveStartKey);
+            exclusiveStartKey.put(TENANT_INDEX_HASH_KEY, itemMapper.getTenantIndexValue(shard));
+        }
+
+        // query shards until we find at least one record matching the filter or reach the end of the last shard
+        QueryResult queryResult;
+        while (true) {
+            Map<String, AttributeValue> expressionAttributeValues =
+                new HashMap<>(qualifiedScanRequest.getExpressionAttributeValues());
+            expressionAttributeValues.put(TENANT_VALUE_PLACEHOLDER, itemMapper.getTenantIndexValue(shard));
+            queryRequest.withExpressionAttributeValues(expressionAttributeValues)
+                .withExclusiveStartKey(exclusiveStartKey);
+            queryResult = getAmazonDynamoDb().query(queryRequest);
+            exclusiveStartKey = queryResult.getLastEvaluatedKey();
+            if (exclusiveStartKey == null) {
+                if (++shard == TENANT_INDEX_SHARDS) {
+                    break;
                 }
-            }
-            if (projection.contains(key)) {
-                return true;
+                if (!queryResult.getItems().isEmpty()) {
+                    // more shards follow; the caller replaces this key with the key of the last item
+                    queryResult.setLastEvaluatedKey(Iterables.getLast(queryResult.getItems()));
+                    break;
+                }
+            } else if (!queryResult.getItems().isEmpty()) {
+                break;
             }
         }
-        return legacyProjection != null && legacyProjection.contains(key);
+        return new ScanResult()
+            .withItems(queryResult.getItems())
+            .withCount(queryResult.getCount())
+            .withScannedCount(queryResult.getScannedCount())
+            .withLastEvaluatedKey(queryResult.getLastEvaluatedKey())
+            .withConsumedCapacity(queryResult.getConsumedCapacity());
+    }
+
+    /**
+     * Scans a virtual table by splitting its physical table into the given number of segments and scanning them in
+     * parallel on the given executor, in the caller's tenant context.  Items are returned in no particular order
+     * through the returned {@code ParallelScan}, which buffers at most {@code queueCapacity} items.  See
+     * {@link ParallelScan} for details.
+     */
+    public ParallelScan parallelScan(ScanRequest scanRequest, int totalSegments, Executor executor,
+                                     int queueCapacity) {
+        return parallelScan(scanRequest, new ParallelScan.Continuation(totalSegments), executor, queueCapacity);
+    }
+
+    /**
+     * Resumes a parallel scan of a virtual table from the given continuation, as obtained from
+     * {@link ParallelScan#getContinuation()}.  The scan request must be the same as the one originally submitted.
+     */
+    public ParallelScan parallelScan(ScanRequest scanRequest, ParallelScan.Continuation continuation,
+                                     Executor executor, int queueCapacity) {
+        checkArgument(scanRequest.getExclusiveStartKey() == null,
+            "parallel scans are resumed using a continuation rather than an exclusive start key");
+        checkArgument(scanRequest.getSegment() == null && scanRequest.getTotalSegments() == null,
+            "parallel scans assign segments themselves");
+        TableMapping tableMapping = getTableMapping(scanRequest.getTableName());
+        PrimaryKey key = getScanKey(scanRequest, tableMapping);
+        Set<String> unprojectedKeyFields =
+            tableMapping.getQueryAndScanMapper().getUnprojectedFields(scanRequest, getKeyFields(key));
+        ScanRequest qualifiedScanRequest = mapScanRequest(scanRequest, tableMapping, unprojectedKeyFields);
+
+        // map segment start keys here, since mapping depends on the tenant context of the calling thread
+        Map<Integer, Map<String, AttributeValue>> qualifiedExclusiveStartKeys = new HashMap<>();
+        continuation.getExclusiveStartKeys().forEach((segment, exclusiveStartKey) ->
+            qualifiedExclusiveStartKeys.put(segment, tableMapping.getItemMapper().apply(exclusiveStartKey)));
+
+        return new ParallelScan(getAmazonDynamoDb(),
+            qualifiedScanRequest,
+            tableMapping.getItemMapper()::reverse,
+            item -> getKeyFromItem(item, key),
+            unprojectedKeyFields,
+            qualifiedExclusiveStartKeys,
+            continuation,
+            inCurrentContext(executor),
+            queueCapacity);
+    }
+
+    private static PrimaryKey getScanKey(ScanRequest scanRequest, TableMapping tableMapping) {
+        return scanRequest.getIndexName() == null ? tableMapping.getVirtualTable().getPrimaryKey()
+            : tableMapping.getVirtualTable().findSi(scanRequest.getIndexName()).getPrimaryKey();
+    }
+
+    private static List<String> getKeyFields(PrimaryKey key) {
+        return key.getRangeKey().map(rangeKey -> ImmutableList.of(key.getHashKey(), rangeKey))
+            .orElseGet(() -> ImmutableList.of(key.getHashKey()));
+    }
+
+    /*
+     * Returns a copy of the given scan request mapped to the physical table of the given table mapping.  Since scans
+     * are paged by the virtual key of the last item returned, the given key fields, which the request does not
+     * project, are added to its projection.
+     */
+    private static ScanRequest mapScanRequest(ScanRequest scanRequest, TableMapping tableMapping,
+                                              Set<String> unprojectedKeyFields) {
+        // map table name
+        ScanRequest clonedScanRequest = scanRequest.clone();
+        clonedScanRequest.withTableName(tableMapping.getPhysicalTable().getTableName());
+
+        // map query request
+        Map<String, String> names = clonedScanRequest.getExpressionAttributeNames();
+        Map<String, AttributeValue> values = clonedScanRequest.getExpressionAttributeValues();
+        boolean hasFilter = clonedScanRequest.getFilterExpression() != null;
+        boolean hasProjection = clonedScanRequest.getProjectionExpression() != null;
+        clonedScanRequest.setExpressionAttributeNames(
+            (hasFilter || hasProjection) && names != null ? new HashMap<>(names) : new HashMap<>());
+        clonedScanRequest.setExpressionAttributeValues(
+            hasFilter && values != null ? new HashMap<>(values) : new HashMap<>());
+        tableMapping.getQueryAndScanMapper().apply(clonedScanRequest, unprojectedKeyFields);
+        return clonedScanRequest;
     }
 
     /**
@@ -424,10 +1043,52 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
         // map conditions
         tableMapping.getConditionMapper().apply(new UpdateItemRequestWrapper(updateItemRequest));
 
+        // tag the item with its tenant index key, in case the update creates it
+        if (ItemMapper.hasTenantIndex(tableMapping.getPhysicalTable())) {
+            ItemMapper itemMapper = tableMapping.getItemMapper();
+            addTenantIndexKey(updateItemRequest,
+                itemMapper.getTenantIndexValue(itemMapper.getTenantIndexShard(updateItemRequest.getKey())),
+                tableMapping.getConditionMapper()::parse);
+        }
+
         // update
         return getAmazonDynamoDb().updateItem(updateItemRequest);
     }
 
+    /*
+     * Adds an assignment of the tenant index hash key to the SET clause of the given update request's expression,
+     * creating the clause if necessary, since DynamoDB allows each clause only once per expression.  The assignment is
+     * inserted before the first action of the SET clause, as located by the given expression parser.
+     */
+    @VisibleForTesting
+    static void addTenantIndexKey(UpdateItemRequest updateItemRequest, AttributeValue tenantIndexValue,
+                                  Function<String, Expression> parser) {
+        String assignment = TENANT_NAME_PLACEHOLDER + " = " + TENANT_VALUE_PLACEHOLDER;
+        String updateExpression = updateItemRequest.getUpdateExpression();
+        Optional<Integer> firstSetAction = updateExpression == null ? Optional.empty()
+            : parser.apply(updateExpression).getChildren().stream()
+                .filter(action -> action instanceof UpdateAction
+                    && UpdateAction.SET.equals(((UpdateAction) action).getClause()))
+                .map(action -> ((UpdateAction) action).getPath().getStart())
+                .findFirst();
+        if (firstSetAction.isPresent()) {
+            int start = firstSetAction.get();
+            updateItemRequest.setUpdateExpression(updateExpression.substring(0, start) + assignment + ", "
+                + updateExpression.substring(start));
+        } else {
+            updateItemRequest.setUpdateExpression("SET " + assignment
+                + (updateExpression == null ? "" : " " + updateExpression));
+        }
+        Map<String, String> expressionAttributeNames = new HashMap<>(
+            Optional.ofNullable(updateItemRequest.getExpressionAttributeNames()).orElseGet(ImmutableMap::of));
+        expressionAttributeNames.put(TENANT_NAME_PLACEHOLDER, TENANT_INDEX_HASH_KEY);
+        updateItemRequest.setExpressionAttributeNames(expressionAttributeNames);
+        Map<String, AttributeValue> expressionAttributeValues = new HashMap<>(
+            Optional.ofNullable(updateItemRequest.getExpressionAttributeValues()).orElseGet(ImmutableMap::of));
+        expressionAttributeValues.put(TENANT_VALUE_PLACEHOLDER, tenantIndexValue);
+        updateItemRequest.setExpressionAttributeValues(expressionAttributeValues);
+    }
+
     /**
      * See class level Javadoc for explanation of why the use of addAttributeUpdateEntry and withAttributeUpdates is
      * not supported.
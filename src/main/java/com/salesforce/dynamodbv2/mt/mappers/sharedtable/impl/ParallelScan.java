@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Iterates over all items of a virtual table by scanning the segments of its physical table in parallel.  Each segment
+ * is scanned by a task submitted to the provided executor.  Tasks apply the mapped tenant filter, reverse-map the
+ * items they find and hand them to the consumer through a bounded queue, so a slow consumer slows down the scan rather
+ * than accumulating items in memory.
+ *
+ * <p>The consumer may call {@link #getContinuation()} at any time to obtain the position of each segment as of the
+ * last item returned by {@link #next()}.  Passing that continuation to
+ * {@link MtAmazonDynamoDbBySharedTable#parallelScan(ScanRequest, Continuation, Executor, int)} resumes the scan
+ * without returning any item twice.  Pages that contain no items of the current tenant do not advance a segment's
+ * position, so they may be read again after resuming.
+ *
+ * <p>Instances are not thread-safe; they must be consumed by a single thread.  Callers must {@link #close()} the scan
+ * if they stop iterating before it is exhausted, so that the segment tasks terminate.
+ */
+public class ParallelScan implements Iterator<Map<String, AttributeValue>>, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelScan.class);
+    private static final long OFFER_TIMEOUT_MILLIS = 100L;
+
+    /**
+     * Position of a parallel scan: the virtual key of the last item returned for each segment, and the set of segments
+     * that have been scanned completely.  Segments that appear in neither have not returned any items yet.
+     */
+    public static class Continuation {
+
+        private final int totalSegments;
+        private final Map<Integer, Map<String, AttributeValue>> exclusiveStartKeys;
+        private final Set<Integer> completedSegments;
+
+        public Continuation(int totalSegments) {
+            this(totalSegments, new HashMap<>(), new HashSet<>());
+        }
+
+        /**
+         * Creates a continuation from previously saved segment positions.
+         *
+         * @param totalSegments the number of segments the physical table is scanned in
+         * @param exclusiveStartKeys the virtual key of the last item returned for each segment, by segment number
+         * @param completedSegments the segments that have been scanned completely
+         */
+        public Continuation(int totalSegments,
+                            Map<Integer, Map<String, AttributeValue>> exclusiveStartKeys,
+                            Set<Integer> completedSegments) {
+            checkArgument(totalSegments > 0, "totalSegments must be positive");
+            this.totalSegments = totalSegments;
+            this.exclusiveStartKeys = new HashMap<>(exclusiveStartKeys);
+            this.completedSegments = new HashSet<>(completedSegments);
+        }
+
+        public int getTotalSegments() {
+            return totalSegments;
+        }
+
+        public Map<Integer, Map<String, AttributeValue>> getExclusiveStartKeys() {
+            return exclusiveStartKeys;
+        }
+
+        public Set<Integer> getCompletedSegments() {
+            return completedSegments;
+        }
+
+        public boolean isComplete() {
+            return completedSegments.size() == totalSegments;
+        }
+
+        @Override
+        public String toString() {
+            return "Continuation{"
+                + "totalSegments=" + totalSegments
+                + ", exclusiveStartKeys=" + exclusiveStartKeys
+                + ", completedSegments=" + completedSegments
+                + '}';
+        }
+    }
+
+    /*
+     * Unit of communication between segment tasks and the consumer: either an item, the end of a segment, or an error.
+     */
+    private static final class Element {
+
+        private final int segment;
+        private final Map<String, AttributeValue> item;
+        private final Map<String, AttributeValue> key;
+        private final RuntimeException error;
+
+        private Element(int segment, Map<String, AttributeValue> item, Map<String, AttributeValue> key,
+                        RuntimeException error) {
+            this.segment = segment;
+            this.item = item;
+            this.key = key;
+            this.error = error;
+        }
+
+        private boolean isEndOfSegment() {
+            return item == null && error == null;
+        }
+    }
+
+    private final AmazonDynamoDB amazonDynamoDb;
+    private final ScanRequest qualifiedScanRequest;
+    private final Function<Map<String, AttributeValue>, Map<String, AttributeValue>> itemReverseMapper;
+    private final Function<Map<String, AttributeValue>, Map<String, AttributeValue>> keyFunction;
+    private final Set<String> unprojectedFields;
+    private final Continuation continuation;
+    private final BlockingQueue<Element> queue;
+    private volatile boolean closed;
+    private int remainingSegments;
+    private Element next;
+
+    /**
+     * Creates a parallel scan and submits one task per incomplete segment to the given executor.
+     *
+     * @param amazonDynamoDb the physical {@code AmazonDynamoDB} to scan
+     * @param qualifiedScanRequest the scan request, already mapped to the physical table
+     * @param itemReverseMapper maps physical items to virtual items
+     * @param keyFunction extracts the virtual key used to resume a segment from a virtual item
+     * @param unprojectedFields virtual fields that are removed from items once their key has been extracted
+     * @param qualifiedExclusiveStartKeys the physical key to start each segment after, if any
+     * @param continuation the segment positions to start from
+     * @param executor the executor to run the segment tasks on
+     * @param queueCapacity the maximum number of items buffered between segment tasks and the consumer
+     */
+    ParallelScan(AmazonDynamoDB amazonDynamoDb,
+                 ScanRequest qualifiedScanRequest,
+                 Function<Map<String, AttributeValue>, Map<String, AttributeValue>> itemReverseMapper,
+                 Function<Map<String, AttributeValue>, Map<String, AttributeValue>> keyFunction,
+                 Set<String> unprojectedFields,
+                 Map<Integer, Map<String, AttributeValue>> qualifiedExclusiveStartKeys,
+                 Continuation continuation,
+                 Executor executor,
+                 int queueCapacity) {
+        checkArgument(queueCapacity > 0, "queueCapacity must be positive");
+        this.amazonDynamoDb = amazonDynamoDb;
+        this.qualifiedScanRequest = qualifiedScanRequest;
+        this.itemReverseMapper = itemReverseMapper;
+        this.keyFunction = keyFunction;
+        this.unprojectedFields = unprojectedFields;
+        this.continuation = new Continuation(continuation.getTotalSegments(), continuation.getExclusiveStartKeys(),
+            continuation.getCompletedSegments());
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        for (int segment = 0; segment < continuation.getTotalSegments(); segment++) {
+            if (!continuation.getCompletedSegments().contains(segment)) {
+                remainingSegments++;
+                final int s = segment;
+                executor.execute(() -> scanSegment(s, qualifiedExclusiveStartKeys.get(s)));
+            }
+        }
+    }
+
+    /**
+     * Returns the position of each segment as of the last item returned by {@link #next()}.
+     *
+     * @return a snapshot of the scan position that may be used to resume the scan
+     */
+    public Continuation getContinuation() {
+        return new Continuation(continuation.getTotalSegments(), continuation.getExclusiveStartKeys(),
+            continuation.getCompletedSegments());
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && remainingSegments > 0) {
+            Element element = take();
+            if (element.error != null) {
+                close();
+                throw element.error;
+            } else if (element.isEndOfSegment()) {
+                continuation.getCompletedSegments().add(element.segment);
+                continuation.getExclusiveStartKeys().remove(element.segment);
+                remainingSegments--;
+            } else {
+                next = element;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Map<String, AttributeValue> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Element element = next;
+        next = null;
+        continuation.getExclusiveStartKeys().put(element.segment, element.key);
+        return element.item;
+    }
+
+    /**
+     * Stops all segment tasks.  Tasks finish the page they are currently reading, but do not read any further pages.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        remainingSegments = 0;
+        next = null;
+        queue.clear();
+    }
+
+    private Element take() {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new IllegalStateException("interrupted while waiting for scan results", e);
+        }
+    }
+
+    /*
+     * Scans the given segment page by page, starting after the given physical key, until the end of the segment is
+     * reached, the scan is closed, or an error occurs.
+     */
+    private void scanSegment(int segment, Map<String, AttributeValue> qualifiedExclusiveStartKey) {
+        try {
+            ScanRequest request = qualifiedScanRequest.clone()
+                .withSegment(segment)
+                .withTotalSegments(continuation.getTotalSegments())
+                .withExclusiveStartKey(qualifiedExclusiveStartKey);
+            do {
+                ScanResult result = amazonDynamoDb.scan(request);
+                for (Map<String, AttributeValue> qualifiedItem : result.getItems()) {
+                    Map<String, AttributeValue> item = itemReverseMapper.apply(qualifiedItem);
+                    Map<String, AttributeValue> key = keyFunction.apply(item);
+                    item.keySet().removeAll(unprojectedFields);
+                    if (!offer(new Element(segment, item, key, null))) {
+                        return;
+                    }
+                }
+                request.setExclusiveStartKey(result.getLastEvaluatedKey());
+            } while (request.getExclusiveStartKey() != null && !closed);
+            offer(new Element(segment, null, null, null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            LOG.debug("scan of segment " + segment + " failed", e);
+            try {
+                offer(new Element(segment, null, null, e));
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /*
+     * Blocks until the element is queued or the scan is closed.  Returns false if the scan was closed.
+     */
+    private boolean offer(Element element) throws InterruptedException {
+        while (!closed) {
+            if (queue.offer(element, OFFER_TIMEOUT_MILLIS, MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -25,15 +25,19 @@ import com.google.common.base.Predicate;
 import com.google.common.base.Strings;
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.salesforce.dynamodbv2.mt.mappers.index.DynamoSecondaryIndex;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.Binary;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.Path;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.Value;
 import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.FieldMapping.Field;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
@@ -78,8 +82,23 @@ class QueryAndScanMapper {
      * physical table counterpart.
      */
     void apply(ScanRequest scanRequest) {
+        apply(scanRequest, ImmutableSet.of());
+    }
+
+    /*
+     * Takes a ScanRequest representing a scan against a virtual table and mutates it so it can be applied to its
+     * physical table counterpart.  If the request has a projection, the given virtual fields are added to it, e.g.,
+     * because they are needed to compute the last evaluated key.  See getUnprojectedFields.
+     */
+    void apply(ScanRequest scanRequest, Collection<String> projectedFields) {
         validateScanRequest(scanRequest);
+        convertLegacyProjection(scanRequest);
+        addToProjection(scanRequest, projectedFields);
+        Map<String, String> virtualNames = scanRequest.getProjectionExpression() == null
+            || scanRequest.getExpressionAttributeNames() == null
+            ? ImmutableMap.of() : new HashMap<>(scanRequest.getExpressionAttributeNames());
         apply(new ScanRequestWrapper(scanRequest));
+        applyProjection(scanRequest, virtualNames);
     }
 
     private void apply(RequestWrapper request) {
@@ -129,14 +148,13 @@ class QueryAndScanMapper {
             tableMapping.getConditionMapper().applyKeyConditionToField(request, targetFieldMapping));
     }
 
+    /*
+     * Restricts the request to the items of the current tenant by adding a begins_with condition on the physical hash
+     * key.  An existing disjunction is parenthesized, since AND binds more tightly than OR.
+     */
     private void addBeginsWith(RequestWrapper request, String hashKey, FieldMapping fieldMapping) {
-        /*
-         * TODO make sure it properly identifies that it doesn't need to add this ... make sure it's an equals
-         * condition and that the equals condition can't be hacked ... make sure you can't negate the begins_with
-         * by adding an OR condition
-         */
         FieldMapping fieldMappingForPrefix = new FieldMapping(new Field(null, S),
-            null,
+            fieldMapping.getTarget(),
             fieldMapping.getVirtualIndexName(),
             fieldMapping.getPhysicalIndexName(),
             fieldMapping.getIndexType(),
@@ -144,9 +162,117 @@ class QueryAndScanMapper {
         AttributeValue physicalValuePrefixAttribute = fieldMapper.apply(fieldMappingForPrefix, new AttributeValue(""));
         request.putExpressionAttributeName(NAME_PLACEHOLDER, hashKey);
         request.putExpressionAttributeValue(VALUE_PLACEHOLDER, physicalValuePrefixAttribute);
-        request.setPrimaryExpression(
-            (request.getPrimaryExpression() != null ? request.getPrimaryExpression() + " and " : "")
-                + "begins_with(" + NAME_PLACEHOLDER + ", " + VALUE_PLACEHOLDER + ")");
+        String expression = request.getPrimaryExpression();
+        if (expression != null && isDisjunction(tableMapping.getConditionMapper().parse(expression))) {
+            expression = "(" + expression + ")";
+        }
+        request.setPrimaryExpression((expression != null ? expression + " and " : "")
+            + "begins_with(" + NAME_PLACEHOLDER + ", " + VALUE_PLACEHOLDER + ")");
+    }
+
+    /*
+     * Returns those of the given virtual fields that a scan request against a virtual table does not project, in the
+     * given order.  A request without projection projects all fields.
+     */
+    Set<String> getUnprojectedFields(ScanRequest scanRequest, Collection<String> fields) {
+        Set<String> projectedFields = new HashSet<>();
+        if (scanRequest.getAttributesToGet() != null) {
+            projectedFields.addAll(scanRequest.getAttributesToGet());
+        } else if (scanRequest.getProjectionExpression() != null) {
+            Map<String, String> names = scanRequest.getExpressionAttributeNames();
+            tableMapping.getConditionMapper().parseProjection(scanRequest.getProjectionExpression()).getPaths()
+                .forEach(path -> projectedFields.add(path.isPlaceholder() && names != null
+                    ? names.get(path.getHead()) : path.getHead()));
+        } else {
+            return ImmutableSet.of();
+        }
+        Set<String> unprojectedFields = new LinkedHashSet<>(fields);
+        unprojectedFields.removeAll(projectedFields);
+        return unprojectedFields;
+    }
+
+    /*
+     * Converts the legacy AttributesToGet parameter into a projection expression, since legacy parameters cannot be
+     * combined with the filter expression that tenant isolation requires.
+     */
+    private void convertLegacyProjection(ScanRequest scanRequest) {
+        List<String> attributesToGet = scanRequest.getAttributesToGet();
+        if (attributesToGet != null) {
+            Map<String, String> names = getMutableNames(scanRequest);
+            AtomicInteger counter = new AtomicInteger(1);
+            List<String> placeholders = new ArrayList<>(attributesToGet.size());
+            for (String attribute : attributesToGet) {
+                String placeholder = ConditionMapper.getNextFieldPlaceholder(names, counter);
+                names.put(placeholder, attribute);
+                placeholders.add(placeholder);
+            }
+            scanRequest.setProjectionExpression(Joiner.on(", ").join(placeholders));
+            scanRequest.setAttributesToGet(null);
+        }
+    }
+
+    /*
+     * Appends references to the given virtual fields to the projection of a scan request, if it has one.
+     */
+    private void addToProjection(ScanRequest scanRequest, Collection<String> fields) {
+        if (scanRequest.getProjectionExpression() == null || fields.isEmpty()) {
+            return;
+        }
+        Map<String, String> names = getMutableNames(scanRequest);
+        AtomicInteger counter = new AtomicInteger(1);
+        StringBuilder projection = new StringBuilder(scanRequest.getProjectionExpression());
+        for (String field : fields) {
+            String placeholder = ConditionMapper.getNextFieldPlaceholder(names, counter);
+            names.put(placeholder, field);
+            projection.append(", ").append(placeholder);
+        }
+        scanRequest.setProjectionExpression(projection.toString());
+    }
+
+    /*
+     * Maps references to virtual fields in the projection of a scan request to their physical fields.  Names are
+     * resolved as they were before the rest of the request was mapped, and names that have been mapped already, since
+     * the filter expression refers to them as well, are left alone.  Literals are replaced with references to new
+     * names, as in conditions.
+     */
+    private void applyProjection(ScanRequest scanRequest, Map<String, String> virtualNames) {
+        String projection = scanRequest.getProjectionExpression();
+        if (projection == null) {
+            return;
+        }
+        Map<String, FieldMapping> fieldMappings = tableMapping.getAllVirtualToPhysicalFieldMappingsDeduped();
+        Map<String, String> names = getMutableNames(scanRequest);
+        Map<String, String> literalPlaceholders = new HashMap<>();
+        AtomicInteger counter = new AtomicInteger(1);
+        StringBuilder mappedProjection = new StringBuilder(projection.length());
+        int end = 0;
+        for (Path path : tableMapping.getConditionMapper().parseProjection(projection).getPaths()) {
+            String head = path.getHead();
+            if (path.isPlaceholder()) {
+                String virtualName = virtualNames.get(head);
+                FieldMapping fieldMapping = virtualName == null ? null : fieldMappings.get(virtualName);
+                if (fieldMapping != null && virtualName.equals(names.get(head))) {
+                    names.put(head, fieldMapping.getTarget().getName());
+                }
+            } else if (fieldMappings.containsKey(head)) {
+                String placeholder = literalPlaceholders.computeIfAbsent(head, literal -> {
+                    String fieldPlaceholder = ConditionMapper.getNextFieldPlaceholder(names, counter);
+                    names.put(fieldPlaceholder, fieldMappings.get(literal).getTarget().getName());
+                    return fieldPlaceholder;
+                });
+                mappedProjection.append(projection, end, path.getStart()).append(placeholder);
+                end = path.getStart() + head.length();
+            }
+        }
+        scanRequest.setProjectionExpression(mappedProjection.append(projection, end, projection.length()).toString());
+    }
+
+    private static Map<String, String> getMutableNames(ScanRequest scanRequest) {
+        Map<String, String> names = scanRequest.getExpressionAttributeNames() == null
+            ? new HashMap<>()
+            : getMutableMap(scanRequest.getExpressionAttributeNames());
+        scanRequest.setExpressionAttributeNames(names);
+        return names;
     }
 
     private void applyConvertFieldNameLiterals(RequestWrapper request) {
@@ -160,20 +286,47 @@ class QueryAndScanMapper {
         }
     }
 
-    private boolean queryContainsHashKeyCondition(RequestWrapper request,
-        String hashKeyField) { // TODO look for hashkey in literals
+    /*
+     * Returns whether the primary expression requires the hash key to equal a value, i.e., whether one of its
+     * top-level conjuncts is an equality comparison of the hash key, referenced by name or literal, with a value.
+     * Comparisons nested in disjunctions or negations do not count, since they do not restrict all results.
+     */
+    private boolean queryContainsHashKeyCondition(RequestWrapper request, String hashKeyField) {
         String conditionExpression = request.getPrimaryExpression();
         if (conditionExpression == null) {
             // no filter criteria
             return false;
         }
         Map<String, String> expressionAttrNames = request.getExpressionAttributeNames();
-        Optional<String> keyFieldName = expressionAttrNames != null ? expressionAttrNames.entrySet().stream()
-            .filter(entry -> entry.getValue().equals(hashKeyField)).map(Entry::getKey).findFirst() : Optional.empty();
-        String fieldToFind = (keyFieldName.orElse(hashKeyField));
-        String toFind = fieldToFind + " = ";
-        int start = conditionExpression.indexOf(toFind);
-        return start != -1;
+        return containsEqualityCondition(tableMapping.getConditionMapper().parse(conditionExpression),
+            name -> name.equals(hashKeyField)
+                || expressionAttrNames != null && hashKeyField.equals(expressionAttrNames.get(name)));
+    }
+
+    private static boolean containsEqualityCondition(Expression condition, Predicate<String> isField) {
+        if (!(condition instanceof Binary)) {
+            return false;
+        }
+        Binary binary = (Binary) condition;
+        switch (binary.getOperator()) {
+            case Binary.AND:
+                return containsEqualityCondition(binary.getLeft(), isField)
+                    || containsEqualityCondition(binary.getRight(), isField);
+            case Binary.EQ:
+                return isFieldComparedToValue(binary.getLeft(), binary.getRight(), isField)
+                    || isFieldComparedToValue(binary.getRight(), binary.getLeft(), isField);
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isFieldComparedToValue(Expression path, Expression value, Predicate<String> isField) {
+        return path instanceof Path && ((Path) path).isTopLevel() && isField.apply(((Path) path).getHead())
+            && value instanceof Value;
+    }
+
+    private static boolean isDisjunction(Expression condition) {
+        return condition instanceof Binary && ((Binary) condition).getOperator().equals(Binary.OR);
     }
 
     @VisibleForTesting
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toList;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Iterates over all items of a virtual table query, in the order the query returns them, while the next physical page
+ * is being read.  The query request is mapped to the physical table once.  A task submitted to the provided executor
+ * reads the physical pages, reverse-maps their items, and hands the pages to the consumer through a bounded queue, so
+ * at most {@code pageQueueCapacity} pages, plus the one being consumed and the one being read, are held in memory.
+ * The request's {@code Limit}, if any, determines the size of each page rather than the total number of items.
+ *
+ * <p>Instances are not thread-safe; they must be consumed by a single thread.  Callers must {@link #close()} the query
+ * if they stop iterating before it is exhausted, so that the task terminates.
+ */
+public class QueryStream implements Iterator<Map<String, AttributeValue>>, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QueryStream.class);
+    private static final long OFFER_TIMEOUT_MILLIS = 100L;
+
+    /*
+     * Unit of communication between the task and the consumer: either a page of items, the end of the query, or an
+     * error.
+     */
+    private static final class Page {
+
+        private static final Page END = new Page(null, null);
+
+        private final List<Map<String, AttributeValue>> items;
+        private final RuntimeException error;
+
+        private Page(List<Map<String, AttributeValue>> items, RuntimeException error) {
+            this.items = items;
+            this.error = error;
+        }
+    }
+
+    private final AmazonDynamoDB amazonDynamoDb;
+    private final QueryRequest qualifiedQueryRequest;
+    private final Function<Map<String, AttributeValue>, Map<String, AttributeValue>> itemReverseMapper;
+    private final BlockingQueue<Page> queue;
+    private volatile boolean closed;
+    private boolean exhausted;
+    private Iterator<Map<String, AttributeValue>> current = Collections.emptyIterator();
+
+    /**
+     * Creates a query stream and submits the task that reads its pages to the given executor.
+     *
+     * @param amazonDynamoDb the physical {@code AmazonDynamoDB} to query
+     * @param qualifiedQueryRequest the query request, already mapped to the physical table
+     * @param itemReverseMapper maps physical items to virtual items
+     * @param executor the executor to run the task on
+     * @param pageQueueCapacity the maximum number of pages buffered between the task and the consumer
+     */
+    QueryStream(AmazonDynamoDB amazonDynamoDb,
+                QueryRequest qualifiedQueryRequest,
+                Function<Map<String, AttributeValue>, Map<String, AttributeValue>> itemReverseMapper,
+                Executor executor,
+                int pageQueueCapacity) {
+        checkArgument(pageQueueCapacity > 0, "pageQueueCapacity must be positive");
+        this.amazonDynamoDb = amazonDynamoDb;
+        this.qualifiedQueryRequest = qualifiedQueryRequest;
+        this.itemReverseMapper = itemReverseMapper;
+        this.queue = new ArrayBlockingQueue<>(pageQueueCapacity);
+        executor.execute(this::readPages);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext() && !exhausted) {
+            Page page = take();
+            if (page.error != null) {
+                close();
+                throw page.error;
+            } else if (page == Page.END) {
+                exhausted = true;
+            } else {
+                current = page.items.iterator();
+            }
+        }
+        return current.hasNext();
+    }
+
+    @Override
+    public Map<String, AttributeValue> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    /**
+     * Stops the task.  It finishes the page it is currently reading, but does not read any further pages.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        exhausted = true;
+        current = Collections.emptyIterator();
+        queue.clear();
+    }
+
+    private Page take() {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new IllegalStateException("interrupted while waiting for query results", e);
+        }
+    }
+
+    /*
+     * Reads the query page by page until the last page is read, the query is closed, or an error occurs.
+     */
+    private void readPages() {
+        try {
+            QueryRequest request = qualifiedQueryRequest.clone();
+            do {
+                QueryResult result = amazonDynamoDb.query(request);
+                List<Map<String, AttributeValue>> items = result.getItems().stream()
+                    .map(itemReverseMapper)
+                    .collect(toList());
+                if (!items.isEmpty() && !offer(new Page(items, null))) {
+                    return;
+                }
+                request.setExclusiveStartKey(result.getLastEvaluatedKey());
+            } while (request.getExclusiveStartKey() != null && !closed);
+            offer(Page.END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            LOG.debug("query of table " + qualifiedQueryRequest.getTableName() + " failed", e);
+            try {
+                offer(new Page(null, e));
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /*
+     * Blocks until the page is queued or the query is closed.  Returns false if the query was closed.
+     */
+    private boolean offer(Page page) throws InterruptedException {
+        while (!closed) {
+            if (queue.offer(page, OFFER_TIMEOUT_MILLIS, MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
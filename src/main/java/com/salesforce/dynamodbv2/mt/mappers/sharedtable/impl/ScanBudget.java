@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.google.common.collect.ImmutableMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Bounds the work a single {@link MtAmazonDynamoDbBySharedTable#scan} call may spend skipping physical pages that
+ * contain no items of the current tenant.  Without a budget, scanning a small tenant's virtual table in a large shared
+ * table may read the entire physical table in one call.  A budget limits the number of physical pages read, the read
+ * capacity they consume, the time spent, or any combination thereof.  At least one page is always read.
+ *
+ * <p>When the budget runs out before an item is found, the call returns an empty page whose
+ * {@code LastEvaluatedKey} is an opaque continuation, so that callers paging until there is no last evaluated key
+ * keep making progress.  The continuation holds the physical position of the scan, which is a key of another tenant's
+ * item, so it is encrypted with the configured continuation key and bound to the tenant, table, index, and segment it
+ * was issued for.  Callers may hand a continuation to any instance, so all instances that serve the same tables must
+ * be configured with the same continuation key.
+ *
+ * <p>Budgets do not apply to scans served by the tenant index, which only read the current tenant's items.
+ */
+public class ScanBudget {
+
+    /**
+     * Name of the single attribute of the {@code LastEvaluatedKey} returned when the budget runs out.
+     */
+    static final String CONTINUATION_ATTRIBUTE = "___continuation___";
+
+    private static final byte VERSION_1 = 1;
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Builder for creating scan budgets.
+     */
+    public static class Builder {
+
+        private int maxPages = Integer.MAX_VALUE;
+        private double maxCapacityUnits = Double.POSITIVE_INFINITY;
+        private long maxTimeInMillis = Long.MAX_VALUE;
+        private byte[] continuationKey;
+
+        /**
+         * Maximum number of physical pages a single scan call reads.
+         *
+         * @param maxPages Maximum number of pages, at least one.
+         * @return This builder.
+         */
+        public Builder withMaxPages(int maxPages) {
+            checkArgument(maxPages > 0);
+            this.maxPages = maxPages;
+            return this;
+        }
+
+        /**
+         * Maximum read capacity a single scan call consumes.  Once exceeded, no further pages are read.  Makes scans
+         * request the total consumed capacity of each page.
+         *
+         * @param maxCapacityUnits Maximum capacity units.
+         * @return This builder.
+         */
+        public Builder withMaxCapacityUnits(double maxCapacityUnits) {
+            checkArgument(maxCapacityUnits > 0);
+            this.maxCapacityUnits = maxCapacityUnits;
+            return this;
+        }
+
+        /**
+         * Maximum time a single scan call spends.  Once exceeded, no further pages are read.
+         *
+         * @param maxTimeInMillis Maximum time in millis.
+         * @return This builder.
+         */
+        public Builder withMaxTimeInMillis(long maxTimeInMillis) {
+            checkArgument(maxTimeInMillis > 0);
+            this.maxTimeInMillis = maxTimeInMillis;
+            return this;
+        }
+
+        /**
+         * AES key used to encrypt continuations.  Instances that share a key accept each other's continuations.
+         * Required.
+         *
+         * @param continuationKey AES key of 16, 24, or 32 bytes.
+         * @return This builder.
+         */
+        public Builder withContinuationKey(byte[] continuationKey) {
+            checkArgument(continuationKey.length == 16 || continuationKey.length == 24 || continuationKey.length == 32,
+                "continuation key must be 16, 24, or 32 bytes");
+            this.continuationKey = continuationKey.clone();
+            return this;
+        }
+
+        /**
+         * Build instance using the configured properties.
+         *
+         * @return a newly created {@code ScanBudget} based on the contents of the {@code Builder}
+         */
+        public ScanBudget build() {
+            checkArgument(maxPages < Integer.MAX_VALUE || maxCapacityUnits < Double.POSITIVE_INFINITY
+                || maxTimeInMillis < Long.MAX_VALUE, "at least one of maxPages, maxCapacityUnits, or maxTimeInMillis "
+                + "must be set");
+            checkArgument(continuationKey != null, "continuationKey must be set");
+            return new ScanBudget(maxPages, maxCapacityUnits, TimeUnit.MILLISECONDS.toNanos(maxTimeInMillis),
+                new SecretKeySpec(continuationKey, "AES"));
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final int maxPages;
+    private final double maxCapacityUnits;
+    private final long maxTimeInNanos;
+    private final SecretKeySpec continuationKey;
+
+    private ScanBudget(int maxPages, double maxCapacityUnits, long maxTimeInNanos, SecretKeySpec continuationKey) {
+        this.maxPages = maxPages;
+        this.maxCapacityUnits = maxCapacityUnits;
+        this.maxTimeInNanos = maxTimeInNanos;
+        this.continuationKey = continuationKey;
+    }
+
+    boolean isCapacityBounded() {
+        return maxCapacityUnits < Double.POSITIVE_INFINITY;
+    }
+
+    /*
+     * Returns whether a scan call that has read the given number of pages, consumed the given capacity, and spent the
+     * given time must not read another page.
+     */
+    boolean isExhausted(int pages, double capacityUnits, long elapsedNanos) {
+        return pages >= maxPages || capacityUnits >= maxCapacityUnits || elapsedNanos >= maxTimeInNanos;
+    }
+
+    /*
+     * Returns a last evaluated key that resumes a scan of the given scope, i.e., tenant and table, after the given
+     * physical key.
+     */
+    Map<String, AttributeValue> newContinuation(Map<String, AttributeValue> physicalKey, String scope) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(physicalKey.size());
+            for (Map.Entry<String, AttributeValue> entry : physicalKey.entrySet()) {
+                out.writeUTF(entry.getKey());
+                AttributeValue value = entry.getValue();
+                if (value.getB() != null) {
+                    ByteBuffer buffer = value.getB().duplicate();
+                    out.writeByte('B');
+                    out.writeShort(buffer.remaining());
+                    while (buffer.hasRemaining()) {
+                        out.writeByte(buffer.get());
+                    }
+                } else {
+                    out.writeByte(value.getN() != null ? 'N' : 'S');
+                    out.writeUTF(value.getN() != null ? value.getN() : value.getS());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] iv = new byte[IV_BYTES];
+        RANDOM.nextBytes(iv);
+        byte[] encrypted;
+        try {
+            encrypted = newCipher(Cipher.ENCRYPT_MODE, iv, scope).doFinal(bytes.toByteArray());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("failed to encrypt scan continuation", e);
+        }
+        ByteBuffer continuation = ByteBuffer.allocate(1 + IV_BYTES + encrypted.length)
+            .put(VERSION_1).put(iv).put(encrypted);
+        continuation.flip();
+        return ImmutableMap.of(CONTINUATION_ATTRIBUTE, new AttributeValue().withB(continuation));
+    }
+
+    /*
+     * Returns the physical key to resume a scan of the given scope after, if the given exclusive start key is a
+     * continuation, or null otherwise.
+     */
+    Map<String, AttributeValue> getContinuationStartKey(Map<String, AttributeValue> exclusiveStartKey,
+                                                        String scope) {
+        AttributeValue continuation = exclusiveStartKey == null || exclusiveStartKey.size() != 1 ? null
+            : exclusiveStartKey.get(CONTINUATION_ATTRIBUTE);
+        if (continuation == null || continuation.getB() == null) {
+            return null;
+        }
+        ByteBuffer buffer = continuation.getB().duplicate();
+        byte[] array = new byte[buffer.remaining()];
+        buffer.get(array);
+        if (array.length <= 1 + IV_BYTES || array[0] != VERSION_1) {
+            throw new IllegalArgumentException("invalid scan continuation");
+        }
+        byte[] decrypted;
+        try {
+            decrypted = newCipher(Cipher.DECRYPT_MODE, Arrays.copyOfRange(array, 1, 1 + IV_BYTES), scope)
+                .doFinal(array, 1 + IV_BYTES, array.length - 1 - IV_BYTES);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("invalid scan continuation", e);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(decrypted))) {
+            int size = in.readByte();
+            Map<String, AttributeValue> physicalKey = new HashMap<>(size);
+            for (int i = 0; i < size; i++) {
+                String name = in.readUTF();
+                byte type = in.readByte();
+                if (type == 'B') {
+                    byte[] value = new byte[in.readUnsignedShort()];
+                    in.readFully(value);
+                    physicalKey.put(name, new AttributeValue().withB(ByteBuffer.wrap(value)));
+                } else {
+                    String value = in.readUTF();
+                    physicalKey.put(name, type == 'N' ? new AttributeValue().withN(value) : new AttributeValue(value));
+                }
+            }
+            return physicalKey;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("invalid scan continuation", e);
+        }
+    }
+
+    private Cipher newCipher(int mode, byte[] iv, String scope) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(CIPHER);
+        cipher.init(mode, continuationKey, new GCMParameterSpec(TAG_BITS, iv));
+        cipher.updateAAD(scope.getBytes(UTF_8));
+        return cipher;
+    }
+
+}
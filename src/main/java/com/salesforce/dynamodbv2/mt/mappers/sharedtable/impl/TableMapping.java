@@ -7,6 +7,7 @@
 
 package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
 
+import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.B;
 import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.S;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -16,6 +17,7 @@ import static com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.FieldMapping
 import static java.lang.String.format;
 
 import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
+import com.amazonaws.services.dynamodbv2.model.ScalarAttributeType;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
@@ -47,7 +49,8 @@ import java.util.stream.Stream;
 class TableMapping {
 
     private final DynamoTableDescription virtualTable;
-    private DynamoTableDescription physicalTable;
+    private final DynamoTableDescription physicalTable;
+    private volatile Supplier<DynamoTableDescription> physicalTableSource;
     private final DynamoSecondaryIndexMapper secondaryIndexMapper;
     private final Map<String, List<FieldMapping>> virtualToPhysicalMappings;
     private final Map<String, List<FieldMapping>> physicalToVirtualMappings;
@@ -83,8 +86,13 @@ class TableMapping {
         return virtualTable;
     }
 
+    /*
+     * Returns the description of the physical table, as provided by the physical table source, if any, or as derived
+     * from the create table request otherwise.
+     */
     DynamoTableDescription getPhysicalTable() {
-        return physicalTable;
+        Supplier<DynamoTableDescription> source = physicalTableSource;
+        return source == null ? physicalTable : source.get();
     }
 
     ItemMapper getItemMapper() {
@@ -342,7 +350,7 @@ class TableMapping {
         throws IllegalArgumentException, NullPointerException {
         checkNotNull(virtualPrimaryKey.getHashKey(), "hash key is required on virtual table");
         checkNotNull(physicalPrimaryKey.getHashKey(), "hash key is required on physical table");
-        checkArgument(physicalPrimaryKey.getHashKeyType() == S, "hash key must be of type S");
+        checkArgument(isQualifiable(physicalPrimaryKey.getHashKeyType()), "hash key must be of type S or B");
         if (virtualPrimaryKey.getRangeKey().isPresent()) {
             checkArgument(physicalPrimaryKey.getRangeKey().isPresent(),
                           "rangeKey exists on virtual primary key but not on physical");
@@ -352,28 +360,43 @@ class TableMapping {
     }
 
     /*
-     * Validate that the physical table's primary key and all of its secondary index's primary keys are of type S.
+     * Validate that the physical table's primary key and all of its secondary index's primary keys are of type S or B.
      */
     @VisibleForTesting
     void validatePhysicalTable(DynamoTableDescription physicalTableDescription) {
         String tableMsgPrefix = "physical table " + physicalTableDescription.getTableName() + "'s";
         validatePrimaryKey(physicalTableDescription.getPrimaryKey(), tableMsgPrefix);
-        physicalTableDescription.getGsis().forEach(dynamoSecondaryIndex ->
-            validatePrimaryKey(dynamoSecondaryIndex.getPrimaryKey(), tableMsgPrefix
-                               + " GSI " + dynamoSecondaryIndex.getIndexName() + "'s"));
+        // the tenant index is not prefixed with tenant context; its hash key is the prefix itself
+        physicalTableDescription.getGsis().stream()
+            .filter(dynamoSecondaryIndex -> !dynamoSecondaryIndex.getIndexName()
+                .equals(MtAmazonDynamoDbBySharedTable.TENANT_INDEX_NAME))
+            .forEach(dynamoSecondaryIndex -> validatePrimaryKey(dynamoSecondaryIndex.getPrimaryKey(),
+                tableMsgPrefix + " GSI " + dynamoSecondaryIndex.getIndexName() + "'s"));
         physicalTableDescription.getLsis().forEach(dynamoSecondaryIndex ->
             validatePrimaryKey(dynamoSecondaryIndex.getPrimaryKey(), tableMsgPrefix
                                + " LSI " + dynamoSecondaryIndex.getIndexName() + "'s"));
     }
 
     private void validatePrimaryKey(PrimaryKey primaryKey, String msgPrefix) {
-        checkArgument(primaryKey.getHashKeyType() == S,
-            msgPrefix + " primary-key hash key must be type S, encountered type "
+        checkArgument(isQualifiable(primaryKey.getHashKeyType()),
+            msgPrefix + " primary-key hash key must be type S or B, encountered type "
                 + primaryKey.getHashKeyType());
     }
 
-    void setPhysicalTable(DynamoTableDescription physicalTable) {
-        this.physicalTable = physicalTable;
+    /*
+     * Physical hash keys hold values qualified with tenant context, either as prefixed strings or as binary values with
+     * a length-prefixed header.  See FieldPrefixFunction.
+     */
+    private static boolean isQualifiable(ScalarAttributeType hashKeyType) {
+        return hashKeyType == S || hashKeyType == B;
+    }
+
+    /*
+     * Sets the source of the current description of the physical table, which includes things that can only be
+     * determined after the table is created, like the stream ARN.  The source must describe the same table.
+     */
+    void setPhysicalTableSource(Supplier<DynamoTableDescription> physicalTableSource) {
+        this.physicalTableSource = physicalTableSource;
     }
 
 }
\ No newline at end of file
@@ -13,14 +13,31 @@ import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
 import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
 import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.salesforce.dynamodbv2.mt.admin.AmazonDynamoDbAdminUtils;
 import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
+import com.salesforce.dynamodbv2.mt.mappers.MtAmazonDynamoDb;
 import com.salesforce.dynamodbv2.mt.mappers.index.DynamoSecondaryIndexMapper;
 import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescription;
 import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescriptionImpl;
 import com.salesforce.dynamodbv2.mt.mappers.sharedtable.CreateTableRequestFactory;
 
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,13 +46,29 @@ import org.slf4j.LoggerFactory;
  * {@code TableMapping} also includes methods for retrieving the virtual and physical descriptions, and logic for
  * mapping of fields from virtual to physical and back.
  *
- * <p>This class is also responsible for triggering the creation of the physical tables appropriately.
+ * <p>This class is also responsible for triggering the creation of the physical tables appropriately.  Physical table
+ * descriptions are cached by table name and shared by all {@code TableMapping}s, so that the physical table is
+ * described once rather than once per virtual table.  {@code TableMapping}s read the physical description through the
+ * cache, whose entries are refreshed in the background every few minutes on a thread of their own, so that changes such
+ * as a new stream ARN are eventually picked up by existing mappings, and refreshes are never held up by table creation.
+ * If the underlying {@code AmazonDynamoDB} is itself multitenant, the same physical table name may refer to a different
+ * table in each tenant context, so descriptions are cached per context instead.
+ *
+ * <p>Concurrent lookups of a physical table that is not cached yet are coalesced: only the first one describes the
+ * table, and the others wait for its result.  Physical tables that do not exist yet are created on a dedicated
+ * executor, by default a single daemon thread, so that a burst of first requests to new virtual tables ties up at most
+ * one thread with DDL, however many request threads wait for it.  If creation fails, all waiting requests fail with the
+ * same exception, and the next request tries again.
  *
  * @author msgroi
  */
 public class TableMappingFactory {
 
     private static final Logger LOG = LoggerFactory.getLogger(TableMappingFactory.class);
+    private static final long PHYSICAL_TABLE_REFRESH_MINUTES = 5L;
+    private static final int DEFAULT_PRECREATE_TABLES_TIMEOUT_SECONDS = 600;
+    private static final String CONTEXT_REQUIRED_MESSAGE = "Mt context available.  When chaining, you must either set "
+        + "the mt context before building, or set precreateTables=false";
 
     private final AmazonDynamoDbAdminUtils dynamoDbAdminUtils;
     private final CreateTableRequestFactory createTableRequestFactory;
@@ -44,6 +77,9 @@ public class TableMappingFactory {
     private final String delimiter;
     private final AmazonDynamoDB amazonDynamoDb;
     private final int pollIntervalSeconds;
+    private final Executor createTableExecutor;
+    private final Executor refreshExecutor;
+    private final LoadingCache<PhysicalTableKey, DynamoTableDescription> physicalTables;
 
     /**
      * TODO: write Javadoc.
@@ -64,6 +100,87 @@ public class TableMappingFactory {
                                AmazonDynamoDB amazonDynamoDb,
                                boolean precreateTables,
                                int pollIntervalSeconds) {
+        this(createTableRequestFactory, mtContext, secondaryIndexMapper, delimiter, amazonDynamoDb, precreateTables,
+            pollIntervalSeconds, newCreateTableExecutor());
+    }
+
+    /**
+     * Creates a factory that creates physical tables on the given executor.
+     *
+     * @param createTableRequestFactory maps virtual to physical table instances
+     * @param mtContext the multitenant context provider
+     * @param secondaryIndexMapper maps virtual to physical indexes
+     * @param delimiter the string for delimiting values in hash keys
+     * @param amazonDynamoDb the underlying {@code AmazonDynamoDB} delegate
+     * @param precreateTables a flag indicating whether to create physical tables eagerly at start time
+     * @param pollIntervalSeconds the interval in seconds between attempts at checking the status of the table being
+     *     created
+     * @param createTableExecutor the executor to create physical tables that do not exist yet on
+     */
+    public TableMappingFactory(CreateTableRequestFactory createTableRequestFactory,
+                               MtAmazonDynamoDbContextProvider mtContext,
+                               DynamoSecondaryIndexMapper secondaryIndexMapper,
+                               String delimiter,
+                               AmazonDynamoDB amazonDynamoDb,
+                               boolean precreateTables,
+                               int pollIntervalSeconds,
+                               Executor createTableExecutor) {
+        this(createTableRequestFactory, mtContext, secondaryIndexMapper, delimiter, amazonDynamoDb, precreateTables,
+            pollIntervalSeconds, createTableExecutor, DEFAULT_PRECREATE_TABLES_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * Creates a factory that, if {@code precreateTables} is set, waits at most the given time for precreated tables to
+     * become active.
+     *
+     * @param createTableRequestFactory maps virtual to physical table instances
+     * @param mtContext the multitenant context provider
+     * @param secondaryIndexMapper maps virtual to physical indexes
+     * @param delimiter the string for delimiting values in hash keys
+     * @param amazonDynamoDb the underlying {@code AmazonDynamoDB} delegate
+     * @param precreateTables a flag indicating whether to create physical tables eagerly at start time
+     * @param pollIntervalSeconds the interval in seconds between attempts at checking the status of the table being
+     *     created
+     * @param precreateTablesTimeoutSeconds the time in seconds to wait for all precreated tables to become active
+     */
+    public TableMappingFactory(CreateTableRequestFactory createTableRequestFactory,
+                               MtAmazonDynamoDbContextProvider mtContext,
+                               DynamoSecondaryIndexMapper secondaryIndexMapper,
+                               String delimiter,
+                               AmazonDynamoDB amazonDynamoDb,
+                               boolean precreateTables,
+                               int pollIntervalSeconds,
+                               int precreateTablesTimeoutSeconds) {
+        this(createTableRequestFactory, mtContext, secondaryIndexMapper, delimiter, amazonDynamoDb, precreateTables,
+            pollIntervalSeconds, newCreateTableExecutor(), precreateTablesTimeoutSeconds);
+    }
+
+    /**
+     * Creates a factory that creates physical tables on the given executor and, if {@code precreateTables} is set,
+     * waits at most the given time for precreated tables to become active.
+     *
+     * @param createTableRequestFactory maps virtual to physical table instances
+     * @param mtContext the multitenant context provider
+     * @param secondaryIndexMapper maps virtual to physical indexes
+     * @param delimiter the string for delimiting values in hash keys
+     * @param amazonDynamoDb the underlying {@code AmazonDynamoDB} delegate
+     * @param precreateTables a flag indicating whether to create physical tables eagerly at start time
+     * @param pollIntervalSeconds the interval in seconds between attempts at checking the status of the table being
+     *     created
+     * @param createTableExecutor the executor to create physical tables that do not exist yet on
+     * @param precreateTablesTimeoutSeconds the time in seconds to wait for all precreated tables to become active
+     */
+    public TableMappingFactory(CreateTableRequestFactory createTableRequestFactory,
+                               MtAmazonDynamoDbContextProvider mtContext,
+                               DynamoSecondaryIndexMapper secondaryIndexMapper,
+                               String delimiter,
+                               AmazonDynamoDB amazonDynamoDb,
+                               boolean precreateTables,
+                               int pollIntervalSeconds,
+                               Executor createTableExecutor,
+                               int precreateTablesTimeoutSeconds) {
+        this.createTableExecutor = createTableExecutor;
+        this.refreshExecutor = newExecutor("refresh-physical-table-%d");
         this.createTableRequestFactory = createTableRequestFactory;
         this.secondaryIndexMapper = secondaryIndexMapper;
         this.mtContext = mtContext;
@@ -71,8 +188,11 @@ public class TableMappingFactory {
         this.amazonDynamoDb = amazonDynamoDb;
         this.dynamoDbAdminUtils = new AmazonDynamoDbAdminUtils(amazonDynamoDb);
         this.pollIntervalSeconds = pollIntervalSeconds;
+        this.physicalTables = CacheBuilder.newBuilder()
+            .refreshAfterWrite(PHYSICAL_TABLE_REFRESH_MINUTES, TimeUnit.MINUTES)
+            .build(new PhysicalTableLoader());
         if (precreateTables) {
-            precreateTables(createTableRequestFactory);
+            precreateTables(createTableRequestFactory, precreateTablesTimeoutSeconds);
         }
     }
 
@@ -80,14 +200,23 @@ public class TableMappingFactory {
         return createTableRequestFactory;
     }
 
-    private void precreateTables(CreateTableRequestFactory createTableRequestFactory) {
-        createTableRequestFactory.getPhysicalTables().forEach(this::createTableIfNotExists);
+    /*
+     * Creates all missing physical tables at once and waits for them together, then caches their descriptions.
+     */
+    private void precreateTables(CreateTableRequestFactory createTableRequestFactory, int timeoutSeconds) {
+        List<CreateTableRequest> physicalTables = createTableRequestFactory.getPhysicalTables();
+        try {
+            dynamoDbAdminUtils.createTablesIfNotExist(physicalTables, pollIntervalSeconds, timeoutSeconds);
+        } catch (IllegalStateException e) {
+            throw new RuntimeException(CONTEXT_REQUIRED_MESSAGE);
+        }
+        physicalTables.forEach(physicalTable -> getPhysicalTable(getPhysicalTableKey(physicalTable)));
     }
 
     /*
-     * Creates the table mapping, creates the table if it does not exist, sets the physical table description
-     * back onto the table mapping so it includes things that can only be determined after the physical
-     * table is created, like the streamArn.
+     * Creates the table mapping, creates the table if it does not exist, and has the table mapping read the physical
+     * table description from the cache, so it includes things that can only be determined after the physical
+     * table is created, like the streamArn, and sees them change when the cached description is refreshed.
      */
     TableMapping getTableMapping(DynamoTableDescription virtualTableDescription) {
         TableMapping tableMapping = new TableMapping(virtualTableDescription,
@@ -95,31 +224,144 @@ public class TableMappingFactory {
             secondaryIndexMapper,
             mtContext,
             delimiter);
-        tableMapping.setPhysicalTable(createTableIfNotExists(tableMapping.getPhysicalTable().getCreateTableRequest()));
+        PhysicalTableKey key = getPhysicalTableKey(tableMapping.getPhysicalTable().getCreateTableRequest());
+        getPhysicalTable(key);
+        tableMapping.setPhysicalTableSource(() -> getPhysicalTable(key));
         LOG.info("created virtual to physical table mapping: " + tableMapping.toString());
         return tableMapping;
     }
 
-    private DynamoTableDescriptionImpl createTableIfNotExists(CreateTableRequest physicalTable) {
-        // does not exist, create
-        if (getTableDescription(physicalTable.getTableName()).isPresent()) {
-            LOG.info(format("using existing physical table %s", physicalTable.getTableName()));
-        } else {
-            LOG.info(format("creating physical table %s", physicalTable.getTableName()));
-            dynamoDbAdminUtils.createTableIfNotExists(physicalTable, pollIntervalSeconds);
+    private PhysicalTableKey getPhysicalTableKey(CreateTableRequest physicalTable) {
+        // a multitenant delegate may map the same table name to a different table in each context
+        String context = amazonDynamoDb instanceof MtAmazonDynamoDb ? mtContext.getContext() : null;
+        return new PhysicalTableKey(context, physicalTable);
+    }
+
+    /*
+     * Returns the description of the physical table from the cache, creating the table if it does not exist.
+     */
+    private DynamoTableDescription getPhysicalTable(PhysicalTableKey key) {
+        try {
+            return physicalTables.getUnchecked(key);
+        } catch (UncheckedExecutionException e) {
+            throw unwrap(e);
         }
+    }
+
+    /*
+     * Describes the physical table, or creates it on the executor if it does not exist, and waits for the result.
+     */
+    private DynamoTableDescription loadPhysicalTable(PhysicalTableKey key) {
+        Optional<TableDescription> existing = inContext(key, this::getTableDescription,
+            key.createTableRequest.getTableName());
+        if (existing.isPresent()) {
+            LOG.info(format("using existing physical table %s", key.createTableRequest.getTableName()));
+            return new DynamoTableDescriptionImpl(existing.get());
+        }
+        // DDL may take minutes, so it runs on the executor rather than in each waiting request thread
+        try {
+            return CompletableFuture.supplyAsync(() -> inContext(key, this::createTable, key.createTableRequest),
+                createTableExecutor).join();
+        } catch (CompletionException e) {
+            LOG.error(format("failed to create physical table %s", key.createTableRequest.getTableName()), e);
+            throw unwrap(e);
+        }
+    }
+
+    private DynamoTableDescription createTable(CreateTableRequest physicalTable) {
+        LOG.info(format("creating physical table %s", physicalTable.getTableName()));
+        dynamoDbAdminUtils.createTableIfNotExists(physicalTable, pollIntervalSeconds);
         return new DynamoTableDescriptionImpl(amazonDynamoDb.describeTable(physicalTable.getTableName()).getTable());
     }
 
+    private <T, R> R inContext(PhysicalTableKey key, Function<T, R> function, T t) {
+        return key.context == null ? function.apply(t) : mtContext.withContext(key.context, function, t);
+    }
+
+    /*
+     * Rethrows the original exception of a failed load or creation.
+     */
+    private static RuntimeException unwrap(RuntimeException e) {
+        return e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+    }
+
+    private static Executor newCreateTableExecutor() {
+        return newExecutor("create-physical-table-%d");
+    }
+
+    /*
+     * Returns a single daemon thread executor that keeps no thread while idle.
+     */
+    private static Executor newExecutor(String nameFormat) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat(nameFormat).build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     private Optional<TableDescription> getTableDescription(String tableName) {
         try {
             return Optional.of(amazonDynamoDb.describeTable(tableName).getTable());
         } catch (ResourceNotFoundException e) {
             return Optional.empty();
         } catch (IllegalStateException e) {
-            throw new RuntimeException("Mt context available.  When chaining, you must either set the mt context "
-                + "before building, or set precreateTables=false");
+            throw new RuntimeException(CONTEXT_REQUIRED_MESSAGE);
+        }
+    }
+
+    /*
+     * Loads physical table descriptions on first access and refreshes them on the refresh executor, so that no request
+     * waits for a refresh, and a refresh does not wait for table creation.  If a refresh fails, the previous
+     * description remains cached until the next refresh.
+     */
+    private class PhysicalTableLoader extends CacheLoader<PhysicalTableKey, DynamoTableDescription> {
+
+        @Override
+        public DynamoTableDescription load(PhysicalTableKey key) {
+            return loadPhysicalTable(key);
+        }
+
+        @Override
+        public ListenableFuture<DynamoTableDescription> reload(PhysicalTableKey key, DynamoTableDescription oldValue) {
+            ListenableFutureTask<DynamoTableDescription> task = ListenableFutureTask.create(() ->
+                new DynamoTableDescriptionImpl(inContext(key, amazonDynamoDb::describeTable,
+                    key.createTableRequest.getTableName()).getTable()));
+            refreshExecutor.execute(task);
+            return task;
+        }
+    }
+
+    /*
+     * Identifies a physical table by name and, if the delegate is multitenant, tenant context.  Also holds the request
+     * to create the table with if it does not exist.
+     */
+    private static final class PhysicalTableKey {
+
+        private final String context;
+        private final CreateTableRequest createTableRequest;
+
+        private PhysicalTableKey(String context, CreateTableRequest createTableRequest) {
+            this.context = context;
+            this.createTableRequest = createTableRequest;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PhysicalTableKey)) {
+                return false;
+            }
+            PhysicalTableKey other = (PhysicalTableKey) o;
+            return Objects.equals(context, other.context)
+                && createTableRequest.getTableName().equals(other.createTableRequest.getTableName());
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(context) + createTableRequest.getTableName().hashCode();
         }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.repo;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeDefinition;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.LocalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputDescription;
+import com.amazonaws.services.dynamodbv2.model.StreamSpecification;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores table descriptions in a compact binary format.  Only the parts of a table description that
+ * {@code MtDynamoDbTableDescriptionRepo} stores are encoded: the table name, key schema, attribute definitions,
+ * provisioned throughput, stream specification, and secondary indexes.  Enum values are encoded as single-byte indexes
+ * into value tables defined by this codec rather than by the SDK enums, so that SDK upgrades cannot change what
+ * stored indexes mean, and strings as length-prefixed modified UTF-8.
+ *
+ * <p>Each value starts with a format version, so that the format can evolve while older values remain readable.
+ * Values stored as strings are decoded as JSON, so that table descriptions written before this codec was introduced
+ * remain readable as well.
+ */
+public class BinaryTableDescriptionCodec implements TableDescriptionCodec {
+
+    private static final byte VERSION_1 = 1;
+    // enum values by persisted index: these lists must only ever be appended to
+    private static final List<String> KEY_TYPES = ImmutableList.of("HASH", "RANGE");
+    private static final List<String> ATTRIBUTE_TYPES = ImmutableList.of("S", "N", "B");
+    private static final List<String> PROJECTION_TYPES = ImmutableList.of("ALL", "KEYS_ONLY", "INCLUDE");
+    private static final List<String> STREAM_VIEW_TYPES =
+        ImmutableList.of("NEW_IMAGE", "OLD_IMAGE", "NEW_AND_OLD_IMAGES", "KEYS_ONLY");
+    private static final int NULL = -1;
+
+    private final TableDescriptionCodec legacyCodec = new JsonTableDescriptionCodec();
+
+    @Override
+    public AttributeValue encode(TableDescription tableDescription) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION_1);
+            writeString(out, tableDescription.getTableName());
+            writeKeySchema(out, tableDescription.getKeySchema());
+            List<AttributeDefinition> attributeDefinitions = orEmpty(tableDescription.getAttributeDefinitions());
+            out.writeShort(attributeDefinitions.size());
+            for (AttributeDefinition attributeDefinition : attributeDefinitions) {
+                writeString(out, attributeDefinition.getAttributeName());
+                writeEnum(out, ATTRIBUTE_TYPES, attributeDefinition.getAttributeType());
+            }
+            writeThroughput(out, tableDescription.getProvisionedThroughput());
+            StreamSpecification streamSpecification = tableDescription.getStreamSpecification();
+            out.writeBoolean(streamSpecification != null);
+            if (streamSpecification != null) {
+                writeBoolean(out, streamSpecification.getStreamEnabled());
+                writeEnum(out, STREAM_VIEW_TYPES, streamSpecification.getStreamViewType());
+            }
+            List<LocalSecondaryIndexDescription> lsis = tableDescription.getLocalSecondaryIndexes();
+            out.writeShort(lsis == null ? NULL : lsis.size());
+            for (LocalSecondaryIndexDescription lsi : orEmpty(lsis)) {
+                writeString(out, lsi.getIndexName());
+                writeKeySchema(out, lsi.getKeySchema());
+                writeProjection(out, lsi.getProjection());
+            }
+            List<GlobalSecondaryIndexDescription> gsis = tableDescription.getGlobalSecondaryIndexes();
+            out.writeShort(gsis == null ? NULL : gsis.size());
+            for (GlobalSecondaryIndexDescription gsi : orEmpty(gsis)) {
+                writeString(out, gsi.getIndexName());
+                writeKeySchema(out, gsi.getKeySchema());
+                writeProjection(out, gsi.getProjection());
+                writeThroughput(out, gsi.getProvisionedThroughput());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new AttributeValue().withB(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    @Override
+    public TableDescription decode(AttributeValue value) {
+        if (value.getS() != null) {
+            return legacyCodec.decode(value);
+        }
+        if (value.getB() == null) {
+            throw new IllegalArgumentException("table description is neither binary nor a string");
+        }
+        ByteBuffer buffer = value.getB().duplicate();
+        byte[] array = new byte[buffer.remaining()];
+        buffer.get(array);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(array))) {
+            byte version = in.readByte();
+            if (version != VERSION_1) {
+                throw new IllegalArgumentException("unsupported table description version " + version);
+            }
+            TableDescription tableDescription = new TableDescription()
+                .withTableName(readString(in))
+                .withKeySchema(readKeySchema(in));
+            int attributeDefinitions = in.readShort();
+            List<AttributeDefinition> definitions = new ArrayList<>(attributeDefinitions);
+            for (int i = 0; i < attributeDefinitions; i++) {
+                definitions.add(new AttributeDefinition(readString(in), readEnum(in, ATTRIBUTE_TYPES)));
+            }
+            tableDescription.withAttributeDefinitions(definitions)
+                .withProvisionedThroughput(readThroughput(in));
+            if (in.readBoolean()) {
+                tableDescription.withStreamSpecification(new StreamSpecification()
+                    .withStreamEnabled(readBoolean(in))
+                    .withStreamViewType(readEnum(in, STREAM_VIEW_TYPES)));
+            }
+            int lsiCount = in.readShort();
+            if (lsiCount != NULL) {
+                List<LocalSecondaryIndexDescription> lsis = new ArrayList<>(lsiCount);
+                for (int i = 0; i < lsiCount; i++) {
+                    lsis.add(new LocalSecondaryIndexDescription()
+                        .withIndexName(readString(in))
+                        .withKeySchema(readKeySchema(in))
+                        .withProjection(readProjection(in)));
+                }
+                tableDescription.withLocalSecondaryIndexes(lsis);
+            }
+            int gsiCount = in.readShort();
+            if (gsiCount != NULL) {
+                List<GlobalSecondaryIndexDescription> gsis = new ArrayList<>(gsiCount);
+                for (int i = 0; i < gsiCount; i++) {
+                    gsis.add(new GlobalSecondaryIndexDescription()
+                        .withIndexName(readString(in))
+                        .withKeySchema(readKeySchema(in))
+                        .withProjection(readProjection(in))
+                        .withProvisionedThroughput(readThroughput(in)));
+                }
+                tableDescription.withGlobalSecondaryIndexes(gsis);
+            }
+            return tableDescription;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("invalid table description", e);
+        }
+    }
+
+    private static void writeKeySchema(DataOutputStream out, List<KeySchemaElement> keySchema) throws IOException {
+        List<KeySchemaElement> elements = orEmpty(keySchema);
+        out.writeShort(elements.size());
+        for (KeySchemaElement element : elements) {
+            writeString(out, element.getAttributeName());
+            writeEnum(out, KEY_TYPES, element.getKeyType());
+        }
+    }
+
+    private static List<KeySchemaElement> readKeySchema(DataInputStream in) throws IOException {
+        int size = in.readShort();
+        List<KeySchemaElement> keySchema = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            keySchema.add(new KeySchemaElement(readString(in), readEnum(in, KEY_TYPES)));
+        }
+        return keySchema;
+    }
+
+    private static void writeProjection(DataOutputStream out, Projection projection) throws IOException {
+        out.writeBoolean(projection != null);
+        if (projection != null) {
+            writeEnum(out, PROJECTION_TYPES, projection.getProjectionType());
+            List<String> nonKeyAttributes = projection.getNonKeyAttributes();
+            out.writeShort(nonKeyAttributes == null ? NULL : nonKeyAttributes.size());
+            for (String nonKeyAttribute : orEmpty(nonKeyAttributes)) {
+                writeString(out, nonKeyAttribute);
+            }
+        }
+    }
+
+    private static Projection readProjection(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        Projection projection = new Projection().withProjectionType(readEnum(in, PROJECTION_TYPES));
+        int size = in.readShort();
+        if (size != NULL) {
+            List<String> nonKeyAttributes = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                nonKeyAttributes.add(readString(in));
+            }
+            projection.withNonKeyAttributes(nonKeyAttributes);
+        }
+        return projection;
+    }
+
+    private static void writeThroughput(DataOutputStream out, ProvisionedThroughputDescription throughput)
+        throws IOException {
+        out.writeBoolean(throughput != null);
+        if (throughput != null) {
+            writeLong(out, throughput.getReadCapacityUnits());
+            writeLong(out, throughput.getWriteCapacityUnits());
+        }
+    }
+
+    private static ProvisionedThroughputDescription readThroughput(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return new ProvisionedThroughputDescription()
+            .withReadCapacityUnits(readLong(in))
+            .withWriteCapacityUnits(readLong(in));
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    /*
+     * Encodes null as -1 and true and false as 1 and 0.
+     */
+    private static void writeBoolean(DataOutputStream out, Boolean value) throws IOException {
+        out.writeByte(value == null ? NULL : value ? 1 : 0);
+    }
+
+    private static Boolean readBoolean(DataInputStream in) throws IOException {
+        byte value = in.readByte();
+        return value == NULL ? null : value == 1;
+    }
+
+    /*
+     * Encodes an enum value by its index in the given list of values, or as -1 if null.
+     */
+    private static void writeEnum(DataOutputStream out, List<String> values, String value) throws IOException {
+        int index = value == null ? NULL : values.indexOf(value);
+        if (value != null && index < 0) {
+            throw new IllegalArgumentException("unsupported value " + value + ", expected one of " + values);
+        }
+        out.writeByte(index);
+    }
+
+    private static String readEnum(DataInputStream in, List<String> values) throws IOException {
+        byte index = in.readByte();
+        if (index == NULL) {
+            return null;
+        }
+        if (index < 0 || index >= values.size()) {
+            throw new IllegalArgumentException("invalid enum index " + index + ", expected one of " + values);
+        }
+        return values.get(index);
+    }
+
+    private static <T> List<T> orEmpty(List<T> list) {
+        return list == null ? ImmutableList.of() : list;
+    }
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.repo;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.google.gson.Gson;
+
+/**
+ * Stores table descriptions as JSON strings.  This is the format used before {@link BinaryTableDescriptionCodec} was
+ * introduced; it may be used while instances that can only read JSON still share the table description table.
+ */
+public class JsonTableDescriptionCodec implements TableDescriptionCodec {
+
+    private static final Gson GSON = new Gson();
+
+    @Override
+    public AttributeValue encode(TableDescription tableDescription) {
+        return new AttributeValue(GSON.toJson(tableDescription));
+    }
+
+    @Override
+    public TableDescription decode(AttributeValue value) {
+        checkArgument(value.getS() != null, "table description is not a string");
+        return GSON.fromJson(value.getS(), TableDescription.class);
+    }
+
+}
@@ -8,8 +8,10 @@
 package com.salesforce.dynamodbv2.mt.repo;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
 
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreams;
 import com.amazonaws.services.dynamodbv2.model.AttributeDefinition;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
@@ -19,24 +21,43 @@ import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
 import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
 import com.amazonaws.services.dynamodbv2.model.KeyType;
 import com.amazonaws.services.dynamodbv2.model.LocalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.OperationType;
 import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
 import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputDescription;
 import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.Record;
 import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
 import com.amazonaws.services.dynamodbv2.model.ScalarAttributeType;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.StreamSpecification;
+import com.amazonaws.services.dynamodbv2.model.StreamViewType;
 import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.common.util.concurrent.UncheckedExecutionException;
-import com.google.gson.Gson;
 import com.salesforce.dynamodbv2.mt.admin.AmazonDynamoDbAdminUtils;
 import com.salesforce.dynamodbv2.mt.cache.MtCache;
 import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Stores table definitions in single table.  Each record represents a table.  Table names are prefixed with context.
@@ -44,6 +65,12 @@ import java.util.stream.Collectors;
  * <p>The AmazonDynamoDb that it uses must not, itself, be a MtAmazonDynamoDb* instance.  MtAmazonDynamoDbLogger
  * is supported.
  *
+ * <p>If an {@code AmazonDynamoDBStreams} client is provided for cache invalidation, the table is created with a stream,
+ * and a background thread polls the stream to keep cached descriptions up to date with tables created or deleted by
+ * other instances.  If the table already exists without a stream, a stream of type NEW_AND_OLD_IMAGES is enabled on
+ * startup.  The table's stream specification is not otherwise verified, so cache invalidation can be enabled on one
+ * instance sharing the table at a time.
+ *
  * @author msgroi
  */
 public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
@@ -52,16 +79,20 @@ public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
     private static final String TABLEMETADATA_DATAFIELD = "data";
     private static final String DELIMITER = ".";
 
-    private static final Gson GSON = new Gson();
     private final AmazonDynamoDB amazonDynamoDb;
     private final MtAmazonDynamoDbContextProvider mtContext;
     private final AmazonDynamoDbAdminUtils adminUtils;
     private final String tableDescriptionTableName;
     private final String tableDescriptionTableHashKeyField;
     private final String tableDescriptionTableDataField;
+    private final TableDescriptionCodec codec;
     private final String delimiter;
     private final int pollIntervalSeconds;
     private final MtCache<TableDescription> cache;
+    private final AmazonDynamoDBStreams cacheInvalidationStreams;
+    private final List<BiConsumer<String, String>> changeListeners = new CopyOnWriteArrayList<>();
+    private final List<Runnable> resetListeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService cacheInvalidationExecutor;
 
     private MtDynamoDbTableDescriptionRepo(AmazonDynamoDB amazonDynamoDb,
                                            MtAmazonDynamoDbContextProvider mtContext,
@@ -69,17 +100,39 @@ public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
                                            Optional<String> tablePrefix,
                                            String tableDescriptionTableHashKeyField,
                                            String tableDescriptionTableDataField,
+                                           TableDescriptionCodec codec,
                                            String delimiter,
-                                           int pollIntervalSeconds) {
+                                           int pollIntervalSeconds,
+                                           String cacheSpec,
+                                           AmazonDynamoDBStreams cacheInvalidationStreams,
+                                           long cacheInvalidationPollIntervalMillis) {
         this.amazonDynamoDb = amazonDynamoDb;
         this.mtContext = mtContext;
         adminUtils = new AmazonDynamoDbAdminUtils(amazonDynamoDb);
         this.tableDescriptionTableName = prefix(tableDescriptionTableName, tablePrefix);
         this.tableDescriptionTableHashKeyField = tableDescriptionTableHashKeyField;
         this.tableDescriptionTableDataField = tableDescriptionTableDataField;
+        this.codec = codec;
         this.delimiter = delimiter;
         this.pollIntervalSeconds = pollIntervalSeconds;
-        cache = new MtCache<>(mtContext);
+        cache = new MtCache<>(mtContext, cacheSpec);
+        this.cacheInvalidationStreams = cacheInvalidationStreams;
+        if (cacheInvalidationStreams == null) {
+            cacheInvalidationExecutor = null;
+        } else {
+            cacheInvalidationExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("table-description-stream-" + this.tableDescriptionTableName + "-%d")
+                .build());
+            TableDescriptionStreamConsumer consumer = new TableDescriptionStreamConsumer(cacheInvalidationStreams,
+                this::getTableDescriptionTableStreamArn,
+                this::onTableDescriptionChange,
+                this::onTableDescriptionReset);
+            // position the consumer now, so that all changes made after the repo is built are seen
+            consumer.run();
+            cacheInvalidationExecutor.scheduleWithFixedDelay(consumer,
+                cacheInvalidationPollIntervalMillis, cacheInvalidationPollIntervalMillis, TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
@@ -94,6 +147,16 @@ public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
         return getTableDescriptionFromCache(tableName);
     }
 
+    /**
+     * Returns a snapshot of the table description cache statistics of each tenant context.  Empty unless the cache
+     * spec enables {@code recordStats}.
+     *
+     * @return table description cache statistics by tenant context
+     */
+    public Map<String, CacheStats> getTenantCacheStats() {
+        return cache.getTenantStats();
+    }
+
     public static MtDynamoDbTableDescriptionRepoBuilder builder() {
         return new MtDynamoDbTableDescriptionRepoBuilder();
     }
@@ -121,8 +184,7 @@ public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
             throw new ResourceNotFoundException("table metadata entry for '" + tableName + "' does not exist in "
                 + tableDescriptionTableName);
         }
-        String tableDataJson = item.get(tableDescriptionTableDataField).getS();
-        return jsonToTableData(tableDataJson);
+        return codec.decode(item.get(tableDescriptionTableDataField));
     }
 
     @Override
@@ -144,6 +206,146 @@ public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
         cache.invalidateAll();
     }
 
+    @Override
+    public void addTableDescriptionChangeListener(BiConsumer<String, String> listener) {
+        changeListeners.add(listener);
+    }
+
+    @Override
+    public void addTableDescriptionResetListener(Runnable listener) {
+        resetListeners.add(listener);
+    }
+
+    /**
+     * Stops polling the table description table's stream, if cache invalidation was enabled.
+     */
+    public void shutdown() {
+        if (cacheInvalidationExecutor != null) {
+            cacheInvalidationExecutor.shutdownNow();
+        }
+    }
+
+    /*
+     * Applies a change to the table description table made by this or any other instance: refreshes the description of
+     * a created table if it is cached, evicts the description of a deleted table, and notifies listeners.  Descriptions
+     * that are not cached are not added, so that instances only cache the tables of tenants they serve.
+     */
+    private void onTableDescriptionChange(Record record) {
+        boolean removed = OperationType.REMOVE.toString().equals(record.getEventName());
+        Map<String, AttributeValue> image = removed
+            ? record.getDynamodb().getOldImage()
+            : record.getDynamodb().getNewImage();
+        String hashKey = image.get(tableDescriptionTableHashKeyField).getS();
+        TableDescription tableDescription = codec.decode(image.get(tableDescriptionTableDataField));
+        String tableName = tableDescription.getTableName();
+        String context = getContext(hashKey, tableName);
+        if (removed) {
+            cache.invalidate(context, tableName);
+        } else {
+            cache.replace(context, tableName, tableDescription);
+        }
+        changeListeners.forEach(listener -> listener.accept(context, tableName));
+    }
+
+    /*
+     * Discards all cached descriptions and notifies listeners when the stream consumer has lost its position, since
+     * changes made in the meantime may have been missed.
+     */
+    private void onTableDescriptionReset() {
+        invalidateCaches();
+        resetListeners.forEach(Runnable::run);
+    }
+
+    /*
+     * Makes sure the table description table exists, bypassing the cache since this runs outside of any tenant
+     * context, and returns the ARN of its stream.
+     */
+    private String getTableDescriptionTableStreamArn() {
+        createTableDescriptionTableIfNotExists(pollIntervalSeconds);
+        String streamArn = amazonDynamoDb.describeTable(tableDescriptionTableName).getTable().getLatestStreamArn();
+        checkState(streamArn != null, "table description table " + tableDescriptionTableName + " has no stream");
+        return streamArn;
+    }
+
+    /**
+     * Scans the table description table in parallel segments and adds the descriptions of the tenants accepted by the
+     * filter to the cache.  Blocks until all segments have been scanned.
+     */
+    @Override
+    public Map<String, List<TableDescription>> loadTableDescriptions(Predicate<String> tenantFilter,
+                                                                     int totalSegments,
+                                                                     Executor executor) {
+        checkArgument(totalSegments > 0, "totalSegments must be positive");
+        String tableName = getTableDescriptionTableName();
+        List<CompletableFuture<Map<String, List<TableDescription>>>> segments = IntStream.range(0, totalSegments)
+            .mapToObj(segment -> CompletableFuture.supplyAsync(() ->
+                loadTableDescriptions(tableName, segment, totalSegments, tenantFilter), executor))
+            .collect(Collectors.toList());
+        Map<String, List<TableDescription>> tableDescriptions = new HashMap<>();
+        try {
+            for (CompletableFuture<Map<String, List<TableDescription>>> segment : segments) {
+                segment.join().forEach((context, descriptions) ->
+                    tableDescriptions.computeIfAbsent(context, c -> new ArrayList<>()).addAll(descriptions));
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return tableDescriptions;
+    }
+
+    /*
+     * Scans one segment of the table description table.  Items of tenants that cannot match the filter are skipped
+     * before their descriptions are parsed.
+     */
+    private Map<String, List<TableDescription>> loadTableDescriptions(String tableName, int segment,
+                                                                      int totalSegments,
+                                                                      Predicate<String> tenantFilter) {
+        Map<String, List<TableDescription>> tableDescriptions = new HashMap<>();
+        ScanRequest scanRequest = new ScanRequest().withTableName(tableName)
+            .withSegment(segment)
+            .withTotalSegments(totalSegments);
+        do {
+            ScanResult scanResult = amazonDynamoDb.scan(scanRequest);
+            for (Map<String, AttributeValue> item : scanResult.getItems()) {
+                String hashKey = item.get(tableDescriptionTableHashKeyField).getS();
+                if (!mayMatch(hashKey, tenantFilter)) {
+                    continue;
+                }
+                TableDescription tableDescription = codec.decode(item.get(tableDescriptionTableDataField));
+                String context = getContext(hashKey, tableDescription.getTableName());
+                if (tenantFilter.test(context)) {
+                    cache.put(context, tableDescription.getTableName(), tableDescription);
+                    tableDescriptions.computeIfAbsent(context, c -> new ArrayList<>()).add(tableDescription);
+                }
+            }
+            scanRequest.setExclusiveStartKey(scanResult.getLastEvaluatedKey());
+        } while (scanRequest.getExclusiveStartKey() != null);
+        return tableDescriptions;
+    }
+
+    /*
+     * Returns the context of a hash key.  The hash key is the context, the delimiter, and the table name, either of
+     * which may contain the delimiter, so the table name tells where the context ends.
+     */
+    private String getContext(String hashKey, String tableName) {
+        return hashKey.substring(0, hashKey.length() - delimiter.length() - tableName.length());
+    }
+
+    /*
+     * Returns whether any prefix of the hash key that ends before a delimiter is accepted by the filter.
+     */
+    private boolean mayMatch(String hashKey, Predicate<String> tenantFilter) {
+        for (int i = hashKey.indexOf(delimiter); i >= 0; i = hashKey.indexOf(delimiter, i + 1)) {
+            if (tenantFilter.test(hashKey.substring(0, i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private String getTableDescriptionTableName() {
         try {
             cache.get(tableDescriptionTableName, () -> {
@@ -157,15 +359,24 @@ public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
     }
 
     private void createTableDescriptionTableIfNotExists(int pollIntervalSeconds) {
-        adminUtils.createTableIfNotExists(
-            new CreateTableRequest().withTableName(tableDescriptionTableName)
-                .withKeySchema(new KeySchemaElement().withAttributeName(tableDescriptionTableHashKeyField)
-                    .withKeyType(KeyType.HASH))
-                .withAttributeDefinitions(new AttributeDefinition()
-                    .withAttributeName(tableDescriptionTableHashKeyField)
-                    .withAttributeType(ScalarAttributeType.S))
-                .withProvisionedThroughput(new ProvisionedThroughput(1L, 1L)),
-            pollIntervalSeconds);
+        CreateTableRequest createTableRequest = new CreateTableRequest().withTableName(tableDescriptionTableName)
+            .withKeySchema(new KeySchemaElement().withAttributeName(tableDescriptionTableHashKeyField)
+                .withKeyType(KeyType.HASH))
+            .withAttributeDefinitions(new AttributeDefinition()
+                .withAttributeName(tableDescriptionTableHashKeyField)
+                .withAttributeType(ScalarAttributeType.S))
+            .withProvisionedThroughput(new ProvisionedThroughput(1L, 1L));
+        if (cacheInvalidationStreams != null) {
+            createTableRequest.withStreamSpecification(new StreamSpecification()
+                .withStreamEnabled(true)
+                .withStreamViewType(StreamViewType.NEW_AND_OLD_IMAGES));
+        }
+        // instances with and without cache invalidation may share the table, so its stream is not compared
+        adminUtils.createTableIfNotExists(createTableRequest, pollIntervalSeconds, false);
+        if (cacheInvalidationStreams != null) {
+            adminUtils.enableStreamIfDisabled(tableDescriptionTableName, StreamViewType.NEW_AND_OLD_IMAGES,
+                pollIntervalSeconds);
+        }
     }
 
     private Map<String, AttributeValue> createItem(CreateTableRequest createTableRequest) {
@@ -193,18 +404,9 @@ public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
                         .withWriteCapacityUnits(gsi.getProvisionedThroughput().getWriteCapacityUnits())))
                 .collect(Collectors.toList()));
         }
-        String tableDataJson = tableDataToJson(tableDescription);
         return new HashMap<>(ImmutableMap.of(
             tableDescriptionTableHashKeyField, new AttributeValue(addPrefix(createTableRequest.getTableName())),
-            tableDescriptionTableDataField, new AttributeValue(tableDataJson)));
-    }
-
-    private String tableDataToJson(TableDescription tableDescription) {
-        return GSON.toJson(tableDescription);
-    }
-
-    private TableDescription jsonToTableData(String tableDataString) {
-        return GSON.fromJson(tableDataString, TableDescription.class);
+            tableDescriptionTableDataField, codec.encode(tableDescription)));
     }
 
     private String addPrefix(String tableName) {
@@ -221,9 +423,13 @@ public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
         private String tableDescriptionTableName;
         private String tableDescriptionTableHashKeyField;
         private String tableDescriptionTableDataField;
+        private TableDescriptionCodec tableDescriptionCodec;
         private String delimiter;
         private Integer pollIntervalSeconds;
         private Optional<String> tablePrefix = Optional.empty();
+        private String cacheSpec;
+        private AmazonDynamoDBStreams cacheInvalidationStreams;
+        private Long cacheInvalidationPollIntervalMillis;
 
         public MtDynamoDbTableDescriptionRepoBuilder withAmazonDynamoDb(AmazonDynamoDB amazonDynamoDb) {
             this.amazonDynamoDb = amazonDynamoDb;
@@ -252,6 +458,20 @@ public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
             return this;
         }
 
+        /**
+         * Sets the format in which table descriptions are stored.  Default: {@link BinaryTableDescriptionCodec}, which
+         * also reads table descriptions stored as JSON.  Use {@link JsonTableDescriptionCodec} while instances that can
+         * only read JSON share the table description table.
+         *
+         * @param tableDescriptionCodec the codec to encode and decode table descriptions with
+         * @return this builder
+         */
+        public MtDynamoDbTableDescriptionRepoBuilder withTableDescriptionCodec(
+            TableDescriptionCodec tableDescriptionCodec) {
+            this.tableDescriptionCodec = tableDescriptionCodec;
+            return this;
+        }
+
         public MtDynamoDbTableDescriptionRepoBuilder withDelimiter(String delimiter) {
             this.delimiter = delimiter;
             return this;
@@ -267,6 +487,42 @@ public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
             return this;
         }
 
+        /**
+         * Configures the cache of table descriptions, e.g., {@code "maximumSize=100000,expireAfterAccess=1h"}.  See
+         * {@link MtCache} for supported options.  By default, the cache is unbounded.
+         *
+         * @param cacheSpec a {@code CacheBuilderSpec} string
+         * @return this builder
+         */
+        public MtDynamoDbTableDescriptionRepoBuilder withCacheSpec(String cacheSpec) {
+            this.cacheSpec = cacheSpec;
+            return this;
+        }
+
+        /**
+         * Enables invalidation of cached table descriptions by polling the table description table's stream.
+         *
+         * @param cacheInvalidationStreams the streams client to poll the stream with
+         * @return this builder
+         */
+        public MtDynamoDbTableDescriptionRepoBuilder withCacheInvalidationStreams(
+            AmazonDynamoDBStreams cacheInvalidationStreams) {
+            this.cacheInvalidationStreams = cacheInvalidationStreams;
+            return this;
+        }
+
+        /**
+         * Sets the delay between polls of the table description table's stream.  Default: 1000.
+         *
+         * @param cacheInvalidationPollIntervalMillis the delay in milliseconds
+         * @return this builder
+         */
+        public MtDynamoDbTableDescriptionRepoBuilder withCacheInvalidationPollIntervalMillis(
+            long cacheInvalidationPollIntervalMillis) {
+            this.cacheInvalidationPollIntervalMillis = cacheInvalidationPollIntervalMillis;
+            return this;
+        }
+
         /**
          * TODO: write Javadoc.
          *
@@ -283,14 +539,20 @@ public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
                 tablePrefix,
                 tableDescriptionTableHashKeyField,
                 tableDescriptionTableDataField,
+                tableDescriptionCodec,
                 delimiter,
-                pollIntervalSeconds);
+                pollIntervalSeconds,
+                cacheSpec,
+                cacheInvalidationStreams,
+                cacheInvalidationPollIntervalMillis);
         }
 
         private void validate() {
             checkArgument(amazonDynamoDb != null, "amazonDynamoDb is required");
             checkArgument(mtContext != null, "mtContext is required");
             checkArgument(tableDescriptionTableName != null, "tableDescriptionTableName is required");
+            checkArgument(cacheInvalidationPollIntervalMillis > 0,
+                "cacheInvalidationPollIntervalMillis must be positive");
         }
 
         private void setDefaults() {
@@ -300,12 +562,18 @@ public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
             if (tableDescriptionTableDataField == null) {
                 tableDescriptionTableDataField = TABLEMETADATA_DATAFIELD;
             }
+            if (tableDescriptionCodec == null) {
+                tableDescriptionCodec = new BinaryTableDescriptionCodec();
+            }
             if (delimiter == null) {
                 delimiter = DELIMITER;
             }
             if (pollIntervalSeconds == null) {
                 pollIntervalSeconds = 5;
             }
+            if (cacheInvalidationPollIntervalMillis == null) {
+                cacheInvalidationPollIntervalMillis = 1000L;
+            }
         }
 
     }
@@ -9,6 +9,12 @@ package com.salesforce.dynamodbv2.mt.repo;
 
 import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
 import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
 
 /**
  * TODO: write Javadoc.
@@ -25,4 +31,42 @@ public interface MtTableDescriptionRepo {
 
     void invalidateCaches();
 
+    /**
+     * Registers a listener that is called with the tenant context and name of each table whose description may have
+     * changed, e.g., because another instance created or deleted the table, so that state derived from the table
+     * description can be invalidated.  By default, changes are not tracked and listeners are never called.
+     *
+     * @param listener called with the context and name of changed tables
+     */
+    default void addTableDescriptionChangeListener(BiConsumer<String, String> listener) {
+        // defaults to no-op
+    }
+
+    /**
+     * Registers a listener that is called when the descriptions of any tables may have changed without change listeners
+     * being called, e.g., because changes made by other instances could not be tracked for a while, so that all state
+     * derived from table descriptions can be invalidated.  By default, listeners are never called.
+     *
+     * @param listener called when all state derived from table descriptions may be stale
+     */
+    default void addTableDescriptionResetListener(Runnable listener) {
+        // defaults to no-op
+    }
+
+    /**
+     * Loads the descriptions of all tables of the tenants accepted by the filter, e.g., to warm up caches at startup.
+     * Implementations that cache table descriptions add the loaded descriptions to their cache.  By default, nothing is
+     * loaded.
+     *
+     * @param tenantFilter accepts the tenant contexts whose table descriptions to load
+     * @param totalSegments the number of segments to read the descriptions in, in parallel
+     * @param executor the executor to read the segments on
+     * @return the loaded table descriptions by tenant context
+     */
+    default Map<String, List<TableDescription>> loadTableDescriptions(Predicate<String> tenantFilter,
+                                                                      int totalSegments,
+                                                                      Executor executor) {
+        return Collections.emptyMap();
+    }
+
 }
\ No newline at end of file
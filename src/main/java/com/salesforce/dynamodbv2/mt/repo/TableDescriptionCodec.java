@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.repo;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+
+/**
+ * Converts the virtual table descriptions stored by {@code MtDynamoDbTableDescriptionRepo} to and from the attribute
+ * value they are stored in.
+ */
+public interface TableDescriptionCodec {
+
+    AttributeValue encode(TableDescription tableDescription);
+
+    TableDescription decode(AttributeValue value);
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.repo;
+
+import static com.amazonaws.services.dynamodbv2.model.ShardIteratorType.LATEST;
+import static com.amazonaws.services.dynamodbv2.model.ShardIteratorType.TRIM_HORIZON;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreams;
+import com.amazonaws.services.dynamodbv2.model.DescribeStreamRequest;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsRequest;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorRequest;
+import com.amazonaws.services.dynamodbv2.model.Record;
+import com.amazonaws.services.dynamodbv2.model.Shard;
+import com.amazonaws.services.dynamodbv2.model.ShardIteratorType;
+import com.amazonaws.services.dynamodbv2.model.StreamDescription;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Polls all shards of the stream of the table description table and passes each record to a consumer.  Each call to
+ * {@link #run()} reads one batch of records from every shard that is being consumed, so it is meant to be scheduled
+ * with a fixed delay on a single thread.
+ *
+ * <p>Shards that are open when the consumer starts are read from their latest position, since caches do not contain
+ * changes made before they were created.  Shards that appear later, i.e., children of shards that have been read to the
+ * end, are read from the beginning.  If the consumer loses its position, e.g., because reading a shard failed, it
+ * calls the reset callback, so that the caller can discard all state derived from the stream, and starts over.
+ */
+class TableDescriptionStreamConsumer implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TableDescriptionStreamConsumer.class);
+
+    private final AmazonDynamoDBStreams amazonDynamoDbStreams;
+    private final Supplier<String> streamArnSupplier;
+    private final Consumer<Record> recordConsumer;
+    private final Runnable resetCallback;
+    private final Map<String, String> shardIterators = new LinkedHashMap<>();
+    private Set<String> knownShards = new HashSet<>();
+    private String streamArn;
+    private boolean started;
+    private boolean describe = true;
+
+    /**
+     * Creates a consumer.
+     *
+     * @param amazonDynamoDbStreams the streams client to read records with
+     * @param streamArnSupplier returns the ARN of the stream to consume, called on first run
+     * @param recordConsumer called for each record read
+     * @param resetCallback called when the consumer loses its position and starts over
+     */
+    TableDescriptionStreamConsumer(AmazonDynamoDBStreams amazonDynamoDbStreams,
+                                   Supplier<String> streamArnSupplier,
+                                   Consumer<Record> recordConsumer,
+                                   Runnable resetCallback) {
+        this.amazonDynamoDbStreams = amazonDynamoDbStreams;
+        this.streamArnSupplier = streamArnSupplier;
+        this.recordConsumer = recordConsumer;
+        this.resetCallback = resetCallback;
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (streamArn == null) {
+                streamArn = streamArnSupplier.get();
+            }
+            if (describe) {
+                discoverShards();
+            }
+            for (Map.Entry<String, String> shardIterator : shardIterators.entrySet()) {
+                GetRecordsResult result = amazonDynamoDbStreams.getRecords(
+                    new GetRecordsRequest().withShardIterator(shardIterator.getValue()));
+                result.getRecords().forEach(recordConsumer);
+                shardIterator.setValue(result.getNextShardIterator());
+            }
+            // shards without next iterator have been read to the end; their children, if any, are read next
+            if (shardIterators.values().removeIf(iterator -> iterator == null)) {
+                describe = true;
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("failed to consume table description stream " + streamArn + ", starting over", e);
+            shardIterators.clear();
+            knownShards.clear();
+            started = false;
+            describe = true;
+            resetCallback.run();
+        }
+    }
+
+    /*
+     * Starts reading shards that have not been seen before and whose parent is not being read anymore.  Only remembers
+     * shards that are still part of the stream, so that the set of known shards does not grow as shards expire.
+     */
+    private void discoverShards() {
+        Set<String> shards = new HashSet<>();
+        DescribeStreamRequest request = new DescribeStreamRequest().withStreamArn(streamArn);
+        do {
+            StreamDescription description = amazonDynamoDbStreams.describeStream(request).getStreamDescription();
+            for (Shard shard : description.getShards()) {
+                if (started && shardIterators.containsKey(shard.getParentShardId())) {
+                    // read children only after their parent, so that changes to a table are seen in order
+                    continue;
+                }
+                shards.add(shard.getShardId());
+                if (knownShards.contains(shard.getShardId())) {
+                    continue;
+                }
+                if (!started) {
+                    // only open shards can contain changes made after this point
+                    if (shard.getSequenceNumberRange().getEndingSequenceNumber() == null) {
+                        shardIterators.put(shard.getShardId(), getShardIterator(shard, LATEST));
+                    }
+                } else {
+                    shardIterators.put(shard.getShardId(), getShardIterator(shard, TRIM_HORIZON));
+                }
+            }
+            request.setExclusiveStartShardId(description.getLastEvaluatedShardId());
+        } while (request.getExclusiveStartShardId() != null);
+        knownShards = shards;
+        started = true;
+        describe = false;
+    }
+
+    private String getShardIterator(Shard shard, ShardIteratorType type) {
+        return amazonDynamoDbStreams.getShardIterator(new GetShardIteratorRequest()
+            .withStreamArn(streamArn)
+            .withShardId(shard.getShardId())
+            .withShardIteratorType(type)).getShardIterator();
+    }
+
+}
@@ -6,6 +6,7 @@ import static com.amazonaws.services.dynamodbv2.model.ShardIteratorType.LATEST;
 import static com.amazonaws.services.dynamodbv2.model.ShardIteratorType.TRIM_HORIZON;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Throwables.throwIfUnchecked;
 import static com.google.common.collect.Iterables.getLast;
 import static com.salesforce.dynamodbv2.mt.util.ShardIterator.ITERATOR_SEPARATOR;
 import static java.math.BigInteger.ONE;
@@ -20,22 +21,36 @@ import com.amazonaws.services.dynamodbv2.model.GetShardIteratorResult;
 import com.amazonaws.services.dynamodbv2.model.LimitExceededException;
 import com.amazonaws.services.dynamodbv2.model.Record;
 import com.amazonaws.services.dynamodbv2.model.ShardIteratorType;
-import com.amazonaws.services.dynamodbv2.model.StreamRecord;
+import com.google.common.base.Ticker;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.salesforce.dynamodbv2.mt.mappers.DelegatingAmazonDynamoDbStreams;
+import com.salesforce.dynamodbv2.mt.util.ResultStore.StoredResult;
 import java.math.BigInteger;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -59,23 +74,32 @@ import org.slf4j.LoggerFactory;
  * <li>All records are cached in at most one segment (no overlapping segments)</li>
  * </ol>
  *
- * <p>Some things we may want to improve in the future:
- * <ol>
- * <li>Reduce lock contention: avoid locking all streams/shards when adding segment</li>
- * <li>Lock shard when loading records to avoid hitting throttling</li>
- * </ol>
+ * <p>Segments are cached per stream shard, and each shard's segments are guarded by their own lock, so that consumers
+ * of different shards do not contend with each other. Only the total size of the cache and the order in which segments
+ * are evicted are shared across shards; neither requires a lock.
+ *
+ * <p>The size of the cache is the estimated heap space retained by the cached results. When the cache exceeds its
+ * maximum size, segments are evicted in approximately least recently used order: segments are queued in the order they
+ * were added, and a segment that has been read since it was queued is requeued once instead of evicted (second-chance
+ * eviction). Optionally, segments expire a fixed time after they were loaded, so that records of closed shards or
+ * records trimmed from the stream do not linger in the cache.
+ *
+ * <p>By default, cached results are kept as objects on the heap. Alternatively, they can be kept serialized in direct
+ * byte buffers or a memory-mapped file outside of the heap, and deserialized when they are read. That reduces heap
+ * usage and garbage collection overhead for large caches, at the cost of deserializing records on every cache hit.
+ * Only the positions of cached segments remain on the heap.
+ *
+ * <p>Concurrent cache misses at the same shard position are coalesced: only the first loads records from the
+ * underlying stream, and the others wait for and share its result (or exception). This avoids redundant reads that
+ * count against the per-shard read limit when many clients reach the tip of a shard at the same time.
+ *
+ * <p>Optionally, records can be prefetched for shards that are actively consumed: a background task per shard polls
+ * ahead of the furthest position handed to clients, loading at most one page from the underlying stream per polling
+ * interval and staying at most a configured number of pages ahead. Prefetching for a shard stops once no client has
+ * read from it for the configured idle timeout or the end of the shard has been reached.
  */
 public class CachingAmazonDynamoDbStreams extends DelegatingAmazonDynamoDbStreams {
 
-    /**
-     * Replace with com.amazonaws.services.dynamodbv2.streamsadapter.utils.Sleeper when we upgrade
-     */
-    @FunctionalInterface
-    interface Sleeper {
-
-        void sleep(long millis);
-    }
-
     /**
      * Builder for creating instances of caching streams.
      */
@@ -85,25 +109,41 @@ public class CachingAmazonDynamoDbStreams extends DelegatingAmazonDynamoDbStream
         private static final int DEFAULT_MAX_GET_RECORDS_RETRIES = 10;
         private static final long DEFAULT_GET_RECORDS_LIMIT_EXCEEDED_BACKOFF_IN_MILLIS = 1000L;
         private static final int DEFAULT_MAX_ITERATOR_CACHE_SIZE = 100;
+        private static final long DEFAULT_RECORDS_CACHE_TTL_IN_MILLIS = 0L;
+        private static final int DEFAULT_MAX_PREFETCH_DEPTH = 0;
+        private static final long DEFAULT_PREFETCH_INTERVAL_IN_MILLIS = 500L;
+        private static final long DEFAULT_PREFETCH_IDLE_TIMEOUT_IN_MILLIS = 60_000L;
+        private static final int DEFAULT_PREFETCH_THREADS = 4;
+        // the mapped records file exceeds the maximum records byte size by 1/MAPPED_RECORDS_HEADROOM_DIVISOR of it
+        private static final int MAPPED_RECORDS_HEADROOM_DIVISOR = 8;
 
         private final AmazonDynamoDBStreams amazonDynamoDbStreams;
         private Sleeper sleeper;
+        private Ticker ticker = Ticker.systemTicker();
         private long maxRecordsByteSize = DEFAULT_MAX_RECORD_BYTES_CACHED;
+        private long recordsCacheTtlInMillis = DEFAULT_RECORDS_CACHE_TTL_IN_MILLIS;
+        private boolean directRecordsStorage;
+        private Path mappedRecordsFile;
         private int maxIteratorCacheSize = DEFAULT_MAX_ITERATOR_CACHE_SIZE;
         private int maxGetRecordsRetries = DEFAULT_MAX_GET_RECORDS_RETRIES;
         private long getRecordsLimitExceededBackoffInMillis =
             DEFAULT_GET_RECORDS_LIMIT_EXCEEDED_BACKOFF_IN_MILLIS;
+        private int maxPrefetchDepth = DEFAULT_MAX_PREFETCH_DEPTH;
+        private long prefetchIntervalInMillis = DEFAULT_PREFETCH_INTERVAL_IN_MILLIS;
+        private long prefetchIdleTimeoutInMillis = DEFAULT_PREFETCH_IDLE_TIMEOUT_IN_MILLIS;
+        private ScheduledExecutorService prefetchExecutor;
 
         public Builder(AmazonDynamoDBStreams amazonDynamoDbStreams) {
             this.amazonDynamoDbStreams = amazonDynamoDbStreams;
         }
 
         /**
-         * The maximum total sum of {@link StreamRecord#getSizeBytes()} the cache may hold. This is an approximation for
-         * heap size. The actual {@link GetRecordsResult} objects stored in the cache carry additional overhead, so this
-         * value should be used as a rough guideline.
+         * The maximum total heap size of the {@link GetRecordsResult} objects the cache may hold. The heap size of each
+         * cached result is estimated from the objects it references, so this value is an approximation of the heap
+         * space the cache retains. If records are stored serialized outside of the heap, this is the maximum total
+         * serialized size instead.
          *
-         * @param maxRecordsByteSize Maximum cache size in sum of record bytes.
+         * @param maxRecordsByteSize Maximum cache size in estimated bytes retained by cached results.
          * @return This builder.
          */
         public Builder withMaxRecordsByteSize(long maxRecordsByteSize) {
@@ -112,6 +152,60 @@ public class CachingAmazonDynamoDbStreams extends DelegatingAmazonDynamoDbStream
             return this;
         }
 
+        /**
+         * Time after which cached records expire, measured from when they were loaded from the underlying stream.
+         * Should not exceed the stream's retention period of 24 hours, so that records are not served from the cache
+         * after they have been trimmed from the stream. Defaults to 0, which disables expiration.
+         *
+         * @param recordsCacheTtlInMillis Time to live of cached records in millis.
+         * @return This builder.
+         */
+        public Builder withRecordsCacheTtlInMillis(long recordsCacheTtlInMillis) {
+            checkArgument(recordsCacheTtlInMillis >= 0);
+            this.recordsCacheTtlInMillis = recordsCacheTtlInMillis;
+            return this;
+        }
+
+        /**
+         * Keeps cached records serialized in direct byte buffers outside of the heap rather than as objects on the
+         * heap. The maximum records byte size then limits the serialized size of cached records. The JVM's maximum
+         * direct memory size must exceed it, since buffers are freed only once they are garbage collected.
+         *
+         * @return This builder.
+         */
+        public Builder withDirectRecordsStorage() {
+            this.directRecordsStorage = true;
+            this.mappedRecordsFile = null;
+            return this;
+        }
+
+        /**
+         * Keeps cached records serialized in the given memory-mapped file rather than as objects on the heap. The file
+         * is created or overwritten, and the maximum records byte size then limits the serialized size of cached
+         * records. Since records are added to the cache before it evicts others, the file is an eighth larger than the
+         * maximum records byte size. Records that still do not fit into the file are kept on the heap until evicted,
+         * and count against the maximum records byte size with their estimated retained size.
+         *
+         * @param mappedRecordsFile File to map.
+         * @return This builder.
+         */
+        public Builder withMappedRecordsStorage(Path mappedRecordsFile) {
+            this.mappedRecordsFile = checkNotNull(mappedRecordsFile);
+            this.directRecordsStorage = false;
+            return this;
+        }
+
+        /**
+         * Time source used for expiring cached records and idle prefetchers. Defaults to {@link Ticker#systemTicker()}.
+         *
+         * @param ticker Ticker implementation.
+         * @return This builder.
+         */
+        Builder withTicker(Ticker ticker) {
+            this.ticker = checkNotNull(ticker);
+            return this;
+        }
+
         /**
          * Sleep function to use for retry backoff. Defaults to {@link Thread#sleep(long)}.
          *
@@ -160,6 +254,57 @@ public class CachingAmazonDynamoDbStreams extends DelegatingAmazonDynamoDbStream
             return this;
         }
 
+        /**
+         * Maximum number of pages to prefetch ahead of the furthest position any client has read up to in a shard.
+         * Defaults to 0, which disables prefetching.
+         *
+         * @param maxPrefetchDepth Maximum number of pages to prefetch per shard.
+         * @return This builder.
+         */
+        public Builder withMaxPrefetchDepth(int maxPrefetchDepth) {
+            checkArgument(maxPrefetchDepth >= 0);
+            this.maxPrefetchDepth = maxPrefetchDepth;
+            return this;
+        }
+
+        /**
+         * Delay between two consecutive prefetch attempts for the same shard. Each attempt loads at most one page from
+         * the underlying stream, so this bounds the rate at which prefetching reads each shard, which should leave room
+         * for clients within DynamoDB's limit of 5 reads per second per shard.
+         *
+         * @param prefetchIntervalInMillis Prefetch interval in millis.
+         * @return This builder.
+         */
+        public Builder withPrefetchIntervalInMillis(long prefetchIntervalInMillis) {
+            checkArgument(prefetchIntervalInMillis > 0);
+            this.prefetchIntervalInMillis = prefetchIntervalInMillis;
+            return this;
+        }
+
+        /**
+         * Time after which prefetching stops for a shard that no client has read from.
+         *
+         * @param prefetchIdleTimeoutInMillis Idle timeout in millis.
+         * @return This builder.
+         */
+        public Builder withPrefetchIdleTimeoutInMillis(long prefetchIdleTimeoutInMillis) {
+            checkArgument(prefetchIdleTimeoutInMillis >= 0);
+            this.prefetchIdleTimeoutInMillis = prefetchIdleTimeoutInMillis;
+            return this;
+        }
+
+        /**
+         * Executor to run prefetch tasks on. Defaults to a pool of daemon threads owned by the built instance, which is
+         * shut down by {@link CachingAmazonDynamoDbStreams#shutdown()}. A given executor is not shut down.
+         *
+         * @param prefetchExecutor Prefetch executor.
+         * @return This builder.
+         */
+        public Builder withPrefetchExecutor(ScheduledExecutorService prefetchExecutor) {
+            this.prefetchExecutor = checkNotNull(prefetchExecutor);
+            return this;
+        }
+
         /**
          * Build instance using the configured properties.
          *
@@ -167,22 +312,77 @@ public class CachingAmazonDynamoDbStreams extends DelegatingAmazonDynamoDbStream
          */
         public CachingAmazonDynamoDbStreams build() {
             if (sleeper == null) {
-                sleeper = millis -> {
-                    try {
-                        Thread.sleep(millis);
-                    } catch (InterruptedException ie) {
-                        LOG.debug("Sleeper sleep  was interrupted ", ie);
-                        Thread.currentThread().interrupt();
-                    }
-                };
+                sleeper = Sleeper.threadSleeper();
+            }
+            final ResultStore resultStore;
+            if (mappedRecordsFile != null) {
+                // leave room for results stored before the cache has evicted down to its maximum size
+                resultStore = new MappedResultStore(mappedRecordsFile,
+                    maxRecordsByteSize + maxRecordsByteSize / MAPPED_RECORDS_HEADROOM_DIVISOR);
+            } else if (directRecordsStorage) {
+                resultStore = new DirectResultStore();
+            } else {
+                resultStore = new HeapResultStore();
+            }
+            boolean shutdownPrefetchExecutor = false;
+            if (maxPrefetchDepth > 0 && prefetchExecutor == null) {
+                prefetchExecutor = Executors.newScheduledThreadPool(DEFAULT_PREFETCH_THREADS, new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("caching-streams-prefetch-%d")
+                    .build());
+                shutdownPrefetchExecutor = true;
             }
             return new CachingAmazonDynamoDbStreams(
                 amazonDynamoDbStreams,
                 sleeper,
+                ticker,
                 maxRecordsByteSize,
+                recordsCacheTtlInMillis,
+                resultStore,
                 maxGetRecordsRetries,
                 getRecordsLimitExceededBackoffInMillis,
-                maxIteratorCacheSize);
+                maxIteratorCacheSize,
+                maxPrefetchDepth,
+                prefetchIntervalInMillis,
+                prefetchIdleTimeoutInMillis,
+                maxPrefetchDepth > 0 ? prefetchExecutor : null,
+                shutdownPrefetchExecutor);
+        }
+    }
+
+    /**
+     * Identifies a shard of a stream. Used to look up the records cache of a shard.
+     */
+    private static final class StreamShard {
+
+        private final String streamArn;
+        private final String shardId;
+
+        StreamShard(String streamArn, String shardId) {
+            this.streamArn = streamArn;
+            this.shardId = shardId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            StreamShard that = (StreamShard) o;
+            return streamArn.equals(that.streamArn) && shardId.equals(that.shardId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(streamArn, shardId);
+        }
+
+        @Override
+        public String toString() {
+            return streamArn + ITERATOR_SEPARATOR + shardId;
         }
     }
 
@@ -236,6 +436,16 @@ public class CachingAmazonDynamoDbStreams extends DelegatingAmazonDynamoDbStream
             return precedes(getLast(result.getRecords()));
         }
 
+        /**
+         * Returns true if this position precedes any records in the given cached segment, i.e., its last record.
+         *
+         * @param segment Segment to check.
+         * @return True if this position precedes any records in the given segment, false otherwise.
+         */
+        boolean precedesAny(CacheSegment segment) {
+            return sequenceNumber.compareTo(segment.lastSequenceNumber) <= 0;
+        }
+
         /**
          * Returns the position immediately following this one, i.e., the next sequence number in the same stream
          * shard.
@@ -257,6 +467,16 @@ public class CachingAmazonDynamoDbStreams extends DelegatingAmazonDynamoDbStream
             return new IteratorPosition(streamArn, shardId, parseSequenceNumber(getLast(result.getRecords()))).next();
         }
 
+        /**
+         * Returns the position immediately following the last record in the given cached segment.
+         *
+         * @param segment Segment to position after.
+         * @return IteratorPosition immediately following the last record sequence number in the segment.
+         */
+        IteratorPosition positionAfterSegment(CacheSegment segment) {
+            return new IteratorPosition(streamArn, shardId, segment.lastSequenceNumber).next();
+        }
+
         /**
          * Returns a shard iterator that starts after the last record in the given result.
          *
@@ -291,13 +511,12 @@ public class CachingAmazonDynamoDbStreams extends DelegatingAmazonDynamoDbStream
         }
 
         /**
-         * Checks whether the given iterator position has the same streamArn and shardId.
+         * Returns the stream shard of this position.
          *
-         * @param o Other iterator position.
-         * @return true if the other iterator position has the same same streamArn and shardId, false otherwise.
+         * @return Stream shard.
          */
-        boolean equalsShard(IteratorPosition o) {
-            return streamArn.equals(o.streamArn) && shardId.equals(o.shardId);
+        StreamShard getStreamShard() {
+            return new StreamShard(streamArn, shardId);
         }
 
         /**
@@ -594,6 +813,174 @@ public class CachingAmazonDynamoDbStreams extends DelegatingAmazonDynamoDbStream
         }
     }
 
+    /**
+     * The cached segments of a single stream shard, indexed on position for efficient position-based lookups. All
+     * fields are guarded by the lock.
+     */
+    private static final class ShardCache {
+
+        private final StreamShard streamShard;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final NavigableMap<IteratorPosition, CacheSegment> segments = new TreeMap<>();
+        // set once the shard cache has been removed from the records cache after its last segment was evicted
+        private boolean retired;
+
+        ShardCache(StreamShard streamShard) {
+            this.streamShard = streamShard;
+        }
+    }
+
+    /**
+     * A cached segment, i.e., a non-empty result cached under the position it was loaded from. The result itself is
+     * held by the result store; the segment only keeps what is needed to find and merge segments without accessing it.
+     */
+    private static final class CacheSegment {
+
+        private final ShardCache shardCache;
+        private final IteratorPosition position;
+        private final StoredResult result;
+        private final BigInteger lastSequenceNumber;
+        private final int recordCount;
+        private final long byteSize;
+        private final long loadedNanos;
+        // set when the segment is removed from its shard cache, while holding the shard cache lock
+        private volatile boolean removed;
+        // set when the segment is read, cleared when the segment is requeued for eviction
+        private volatile boolean referenced;
+
+        CacheSegment(ShardCache shardCache, IteratorPosition position, GetRecordsResult result,
+            StoredResult storedResult, long loadedNanos) {
+            this.shardCache = shardCache;
+            this.position = position;
+            this.result = storedResult;
+            this.lastSequenceNumber = parseSequenceNumber(getLast(result.getRecords()));
+            this.recordCount = result.getRecords().size();
+            this.byteSize = storedResult.getByteSize();
+            this.loadedNanos = loadedNanos;
+        }
+    }
+
+    /**
+     * Prefetches records of a single stream shard ahead of the furthest position handed to clients. Runs periodically
+     * on the prefetch executor until stopped. Consumer state is guarded by this instance's monitor.
+     */
+    private final class ShardPrefetcher implements Runnable {
+
+        private final StreamShard streamShard;
+        private CachingShardIterator consumerIterator;
+        private IteratorPosition consumerPosition;
+        private long lastConsumedNanos;
+        private ScheduledFuture<?> future;
+        private boolean stopped;
+
+        ShardPrefetcher(StreamShard streamShard) {
+            this.streamShard = streamShard;
+            this.lastConsumedNanos = ticker.read();
+        }
+
+        /**
+         * Schedules this prefetcher, unless it has been stopped or prefetching has been shut down in the meantime, or
+         * the executor rejects it.
+         *
+         * @return True if this prefetcher was scheduled, false otherwise.
+         */
+        synchronized boolean start() {
+            if (stopped || prefetchShutdown) {
+                stop();
+                return false;
+            }
+            try {
+                future = prefetchExecutor.scheduleWithFixedDelay(this, prefetchIntervalInMillis,
+                    prefetchIntervalInMillis, TimeUnit.MILLISECONDS);
+                return true;
+            } catch (RejectedExecutionException e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Prefetch executor rejected shard {}", streamShard, e);
+                }
+                stop();
+                return false;
+            }
+        }
+
+        synchronized void stop() {
+            if (!stopped) {
+                stopped = true;
+                if (future != null) {
+                    future.cancel(false);
+                }
+                prefetchers.remove(streamShard, this);
+            }
+        }
+
+        /**
+         * Records that a client has been handed an iterator for the given position.
+         *
+         * @param iterator Iterator handed to the client.
+         * @param position Resolved position of the iterator.
+         * @return False if this prefetcher has already been stopped, true otherwise.
+         */
+        synchronized boolean onConsumed(CachingShardIterator iterator, IteratorPosition position) {
+            if (stopped) {
+                return false;
+            }
+            if (consumerPosition == null || consumerPosition.compareTo(position) < 0) {
+                consumerIterator = iterator;
+                consumerPosition = position;
+            }
+            lastConsumedNanos = ticker.read();
+            return true;
+        }
+
+        @Override
+        public void run() {
+            CachingShardIterator iterator;
+            synchronized (this) {
+                if (stopped) {
+                    return;
+                }
+                long idleNanos = ticker.read() - lastConsumedNanos;
+                if (idleNanos > TimeUnit.MILLISECONDS.toNanos(prefetchIdleTimeoutInMillis)) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Stopping prefetch for idle shard {}", streamShard);
+                    }
+                    stop();
+                    return;
+                }
+                iterator = consumerIterator;
+            }
+            if (iterator == null) {
+                return;
+            }
+
+            try {
+                // skip over cached pages and load the first missing one, unless we are already far enough ahead
+                for (int depth = 0; depth < maxPrefetchDepth; depth++) {
+                    Optional<GetRecordsResult> cached = iterator.resolvePosition()
+                        .flatMap(CachingAmazonDynamoDbStreams.this::getFromCache);
+                    GetRecordsResult result = cached.isPresent() ? cached.get() : getRecords(iterator);
+                    if (result.getNextShardIterator() == null) {
+                        // end of shard, nothing left to prefetch
+                        if (LOG.isDebugEnabled()) {
+                            LOG.debug("Stopping prefetch for closed shard {}", streamShard);
+                        }
+                        stop();
+                        return;
+                    }
+                    if (!cached.isPresent() || result.getRecords().isEmpty()) {
+                        // loaded one page or reached the tip of the shard: try again next time
+                        return;
+                    }
+                    iterator = CachingShardIterator.fromExternalString(result.getNextShardIterator());
+                }
+            } catch (RuntimeException e) {
+                // don't propagate, since that would suppress subsequent executions
+                if (LOG.isWarnEnabled()) {
+                    LOG.warn("Prefetch failed: iterator={}", iterator, e);
+                }
+            }
+        }
+    }
+
     // logger instance
     private static final Logger LOG = LoggerFactory.getLogger(CachingAmazonDynamoDbStreams.class);
 
@@ -645,43 +1032,104 @@ public class CachingAmazonDynamoDbStreams extends DelegatingAmazonDynamoDbStream
 
     // configuration properties
     private final Sleeper sleeper;
+    private final Ticker ticker;
     private final long maxRecordsByteSize;
+    private final long recordsCacheTtlNanos;
+    private final ResultStore resultStore;
     private final int maxGetRecordsRetries;
     private final long getRecordsLimitExceededBackoffInMillis;
-
-    // cache for quasi-immutable values that maintains insertion order for LRU removal
-    private final Map<IteratorPosition, GetRecordsResult> recordsCache;
-    // index on position for efficient position-based cache lookups
-    private final NavigableMap<IteratorPosition, GetRecordsResult> recordsCacheIndex;
-    // looks for mutating lock
-    private final ReadWriteLock recordsCacheLock;
+    private final int maxPrefetchDepth;
+    private final long prefetchIntervalInMillis;
+    private final long prefetchIdleTimeoutInMillis;
+    private final ScheduledExecutorService prefetchExecutor;
+    private final boolean shutdownPrefetchExecutor;
+
+    // cached segments of each stream shard
+    private final ConcurrentMap<StreamShard, ShardCache> recordsCache;
+    // cached segments in insertion (or requeue) order for eviction across shards; may contain removed segments
+    private final Queue<CacheSegment> recordsCacheEvictionQueue;
+    // approximate number of removed segments in the eviction queue, may overcount
+    private final AtomicInteger recordsCacheRemovedSegments;
+    // number of cached segments >= 0
+    private final AtomicInteger recordsCacheSegments;
     // size of cache >= 0
-    private long recordsCacheByteSize;
+    private final AtomicLong recordsCacheByteSize;
+
+    // loads from the underlying stream that are in progress, by position (or iterator, if not resolvable)
+    private final ConcurrentMap<Object, CompletableFuture<GetRecordsResult>> inFlightLoads;
 
     // iterator cache
     private final LoadingCache<CachingShardIterator, String> iteratorCache;
 
+    // prefetchers of shards that are actively consumed, null if prefetching is disabled
+    private final ConcurrentMap<StreamShard, ShardPrefetcher> prefetchers;
+    // set once shut down, so that no new prefetchers are started
+    private volatile boolean prefetchShutdown;
+
     private CachingAmazonDynamoDbStreams(AmazonDynamoDBStreams amazonDynamoDbStreams,
         Sleeper sleeper,
+        Ticker ticker,
         long maxRecordsByteSize,
+        long recordsCacheTtlInMillis,
+        ResultStore resultStore,
         int maxGetRecordsRetries,
         long getRecordsLimitExceededBackoffInMillis,
-        int maxIteratorCacheSize) {
+        int maxIteratorCacheSize,
+        int maxPrefetchDepth,
+        long prefetchIntervalInMillis,
+        long prefetchIdleTimeoutInMillis,
+        @Nullable ScheduledExecutorService prefetchExecutor,
+        boolean shutdownPrefetchExecutor) {
         super(amazonDynamoDbStreams);
         this.sleeper = sleeper;
+        this.ticker = ticker;
         this.maxRecordsByteSize = maxRecordsByteSize;
+        this.recordsCacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(recordsCacheTtlInMillis);
+        this.resultStore = resultStore;
         this.maxGetRecordsRetries = maxGetRecordsRetries;
         this.getRecordsLimitExceededBackoffInMillis = getRecordsLimitExceededBackoffInMillis;
-
-        this.recordsCache = new LinkedHashMap<>();
-        this.recordsCacheIndex = new TreeMap<>();
-        this.recordsCacheByteSize = 0L;
-        this.recordsCacheLock = new ReentrantReadWriteLock();
+        this.maxPrefetchDepth = maxPrefetchDepth;
+        this.prefetchIntervalInMillis = prefetchIntervalInMillis;
+        this.prefetchIdleTimeoutInMillis = prefetchIdleTimeoutInMillis;
+        this.prefetchExecutor = prefetchExecutor;
+        this.shutdownPrefetchExecutor = shutdownPrefetchExecutor;
+
+        this.recordsCache = new ConcurrentHashMap<>();
+        this.recordsCacheEvictionQueue = new ConcurrentLinkedQueue<>();
+        this.recordsCacheRemovedSegments = new AtomicInteger();
+        this.recordsCacheSegments = new AtomicInteger();
+        this.recordsCacheByteSize = new AtomicLong();
+        this.inFlightLoads = new ConcurrentHashMap<>();
 
         this.iteratorCache = CacheBuilder
             .newBuilder()
             .maximumSize(maxIteratorCacheSize)
             .build(CacheLoader.from(this::loadShardIterator));
+
+        this.prefetchers = prefetchExecutor == null ? null : new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Stops prefetching records for all shards and shuts down the prefetch executor, unless it was provided to the
+     * builder. Has no effect if prefetching is disabled.
+     */
+    public void shutdown() {
+        if (prefetchers != null) {
+            prefetchShutdown = true;
+            prefetchers.values().forEach(ShardPrefetcher::stop);
+            if (shutdownPrefetchExecutor) {
+                prefetchExecutor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of shards records are currently being prefetched for.
+     *
+     * @return Number of prefetched shards.
+     */
+    int getPrefetchedShardCount() {
+        return prefetchers == null ? 0 : prefetchers.size();
     }
 
     private String loadShardIterator(CachingShardIterator iterator) {
@@ -735,6 +1183,13 @@ public class CachingAmazonDynamoDbStreams extends DelegatingAmazonDynamoDbStream
         // apply limit if applicable
         final GetRecordsResult result = applyLimit(request.getLimit(), iterator, loadedResult);
 
+        // track position of consumer for prefetching if applicable
+        if (prefetchers != null && !prefetchShutdown && result.getNextShardIterator() != null) {
+            final CachingShardIterator nextIterator =
+                CachingShardIterator.fromExternalString(result.getNextShardIterator());
+            nextIterator.resolvePosition().ifPresent(position -> prefetch(nextIterator, position));
+        }
+
         if (LOG.isDebugEnabled()) {
             LOG.debug("getRecords result={}", toShortString(result));
         }
@@ -743,12 +1198,57 @@ public class CachingAmazonDynamoDbStreams extends DelegatingAmazonDynamoDbStream
     }
 
     /**
-     * Gets records for the given shard iterator position using the record and iterator cache.
+     * Gets records for the given shard iterator position using the record and iterator cache. If records for the
+     * position are already being loaded by another thread, waits for that load instead of loading them again.
      *
      * @param iterator Position in the a given stream shard for which to retrieve records
      * @return Results loaded from the cache or underlying stream
      */
     private GetRecordsResult getRecords(CachingShardIterator iterator) {
+        // if iterator is resolvable, try to lookup records in cache without coordinating with other threads
+        Optional<GetRecordsResult> cached = iterator.resolvePosition().flatMap(this::getFromCache);
+        if (cached.isPresent()) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("getRecords cache hit: iterator={}, result={}", iterator, toShortString(cached.get()));
+            }
+            return cached.get();
+        }
+
+        final Object loadKey = iterator.resolvePosition().<Object>map(position -> position).orElse(iterator);
+        final CompletableFuture<GetRecordsResult> load = new CompletableFuture<>();
+        final CompletableFuture<GetRecordsResult> inFlightLoad = inFlightLoads.putIfAbsent(loadKey, load);
+        if (inFlightLoad != null) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("getRecords waiting for in-flight load: iterator={}", iterator);
+            }
+            try {
+                return inFlightLoad.join();
+            } catch (CompletionException e) {
+                throwIfUnchecked(e.getCause());
+                throw e;
+            }
+        }
+        try {
+            GetRecordsResult result = loadRecords(iterator);
+            load.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            // complete in any case, so that waiting threads do not wait forever
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightLoads.remove(loadKey, load);
+        }
+    }
+
+    /**
+     * Loads records for the given shard iterator position into the cache, unless they have been cached in the meantime,
+     * and retries if the underlying stream's read limit is exceeded.
+     *
+     * @param iterator Position in the a given stream shard for which to retrieve records
+     * @return Results loaded from the cache or underlying stream
+     */
+    private GetRecordsResult loadRecords(CachingShardIterator iterator) {
         int getRecordsRetries = 0;
         while (getRecordsRetries < maxGetRecordsRetries) {
             // if iterator is resolvable, try to lookup records in cache
@@ -833,19 +1333,32 @@ public class CachingAmazonDynamoDbStreams extends DelegatingAmazonDynamoDbStream
             IteratorPosition loadedPosition = iterator.resolvePosition(loadedRecords);
             Optional<GetRecordsResult> cachedResult;
             GetRecordsResult result;
-            final Lock writeLock = recordsCacheLock.writeLock();
-            writeLock.lock();
-            try {
-                // Add retrieved records to cache under resolved position
-                cachedResult = addToCache(loadedPosition, loadedRecordsResult);
-
-                // now lookup result: may not be exactly what we loaded if we merged result with other segments.
-                // can also be empty if the cache is too small to hold the result, in which case we just return loaded.
-                result = getFromCache(loadedPosition).orElse(loadedRecordsResult);
-            } finally {
-                writeLock.unlock();
+            while (true) {
+                final ShardCache shardCache =
+                    recordsCache.computeIfAbsent(loadedPosition.getStreamShard(), ShardCache::new);
+                final Lock writeLock = shardCache.lock.writeLock();
+                writeLock.lock();
+                try {
+                    if (shardCache.retired) {
+                        // shard cache was emptied by eviction and removed concurrently; get a new one
+                        continue;
+                    }
+
+                    // Add retrieved records to cache under resolved position
+                    cachedResult = addToCache(shardCache, loadedPosition, loadedRecordsResult);
+
+                    // now lookup result: may not be exactly what we loaded if we merged result with other segments.
+                    result = getFromCache(shardCache, loadedPosition).orElse(loadedRecordsResult);
+                    break;
+                } finally {
+                    writeLock.unlock();
+                }
             }
 
+            // evict outside of critical section, since it locks the shards of the evicted segments; the loaded result
+            // may be evicted right away if the cache is too small to hold it, in which case we just return it
+            evictFromCache();
+
             // log cache  outside of critical section
             if (LOG.isDebugEnabled()) {
                 LOG.debug("getRecords cached result={}", cachedResult);
@@ -860,6 +1373,40 @@ public class CachingAmazonDynamoDbStreams extends DelegatingAmazonDynamoDbStream
         throw new LimitExceededException("Exhausted GetRecords retry limit.");
     }
 
+    /**
+     * Records that a client is about to read from the given position and starts prefetching records for its shard if
+     * no prefetcher is running yet.
+     *
+     * @param iterator Iterator handed to the client
+     * @param position Resolved position of the iterator
+     */
+    private void prefetch(CachingShardIterator iterator, IteratorPosition position) {
+        final StreamShard streamShard = position.getStreamShard();
+        while (!prefetchShutdown) {
+            ShardPrefetcher prefetcher = prefetchers.get(streamShard);
+            if (prefetcher == null) {
+                // schedule outside of the map, so that a rejected or stopped prefetcher is never left in it
+                final ShardPrefetcher newPrefetcher = new ShardPrefetcher(streamShard);
+                prefetcher = prefetchers.putIfAbsent(streamShard, newPrefetcher);
+                if (prefetcher == null) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Starting prefetch for shard {}", streamShard);
+                    }
+                    if (!newPrefetcher.start()) {
+                        // shut down or rejected by the executor: skip prefetching rather than fail the client's read
+                        return;
+                    }
+                    prefetcher = newPrefetcher;
+                }
+            }
+            if (prefetcher.onConsumed(iterator, position)) {
+                return;
+            }
+            // prefetcher was stopped concurrently; remove it (if it hasn't been yet) and start a new one
+            prefetchers.remove(streamShard, prefetcher);
+        }
+    }
+
     /**
      * Reduces the result based on the limit if present.
      *
@@ -883,181 +1430,304 @@ public class CachingAmazonDynamoDbStreams extends DelegatingAmazonDynamoDbStream
     }
 
     /**
-     * Looks up cached result for given position. Acquires read lock to access cache, but may be called with read or
-     * write lock held, since lock is reentrant.
+     * Looks up cached result for given position. Acquires the read lock of the position's shard to access the cache.
      *
      * @param position Iterator for which to retrieve matching records from the cache
      * @return List of matching (i.e., immediately succeeding iterator) cached records or empty list if none match
      */
     private Optional<GetRecordsResult> getFromCache(IteratorPosition position) {
-        final Lock readLock = recordsCacheLock.readLock();
+        final ShardCache shardCache = recordsCache.get(position.getStreamShard());
+        if (shardCache == null) {
+            return Optional.empty();
+        }
+        final Lock readLock = shardCache.lock.readLock();
         readLock.lock();
         try {
-            final Optional<GetRecordsResult> cachedRecordsResult;
-            final Map.Entry<IteratorPosition, GetRecordsResult> previousCacheEntry = getFloorCacheEntry(position);
-            if (previousCacheEntry == null) {
-                // no matching cache entry found
-                cachedRecordsResult = Optional.empty();
-            } else {
-                IteratorPosition previousPosition = previousCacheEntry.getKey();
-                GetRecordsResult previousResult = previousCacheEntry.getValue();
-                if (position.equals(previousPosition)) {
-                    // exact iterator hit (hopefully common case), return all cached records
-                    cachedRecordsResult = Optional.of(previousResult);
-                } else if (position.equalsShard(previousPosition) && position.precedesAny(previousResult)) {
-                    // Cache entry contains records that match (i.e., come after) the requested iterator
-                    // position: Filter cached records to those that match. Return only that subset, to increase
-                    // the chance of using a shared iterator position on the next getRecords call.
-                    final List<Record> matchingCachedRecords = previousResult.getRecords().stream()
-                        .filter(position)
-                        .collect(toList());
-                    return Optional.of(new GetRecordsResult()
-                        .withRecords(matchingCachedRecords)
-                        .withNextShardIterator(previousResult.getNextShardIterator()));
-                } else {
-                    // no cached records in the preceding cache entry match the requested position (i.e., all records
-                    // precede it)
-                    cachedRecordsResult = Optional.empty();
-                }
-            }
-            return cachedRecordsResult;
+            return findSegment(shardCache, position).map(segment -> {
+                // remember the read, so that the segment is evicted after segments that have not been read
+                segment.referenced = true;
+                return getFromSegment(segment, position);
+            });
         } finally {
             readLock.unlock();
         }
     }
 
+    /**
+     * Looks up cached result for given position in the given shard cache. Must be called with the shard cache's read or
+     * write lock held.
+     *
+     * @param shardCache Cache of the position's shard
+     * @param position Iterator for which to retrieve matching records from the cache
+     * @return List of matching (i.e., immediately succeeding iterator) cached records or empty list if none match
+     */
+    private Optional<GetRecordsResult> getFromCache(ShardCache shardCache, IteratorPosition position) {
+        return findSegment(shardCache, position).map(segment -> getFromSegment(segment, position));
+    }
+
+    /**
+     * Finds the unexpired segment in the given shard cache that contains records at or after the given position. Must
+     * be called with the shard cache's read or write lock held.
+     *
+     * @param shardCache Cache of the position's shard
+     * @param position Iterator for which to find the matching segment
+     * @return Matching segment or empty if none matches
+     */
+    private Optional<CacheSegment> findSegment(ShardCache shardCache, IteratorPosition position) {
+        final Entry<IteratorPosition, CacheSegment> previousCacheEntry = shardCache.segments.floorEntry(position);
+        if (previousCacheEntry == null) {
+            // no matching cache entry found
+            return Optional.empty();
+        }
+        final CacheSegment previousSegment = previousCacheEntry.getValue();
+        if (isExpired(previousSegment)) {
+            // treat expired segments as absent; they are removed when records are added to the shard cache
+            return Optional.empty();
+        }
+        if (position.equals(previousCacheEntry.getKey()) || position.precedesAny(previousSegment)) {
+            return Optional.of(previousSegment);
+        }
+        // no cached records in the preceding cache entry match the requested position (i.e., all records precede it)
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the records of the given segment at or after the given position.
+     *
+     * @param segment Segment that contains records at or after the position
+     * @param position Iterator for which to retrieve matching records
+     * @return Matching (i.e., immediately succeeding iterator) cached records
+     */
+    private GetRecordsResult getFromSegment(CacheSegment segment, IteratorPosition position) {
+        final GetRecordsResult result = segment.result.get();
+        if (position.equals(segment.position)) {
+            // exact iterator hit (hopefully common case), return all cached records
+            return result;
+        }
+        // Cache entry contains records that match (i.e., come after) the requested iterator
+        // position: Filter cached records to those that match. Return only that subset, to increase
+        // the chance of using a shared iterator position on the next getRecords call.
+        final List<Record> matchingCachedRecords = result.getRecords().stream()
+            .filter(position)
+            .collect(toList());
+        return new GetRecordsResult()
+            .withRecords(matchingCachedRecords)
+            .withNextShardIterator(result.getNextShardIterator());
+    }
+
+    private boolean isExpired(CacheSegment segment) {
+        return recordsCacheTtlNanos > 0 && ticker.read() - segment.loadedNanos >= recordsCacheTtlNanos;
+    }
+
     /**
      * Adds the given loaded result into the cache under the given loaded position. Discards records that overlap with
      * existing cache entries. If the entry is adjacent to existing entries, it will merge them, provided the resulting
      * record list does not exceed {@link #GET_RECORDS_LIMIT}. Returns the result that was actually added to the cache
      * (which may include merged records). The loaded position may precede the first record, since seqeuence numbers are
-     * not contiguous.
+     * not contiguous. Must be called with the shard cache's write lock held.
      *
+     * @param shardCache Cache of the loaded position's shard.
      * @param loadedPosition Position from which the result was loaded in the stream.
      * @param loadedResult Result loaded for the given position.
      * @return Result actually added to cache. Empty if all records were already present in cache for position.
      */
-    private Optional<GetRecordsResult> addToCache(IteratorPosition loadedPosition, GetRecordsResult loadedResult) {
-        final Lock writeLock = recordsCacheLock.writeLock();
-        writeLock.lock();
-        try {
-            IteratorPosition cachePosition = loadedPosition;
-            GetRecordsResult cacheResult = new GetRecordsResult()
-                .withRecords(loadedResult.getRecords())
-                .withNextShardIterator(loadedResult.getNextShardIterator() == null ? null
-                    : loadedPosition.iteratorAfterResult(loadedResult).toExternalString());
-
-            boolean predecessorAdjacent = false;
-            final Entry<IteratorPosition, GetRecordsResult> predecessor = getFloorCacheEntry(loadedPosition);
-            if (predecessor != null && loadedPosition.equalsShard(predecessor.getKey())) {
-                GetRecordsResult predecessorResult = predecessor.getValue();
-                if (loadedPosition.precedesAny(predecessorResult)) {
-                    // the previous cache entry overlaps with the records we retrieved: filter out overlapping records
-                    // (by reducing the loaded records to those that come after the last predecessor record)
-                    cachePosition = loadedPosition.positionAfterResult(predecessorResult);
-                    cacheResult.setRecords(cacheResult.getRecords().stream()
-                        .filter(cachePosition)
-                        .collect(toList()));
-                    // if all retrieved records are contained in the predecessor, we have nothing to add
-                    if (cacheResult.getRecords().isEmpty()) {
-                        return Optional.empty();
-                    }
-                    predecessorAdjacent = true;
-                } else {
-                    //
-                    predecessorAdjacent = loadedPosition.equals(loadedPosition.positionAfterResult(predecessorResult));
+    private Optional<GetRecordsResult> addToCache(ShardCache shardCache, IteratorPosition loadedPosition,
+        GetRecordsResult loadedResult) {
+        // remove expired segments first, so that loaded records replace rather than merge with expired ones
+        if (recordsCacheTtlNanos > 0) {
+            new ArrayList<>(shardCache.segments.values()).stream()
+                .filter(this::isExpired)
+                .forEach(this::removeCacheSegment);
+        }
+
+        IteratorPosition cachePosition = loadedPosition;
+        // merged segments expire when the records that were loaded first expire
+        long loadedNanos = ticker.read();
+        GetRecordsResult cacheResult = new GetRecordsResult()
+            .withRecords(loadedResult.getRecords())
+            .withNextShardIterator(loadedResult.getNextShardIterator() == null ? null
+                : loadedPosition.iteratorAfterResult(loadedResult).toExternalString());
+
+        boolean predecessorAdjacent = false;
+        final Entry<IteratorPosition, CacheSegment> predecessor = shardCache.segments.floorEntry(loadedPosition);
+        if (predecessor != null) {
+            CacheSegment predecessorSegment = predecessor.getValue();
+            if (loadedPosition.precedesAny(predecessorSegment)) {
+                // the previous cache entry overlaps with the records we retrieved: filter out overlapping records
+                // (by reducing the loaded records to those that come after the last predecessor record)
+                cachePosition = loadedPosition.positionAfterSegment(predecessorSegment);
+                cacheResult.setRecords(cacheResult.getRecords().stream()
+                    .filter(cachePosition)
+                    .collect(toList()));
+                // if all retrieved records are contained in the predecessor, we have nothing to add
+                if (cacheResult.getRecords().isEmpty()) {
+                    return Optional.empty();
                 }
+                predecessorAdjacent = true;
+            } else {
+                //
+                predecessorAdjacent = loadedPosition.equals(loadedPosition.positionAfterSegment(predecessorSegment));
             }
+        }
 
-            boolean successorAdjacent = false;
-            final Entry<IteratorPosition, GetRecordsResult> successor = getHigherCacheEntry(cachePosition);
-            if (successor != null && cachePosition.equalsShard(successor.getKey())) {
-                IteratorPosition successorPosition = successor.getKey();
-                if (successorPosition.precedesAny(cacheResult)) {
-                    // the succeeding cache entry overlaps with loaded records: filter out overlapping records
-                    // (by reducing the loaded records to those that come before the successor starting position)
-                    cacheResult.setRecords(cacheResult.getRecords().stream()
-                        .filter(successorPosition.negate())
-                        .collect(toList()));
-
-                    if (cacheResult.getRecords().isEmpty()) {
-                        // if all retrieved records are contained in the successor, reindex (and maybe merge) successor
-                        removeCacheEntry(successor);
-                        cacheResult = successor.getValue();
-                        successorAdjacent = false;
-                    } else {
-                        // if some of the retrieved records are not contained in the next segment,
-                        cacheResult.setNextShardIterator(
-                            cachePosition.iteratorAfterResult(cacheResult).toExternalString());
-                        successorAdjacent = true;
-                    }
+        boolean successorAdjacent = false;
+        final Entry<IteratorPosition, CacheSegment> successor = shardCache.segments.higherEntry(cachePosition);
+        if (successor != null) {
+            IteratorPosition successorPosition = successor.getKey();
+            if (successorPosition.precedesAny(cacheResult)) {
+                // the succeeding cache entry overlaps with loaded records: filter out overlapping records
+                // (by reducing the loaded records to those that come before the successor starting position)
+                cacheResult.setRecords(cacheResult.getRecords().stream()
+                    .filter(successorPosition.negate())
+                    .collect(toList()));
+
+                if (cacheResult.getRecords().isEmpty()) {
+                    // if all retrieved records are contained in the successor, reindex (and maybe merge) successor
+                    cacheResult = successor.getValue().result.get();
+                    loadedNanos = successor.getValue().loadedNanos;
+                    removeCacheSegment(successor.getValue());
+                    successorAdjacent = false;
                 } else {
-                    successorAdjacent = successorPosition.equals(cachePosition.positionAfterResult(cacheResult));
+                    // if some of the retrieved records are not contained in the next segment,
+                    cacheResult.setNextShardIterator(
+                        cachePosition.iteratorAfterResult(cacheResult).toExternalString());
+                    successorAdjacent = true;
                 }
+            } else {
+                successorAdjacent = successorPosition.equals(cachePosition.positionAfterResult(cacheResult));
             }
+        }
 
-            if (predecessorAdjacent) {
-                int totalSize = predecessor.getValue().getRecords().size() + cacheResult.getRecords().size();
-                if (totalSize <= GET_RECORDS_LIMIT) {
-                    List<Record> mergedRecords = new ArrayList<>(totalSize);
-                    mergedRecords.addAll(predecessor.getValue().getRecords());
-                    mergedRecords.addAll(cacheResult.getRecords());
-                    cacheResult.setRecords(mergedRecords);
-                    cachePosition = predecessor.getKey();
-                    removeCacheEntry(predecessor);
-                }
+        if (predecessorAdjacent) {
+            int totalSize = predecessor.getValue().recordCount + cacheResult.getRecords().size();
+            if (totalSize <= GET_RECORDS_LIMIT) {
+                GetRecordsResult predecessorResult = predecessor.getValue().result.get();
+                List<Record> mergedRecords = new ArrayList<>(totalSize);
+                mergedRecords.addAll(predecessorResult.getRecords());
+                mergedRecords.addAll(cacheResult.getRecords());
+                cacheResult.setRecords(mergedRecords);
+                cachePosition = predecessor.getKey();
+                loadedNanos = Math.min(loadedNanos, predecessor.getValue().loadedNanos);
+                removeCacheSegment(predecessor.getValue());
             }
-            if (successorAdjacent) {
-                int totalSize = cacheResult.getRecords().size() + successor.getValue().getRecords().size();
-                if (totalSize <= GET_RECORDS_LIMIT) {
-                    List<Record> mergedRecords = new ArrayList<>(totalSize);
-                    mergedRecords.addAll(cacheResult.getRecords());
-                    mergedRecords.addAll(successor.getValue().getRecords());
-                    cacheResult.setRecords(mergedRecords);
-                    cacheResult.setNextShardIterator(successor.getValue().getNextShardIterator());
-                    removeCacheEntry(successor);
-                }
+        }
+        if (successorAdjacent) {
+            int totalSize = cacheResult.getRecords().size() + successor.getValue().recordCount;
+            if (totalSize <= GET_RECORDS_LIMIT) {
+                GetRecordsResult successorResult = successor.getValue().result.get();
+                List<Record> mergedRecords = new ArrayList<>(totalSize);
+                mergedRecords.addAll(cacheResult.getRecords());
+                mergedRecords.addAll(successorResult.getRecords());
+                cacheResult.setRecords(mergedRecords);
+                cacheResult.setNextShardIterator(successorResult.getNextShardIterator());
+                loadedNanos = Math.min(loadedNanos, successor.getValue().loadedNanos);
+                removeCacheSegment(successor.getValue());
             }
+        }
 
-            addCacheEntry(cachePosition, cacheResult);
+        addCacheSegment(shardCache, cachePosition, cacheResult, loadedNanos);
 
-            return Optional.of(cacheResult);
-        } finally {
-            writeLock.unlock();
-        }
+        return Optional.of(cacheResult);
     }
 
-    private void addCacheEntry(IteratorPosition key, GetRecordsResult value) {
-        GetRecordsResult previous = recordsCache.put(key, value);
-        assert previous == null;
-        previous = recordsCacheIndex.put(key, value);
+    /*
+     * Adds a segment to the given shard cache and the end of the eviction queue. Must be called with the shard cache's
+     * write lock held.
+     */
+    private void addCacheSegment(ShardCache shardCache, IteratorPosition position, GetRecordsResult result,
+        long loadedNanos) {
+        CacheSegment segment = new CacheSegment(shardCache, position, result, resultStore.store(result), loadedNanos);
+        CacheSegment previous = shardCache.segments.put(position, segment);
         assert previous == null;
-        recordsCacheByteSize += getByteSize(value);
-        // LRU behavior
-        while (recordsCacheByteSize > maxRecordsByteSize) {
-            removeCacheEntry(recordsCache.entrySet().iterator().next());
-        }
+        recordsCacheEvictionQueue.add(segment);
+        recordsCacheSegments.incrementAndGet();
+        recordsCacheByteSize.addAndGet(segment.byteSize);
     }
 
-    private void removeCacheEntry(Entry<IteratorPosition, GetRecordsResult> entry) {
-        GetRecordsResult previous = recordsCache.remove(entry.getKey());
-        assert previous == entry.getValue();
-        previous = recordsCacheIndex.remove(entry.getKey());
-        assert previous == entry.getValue();
-        recordsCacheByteSize -= getByteSize(entry.getValue());
-        assert recordsCacheByteSize >= 0;
+    /*
+     * Removes a segment that is being merged or reindexed from its shard cache. The segment remains in the eviction
+     * queue, so once removed segments outnumber cached ones, the queue is purged. Must be called with the shard cache's
+     * write lock held.
+     */
+    private void removeCacheSegment(CacheSegment segment) {
+        removeFromShardCache(segment);
+        if (recordsCacheRemovedSegments.incrementAndGet() > recordsCacheSegments.get()) {
+            recordsCacheRemovedSegments.set(0);
+            recordsCacheEvictionQueue.removeIf(queued -> queued.removed);
+        }
     }
 
-    private long getByteSize(GetRecordsResult value) {
-        return value.getRecords().stream().map(Record::getDynamodb).mapToLong(StreamRecord::getSizeBytes).sum();
+    private void removeFromShardCache(CacheSegment segment) {
+        CacheSegment previous = segment.shardCache.segments.remove(segment.position);
+        assert previous == segment;
+        segment.removed = true;
+        // segments are only read with their shard cache's lock held, so no one can be reading the result anymore
+        segment.result.release();
+        recordsCacheSegments.decrementAndGet();
+        long byteSize = recordsCacheByteSize.addAndGet(-segment.byteSize);
+        assert byteSize >= 0;
     }
 
-    private Entry<IteratorPosition, GetRecordsResult> getFloorCacheEntry(IteratorPosition position) {
-        return recordsCacheIndex.floorEntry(position);
+    /*
+     * Evicts segments until the cache does not exceed its maximum size, and then evicts expired segments at the head of
+     * the eviction queue. A segment that has been read since it was queued is requeued once instead of evicted, so
+     * that segments are evicted in approximately least recently used order. Locks the shard cache of one evicted
+     * segment at a time, so must not be called with any shard cache lock held.
+     */
+    private void evictFromCache() {
+        while (true) {
+            final boolean full = recordsCacheByteSize.get() > maxRecordsByteSize;
+            if (!full) {
+                final CacheSegment head = recordsCacheEvictionQueue.peek();
+                if (head == null || !(head.removed || isExpired(head))) {
+                    return;
+                }
+            }
+            final CacheSegment segment = recordsCacheEvictionQueue.poll();
+            if (segment == null) {
+                // segments are being added concurrently and will be evicted by the threads adding them
+                return;
+            }
+            if (segment.removed) {
+                continue;
+            }
+            if (!isExpired(segment)) {
+                if (!full) {
+                    // another thread polled the expired head concurrently; keep this segment queued
+                    recordsCacheEvictionQueue.add(segment);
+                    return;
+                }
+                if (segment.referenced) {
+                    // give segments that have been read a second chance
+                    segment.referenced = false;
+                    recordsCacheEvictionQueue.add(segment);
+                    continue;
+                }
+            }
+            evictCacheSegment(segment);
+        }
     }
 
-    private Entry<IteratorPosition, GetRecordsResult> getHigherCacheEntry(IteratorPosition position) {
-        return recordsCacheIndex.higherEntry(position);
+    /*
+     * Removes an evicted segment from its shard cache, unless it has been removed concurrently. Shard caches that
+     * become empty are removed from the records cache, so that caches of shards no longer consumed do not accumulate.
+     */
+    private void evictCacheSegment(CacheSegment segment) {
+        final ShardCache shardCache = segment.shardCache;
+        final Lock writeLock = shardCache.lock.writeLock();
+        writeLock.lock();
+        try {
+            if (segment.removed) {
+                return;
+            }
+            removeFromShardCache(segment);
+            if (shardCache.segments.isEmpty()) {
+                shardCache.retired = true;
+                recordsCache.remove(shardCache.streamShard, shardCache);
+            }
+        } finally {
+            writeLock.unlock();
+        }
     }
 
 }
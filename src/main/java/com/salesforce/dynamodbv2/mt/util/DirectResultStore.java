@@ -0,0 +1,36 @@
+package com.salesforce.dynamodbv2.mt.util;
+
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import java.nio.ByteBuffer;
+
+/**
+ * Keeps results serialized in direct byte buffers outside of the heap and deserializes them on access. Sizes are the
+ * serialized sizes of the results. The memory of a buffer is freed once the buffer is garbage collected, so the JVM's
+ * maximum direct memory size must leave room for buffers of released results that have not been collected yet.
+ */
+final class DirectResultStore implements ResultStore {
+
+    @Override
+    public StoredResult store(GetRecordsResult result) {
+        final byte[] bytes = RecordsCodec.encode(result);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return new StoredResult() {
+            @Override
+            public GetRecordsResult get() {
+                return RecordsCodec.decode(buffer);
+            }
+
+            @Override
+            public long getByteSize() {
+                return buffer.capacity();
+            }
+
+            @Override
+            public void release() {
+                // freed once the buffer is garbage collected
+            }
+        };
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.salesforce.dynamodbv2.mt.util;
+
+import static com.salesforce.dynamodbv2.mt.util.RetainedSizeEstimator.estimateRetainedSize;
+
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+
+/**
+ * Keeps results as objects on the heap. Sizes are the estimated heap space the results retain.
+ */
+final class HeapResultStore implements ResultStore {
+
+    @Override
+    public StoredResult store(GetRecordsResult result) {
+        final long byteSize = estimateRetainedSize(result);
+        return new StoredResult() {
+            @Override
+            public GetRecordsResult get() {
+                return result;
+            }
+
+            @Override
+            public long getByteSize() {
+                return byteSize;
+            }
+
+            @Override
+            public void release() {
+                // garbage collected once no longer referenced
+            }
+        };
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.salesforce.dynamodbv2.mt.util;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Keeps results serialized in a memory-mapped file and deserializes them on access. Since a single mapping is limited
+ * to 2GB, the file is mapped in chunks, and space within each chunk is allocated first-fit from a list of free regions
+ * that coalesces adjacent regions when space is released. Results that do not fit into the file, e.g., because its
+ * free space is fragmented or results are stored before others are evicted, are kept on the heap instead. Their sizes
+ * are their estimated retained heap sizes, so that they count against the cache size like any other result and are
+ * evicted in turn. The file is overwritten, and its contents are only meaningful to the process that wrote them.
+ */
+final class MappedResultStore implements ResultStore {
+
+    private static final int MAX_CHUNK_SIZE = 1 << 30;
+
+    /**
+     * A mapped region of the file.
+     */
+    private static final class Chunk {
+
+        private final ByteBuffer buffer;
+        // free regions, size by offset; guarded by this
+        private final NavigableMap<Integer, Integer> freeRegions = new TreeMap<>();
+
+        Chunk(ByteBuffer buffer) {
+            this.buffer = buffer;
+            freeRegions.put(0, buffer.capacity());
+        }
+
+        /**
+         * Allocates a region of the given size.
+         *
+         * @param size Size of the region.
+         * @return Offset of the allocated region, or -1 if there is no free region of the given size.
+         */
+        synchronized int allocate(int size) {
+            for (Entry<Integer, Integer> freeRegion : freeRegions.entrySet()) {
+                int offset = freeRegion.getKey();
+                int freeSize = freeRegion.getValue();
+                if (freeSize >= size) {
+                    freeRegions.remove(offset);
+                    if (freeSize > size) {
+                        freeRegions.put(offset + size, freeSize - size);
+                    }
+                    return offset;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Releases the given region and merges it with adjacent free regions.
+         *
+         * @param offset Offset of the region.
+         * @param size Size of the region.
+         */
+        synchronized void release(int offset, int size) {
+            int mergedOffset = offset;
+            int mergedSize = size;
+            Entry<Integer, Integer> lower = freeRegions.lowerEntry(offset);
+            if (lower != null && lower.getKey() + lower.getValue() == offset) {
+                freeRegions.remove(lower.getKey());
+                mergedOffset = lower.getKey();
+                mergedSize += lower.getValue();
+            }
+            Integer higherSize = freeRegions.remove(offset + size);
+            if (higherSize != null) {
+                mergedSize += higherSize;
+            }
+            freeRegions.put(mergedOffset, mergedSize);
+        }
+
+        void write(int offset, byte[] bytes) {
+            ByteBuffer region = buffer.duplicate();
+            region.position(offset);
+            region.put(bytes);
+        }
+
+        GetRecordsResult read(int offset, int size) {
+            ByteBuffer region = buffer.duplicate();
+            region.limit(offset + size);
+            region.position(offset);
+            return RecordsCodec.decode(region);
+        }
+    }
+
+    private final List<Chunk> chunks;
+    private final ResultStore overflowStore = new HeapResultStore();
+
+    /**
+     * Creates a store that maps the given file with the given capacity.
+     *
+     * @param file File to map; created if it does not exist, overwritten otherwise.
+     * @param capacity Size of the file in bytes.
+     */
+    MappedResultStore(Path file, long capacity) {
+        List<Chunk> mappedChunks = new ArrayList<>();
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file.toFile(), "rw");
+            FileChannel channel = randomAccessFile.getChannel()) {
+            randomAccessFile.setLength(capacity);
+            // mappings remain valid after the channel is closed
+            for (long offset = 0; offset < capacity; offset += MAX_CHUNK_SIZE) {
+                long size = Math.min(MAX_CHUNK_SIZE, capacity - offset);
+                mappedChunks.add(new Chunk(channel.map(READ_WRITE, offset, size)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.chunks = mappedChunks;
+    }
+
+    @Override
+    public StoredResult store(GetRecordsResult result) {
+        final byte[] bytes = RecordsCodec.encode(result);
+        // don't capture the bytes in the stored result, so that they do not remain on the heap
+        final int size = bytes.length;
+        for (Chunk chunk : chunks) {
+            final int offset = chunk.allocate(size);
+            if (offset != -1) {
+                chunk.write(offset, bytes);
+                return new StoredResult() {
+                    @Override
+                    public GetRecordsResult get() {
+                        return chunk.read(offset, size);
+                    }
+
+                    @Override
+                    public long getByteSize() {
+                        return size;
+                    }
+
+                    @Override
+                    public void release() {
+                        chunk.release(offset, size);
+                    }
+                };
+            }
+        }
+        return overflowStore.store(result);
+    }
+
+}
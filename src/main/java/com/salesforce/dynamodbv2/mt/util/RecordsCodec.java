@@ -0,0 +1,354 @@
+package com.salesforce.dynamodbv2.mt.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import com.amazonaws.services.dynamodbv2.model.Identity;
+import com.amazonaws.services.dynamodbv2.model.OperationType;
+import com.amazonaws.services.dynamodbv2.model.Record;
+import com.amazonaws.services.dynamodbv2.model.StreamRecord;
+import com.amazonaws.services.dynamodbv2.model.StreamViewType;
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes {@link GetRecordsResult}s in a compact binary format, so that they can be cached outside of the heap. All
+ * fields of records and their attribute values are encoded. Enum values are encoded as single bytes and strings as
+ * length-prefixed UTF-8, so that attribute values are not limited to the 64KB of modified UTF-8 strings.
+ *
+ * <p>Encoded results are only held in memory by the process that encoded them, so the format carries no version.
+ */
+final class RecordsCodec {
+
+    private static final List<String> OPERATION_TYPES = enumValues(OperationType.values());
+    private static final List<String> STREAM_VIEW_TYPES = enumValues(StreamViewType.values());
+    private static final int NULL = -1;
+
+    // attribute value types
+    private static final byte S = 0;
+    private static final byte N = 1;
+    private static final byte B = 2;
+    private static final byte SS = 3;
+    private static final byte NS = 4;
+    private static final byte BS = 5;
+    private static final byte M = 6;
+    private static final byte L = 7;
+    private static final byte NULL_VALUE = 8;
+    private static final byte BOOL = 9;
+
+    private RecordsCodec() {
+    }
+
+    /**
+     * Encodes the given result.
+     *
+     * @param result Result to encode.
+     * @return Encoded bytes.
+     */
+    static byte[] encode(GetRecordsResult result) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, result.getNextShardIterator());
+            List<Record> records = result.getRecords();
+            out.writeInt(records.size());
+            for (Record record : records) {
+                writeRecord(out, record);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a result from the remaining bytes of the given buffer. Does not modify the buffer's position.
+     *
+     * @param buffer Buffer to decode.
+     * @return Decoded result.
+     */
+    static GetRecordsResult decode(ByteBuffer buffer) {
+        ByteBuffer in = buffer.duplicate();
+        try {
+            GetRecordsResult result = new GetRecordsResult().withNextShardIterator(readString(in));
+            int size = in.getInt();
+            List<Record> records = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                records.add(readRecord(in));
+            }
+            return result.withRecords(records);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("invalid records", e);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, Record record) throws IOException {
+        writeString(out, record.getEventID());
+        writeEnum(out, OPERATION_TYPES, record.getEventName());
+        writeString(out, record.getEventVersion());
+        writeString(out, record.getEventSource());
+        writeString(out, record.getAwsRegion());
+        Identity identity = record.getUserIdentity();
+        out.writeBoolean(identity != null);
+        if (identity != null) {
+            writeString(out, identity.getPrincipalId());
+            writeString(out, identity.getType());
+        }
+        StreamRecord streamRecord = record.getDynamodb();
+        out.writeBoolean(streamRecord != null);
+        if (streamRecord != null) {
+            Date creationDateTime = streamRecord.getApproximateCreationDateTime();
+            writeLong(out, creationDateTime == null ? null : creationDateTime.getTime());
+            writeItem(out, streamRecord.getKeys());
+            writeItem(out, streamRecord.getNewImage());
+            writeItem(out, streamRecord.getOldImage());
+            writeString(out, streamRecord.getSequenceNumber());
+            writeLong(out, streamRecord.getSizeBytes());
+            writeEnum(out, STREAM_VIEW_TYPES, streamRecord.getStreamViewType());
+        }
+    }
+
+    private static Record readRecord(ByteBuffer in) {
+        Record record = new Record()
+            .withEventID(readString(in))
+            .withEventName(readEnum(in, OPERATION_TYPES))
+            .withEventVersion(readString(in))
+            .withEventSource(readString(in))
+            .withAwsRegion(readString(in));
+        if (readBoolean(in)) {
+            record.withUserIdentity(new Identity()
+                .withPrincipalId(readString(in))
+                .withType(readString(in)));
+        }
+        if (readBoolean(in)) {
+            Long creationDateTime = readLong(in);
+            record.withDynamodb(new StreamRecord()
+                .withApproximateCreationDateTime(creationDateTime == null ? null : new Date(creationDateTime))
+                .withKeys(readItem(in))
+                .withNewImage(readItem(in))
+                .withOldImage(readItem(in))
+                .withSequenceNumber(readString(in))
+                .withSizeBytes(readLong(in))
+                .withStreamViewType(readEnum(in, STREAM_VIEW_TYPES)));
+        }
+        return record;
+    }
+
+    private static void writeItem(DataOutputStream out, Map<String, AttributeValue> item) throws IOException {
+        out.writeInt(item == null ? NULL : item.size());
+        if (item != null) {
+            for (Map.Entry<String, AttributeValue> entry : item.entrySet()) {
+                writeString(out, entry.getKey());
+                writeAttributeValue(out, entry.getValue());
+            }
+        }
+    }
+
+    private static Map<String, AttributeValue> readItem(ByteBuffer in) {
+        int size = in.getInt();
+        if (size == NULL) {
+            return null;
+        }
+        Map<String, AttributeValue> item = new HashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            item.put(readString(in), readAttributeValue(in));
+        }
+        return item;
+    }
+
+    /*
+     * Encodes an attribute value as its type followed by its value. Values are expected to have exactly one type set,
+     * as in the records returned by DynamoDB.
+     */
+    private static void writeAttributeValue(DataOutputStream out, AttributeValue value) throws IOException {
+        if (value.getS() != null) {
+            out.writeByte(S);
+            writeString(out, value.getS());
+        } else if (value.getN() != null) {
+            out.writeByte(N);
+            writeString(out, value.getN());
+        } else if (value.getB() != null) {
+            out.writeByte(B);
+            writeBytes(out, value.getB());
+        } else if (value.getSS() != null) {
+            out.writeByte(SS);
+            writeStrings(out, value.getSS());
+        } else if (value.getNS() != null) {
+            out.writeByte(NS);
+            writeStrings(out, value.getNS());
+        } else if (value.getBS() != null) {
+            out.writeByte(BS);
+            out.writeInt(value.getBS().size());
+            for (ByteBuffer b : value.getBS()) {
+                writeBytes(out, b);
+            }
+        } else if (value.getM() != null) {
+            out.writeByte(M);
+            writeItem(out, value.getM());
+        } else if (value.getL() != null) {
+            out.writeByte(L);
+            out.writeInt(value.getL().size());
+            for (AttributeValue element : value.getL()) {
+                writeAttributeValue(out, element);
+            }
+        } else if (value.getNULL() != null) {
+            out.writeByte(NULL_VALUE);
+        } else if (value.getBOOL() != null) {
+            out.writeByte(BOOL);
+            out.writeBoolean(value.getBOOL());
+        } else {
+            throw new IllegalArgumentException("attribute value has no type: " + value);
+        }
+    }
+
+    private static AttributeValue readAttributeValue(ByteBuffer in) {
+        byte type = in.get();
+        switch (type) {
+            case S:
+                return new AttributeValue().withS(readString(in));
+            case N:
+                return new AttributeValue().withN(readString(in));
+            case B:
+                return new AttributeValue().withB(readBytes(in));
+            case SS:
+                return new AttributeValue().withSS(readStrings(in));
+            case NS:
+                return new AttributeValue().withNS(readStrings(in));
+            case BS: {
+                int size = in.getInt();
+                List<ByteBuffer> values = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    values.add(readBytes(in));
+                }
+                return new AttributeValue().withBS(values);
+            }
+            case M:
+                return new AttributeValue().withM(readItem(in));
+            case L: {
+                int size = in.getInt();
+                List<AttributeValue> values = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    values.add(readAttributeValue(in));
+                }
+                return new AttributeValue().withL(values);
+            }
+            case NULL_VALUE:
+                return new AttributeValue().withNULL(true);
+            case BOOL:
+                return new AttributeValue().withBOOL(readBoolean(in));
+            default:
+                throw new IllegalArgumentException("invalid attribute value type " + type);
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readStrings(ByteBuffer in) {
+        int size = in.getInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL);
+        } else {
+            byte[] bytes = value.getBytes(UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length == NULL) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void writeBytes(DataOutputStream out, ByteBuffer value) throws IOException {
+        ByteBuffer buffer = value.duplicate();
+        out.writeInt(buffer.remaining());
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            out.write(bytes);
+        }
+    }
+
+    private static ByteBuffer readBytes(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static void writeLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(ByteBuffer in) {
+        return readBoolean(in) ? in.getLong() : null;
+    }
+
+    private static boolean readBoolean(ByteBuffer in) {
+        return in.get() != 0;
+    }
+
+    /*
+     * Encodes an enum value by its index in the given list of values, or as -1 if null.
+     */
+    private static void writeEnum(DataOutputStream out, List<String> values, String value) throws IOException {
+        int index = value == null ? NULL : values.indexOf(value);
+        if (value != null && index < 0) {
+            throw new IllegalArgumentException("unsupported value " + value + ", expected one of " + values);
+        }
+        out.writeByte(index);
+    }
+
+    private static String readEnum(ByteBuffer in, List<String> values) {
+        byte index = in.get();
+        if (index == NULL) {
+            return null;
+        }
+        if (index < 0 || index >= values.size()) {
+            throw new IllegalArgumentException("invalid enum index " + index + ", expected one of " + values);
+        }
+        return values.get(index);
+    }
+
+    private static List<String> enumValues(Enum<?>[] values) {
+        ImmutableList.Builder<String> builder = ImmutableList.builder();
+        for (Enum<?> value : values) {
+            builder.add(value.toString());
+        }
+        return builder.build();
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.salesforce.dynamodbv2.mt.util;
+
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+
+/**
+ * Stores the results cached by {@link CachingAmazonDynamoDbStreams}. Implementations determine where and in which form
+ * results are kept, e.g., as objects on the heap or serialized outside of it.
+ */
+interface ResultStore {
+
+    /**
+     * A result held by a store.
+     */
+    interface StoredResult {
+
+        /**
+         * Returns the stored result. May return a new instance on each call, so callers should hold on to the returned
+         * instance rather than call this method repeatedly.
+         *
+         * @return Stored result.
+         */
+        GetRecordsResult get();
+
+        /**
+         * Returns the number of bytes the stored result occupies in the store.
+         *
+         * @return Size in bytes.
+         */
+        long getByteSize();
+
+        /**
+         * Releases the space the result occupies in the store. The result must not be accessed afterwards.
+         */
+        void release();
+    }
+
+    /**
+     * Stores the given result.
+     *
+     * @param result Result to store.
+     * @return Handle to the stored result.
+     */
+    StoredResult store(GetRecordsResult result);
+
+}
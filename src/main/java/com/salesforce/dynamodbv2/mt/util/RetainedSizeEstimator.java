@@ -0,0 +1,160 @@
+package com.salesforce.dynamodbv2.mt.util;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import com.amazonaws.services.dynamodbv2.model.Identity;
+import com.amazonaws.services.dynamodbv2.model.Record;
+import com.amazonaws.services.dynamodbv2.model.StreamRecord;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Estimates the heap space retained by {@link GetRecordsResult} object graphs, assuming a 64-bit JVM with compressed
+ * object pointers. Accounts for object headers, references, and alignment of the SDK model objects as well as the
+ * strings, collections, and buffers they reference. Does not account for objects that may be shared with other object
+ * graphs, such as cached boxed values, so the estimate may exceed the space actually retained.
+ */
+final class RetainedSizeEstimator {
+
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+    private static final int INT = 4;
+    private static final int LONG = 8;
+
+    // shallow sizes of the SDK model objects, by number of reference fields
+    private static final long GET_RECORDS_RESULT = shallowSize(4);
+    private static final long RECORD = shallowSize(7);
+    private static final long STREAM_RECORD = shallowSize(7);
+    private static final long IDENTITY = shallowSize(2);
+    private static final long ATTRIBUTE_VALUE = shallowSize(10);
+
+    // shallow sizes of JDK objects referenced by SDK model objects
+    private static final long STRING = align(OBJECT_HEADER + REFERENCE + INT);
+    private static final long ARRAY_LIST = align(OBJECT_HEADER + 2 * INT + REFERENCE);
+    private static final long HASH_MAP = align(OBJECT_HEADER + 4 * REFERENCE + 4 * INT);
+    private static final long HASH_MAP_NODE = align(OBJECT_HEADER + INT + 3 * REFERENCE);
+    private static final long HEAP_BYTE_BUFFER = align(OBJECT_HEADER + 6 * INT + LONG + REFERENCE + 3);
+    private static final long DATE = align(OBJECT_HEADER + LONG + REFERENCE);
+    private static final long BOXED_LONG = align(OBJECT_HEADER + LONG);
+
+    private RetainedSizeEstimator() {
+    }
+
+    /**
+     * Estimates the heap space retained by the given result, including all of its records.
+     *
+     * @param result Result to estimate.
+     * @return Estimated retained size in bytes.
+     */
+    static long estimateRetainedSize(GetRecordsResult result) {
+        return GET_RECORDS_RESULT
+            + stringSize(result.getNextShardIterator())
+            + listSize(result.getRecords(), RetainedSizeEstimator::recordSize);
+    }
+
+    private static long recordSize(Record record) {
+        if (record == null) {
+            return 0L;
+        }
+        return RECORD
+            + stringSize(record.getEventID())
+            + stringSize(record.getEventName())
+            + stringSize(record.getEventVersion())
+            + stringSize(record.getEventSource())
+            + stringSize(record.getAwsRegion())
+            + streamRecordSize(record.getDynamodb())
+            + identitySize(record.getUserIdentity());
+    }
+
+    private static long streamRecordSize(StreamRecord streamRecord) {
+        if (streamRecord == null) {
+            return 0L;
+        }
+        return STREAM_RECORD
+            + dateSize(streamRecord.getApproximateCreationDateTime())
+            + itemSize(streamRecord.getKeys())
+            + itemSize(streamRecord.getNewImage())
+            + itemSize(streamRecord.getOldImage())
+            + stringSize(streamRecord.getSequenceNumber())
+            + (streamRecord.getSizeBytes() == null ? 0L : BOXED_LONG)
+            + stringSize(streamRecord.getStreamViewType());
+    }
+
+    private static long identitySize(Identity identity) {
+        if (identity == null) {
+            return 0L;
+        }
+        return IDENTITY + stringSize(identity.getPrincipalId()) + stringSize(identity.getType());
+    }
+
+    private static long itemSize(Map<String, AttributeValue> item) {
+        if (item == null) {
+            return 0L;
+        }
+        int capacity = 16;
+        while (capacity * 3 / 4 < item.size()) {
+            capacity <<= 1;
+        }
+        long size = HASH_MAP + arraySize(capacity, REFERENCE) + item.size() * HASH_MAP_NODE;
+        for (Map.Entry<String, AttributeValue> entry : item.entrySet()) {
+            size += stringSize(entry.getKey()) + attributeValueSize(entry.getValue());
+        }
+        return size;
+    }
+
+    private static long attributeValueSize(AttributeValue value) {
+        if (value == null) {
+            return 0L;
+        }
+        return ATTRIBUTE_VALUE
+            + stringSize(value.getS())
+            + stringSize(value.getN())
+            + byteBufferSize(value.getB())
+            + listSize(value.getSS(), RetainedSizeEstimator::stringSize)
+            + listSize(value.getNS(), RetainedSizeEstimator::stringSize)
+            + listSize(value.getBS(), RetainedSizeEstimator::byteBufferSize)
+            + itemSize(value.getM())
+            + listSize(value.getL(), RetainedSizeEstimator::attributeValueSize);
+    }
+
+    private static long stringSize(String value) {
+        // assumes UTF-16 encoded character array
+        return value == null ? 0L : STRING + arraySize(value.length(), 2);
+    }
+
+    private static long byteBufferSize(ByteBuffer value) {
+        return value == null ? 0L : HEAP_BYTE_BUFFER + arraySize(value.capacity(), 1);
+    }
+
+    private static long dateSize(Date value) {
+        return value == null ? 0L : DATE;
+    }
+
+    private static <T> long listSize(Collection<T> values, ToLongFunction<T> elementSize) {
+        if (values == null) {
+            return 0L;
+        }
+        long size = ARRAY_LIST + arraySize(values.size(), REFERENCE);
+        for (T value : values) {
+            size += elementSize.applyAsLong(value);
+        }
+        return size;
+    }
+
+    private static long arraySize(int length, int elementSize) {
+        return align(ARRAY_HEADER + (long) length * elementSize);
+    }
+
+    private static long shallowSize(int references) {
+        return align(OBJECT_HEADER + references * REFERENCE);
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.salesforce.dynamodbv2.mt.util;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sleeps for a given number of milliseconds. Allows tests to replace backoff sleeps.
+ *
+ * <p>Replace with com.amazonaws.services.dynamodbv2.streamsadapter.utils.Sleeper when we upgrade
+ */
+@FunctionalInterface
+public interface Sleeper {
+
+    void sleep(long millis);
+
+    /**
+     * Returns a sleeper that uses {@link Thread#sleep(long)}. If the thread is interrupted, the sleeper returns early
+     * and restores the thread's interrupt status.
+     *
+     * @return Thread sleeper.
+     */
+    static Sleeper threadSleeper() {
+        return millis -> {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException ie) {
+                LoggerFactory.getLogger(Sleeper.class).debug("Sleep was interrupted", ie);
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheStats;
+import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
+import com.salesforce.dynamodbv2.mt.context.impl.MtAmazonDynamoDbContextProviderImpl;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class MtCacheTest {
+
+    private static class ManualTicker extends Ticker {
+
+        private final AtomicLong nanos = new AtomicLong();
+
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+
+        void advance(long duration, TimeUnit unit) {
+            nanos.addAndGet(unit.toNanos(duration));
+        }
+    }
+
+    private final MtAmazonDynamoDbContextProvider mtContext = new MtAmazonDynamoDbContextProviderImpl();
+    private final ManualTicker ticker = new ManualTicker();
+
+    @Test
+    void scopedByContext() {
+        MtCache<String> cache = new MtCache<>(mtContext);
+        mtContext.withContext("tenant1", () -> cache.put("key", "value1"));
+        mtContext.withContext("tenant2", () -> cache.put("key", "value2"));
+        mtContext.withContext("tenant1", () -> assertEquals("value1", cache.getIfPresent("key")));
+        mtContext.withContext("tenant2", () -> assertEquals("value2", cache.getIfPresent("key")));
+        mtContext.withContext("tenant3", () -> assertNull(cache.getIfPresent("key")));
+        assertTrue(cache.getTenantStats().isEmpty());
+    }
+
+    @Test
+    void delimiterInContext() {
+        MtCache<String> cache = new MtCache<>(mtContext);
+        mtContext.withContext("tenant-a", () -> cache.put("b", "value1"));
+        mtContext.withContext("tenant", () -> cache.put("a-b", "value2"));
+        mtContext.withContext("tenant-a", () -> assertEquals("value1", cache.getIfPresent("b")));
+        mtContext.withContext("tenant", () -> assertEquals("value2", cache.getIfPresent("a-b")));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void explicitContext() throws ExecutionException {
+        MtCache<String> cache = new MtCache<>(mtContext);
+        mtContext.withContext("tenant1", () -> cache.put("key", "value1"));
+        assertEquals("value1", cache.getIfPresent("tenant1", "key"));
+        assertEquals("value1", cache.get("tenant1", "key", () -> "other"));
+        assertNull(cache.getIfPresent("tenant2", "key"));
+        cache.invalidate("tenant1", "key");
+        mtContext.withContext("tenant1", () -> assertNull(cache.getIfPresent("key")));
+    }
+
+    @Test
+    void maximumSize() {
+        MtCache<String> cache = new MtCache<>(mtContext, "maximumSize=2");
+        for (int i = 0; i < 5; i++) {
+            mtContext.withContext("tenant" + i, () -> cache.put("key", "value"));
+        }
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void expireAfterAccess() {
+        MtCache<String> cache = new MtCache<>(mtContext, "expireAfterAccess=10m", ticker);
+        mtContext.withContext("tenant1", () -> {
+            cache.put("key", "value");
+            ticker.advance(9, TimeUnit.MINUTES);
+            assertEquals("value", cache.getIfPresent("key"));
+            ticker.advance(9, TimeUnit.MINUTES);
+            assertEquals("value", cache.getIfPresent("key"));
+            ticker.advance(10, TimeUnit.MINUTES);
+            assertNull(cache.getIfPresent("key"));
+        });
+    }
+
+    @Test
+    void tenantEvictions() {
+        MtCache<String> cache = new MtCache<>(mtContext, "maximumSize=1,recordStats");
+        mtContext.withContext("tenant1", () -> cache.put("key", "value"));
+        mtContext.withContext("tenant2", () -> cache.put("key", "value"));
+        assertEquals(1L, cache.getTenantStats().get("tenant1").evictionCount());
+        assertEquals(1L, cache.stats().evictionCount());
+    }
+
+    @Test
+    void tenantStatsBounded() {
+        MtCache<String> cache = new MtCache<>(mtContext, "recordStats", ticker, 2);
+        for (int i = 0; i < 5; i++) {
+            mtContext.withContext("tenant" + i, () -> cache.put("key", "value"));
+            mtContext.withContext("tenant" + i, () -> cache.getIfPresent("key"));
+        }
+        Map<String, CacheStats> stats = cache.getTenantStats();
+        assertEquals(2L, stats.size());
+        assertEquals(1L, stats.get("tenant4").hitCount());
+        assertEquals(5L, cache.size());
+    }
+
+    @Test
+    void refreshAfterWriteUnsupported() {
+        assertThrows(IllegalStateException.class, () -> new MtCache<>(mtContext, "refreshAfterWrite=1m"));
+    }
+
+    @Test
+    void tenantStats() {
+        MtCache<String> cache = new MtCache<>(mtContext, "maximumSize=10,recordStats", ticker);
+        mtContext.withContext("tenant1", () -> {
+            assertEquals("value", get(cache, "key", 5L));
+            assertEquals("value", get(cache, "key", 5L));
+            assertEquals("value", cache.getIfPresent("key"));
+            assertNull(cache.getIfPresent("other"));
+        });
+        mtContext.withContext("tenant2", () -> {
+            assertEquals("value", get(cache, "key", 7L));
+            assertThrows(ExecutionException.class, () -> cache.get("failing", () -> {
+                throw new Exception("load failed");
+            }));
+        });
+
+        Map<String, CacheStats> stats = cache.getTenantStats();
+        assertEquals(new CacheStats(2L, 2L, 1L, 0L, TimeUnit.MILLISECONDS.toNanos(5L), 0L), stats.get("tenant1"));
+        assertEquals(new CacheStats(0L, 2L, 1L, 1L, TimeUnit.MILLISECONDS.toNanos(7L), 0L), stats.get("tenant2"));
+        assertEquals(2L, stats.size());
+        assertEquals(2L, cache.stats().hitCount());
+        assertEquals(4L, cache.stats().missCount());
+    }
+
+    /*
+     * Gets the value for the given key, advancing the ticker by the given number of millis if it needs to be loaded.
+     */
+    private String get(MtCache<String> cache, String key, long loadMillis) {
+        try {
+            return cache.get(key, () -> {
+                ticker.advance(loadMillis, TimeUnit.MILLISECONDS);
+                return "value";
+            });
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
+import com.salesforce.dynamodbv2.mt.context.impl.MtAmazonDynamoDbContextProviderImpl;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that {@code MtAmazonDynamoDbAsync} executes requests in the tenant context of the submitting thread.
+ */
+class MtAmazonDynamoDbAsyncTest {
+
+    @Test
+    void capturesContextAtSubmission() throws ExecutionException, InterruptedException {
+        MtAmazonDynamoDbContextProvider mtContext = new MtAmazonDynamoDbContextProviderImpl();
+        AmazonDynamoDB amazonDynamoDb = mock(AmazonDynamoDB.class);
+        GetItemResult getItemResult = new GetItemResult();
+        when(amazonDynamoDb.getItem(any(GetItemRequest.class))).thenAnswer(invocation -> {
+            GetItemRequest request = invocation.getArgument(0);
+            assertEquals(request.getTableName(), mtContext.getContext());
+            return getItemResult;
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            MtAmazonDynamoDbAsync mtDynamoDbAsync = MtAmazonDynamoDbAsync.builder()
+                .withAmazonDynamoDb(amazonDynamoDb)
+                .withContext(mtContext)
+                .withExecutor(executor)
+                .build();
+
+            // submit requests for several tenants from one thread; each must run in its own tenant's context
+            List<CompletableFuture<GetItemResult>> futures = new ArrayList<>();
+            for (String tenant : new String[] {"tenant1", "tenant2", "tenant3"}) {
+                mtContext.withContext(tenant, () ->
+                    futures.add(mtDynamoDbAsync.getItemAsync(new GetItemRequest().withTableName(tenant))));
+            }
+            for (CompletableFuture<GetItemResult> future : futures) {
+                assertSame(getItemResult, future.get());
+            }
+
+            // the executor thread's context is restored afterwards
+            assertEquals(MtAmazonDynamoDbContextProviderImpl.BASE_CONTEXT,
+                executor.submit(mtContext::getContext).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -477,6 +477,20 @@ class ConditionMapperTest {
         assertEquals(ImmutableMap.of("#field1", "field"), requestWrapper.getExpressionAttributeNames());
     }
 
+    @Test
+    void convertFieldNameLiteralsToExpressionNamesCached() {
+        // converting adds names to the request's map, which must not affect the cached conversion
+        for (int i = 0; i < 2; i++) {
+            RequestWrapper requestWrapper = new QueryRequestWrapper(new QueryRequest()
+                .withKeyConditionExpression("field = :cachedValue")
+                .withExpressionAttributeNames(new HashMap<>())
+                .withExpressionAttributeValues(ImmutableMap.of(":cachedValue", new AttributeValue())));
+            SUT.convertFieldNameLiteralsToExpressionNames(requestWrapper);
+            assertEquals("#field1 = :cachedValue", requestWrapper.getPrimaryExpression());
+            assertEquals(ImmutableMap.of("#field1", "field"), requestWrapper.getExpressionAttributeNames());
+        }
+    }
+
     @Test
     void getNextFieldPlaceholder() {
         assertEquals("#field0", ConditionMapper.getNextFieldPlaceholder(
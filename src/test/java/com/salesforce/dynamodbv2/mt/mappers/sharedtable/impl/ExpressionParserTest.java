@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.Binary;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.FunctionCall;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.Not;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.Path;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.Range;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.Update;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.UpdateAction;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.Expression.Value;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Tests {@link ExpressionParser}.
+ */
+class ExpressionParserTest {
+
+    @Test
+    void comparison() {
+        Binary comparison = (Binary) ExpressionParser.parse("#hk = :value");
+        assertEquals("=", comparison.getOperator());
+        Path path = (Path) comparison.getLeft();
+        assertEquals("#hk", path.getHead());
+        assertEquals(0, path.getStart());
+        assertTrue(path.isPlaceholder());
+        assertTrue(path.isTopLevel());
+        assertEquals(":value", ((Value) comparison.getRight()).getPlaceholder());
+    }
+
+    @Test
+    void precedence() {
+        // AND binds more tightly than OR, NOT more tightly than AND
+        Binary or = (Binary) ExpressionParser.parse("#a = :a or NOT #b <> :b AnD #c >= :c");
+        assertEquals(Binary.OR, or.getOperator());
+        Binary and = (Binary) or.getRight();
+        assertEquals(Binary.AND, and.getOperator());
+        assertTrue(and.getLeft() instanceof Not);
+        assertEquals(">=", ((Binary) and.getRight()).getOperator());
+    }
+
+    @Test
+    void parentheses() {
+        Binary and = (Binary) ExpressionParser.parse("(#a = :a or #b = :b) and #c < :c");
+        assertEquals(Binary.AND, and.getOperator());
+        assertEquals(Binary.OR, ((Binary) and.getLeft()).getOperator());
+    }
+
+    @Test
+    void functionsAndRanges() {
+        Binary and = (Binary) ExpressionParser.parse(
+            "begins_with(#a, :a) and size(#b) > :b and #c BETWEEN :c1 and :c2 and #d in (:d1, :d2)");
+        List<Class<?>> types = new ArrayList<>();
+        and.forEach(node -> types.add(node.getClass()));
+        assertEquals(ImmutableList.of(Binary.class, Binary.class, Binary.class, FunctionCall.class, Path.class,
+            Value.class, Binary.class, FunctionCall.class, Path.class, Value.class, Range.class, Path.class,
+            Value.class, Value.class, Range.class, Path.class, Value.class, Value.class), types);
+        List<String> functions = new ArrayList<>();
+        and.forEach(node -> {
+            if (node instanceof FunctionCall) {
+                functions.add(((FunctionCall) node).getName());
+            }
+        });
+        assertEquals(ImmutableList.of("begins_with", "size"), functions);
+    }
+
+    @Test
+    void literalsAndNestedPaths() {
+        Binary comparison = (Binary) ExpressionParser.parse("  field.#nested[12] = :value");
+        Path path = (Path) comparison.getLeft();
+        assertEquals("field", path.getHead());
+        assertEquals(2, path.getStart());
+        assertFalse(path.isPlaceholder());
+        assertFalse(path.isTopLevel());
+    }
+
+    @Test
+    void update() {
+        Update update = (Update) ExpressionParser.parse(
+            "set #a = :a, #b = #b + :b, #c = list_append(#c, :c) REMOVE #d ADD #e :e delete #f :f");
+        List<String> clauses = new ArrayList<>();
+        update.getChildren().forEach(action -> clauses.add(((UpdateAction) action).getClause()));
+        assertEquals(ImmutableList.of("SET", "SET", "SET", "REMOVE", "ADD", "DELETE"), clauses);
+        UpdateAction increment = (UpdateAction) update.getChildren().get(1);
+        assertEquals("#b", increment.getPath().getHead());
+        assertEquals("+", ((Binary) increment.getValue()).getOperator());
+    }
+
+    @Test
+    void projection() {
+        List<String> heads = new ArrayList<>();
+        ExpressionParser.parseProjection("#a, b.c,d[1]").getPaths().forEach(path -> heads.add(path.getHead()));
+        assertEquals(ImmutableList.of("#a", "b", "d"), heads);
+        assertThrows(IllegalArgumentException.class, () -> ExpressionParser.parseProjection("#a,"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "#a =", "#a = :a and", "#a = :a :b", "(#a = :a", "#a", "set #a", "# = :a",
+        "#a = :a; drop", "#a[x] = :a"})
+    void invalid(String expression) {
+        assertThrows(IllegalArgumentException.class, () -> ExpressionParser.parse(expression));
+    }
+
+}
@@ -12,16 +12,19 @@ import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.N;
 import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.S;
 import static com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.FieldMapping.IndexType.SECONDARYINDEX;
 import static com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.FieldMapping.IndexType.TABLE;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.UUID.randomUUID;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ScalarAttributeType;
+import com.google.common.collect.ImmutableList;
 import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
 import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.FieldMapping.Field;
 import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.FieldMapping.IndexType;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.function.Supplier;
 import org.junit.jupiter.api.Test;
@@ -78,6 +81,33 @@ class FieldMapperTest {
             mtContext);
     }
 
+    @Test
+    void applyBinaryPhysicalField() {
+        MtAmazonDynamoDbContextProvider mtContext = buildMtContext();
+        FieldMapper fieldMapper = buildFieldMapper(mtContext);
+        ByteBuffer header = ByteBuffer.wrap(new FieldPrefixFunction(DELIMITER)
+            .getBinaryPrefix(mtContext.getContext(), "virtualtable"));
+        AttributeValue binaryValue = new AttributeValue().withB(ByteBuffer.wrap(new byte[] {(byte) 0xc3, 0x28}));
+        AttributeValue stringValue = new AttributeValue().withS("value");
+
+        for (AttributeValue value : ImmutableList.of(binaryValue, stringValue)) {
+            FieldMapping fieldMapping = new FieldMapping(
+                new Field("sourcefield", value.getB() != null ? B : S),
+                new Field("targetfield", B),
+                "virtualindex",
+                "physicalindex",
+                TABLE,
+                true);
+            AttributeValue qualifiedValue = fieldMapper.apply(fieldMapping, value);
+            ByteBuffer unqualifiedBytes = value.getB() != null ? value.getB() : UTF_8.encode(value.getS());
+            ByteBuffer expected = ByteBuffer.allocate(header.remaining() + unqualifiedBytes.remaining())
+                .put(header.duplicate()).put(unqualifiedBytes.duplicate());
+            expected.flip();
+            assertEquals(expected, qualifiedValue.getB());
+            assertEquals(value, fieldMapper.reverse(reverseFieldMapping(fieldMapping), qualifiedValue));
+        }
+    }
+
     @Test
     void applyValueNotFound() {
         try {
@@ -8,9 +8,12 @@
 package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
 import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.FieldPrefixFunction.FieldValue;
+import java.nio.ByteBuffer;
 import org.junit.jupiter.api.Test;
 
 /**
@@ -43,4 +46,53 @@ class FieldPrefixFunctionTest {
         assertEquals(expected, SUT.reverse(applied.getQualifiedValue()));
     }
 
+    @Test
+    void qualifyAndUnqualify() {
+        String qualifiedValue = SUT.qualify(() -> "ctx", "table", "value.with.delimiters");
+
+        assertEquals("ctx.table.value.with.delimiters", qualifiedValue);
+        assertEquals("value.with.delimiters", SUT.unqualify(qualifiedValue));
+        assertEquals(new FieldValue("ctx", "table", qualifiedValue, "value.with.delimiters"),
+            SUT.reverse(qualifiedValue));
+    }
+
+    @Test
+    void getPrefix_cached() {
+        FieldPrefixFunction sut = new FieldPrefixFunction("--");
+
+        assertEquals("ctx--table--", sut.getPrefix("ctx", "table"));
+        assertSame(sut.getPrefix("ctx", "table"), sut.getPrefix("ctx", "table"));
+        assertEquals("ctx2--table--", sut.getPrefix("ctx2", "table"));
+        assertEquals("value", sut.unqualify("ctx--table--value"));
+    }
+
+    @Test
+    void qualifyAndUnqualifyBinary() {
+        ByteBuffer value = ByteBuffer.wrap(new byte[] {(byte) 0xff, 0, (byte) 0xfe});
+
+        ByteBuffer qualifiedValue = SUT.qualifyBinary(() -> "ctx", "table", value);
+
+        assertEquals(ByteBuffer.wrap(new byte[] {0, 3, 'c', 't', 'x', 0, 5, 't', 'a', 'b', 'l', 'e',
+            (byte) 0xff, 0, (byte) 0xfe}), qualifiedValue);
+        assertEquals(0, value.position());
+        assertEquals(value, SUT.unqualifyBinary(qualifiedValue));
+        assertEquals(0, qualifiedValue.position());
+        assertEquals(new FieldValue("ctx", "table", null, null), SUT.reverseBinary(qualifiedValue));
+    }
+
+    @Test
+    void unqualifyBinary_invalid() {
+        assertThrows(IllegalArgumentException.class, () -> SUT.unqualifyBinary(ByteBuffer.wrap(new byte[] {0})));
+        assertThrows(IllegalArgumentException.class,
+            () -> SUT.unqualifyBinary(ByteBuffer.wrap(new byte[] {0, 3, 'c'})));
+        assertThrows(IllegalArgumentException.class,
+            () -> SUT.reverseBinary(ByteBuffer.wrap(new byte[] {0, 1, 'c', 0, 2, 't'})));
+    }
+
+    @Test
+    void unqualify_invalid() {
+        assertThrows(IllegalArgumentException.class, () -> SUT.unqualify("ctx.value"));
+        assertThrows(IllegalArgumentException.class, () -> SUT.reverse("value"));
+    }
+
 }
\ No newline at end of file
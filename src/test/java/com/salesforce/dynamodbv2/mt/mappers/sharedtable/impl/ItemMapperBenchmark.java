@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
+
+import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.S;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.salesforce.dynamodbv2.mt.mappers.CreateTableRequestBuilder;
+import com.salesforce.dynamodbv2.mt.mappers.index.DynamoSecondaryIndexMapperByTypeImpl;
+import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescriptionImpl;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the cost of mapping items between a virtual table with a hash and range key and its physical table.  Not
+ * run as part of the build; run {@link #main(String[])} from the test classpath, or pass arguments to the JMH runner
+ * ({@code org.openjdk.jmh.Main}), e.g., {@code -p attributes=50 -prof gc} to report allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemMapperBenchmark {
+
+    @Param({"0", "10", "50"})
+    private int attributes;
+
+    private ItemMapper itemMapper;
+    private Map<String, AttributeValue> item;
+    private Map<String, AttributeValue> qualifiedItem;
+
+    /**
+     * Creates the mapper and the items to map.
+     */
+    @Setup
+    public void setup() {
+        TableMapping tableMapping = new TableMapping(new DynamoTableDescriptionImpl(
+            CreateTableRequestBuilder.builder().withTableName("virtualTable")
+                .withTableKeySchema("virtualhk", S, "virtualrk", S).build()),
+            new SingletonCreateTableRequestFactory(CreateTableRequestBuilder.builder()
+                .withTableName("physicalTable")
+                .withTableKeySchema("physicalhk", S, "physicalrk", S).build()),
+            new DynamoSecondaryIndexMapperByTypeImpl(),
+            () -> "tenant",
+            ".");
+        itemMapper = tableMapping.getItemMapper();
+        item = new HashMap<>();
+        item.put("virtualhk", new AttributeValue().withS("hkvalue"));
+        item.put("virtualrk", new AttributeValue().withS("rkvalue"));
+        for (int i = 0; i < attributes; i++) {
+            item.put("attribute" + i, new AttributeValue().withS("value" + i));
+        }
+        qualifiedItem = itemMapper.apply(item);
+    }
+
+    @Benchmark
+    public Map<String, AttributeValue> apply() {
+        return itemMapper.apply(item);
+    }
+
+    @Benchmark
+    public Map<String, AttributeValue> applyForWrite() {
+        return itemMapper.applyForWrite(item);
+    }
+
+    @Benchmark
+    public Map<String, AttributeValue> reverse() {
+        return itemMapper.reverse(qualifiedItem);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ItemMapperBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -1,12 +1,76 @@
 package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
 
+import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.B;
 import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.S;
+import static com.salesforce.dynamodbv2.testsupport.ArgumentBuilder.MT_CONTEXT;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreams;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteTableRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsRequest;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
 import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.TrimmedDataAccessException;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.salesforce.dynamodbv2.mt.mappers.metadata.PrimaryKey;
+import com.google.common.collect.ImmutableSet;
+import com.salesforce.dynamodbv2.dynamodblocal.AmazonDynamoDbLocal;
+import com.salesforce.dynamodbv2.mt.context.impl.MtAmazonDynamoDbContextProviderImpl;
+import com.salesforce.dynamodbv2.mt.mappers.CreateTableRequestBuilder;
+import com.salesforce.dynamodbv2.mt.mappers.MtAmazonDynamoDb.MtBatchGetItemResult;
+import com.salesforce.dynamodbv2.mt.mappers.MtAmazonDynamoDbByTable;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.SharedTableBuilder;
+import com.salesforce.dynamodbv2.mt.repo.MtDynamoDbTableDescriptionRepo;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 /**
  * Unit tests for specific MtAmazonDynamoDbBySharedTable methods.
@@ -16,28 +80,834 @@ import org.junit.jupiter.api.Test;
 class MtAmazonDynamoDbBySharedTableTest {
 
     @Test
-    void projectionContainsKey_nullProject() {
-        assertTrue(MtAmazonDynamoDbBySharedTable.projectionContainsKey(new ScanRequest(), null));
+    void partitionWriteRequests_byCount() {
+        List<WriteRequest> writeRequests = IntStream.range(0, 60)
+            .mapToObj(i -> putRequest(ImmutableMap.of("hk", new AttributeValue(String.valueOf(i)))))
+            .collect(Collectors.toList());
+
+        List<Map<String, List<WriteRequest>>> batches = MtAmazonDynamoDbBySharedTable.partitionWriteRequests(
+            ImmutableMap.of("table1", writeRequests.subList(0, 30), "table2", writeRequests.subList(30, 60)));
+
+        assertEquals(3, batches.size());
+        assertEquals(ImmutableMap.of("table1", writeRequests.subList(0, 25)), batches.get(0));
+        assertEquals(ImmutableMap.of("table1", writeRequests.subList(25, 30),
+            "table2", writeRequests.subList(30, 50)), batches.get(1));
+        assertEquals(ImmutableMap.of("table2", writeRequests.subList(50, 60)), batches.get(2));
+    }
+
+    @Test
+    void partitionWriteRequests_bySize() {
+        // items of 1MB each (larger than DynamoDB allows, but exercises the byte limit), so only 15 fit in a batch
+        String value = new String(new char[1024 * 1024]).replace('\0', 'x');
+        List<WriteRequest> writeRequests = IntStream.range(0, 50)
+            .mapToObj(i -> putRequest(ImmutableMap.of("hk", new AttributeValue(String.valueOf(i)),
+                "value", new AttributeValue(value))))
+            .collect(Collectors.toList());
+
+        List<Map<String, List<WriteRequest>>> batches = MtAmazonDynamoDbBySharedTable.partitionWriteRequests(
+            ImmutableMap.of("table", writeRequests));
+
+        assertEquals(4, batches.size());
+        batches.forEach(batch -> assertTrue(batch.get("table").stream()
+            .mapToLong(writeRequest ->
+                MtAmazonDynamoDbBySharedTable.getItemSize(writeRequest.getPutRequest().getItem()))
+            .sum() <= MtAmazonDynamoDbBySharedTable.MAX_BATCH_WRITE_BYTES));
+        assertEquals(50, batches.stream().mapToInt(batch -> batch.get("table").size()).sum());
+    }
+
+    @Test
+    void getItemSize() {
+        assertEquals(2 + 5 + 5 + 3 + 3 + (3 + 1 + 1),
+            MtAmazonDynamoDbBySharedTable.getItemSize(ImmutableMap.of(
+                "hk", new AttributeValue("value"),
+                "field", new AttributeValue().withN("123"),
+                "map", new AttributeValue().withM(ImmutableMap.of("b", new AttributeValue().withBOOL(true))))));
+    }
+
+    @Test
+    void batchWriteItem() {
+        String tableName = "batchWriteItemTable";
+        MtAmazonDynamoDbBySharedTable mtDynamoDb = SharedTableBuilder.builder()
+            .withAmazonDynamoDb(AmazonDynamoDbLocal.getAmazonDynamoDbLocal())
+            .withTablePrefix(MtAmazonDynamoDbBySharedTableTest.class.getSimpleName() + ".")
+            .withContext(MT_CONTEXT)
+            .build();
+        MT_CONTEXT.withContext("batchWriteItemTenant", () -> {
+            CreateTableRequest createTableRequest = CreateTableRequestBuilder.builder()
+                .withTableName(tableName)
+                .withTableKeySchema("hk", S)
+                .withProvisionedThroughput(1L, 1L)
+                .build();
+            mtDynamoDb.createTable(createTableRequest);
+            try {
+                // write more items than fit in a single physical batch
+                List<WriteRequest> puts = IntStream.range(0, 30)
+                    .mapToObj(i -> putRequest(ImmutableMap.of("hk", new AttributeValue("hk" + i),
+                        "value", new AttributeValue("value" + i))))
+                    .collect(Collectors.toList());
+                BatchWriteItemResult result = mtDynamoDb.batchWriteItem(new BatchWriteItemRequest()
+                    .withRequestItems(ImmutableMap.of(tableName, puts)));
+                assertTrue(result.getUnprocessedItems().isEmpty());
+                IntStream.range(0, 30).forEach(i -> assertEquals(
+                    ImmutableMap.of("hk", new AttributeValue("hk" + i), "value", new AttributeValue("value" + i)),
+                    getItem(mtDynamoDb, tableName, "hk" + i)));
+
+                // delete some of them again
+                mtDynamoDb.batchWriteItem(new BatchWriteItemRequest().withRequestItems(ImmutableMap.of(tableName,
+                    ImmutableList.of(new WriteRequest().withDeleteRequest(
+                        new DeleteRequest().withKey(ImmutableMap.of("hk", new AttributeValue("hk0"))))))));
+                assertNull(getItem(mtDynamoDb, tableName, "hk0"));
+            } finally {
+                mtDynamoDb.deleteTable(new DeleteTableRequest(tableName));
+            }
+        });
+    }
+
+    @Test
+    void partitionKeys() {
+        List<Map<String, AttributeValue>> keys = IntStream.range(0, 250)
+            .mapToObj(i -> (Map<String, AttributeValue>) ImmutableMap.of("hk", new AttributeValue(String.valueOf(i))))
+            .collect(Collectors.toList());
+
+        List<Map<String, KeysAndAttributes>> batches = MtAmazonDynamoDbBySharedTable.partitionKeys(ImmutableMap.of(
+            "table1", new KeysAndAttributes().withKeys(keys.subList(0, 150)).withConsistentRead(true),
+            "table2", new KeysAndAttributes().withKeys(keys.subList(150, 250))));
+
+        assertEquals(3, batches.size());
+        assertEquals(ImmutableMap.of("table1",
+            new KeysAndAttributes().withKeys(keys.subList(0, 100)).withConsistentRead(true)), batches.get(0));
+        assertEquals(ImmutableMap.of(
+            "table1", new KeysAndAttributes().withKeys(keys.subList(100, 150)).withConsistentRead(true),
+            "table2", new KeysAndAttributes().withKeys(keys.subList(150, 200))), batches.get(1));
+        assertEquals(ImmutableMap.of("table2", new KeysAndAttributes().withKeys(keys.subList(200, 250))),
+            batches.get(2));
+    }
+
+    @Test
+    void batchGetItemRetryPolicy_backoffCeiling() {
+        BatchGetItemRetryPolicy policy = BatchGetItemRetryPolicy.builder()
+            .withBaseBackoffInMillis(10L)
+            .withMaxBackoffInMillis(1000L)
+            .build();
+        assertEquals(10L, policy.getBackoffCeilingInMillis(0));
+        assertEquals(80L, policy.getBackoffCeilingInMillis(3));
+        assertEquals(1000L, policy.getBackoffCeilingInMillis(7));
+        assertEquals(1000L, policy.getBackoffCeilingInMillis(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void batchGetItem_retriesUnprocessedKeys() {
+        AmazonDynamoDB amazonDynamoDb = AmazonDynamoDbLocal.getAmazonDynamoDbLocal();
+        AmazonDynamoDB throttlingDynamoDb = mock(AmazonDynamoDB.class, delegatesTo(amazonDynamoDb));
+        // the first physical call fails to process any keys, all later calls succeed
+        AtomicInteger batchGetItemCalls = new AtomicInteger();
+        doAnswer(invocation -> {
+            BatchGetItemRequest request = invocation.getArgument(0);
+            return batchGetItemCalls.getAndIncrement() == 0
+                ? new BatchGetItemResult().withUnprocessedKeys(request.getRequestItems())
+                : amazonDynamoDb.batchGetItem(request);
+        }).when(throttlingDynamoDb).batchGetItem(any(BatchGetItemRequest.class));
+        List<Long> sleeps = new ArrayList<>();
+        MtAmazonDynamoDbBySharedTable mtDynamoDb = SharedTableBuilder.builder()
+            .withAmazonDynamoDb(throttlingDynamoDb)
+            .withTablePrefix(MtAmazonDynamoDbBySharedTableTest.class.getSimpleName() + ".")
+            .withContext(MT_CONTEXT)
+            .withBatchGetItemRetryPolicy(BatchGetItemRetryPolicy.builder().withSleeper(sleeps::add).build())
+            .build();
+        String tableName = "batchGetItemRetryTable";
+        withTable(mtDynamoDb, "batchGetItemRetryTenant", tableName, () -> {
+            // read more keys than fit in a single physical batch
+            List<Map<String, AttributeValue>> keys = putItems(mtDynamoDb, tableName, 150);
+            BatchGetItemResult result = mtDynamoDb.batchGetItem(new BatchGetItemRequest()
+                .withRequestItems(ImmutableMap.of(tableName, new KeysAndAttributes().withKeys(keys))));
+
+            assertTrue(result.getUnprocessedKeys().isEmpty());
+            assertEquals(150, result.getResponses().get(tableName).size());
+            assertEquals(1, ((MtBatchGetItemResult) result).getRetryRounds());
+            assertEquals(1, sleeps.size());
+            assertEquals(3, batchGetItemCalls.get());
+        });
+    }
+
+    @Test
+    void batchGetItem_returnsUnqualifiedUnprocessedKeys() {
+        AmazonDynamoDB amazonDynamoDb = AmazonDynamoDbLocal.getAmazonDynamoDbLocal();
+        AmazonDynamoDB throttlingDynamoDb = mock(AmazonDynamoDB.class, delegatesTo(amazonDynamoDb));
+        doAnswer(invocation -> new BatchGetItemResult().withUnprocessedKeys(
+            ((BatchGetItemRequest) invocation.getArgument(0)).getRequestItems()))
+            .when(throttlingDynamoDb).batchGetItem(any(BatchGetItemRequest.class));
+        MtAmazonDynamoDbBySharedTable mtDynamoDb = SharedTableBuilder.builder()
+            .withAmazonDynamoDb(throttlingDynamoDb)
+            .withTablePrefix(MtAmazonDynamoDbBySharedTableTest.class.getSimpleName() + ".")
+            .withContext(MT_CONTEXT)
+            .build();
+        String tableName = "batchGetItemUnprocessedTable";
+        withTable(mtDynamoDb, "batchGetItemUnprocessedTenant", tableName, () -> {
+            List<Map<String, AttributeValue>> keys = putItems(mtDynamoDb, tableName, 3);
+            BatchGetItemResult result = mtDynamoDb.batchGetItem(new BatchGetItemRequest()
+                .withRequestItems(ImmutableMap.of(tableName, new KeysAndAttributes().withKeys(keys))));
+
+            assertTrue(result.getResponses().isEmpty());
+            assertEquals(ImmutableMap.of(tableName, new KeysAndAttributes().withKeys(keys)),
+                result.getUnprocessedKeys());
+            assertEquals(0, ((MtBatchGetItemResult) result).getRetryRounds());
+        });
+    }
+
+    @Test
+    void parallelScan() {
+        MtAmazonDynamoDbBySharedTable mtDynamoDb = SharedTableBuilder.builder()
+            .withAmazonDynamoDb(AmazonDynamoDbLocal.getAmazonDynamoDbLocal())
+            .withTablePrefix(MtAmazonDynamoDbBySharedTableTest.class.getSimpleName() + ".")
+            .withContext(MT_CONTEXT)
+            .build();
+        String tableName = "parallelScanTable";
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // another tenant's items live in the same physical table, but must not be returned
+            withTable(mtDynamoDb, "parallelScanOtherTenant", tableName, () -> {
+                putItems(mtDynamoDb, tableName, 20);
+                withTable(mtDynamoDb, "parallelScanTenant", tableName, () -> {
+                    final Set<Map<String, AttributeValue>> keys = new HashSet<>(putItems(mtDynamoDb, tableName, 50));
+                    ScanRequest scanRequest = new ScanRequest().withTableName(tableName);
+
+                    // read some items, then stop
+                    Set<Map<String, AttributeValue>> scanned = new HashSet<>();
+                    ParallelScan.Continuation continuation;
+                    try (ParallelScan scan = mtDynamoDb.parallelScan(scanRequest, 4, executor, 5)) {
+                        for (int i = 0; i < 10; i++) {
+                            assertTrue(scanned.add(scan.next()));
+                        }
+                        continuation = scan.getContinuation();
+                    }
+                    assertFalse(continuation.isComplete());
+
+                    // resume where we left off
+                    try (ParallelScan scan = mtDynamoDb.parallelScan(scanRequest, continuation, executor, 5)) {
+                        scan.forEachRemaining(item -> assertTrue(scanned.add(item)));
+                        assertTrue(scan.getContinuation().isComplete());
+                    }
+                    assertEquals(keys, scanned);
+                });
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void parallelScan_chainedDelegate() {
+        MtAmazonDynamoDbBySharedTable mtDynamoDb =
+            buildChained(MtAmazonDynamoDbBySharedTableTest.class.getSimpleName() + ".parallelScanChained.");
+        String tableName = "parallelScanChainedTable";
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            withTable(mtDynamoDb, "parallelScanChainedTenant", tableName, () -> {
+                Set<Map<String, AttributeValue>> keys = new HashSet<>(putItems(mtDynamoDb, tableName, 10));
+
+                // segments are scanned on executor threads, but in the physical table of the caller's tenant
+                Set<Map<String, AttributeValue>> scanned = new HashSet<>();
+                try (ParallelScan scan = mtDynamoDb.parallelScan(new ScanRequest().withTableName(tableName), 2,
+                    executor, 5)) {
+                    scan.forEachRemaining(item -> assertTrue(scanned.add(item)));
+                }
+                assertEquals(keys, scanned);
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void queryStream() {
+        MtAmazonDynamoDbBySharedTable mtDynamoDb = SharedTableBuilder.builder()
+            .withAmazonDynamoDb(AmazonDynamoDbLocal.getAmazonDynamoDbLocal())
+            .withTablePrefix(MtAmazonDynamoDbBySharedTableTest.class.getSimpleName() + ".queryStream.")
+            .withContext(MT_CONTEXT)
+            .build();
+        String tableName = "queryStreamTable";
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        MT_CONTEXT.withContext("queryStreamTenant", () -> {
+            mtDynamoDb.createTable(CreateTableRequestBuilder.builder()
+                .withTableName(tableName)
+                .withTableKeySchema("hk", S, "rk", S)
+                .withProvisionedThroughput(1L, 1L)
+                .build());
+            try {
+                List<Map<String, AttributeValue>> items = new ArrayList<>();
+                for (int i = 0; i < 25; i++) {
+                    Map<String, AttributeValue> item = ImmutableMap.of("hk", new AttributeValue("hk"),
+                        "rk", new AttributeValue(String.format("rk%02d", i)));
+                    mtDynamoDb.putItem(new PutItemRequest().withTableName(tableName).withItem(item));
+                    items.add(item);
+                }
+                QueryRequest queryRequest = new QueryRequest().withTableName(tableName)
+                    .withKeyConditionExpression("#hk = :hk")
+                    .withExpressionAttributeNames(ImmutableMap.of("#hk", "hk"))
+                    .withExpressionAttributeValues(ImmutableMap.of(":hk", new AttributeValue("hk")))
+                    .withLimit(4);
+
+                // items of all pages are returned in order
+                List<Map<String, AttributeValue>> streamed = new ArrayList<>();
+                try (QueryStream stream = mtDynamoDb.queryStream(queryRequest, executor, 2)) {
+                    stream.forEachRemaining(streamed::add);
+                }
+                assertEquals(items, streamed);
+
+                // closing the stream early stops it
+                QueryStream stream = mtDynamoDb.queryStream(queryRequest, executor, 1);
+                assertEquals(items.get(0), stream.next());
+                stream.close();
+                assertFalse(stream.hasNext());
+            } finally {
+                mtDynamoDb.deleteTable(new DeleteTableRequest(tableName));
+                executor.shutdownNow();
+            }
+        });
+    }
+
+    @Test
+    void queryStream_chainedDelegate() {
+        MtAmazonDynamoDbBySharedTable mtDynamoDb =
+            buildChained(MtAmazonDynamoDbBySharedTableTest.class.getSimpleName() + ".queryStreamChained.");
+        String tableName = "queryStreamChainedTable";
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        MT_CONTEXT.withContext("queryStreamChainedTenant", () -> {
+            mtDynamoDb.createTable(CreateTableRequestBuilder.builder()
+                .withTableName(tableName)
+                .withTableKeySchema("hk", S, "rk", S)
+                .withProvisionedThroughput(1L, 1L)
+                .build());
+            try {
+                List<Map<String, AttributeValue>> items = new ArrayList<>();
+                for (int i = 0; i < 5; i++) {
+                    Map<String, AttributeValue> item = ImmutableMap.of("hk", new AttributeValue("hk"),
+                        "rk", new AttributeValue("rk" + i));
+                    mtDynamoDb.putItem(new PutItemRequest().withTableName(tableName).withItem(item));
+                    items.add(item);
+                }
+                QueryRequest queryRequest = new QueryRequest().withTableName(tableName)
+                    .withKeyConditionExpression("#hk = :hk")
+                    .withExpressionAttributeNames(ImmutableMap.of("#hk", "hk"))
+                    .withExpressionAttributeValues(ImmutableMap.of(":hk", new AttributeValue("hk")))
+                    .withLimit(2);
+
+                // pages are read on executor threads, but from the physical table of the caller's tenant
+                List<Map<String, AttributeValue>> streamed = new ArrayList<>();
+                try (QueryStream stream = mtDynamoDb.queryStream(queryRequest, executor, 2)) {
+                    stream.forEachRemaining(streamed::add);
+                }
+                assertEquals(items, streamed);
+            } finally {
+                mtDynamoDb.deleteTable(new DeleteTableRequest(tableName));
+                executor.shutdownNow();
+            }
+        });
+    }
+
+    @Test
+    void addTenantIndexKey() {
+        AttributeValue tenantIndexValue = new AttributeValue().withB(ByteBuffer.wrap(new byte[] {1}));
+        assertEquals("set #___tenant___ = :___tenant___, #set = :set REMOVE b",
+            addTenantIndexKey("set #set = :set REMOVE b", tenantIndexValue).getUpdateExpression());
+        assertEquals("SET #___tenant___ = :___tenant___ REMOVE #set",
+            addTenantIndexKey("REMOVE #set", tenantIndexValue).getUpdateExpression());
+        assertEquals("REMOVE #a ADD #b :b SET #___tenant___ = :___tenant___, #c = :c",
+            addTenantIndexKey("REMOVE #a ADD #b :b SET #c = :c", tenantIndexValue).getUpdateExpression());
+        UpdateItemRequest request = addTenantIndexKey(null, tenantIndexValue);
+        assertEquals("SET #___tenant___ = :___tenant___", request.getUpdateExpression());
+        assertEquals(ImmutableMap.of("#___tenant___", "gsi_tenant_hk"), request.getExpressionAttributeNames());
+        assertEquals(ImmutableMap.of(":___tenant___", tenantIndexValue), request.getExpressionAttributeValues());
+    }
+
+    private static UpdateItemRequest addTenantIndexKey(String updateExpression, AttributeValue tenantIndexValue) {
+        UpdateItemRequest request = new UpdateItemRequest().withUpdateExpression(updateExpression);
+        MtAmazonDynamoDbBySharedTable.addTenantIndexKey(request, tenantIndexValue, ExpressionParser::parse);
+        return request;
     }
 
     @Test
-    void projectionContainsKey_hkInProjection() {
-        assertTrue(MtAmazonDynamoDbBySharedTable.projectionContainsKey(
-            new ScanRequest().withProjectionExpression("hk"), new PrimaryKey("hk", S)));
+    void scan_tenantIndex() {
+        AmazonDynamoDB amazonDynamoDb = mock(AmazonDynamoDB.class,
+            delegatesTo(AmazonDynamoDbLocal.getAmazonDynamoDbLocal()));
+        MtAmazonDynamoDbBySharedTable mtDynamoDb = SharedTableBuilder.builder()
+            .withTenantScanIndex(true)
+            .withAmazonDynamoDb(amazonDynamoDb)
+            .withTablePrefix(MtAmazonDynamoDbBySharedTableTest.class.getSimpleName() + ".tenantIndex.")
+            .withContext(MT_CONTEXT)
+            .build();
+        String tableName = "tenantIndexScanTable";
+        withTable(mtDynamoDb, "tenantIndexOtherTenant", tableName, () -> {
+            putItems(mtDynamoDb, tableName, 5);
+            withTable(mtDynamoDb, "tenantIndexTenant", tableName, () -> {
+                // items written by batchWriteItem, putItem, and updateItem must all be found
+                final Set<Map<String, AttributeValue>> keys = new HashSet<>(putItems(mtDynamoDb, tableName, 3));
+                Map<String, AttributeValue> putKey = ImmutableMap.of("hk", new AttributeValue("put"));
+                mtDynamoDb.putItem(new PutItemRequest().withTableName(tableName).withItem(putKey));
+                Map<String, AttributeValue> updateKey = ImmutableMap.of("hk", new AttributeValue("update"));
+                mtDynamoDb.updateItem(new UpdateItemRequest().withTableName(tableName).withKey(updateKey)
+                    .withUpdateExpression("SET #v = :v")
+                    .withExpressionAttributeNames(ImmutableMap.of("#v", "value"))
+                    .withExpressionAttributeValues(ImmutableMap.of(":v", new AttributeValue("v"))));
+                keys.add(putKey);
+                keys.add(ImmutableMap.of("hk", new AttributeValue("update"), "value", new AttributeValue("v")));
+
+                // page through the tenant's items one at a time
+                Set<Map<String, AttributeValue>> scanned = new HashSet<>();
+                ScanRequest scanRequest = new ScanRequest().withTableName(tableName).withLimit(1);
+                do {
+                    ScanResult scanResult = mtDynamoDb.scan(scanRequest);
+                    scanned.addAll(scanResult.getItems());
+                    scanRequest.setExclusiveStartKey(scanResult.getLastEvaluatedKey());
+                } while (scanRequest.getExclusiveStartKey() != null);
+                assertEquals(keys, scanned);
+            });
+        });
+        verify(amazonDynamoDb, never()).scan(any(ScanRequest.class));
     }
 
     @Test
-    void projectionContainsKey_hkInExpressionAttrNames() {
-        assertTrue(MtAmazonDynamoDbBySharedTable.projectionContainsKey(
-            new ScanRequest().withProjectionExpression("value")
-                .withExpressionAttributeNames(ImmutableMap.of("hk", "value")),
-            new PrimaryKey("hk", S)));
+    void scan_projection() {
+        MtAmazonDynamoDbBySharedTable mtDynamoDb = SharedTableBuilder.builder()
+            .withAmazonDynamoDb(AmazonDynamoDbLocal.getAmazonDynamoDbLocal())
+            .withTablePrefix(MtAmazonDynamoDbBySharedTableTest.class.getSimpleName() + ".projection.")
+            .withContext(MT_CONTEXT)
+            .build();
+        String tableName = "projectionScanTable";
+        withTable(mtDynamoDb, "projectionTenant", tableName, () -> {
+            Set<Map<String, AttributeValue>> expected = new HashSet<>();
+            for (int i = 0; i < 5; i++) {
+                mtDynamoDb.putItem(new PutItemRequest().withTableName(tableName).withItem(ImmutableMap.of(
+                    "hk", new AttributeValue("hk" + i),
+                    "value", new AttributeValue("value" + i),
+                    "other", new AttributeValue("other" + i))));
+                expected.add(ImmutableMap.of("value", new AttributeValue("value" + i)));
+            }
+
+            // the key is not projected, but paging by key must still work, and the key must not be returned
+            for (ScanRequest scanRequest : ImmutableList.of(
+                new ScanRequest().withProjectionExpression("#v")
+                    .withExpressionAttributeNames(ImmutableMap.of("#v", "value")),
+                new ScanRequest().withAttributesToGet("value"))) {
+                Set<Map<String, AttributeValue>> scanned = new HashSet<>();
+                scanRequest.withTableName(tableName).withLimit(1);
+                do {
+                    ScanResult scanResult = mtDynamoDb.scan(scanRequest);
+                    scanned.addAll(scanResult.getItems());
+                    scanRequest.setExclusiveStartKey(scanResult.getLastEvaluatedKey());
+                } while (scanRequest.getExclusiveStartKey() != null);
+                assertEquals(expected, scanned);
+            }
+
+            // projecting the key returns it
+            ScanResult scanResult = mtDynamoDb.scan(new ScanRequest().withTableName(tableName)
+                .withProjectionExpression("hk"));
+            assertEquals(5, scanResult.getItems().size());
+            scanResult.getItems().forEach(item -> assertEquals(ImmutableSet.of("hk"), item.keySet()));
+        });
+    }
+
+    @Test
+    void scan_budget() {
+        MtAmazonDynamoDbBySharedTable mtDynamoDb = SharedTableBuilder.builder()
+            .withAmazonDynamoDb(AmazonDynamoDbLocal.getAmazonDynamoDbLocal())
+            .withTablePrefix(MtAmazonDynamoDbBySharedTableTest.class.getSimpleName() + ".scanBudget.")
+            .withContext(MT_CONTEXT)
+            .withScanBudget(ScanBudget.builder().withMaxPages(2).withContinuationKey(new byte[16]).build())
+            .build();
+        String tableName = "scanBudgetTable";
+        withTable(mtDynamoDb, "scanBudgetOtherTenant", tableName, () -> {
+            putItems(mtDynamoDb, tableName, 20);
+            withTable(mtDynamoDb, "scanBudgetTenant", tableName, () -> {
+                Set<Map<String, AttributeValue>> keys = new HashSet<>(putItems(mtDynamoDb, tableName, 2));
+
+                // pages without items of the tenant are skipped at most two at a time
+                Set<Map<String, AttributeValue>> scanned = new HashSet<>();
+                List<Map<String, AttributeValue>> continuations = new ArrayList<>();
+                ScanRequest scanRequest = new ScanRequest().withTableName(tableName).withLimit(1);
+                do {
+                    ScanResult scanResult = mtDynamoDb.scan(scanRequest);
+                    if (scanResult.getItems().isEmpty() && scanResult.getLastEvaluatedKey() != null) {
+                        assertEquals(ImmutableSet.of(ScanBudget.CONTINUATION_ATTRIBUTE),
+                            scanResult.getLastEvaluatedKey().keySet());
+                        continuations.add(scanResult.getLastEvaluatedKey());
+                    }
+                    scanned.addAll(scanResult.getItems());
+                    scanRequest.setExclusiveStartKey(scanResult.getLastEvaluatedKey());
+                } while (scanRequest.getExclusiveStartKey() != null);
+                assertEquals(keys, scanned);
+                assertFalse(continuations.isEmpty());
+
+                // continuations are only valid for the tenant and table they were issued for
+                MT_CONTEXT.withContext("scanBudgetOtherTenant", () ->
+                    assertThrows(IllegalArgumentException.class, () -> mtDynamoDb.scan(
+                        new ScanRequest().withTableName(tableName).withExclusiveStartKey(continuations.get(0)))));
+
+                // continuations of a segment are only valid for that segment
+                List<Map<String, AttributeValue>> segmentContinuations = new ArrayList<>();
+                for (int segment = 0; segment < 2; segment++) {
+                    ScanRequest segmentRequest = new ScanRequest().withTableName(tableName).withLimit(1)
+                        .withSegment(segment).withTotalSegments(2);
+                    do {
+                        ScanResult scanResult = mtDynamoDb.scan(segmentRequest);
+                        if (scanResult.getItems().isEmpty() && scanResult.getLastEvaluatedKey() != null) {
+                            segmentContinuations.add(scanResult.getLastEvaluatedKey());
+                            assertThrows(IllegalArgumentException.class, () -> mtDynamoDb.scan(new ScanRequest()
+                                .withTableName(tableName).withExclusiveStartKey(scanResult.getLastEvaluatedKey())
+                                .withSegment(1 - segmentRequest.getSegment()).withTotalSegments(2)));
+                            assertThrows(IllegalArgumentException.class, () -> mtDynamoDb.scan(new ScanRequest()
+                                .withTableName(tableName).withExclusiveStartKey(scanResult.getLastEvaluatedKey())));
+                        }
+                        segmentRequest.setExclusiveStartKey(scanResult.getLastEvaluatedKey());
+                    } while (segmentRequest.getExclusiveStartKey() != null);
+                }
+                assertFalse(segmentContinuations.isEmpty());
+            });
+        });
     }
 
     @Test
-    void projectionContainsKey_hkInLegacyProjection() {
-        assertTrue(MtAmazonDynamoDbBySharedTable.projectionContainsKey(
-            new ScanRequest().withAttributesToGet("hk"), new PrimaryKey("hk", S)));
+    void binaryHashKeys() {
+        AmazonDynamoDB amazonDynamoDb = mock(AmazonDynamoDB.class,
+            delegatesTo(AmazonDynamoDbLocal.getAmazonDynamoDbLocal()));
+        MtAmazonDynamoDbBySharedTable mtDynamoDb = SharedTableBuilder.builder()
+            .withBinaryHashKeys(true)
+            .withAmazonDynamoDb(amazonDynamoDb)
+            .withTablePrefix(MtAmazonDynamoDbBySharedTableTest.class.getSimpleName() + ".binaryHashKeys.")
+            .withContext(MT_CONTEXT)
+            .build();
+        String tableName = "binaryHashKeyTable";
+        // not valid UTF-8, so these would not survive being decoded and re-encoded as a string
+        AttributeValue hashKey = new AttributeValue().withB(ByteBuffer.wrap(new byte[] {(byte) 0xc3, 0x28}));
+        Map<String, AttributeValue> item = ImmutableMap.of("hk", hashKey, "rk", new AttributeValue("rk"));
+        for (String tenant : ImmutableList.of("binaryTenant1", "binaryTenant2")) {
+            MT_CONTEXT.withContext(tenant, () -> {
+                mtDynamoDb.createTable(CreateTableRequestBuilder.builder()
+                    .withTableName(tableName)
+                    .withTableKeySchema("hk", B, "rk", S)
+                    .withProvisionedThroughput(1L, 1L)
+                    .build());
+                mtDynamoDb.putItem(new PutItemRequest().withTableName(tableName).withItem(item));
+            });
+        }
+        try {
+            MT_CONTEXT.withContext("binaryTenant1", () -> {
+                assertEquals(item, mtDynamoDb.getItem(new GetItemRequest().withTableName(tableName).withKey(item))
+                    .getItem());
+                assertEquals(ImmutableList.of(item), mtDynamoDb.query(new QueryRequest().withTableName(tableName)
+                    .withKeyConditionExpression("hk = :hk")
+                    .withExpressionAttributeValues(ImmutableMap.of(":hk", hashKey))).getItems());
+                assertEquals(ImmutableList.of(item),
+                    mtDynamoDb.scan(new ScanRequest().withTableName(tableName)).getItems());
+            });
+        } finally {
+            for (String tenant : ImmutableList.of("binaryTenant1", "binaryTenant2")) {
+                MT_CONTEXT.withContext(tenant, () -> mtDynamoDb.deleteTable(new DeleteTableRequest(tableName)));
+            }
+        }
+        // the item was read from the binary counterpart of the default hash-range table without LSIs
+        ArgumentCaptor<GetItemRequest> getItemRequest = ArgumentCaptor.forClass(GetItemRequest.class);
+        verify(amazonDynamoDb, atLeastOnce()).getItem(getItemRequest.capture());
+        GetItemRequest physicalGetItemRequest = getItemRequest.getAllValues().stream()
+            .filter(request -> request.getTableName().endsWith("mt_sharedtablestatic_b_s_nolsi"))
+            .findFirst().orElseThrow(IllegalStateException::new);
+        assertNotNull(physicalGetItemRequest.getKey().get("hk").getB());
+    }
+
+    @Test
+    void tableMappingCacheStats() {
+        MtAmazonDynamoDbBySharedTable mtDynamoDb = SharedTableBuilder.builder()
+            .withCacheSpec("maximumSize=100,recordStats")
+            .withAmazonDynamoDb(AmazonDynamoDbLocal.getAmazonDynamoDbLocal())
+            .withTablePrefix(MtAmazonDynamoDbBySharedTableTest.class.getSimpleName() + ".cacheStats.")
+            .withContext(MT_CONTEXT)
+            .build();
+        String tableName = "cacheStatsTable";
+        withTable(mtDynamoDb, "cacheStatsTenant", tableName, () -> {
+            Map<String, AttributeValue> key = ImmutableMap.of("hk", new AttributeValue("hk"));
+            for (int i = 0; i < 3; i++) {
+                mtDynamoDb.getItem(new GetItemRequest().withTableName(tableName).withKey(key));
+            }
+        });
+        CacheStats stats = mtDynamoDb.getTableMappingCacheStats().get("cacheStatsTenant");
+        assertEquals(1L, stats.loadSuccessCount());
+        assertTrue(stats.hitCount() >= 2L);
+        assertFalse(mtDynamoDb.getTableMappingCacheStats().containsKey("otherTenant"));
+    }
+
+    @Test
+    void warmUp() {
+        AmazonDynamoDB amazonDynamoDb = mock(AmazonDynamoDB.class,
+            delegatesTo(AmazonDynamoDbLocal.getAmazonDynamoDbLocal()));
+        Supplier<MtAmazonDynamoDbBySharedTable> builder = () -> SharedTableBuilder.builder()
+            .withCacheSpec("recordStats")
+            .withAmazonDynamoDb(amazonDynamoDb)
+            .withTablePrefix(MtAmazonDynamoDbBySharedTableTest.class.getSimpleName() + ".warmUp.")
+            .withContext(MT_CONTEXT)
+            .build();
+        MtAmazonDynamoDbBySharedTable mtDynamoDb = builder.get();
+        String tableName = "warmUpTable";
+        withTable(mtDynamoDb, "warmUpTenant1", tableName, () ->
+            withTable(mtDynamoDb, "warmUpTenant2", tableName, () -> {
+                // a new instance starts with empty caches
+                MtAmazonDynamoDbBySharedTable warmDynamoDb = builder.get();
+                ExecutorService executor = Executors.newFixedThreadPool(2);
+                try {
+                    assertEquals(1, warmDynamoDb.warmUp(ImmutableSet.of("warmUpTenant1"), 2, executor));
+                } finally {
+                    executor.shutdown();
+                }
+                Map<String, AttributeValue> key = ImmutableMap.of("hk", new AttributeValue("hk"));
+                for (String tenant : ImmutableList.of("warmUpTenant1", "warmUpTenant2")) {
+                    MT_CONTEXT.withContext(tenant, () ->
+                        warmDynamoDb.getItem(new GetItemRequest().withTableName(tableName).withKey(key)));
+                }
+                // the table mapping of the hot tenant was cached, the other one had to be loaded
+                Map<String, CacheStats> stats = warmDynamoDb.getTableMappingCacheStats();
+                assertEquals(0L, stats.get("warmUpTenant1").loadCount());
+                assertEquals(1L, stats.get("warmUpTenant1").hitCount());
+                assertEquals(1L, stats.get("warmUpTenant2").loadCount());
+            }));
+    }
+
+    @Test
+    void warmUp_chainedDelegate() {
+        String tablePrefix = MtAmazonDynamoDbBySharedTableTest.class.getSimpleName() + ".warmUpChained.";
+        Supplier<MtAmazonDynamoDbBySharedTable> builder = () -> buildChained(tablePrefix);
+        MtAmazonDynamoDbBySharedTable mtDynamoDb = builder.get();
+        String tableName = "warmUpChainedTable";
+        String tenant = "warmUpChainedTenant";
+        Map<String, AttributeValue> key = ImmutableMap.of("hk", new AttributeValue("hk"));
+        withTable(mtDynamoDb, tenant, tableName, () -> {
+            mtDynamoDb.putItem(new PutItemRequest().withTableName(tableName).withItem(key));
+
+            MtAmazonDynamoDbBySharedTable warmDynamoDb = builder.get();
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                assertEquals(1, warmDynamoDb.warmUp(ImmutableSet.of(tenant), 2, executor));
+            } finally {
+                executor.shutdown();
+            }
+            // the physical table was resolved in the tenant's context rather than the base context
+            assertTrue(AmazonDynamoDbLocal.getAmazonDynamoDbLocal().listTables().getTableNames().stream()
+                .noneMatch(name -> name.startsWith(tablePrefix + MtAmazonDynamoDbContextProviderImpl.BASE_CONTEXT
+                    + ".mt_sharedtable")));
+            assertEquals(key, getItem(warmDynamoDb, tableName, "hk"));
+            assertEquals(0L, warmDynamoDb.getTableMappingCacheStats().get(tenant).loadCount());
+        });
+    }
+
+    @Test
+    void tableMappingCacheFlushedOnStreamReset() {
+        AmazonDynamoDBStreams streamsLocal = AmazonDynamoDbLocal.getAmazonDynamoDbStreamsLocal();
+        AmazonDynamoDBStreams streams = mock(AmazonDynamoDBStreams.class, delegatesTo(streamsLocal));
+        AtomicBoolean failGetRecords = new AtomicBoolean();
+        doAnswer(invocation -> {
+            if (failGetRecords.getAndSet(false)) {
+                throw new TrimmedDataAccessException("trimmed");
+            }
+            return streamsLocal.getRecords(invocation.getArgument(0));
+        }).when(streams).getRecords(any(GetRecordsRequest.class));
+        String tablePrefix = MtAmazonDynamoDbBySharedTableTest.class.getSimpleName() + ".streamReset.";
+        MtDynamoDbTableDescriptionRepo repo = MtDynamoDbTableDescriptionRepo.builder()
+            .withAmazonDynamoDb(AmazonDynamoDbLocal.getAmazonDynamoDbLocal())
+            .withContext(MT_CONTEXT)
+            .withTableDescriptionTableName("_tablemetadata")
+            .withTablePrefix(Optional.of(tablePrefix))
+            .withPollIntervalSeconds(0)
+            .withCacheInvalidationStreams(streams)
+            .withCacheInvalidationPollIntervalMillis(50L)
+            .build();
+        Set<String> changedTables = ConcurrentHashMap.newKeySet();
+        repo.addTableDescriptionChangeListener((context, tableName) -> changedTables.add(tableName));
+        MtAmazonDynamoDbBySharedTable mtDynamoDb = SharedTableBuilder.builder()
+            .withAmazonDynamoDb(AmazonDynamoDbLocal.getAmazonDynamoDbLocal())
+            .withTablePrefix(tablePrefix)
+            .withTableDescriptionRepo(repo)
+            .withCacheSpec("recordStats")
+            .withContext(MT_CONTEXT)
+            .build();
+        String tableName = "streamResetTable";
+        String tenant = "streamResetTenant";
+        try {
+            withTable(mtDynamoDb, tenant, tableName, () -> {
+                // wait for the creation of the table to be consumed, so that it does not invalidate the mapping later
+                await().atMost(10, SECONDS).until(() -> changedTables.contains(tableName));
+                getItem(mtDynamoDb, tableName, "hk");
+                assertEquals(1L, mtDynamoDb.getTableMappingCacheStats().get(tenant).loadCount());
+
+                // once the consumer loses its position, the mapping is rebuilt on the next access
+                failGetRecords.set(true);
+                await().atMost(10, SECONDS).until(() -> {
+                    getItem(mtDynamoDb, tableName, "hk");
+                    return mtDynamoDb.getTableMappingCacheStats().get(tenant).loadCount() == 2L;
+                });
+            });
+        } finally {
+            repo.shutdown();
+        }
+    }
+
+    @Test
+    void concurrentFirstRequestsCreatePhysicalTableOnce() throws Exception {
+        AmazonDynamoDB amazonDynamoDb = mock(AmazonDynamoDB.class,
+            delegatesTo(AmazonDynamoDbLocal.getAmazonDynamoDbLocal()));
+        String tablePrefix = MtAmazonDynamoDbBySharedTableTest.class.getSimpleName() + ".concurrentFirstRequests.";
+        MtAmazonDynamoDbBySharedTable mtDynamoDb = SharedTableBuilder.builder()
+            .withAmazonDynamoDb(amazonDynamoDb)
+            .withTablePrefix(tablePrefix)
+            .withContext(MT_CONTEXT)
+            .withPrecreateTables(false)
+            .build();
+        // all virtual tables map to the same physical table, which does not exist yet
+        List<String> tableNames = IntStream.range(0, 8).mapToObj(i -> "concurrentTable" + i)
+            .collect(Collectors.toList());
+        String tenant = "concurrentTenant";
+        MT_CONTEXT.withContext(tenant, () -> tableNames.forEach(tableName ->
+            mtDynamoDb.createTable(CreateTableRequestBuilder.builder()
+                .withTableName(tableName)
+                .withTableKeySchema("hk", S)
+                .withProvisionedThroughput(1L, 1L)
+                .build())));
+
+        ExecutorService executor = Executors.newFixedThreadPool(tableNames.size());
+        try {
+            Map<String, AttributeValue> key = ImmutableMap.of("hk", new AttributeValue("hk"));
+            List<Future<?>> futures = new ArrayList<>();
+            for (String tableName : tableNames) {
+                futures.add(executor.submit(() -> MT_CONTEXT.withContext(tenant, () ->
+                    mtDynamoDb.getItem(new GetItemRequest().withTableName(tableName).withKey(key)))));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        ArgumentCaptor<CreateTableRequest> createTableRequests = ArgumentCaptor.forClass(CreateTableRequest.class);
+        verify(amazonDynamoDb, atLeastOnce()).createTable(createTableRequests.capture());
+        assertEquals(1L, createTableRequests.getAllValues().stream()
+            .filter(request -> request.getTableName().startsWith(tablePrefix + "mt_sharedtablestatic"))
+            .count());
+    }
+
+    @Test
+    void physicalTableDescriptionsShared() {
+        AmazonDynamoDB amazonDynamoDb = mock(AmazonDynamoDB.class,
+            delegatesTo(AmazonDynamoDbLocal.getAmazonDynamoDbLocal()));
+        String tablePrefix = MtAmazonDynamoDbBySharedTableTest.class.getSimpleName() + ".physicalTables.";
+        MtAmazonDynamoDbBySharedTable mtDynamoDb = SharedTableBuilder.builder()
+            .withAmazonDynamoDb(amazonDynamoDb)
+            .withTablePrefix(tablePrefix)
+            .withContext(MT_CONTEXT)
+            .build();
+        // physical tables are described once when they are precreated, not again for each tenant's virtual table
+        clearInvocations(amazonDynamoDb);
+        String tableName = "physicalTablesTable";
+        Map<String, AttributeValue> key = ImmutableMap.of("hk", new AttributeValue("hk"));
+        for (String tenant : ImmutableList.of("physicalTablesTenant1", "physicalTablesTenant2")) {
+            withTable(mtDynamoDb, tenant, tableName, () ->
+                mtDynamoDb.getItem(new GetItemRequest().withTableName(tableName).withKey(key)));
+        }
+        verify(amazonDynamoDb, never()).describeTable(startsWith(tablePrefix + "mt_sharedtablestatic"));
+    }
+
+    @Test
+    void precreateTables() {
+        AmazonDynamoDB amazonDynamoDb = mock(AmazonDynamoDB.class,
+            delegatesTo(AmazonDynamoDbLocal.getAmazonDynamoDbLocal()));
+        String tablePrefix = MtAmazonDynamoDbBySharedTableTest.class.getSimpleName() + ".precreateTables.";
+        Supplier<MtAmazonDynamoDbBySharedTable> builder = () -> SharedTableBuilder.builder()
+            .withAmazonDynamoDb(amazonDynamoDb)
+            .withTablePrefix(tablePrefix)
+            .withContext(MT_CONTEXT)
+            .withPrecreateTablesTimeoutSeconds(60)
+            .build();
+        builder.get();
+        ArgumentCaptor<CreateTableRequest> createTableRequests = ArgumentCaptor.forClass(CreateTableRequest.class);
+        verify(amazonDynamoDb, atLeastOnce()).createTable(createTableRequests.capture());
+        List<String> physicalTableNames = createTableRequests.getAllValues().stream()
+            .map(CreateTableRequest::getTableName)
+            .filter(tableName -> tableName.startsWith(tablePrefix + "mt_sharedtablestatic"))
+            .collect(Collectors.toList());
+        // all physical tables are created once and are active when the instance has been built
+        assertTrue(physicalTableNames.size() > 1);
+        assertEquals(physicalTableNames.size(), new HashSet<>(physicalTableNames).size());
+        for (String physicalTableName : physicalTableNames) {
+            assertEquals("ACTIVE", amazonDynamoDb.describeTable(physicalTableName).getTable().getTableStatus());
+        }
+
+        // existing tables are not created again
+        clearInvocations(amazonDynamoDb);
+        builder.get();
+        verify(amazonDynamoDb, never()).createTable(any(CreateTableRequest.class));
+    }
+
+    /*
+     * Builds a shared table instance whose physical tables are tables of the current tenant in a table-per-tenant
+     * delegate, so that requests against the wrong tenant context hit different physical tables.
+     */
+    private static MtAmazonDynamoDbBySharedTable buildChained(String tablePrefix) {
+        AmazonDynamoDB amazonDynamoDb = AmazonDynamoDbLocal.getAmazonDynamoDbLocal();
+        return SharedTableBuilder.builder()
+            .withAmazonDynamoDb(MtAmazonDynamoDbByTable.builder()
+                .withAmazonDynamoDb(amazonDynamoDb)
+                .withContext(MT_CONTEXT)
+                .withTablePrefix(tablePrefix)
+                .build())
+            .withTableDescriptionRepo(MtDynamoDbTableDescriptionRepo.builder()
+                .withAmazonDynamoDb(amazonDynamoDb)
+                .withContext(MT_CONTEXT)
+                .withTableDescriptionTableName("_tablemetadata")
+                .withTablePrefix(Optional.of(tablePrefix))
+                .withPollIntervalSeconds(0)
+                .build())
+            .withCacheSpec("recordStats")
+            .withContext(MT_CONTEXT)
+            .withPrecreateTables(false)
+            .build();
+    }
+
+    private static void withTable(MtAmazonDynamoDbBySharedTable mtDynamoDb, String tenant, String tableName,
+                                  Runnable runnable) {
+        MT_CONTEXT.withContext(tenant, () -> {
+            mtDynamoDb.createTable(CreateTableRequestBuilder.builder()
+                .withTableName(tableName)
+                .withTableKeySchema("hk", S)
+                .withProvisionedThroughput(1L, 1L)
+                .build());
+            try {
+                runnable.run();
+            } finally {
+                mtDynamoDb.deleteTable(new DeleteTableRequest(tableName));
+            }
+        });
+    }
+
+    /*
+     * Puts the given number of items into the table and returns their keys.
+     */
+    private static List<Map<String, AttributeValue>> putItems(MtAmazonDynamoDbBySharedTable mtDynamoDb,
+                                                             String tableName,
+                                                             int count) {
+        List<Map<String, AttributeValue>> keys = IntStream.range(0, count)
+            .mapToObj(i -> (Map<String, AttributeValue>) ImmutableMap.of("hk", new AttributeValue("hk" + i)))
+            .collect(Collectors.toList());
+        mtDynamoDb.batchWriteItem(new BatchWriteItemRequest().withRequestItems(ImmutableMap.of(tableName,
+            keys.stream().map(MtAmazonDynamoDbBySharedTableTest::putRequest).collect(Collectors.toList()))));
+        return keys;
+    }
+
+    private static Map<String, AttributeValue> getItem(MtAmazonDynamoDbBySharedTable mtDynamoDb,
+                                                       String tableName,
+                                                       String hashKeyValue) {
+        return mtDynamoDb.getItem(new GetItemRequest().withTableName(tableName)
+            .withKey(ImmutableMap.of("hk", new AttributeValue(hashKeyValue)))).getItem();
+    }
+
+    private static WriteRequest putRequest(Map<String, AttributeValue> item) {
+        return new WriteRequest().withPutRequest(new PutRequest().withItem(item));
     }
 
-}
\ No newline at end of file
+}
@@ -10,6 +10,7 @@ package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
 import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.S;
 import static com.salesforce.dynamodbv2.mt.mappers.index.DynamoSecondaryIndex.DynamoSecondaryIndexType.GSI;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
@@ -20,14 +21,15 @@ import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
 import com.amazonaws.services.dynamodbv2.model.QueryRequest;
 import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
 import com.salesforce.dynamodbv2.mt.mappers.CreateTableRequestBuilder;
 import com.salesforce.dynamodbv2.mt.mappers.index.DynamoSecondaryIndexMapperByTypeImpl;
 import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescription;
 import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescriptionImpl;
 import com.salesforce.dynamodbv2.mt.mappers.metadata.PrimaryKey;
-import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.FieldPrefixFunction.FieldValue;
 import java.util.HashMap;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -198,9 +200,7 @@ class QueryAndScanMapperTest {
 
         FieldPrefixFunction fieldPrefixFunction = mock(FieldPrefixFunction.class);
         FieldMapper fieldMapper = new FieldMapper(null, null, fieldPrefixFunction);
-        FieldValue fieldValue = mock(FieldValue.class);
-        when(fieldValue.getQualifiedValue()).thenReturn("prefixed");
-        when(fieldPrefixFunction.apply(any(), any(), any())).thenReturn(fieldValue);
+        when(fieldPrefixFunction.qualify(any(), any(), any())).thenReturn("prefixed");
         new QueryAndScanMapper(TABLE_MAPPING, fieldMapper).apply(scanRequest);
 
         assertEquals(new ScanRequest()
@@ -211,6 +211,69 @@ class QueryAndScanMapperTest {
                 scanRequest);
     }
 
+    @Test
+    void nonIndexScanHkFieldInDisjunction() {
+        ScanRequest scanRequest = new ScanRequest()
+                .withFilterExpression("#field = :value or #other = :other")
+                .withExpressionAttributeNames(ImmutableMap.of("#field", "virtualhk", "#other", "other"))
+                .withExpressionAttributeValues(ImmutableMap.of(":value", new AttributeValue().withS("hkvalue"),
+                    ":other", new AttributeValue().withS("othervalue")));
+
+        FieldPrefixFunction fieldPrefixFunction = mock(FieldPrefixFunction.class);
+        FieldMapper fieldMapper = new FieldMapper(null, null, fieldPrefixFunction);
+        when(fieldPrefixFunction.qualify(any(), any(), any())).thenReturn("prefixed");
+        new QueryAndScanMapper(TABLE_MAPPING, fieldMapper).apply(scanRequest);
+
+        // the hash key condition does not restrict all results, so the begins_with condition must still be added
+        assertEquals(new ScanRequest()
+                        .withFilterExpression("(#field = :value or #other = :other) "
+                            + "and begins_with(#___name___, :___value___)")
+                        .withExpressionAttributeNames(ImmutableMap.of("#field", "physicalhk",
+                            "#other", "other",
+                            "#___name___", "physicalhk"))
+                        .withExpressionAttributeValues(ImmutableMap.of(":value",
+                                new AttributeValue().withS("ctx.virtualTable.hkvalue"),
+                                ":other", new AttributeValue().withS("othervalue"),
+                                ":___value___", new AttributeValue().withS("prefixed"))),
+                scanRequest);
+    }
+
+    @Test
+    void scanWithProjection() {
+        ScanRequest scanRequest = new ScanRequest()
+                .withFilterExpression("#field = :value")
+                .withProjectionExpression("#field, virtualgsihk, #other.nested")
+                .withExpressionAttributeNames(ImmutableMap.of("#field", "virtualhk", "#other", "other"))
+                .withExpressionAttributeValues(ImmutableMap.of(":value", new AttributeValue().withS("hkvalue")));
+
+        assertEquals(ImmutableSet.of("virtualgsihk2"), getMockQueryMapper().getUnprojectedFields(scanRequest,
+            ImmutableList.of("virtualhk", "virtualgsihk", "other", "virtualgsihk2")));
+        getMockQueryMapper().apply(scanRequest, ImmutableList.of("virtualgsihk2"));
+
+        assertEquals("#field, #field2, #other.nested, #field1", scanRequest.getProjectionExpression());
+        assertEquals(ImmutableMap.of("#field", "physicalhk",
+            "#other", "other",
+            "#field1", "virtualgsihk2",
+            "#field2", "physicalgsihk"), scanRequest.getExpressionAttributeNames());
+    }
+
+    @Test
+    void scanWithLegacyProjection() {
+        ScanRequest scanRequest = new ScanRequest().withAttributesToGet("virtualhk", "other");
+
+        assertEquals(ImmutableSet.of("virtualgsihk"), getMockQueryMapper().getUnprojectedFields(scanRequest,
+            ImmutableList.of("virtualhk", "virtualgsihk")));
+        new QueryAndScanMapper(TABLE_MAPPING, new FieldMapper(null, null, mock(FieldPrefixFunction.class)))
+            .apply(scanRequest, ImmutableList.of("virtualgsihk"));
+
+        assertNull(scanRequest.getAttributesToGet());
+        assertEquals("#field1, #field2, #field3", scanRequest.getProjectionExpression());
+        assertEquals(ImmutableMap.of("#field1", "physicalhk",
+            "#field2", "other",
+            "#field3", "physicalgsihk",
+            "#___name___", "physicalhk"), scanRequest.getExpressionAttributeNames());
+    }
+
     @ParameterizedTest
     @EnumSource(value = ComparisonOperator.class, names = { "EQ", "GT" })
     void scanWithFilterExpressionAndScanFilter(ComparisonOperator comparisonOperator) {
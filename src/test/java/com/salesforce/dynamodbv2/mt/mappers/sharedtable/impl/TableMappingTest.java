@@ -229,7 +229,7 @@ class TableMappingTest {
     void validateVirtualPhysicalCompatibility_invalidVirtualHkType() {
         assertException((TestFunction<IllegalArgumentException>) () ->
                         sut.validateCompatiblePrimaryKey(new PrimaryKey("hk", S), new PrimaryKey("hk", N)),
-                "hash key must be of type S");
+                "hash key must be of type S or B");
     }
 
     @Test
@@ -330,7 +330,7 @@ class TableMappingTest {
                                         .withTableName("physicalTableName")
                                         .withTableKeySchema("physicalhk", N)
                                         .build())),
-                "physical table physicalTableName's primary-key hash key must be type S, encountered type N");
+                "physical table physicalTableName's primary-key hash key must be type S or B, encountered type N");
         assertException((TestFunction<IllegalArgumentException>) () ->
                         sut.validatePhysicalTable(new DynamoTableDescriptionImpl(
                                 CreateTableRequestBuilder
@@ -342,8 +342,8 @@ class TableMappingTest {
                                                 new PrimaryKey("physicalgsihk", N),
                                                 1L)
                                         .build())),
-                "physical table physicalTableName's GSI physicalgsi's primary-key hash key must be type S, encountered "
-                        + "type N");
+                "physical table physicalTableName's GSI physicalgsi's primary-key hash key must be type S or B, "
+                        + "encountered type N");
         assertException((TestFunction<IllegalArgumentException>) () ->
                         sut.validatePhysicalTable(new DynamoTableDescriptionImpl(
                                 CreateTableRequestBuilder
@@ -353,8 +353,8 @@ class TableMappingTest {
                                         .addSi("physicallsi", LSI, new PrimaryKey("physicalgsihk", N),
                                                 1L)
                                         .build())),
-                "physical table physicalTableName's LSI physicallsi's primary-key hash key must be type S, encountered "
-                        + "type N");
+                "physical table physicalTableName's LSI physicallsi's primary-key hash key must be type S or B, "
+                        + "encountered type N");
     }
 
     private static void assertException(TestFunction test, String expectedMessagePrefix) {
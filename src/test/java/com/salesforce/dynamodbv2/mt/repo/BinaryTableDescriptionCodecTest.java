@@ -0,0 +1,124 @@
+package com.salesforce.dynamodbv2.mt.repo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeDefinition;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.KeyType;
+import com.amazonaws.services.dynamodbv2.model.LocalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputDescription;
+import com.amazonaws.services.dynamodbv2.model.ScalarAttributeType;
+import com.amazonaws.services.dynamodbv2.model.StreamSpecification;
+import com.amazonaws.services.dynamodbv2.model.StreamViewType;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+class BinaryTableDescriptionCodecTest {
+
+    private static final TableDescription TABLE_DESCRIPTION = new TableDescription()
+        .withTableName("table")
+        .withKeySchema(new KeySchemaElement("hk", KeyType.HASH), new KeySchemaElement("rk", KeyType.RANGE))
+        .withAttributeDefinitions(new AttributeDefinition("hk", ScalarAttributeType.S),
+            new AttributeDefinition("rk", ScalarAttributeType.N),
+            new AttributeDefinition("gsihk", ScalarAttributeType.B))
+        .withProvisionedThroughput(new ProvisionedThroughputDescription()
+            .withReadCapacityUnits(1L)
+            .withWriteCapacityUnits(2L))
+        .withStreamSpecification(new StreamSpecification()
+            .withStreamEnabled(true)
+            .withStreamViewType(StreamViewType.NEW_AND_OLD_IMAGES))
+        .withLocalSecondaryIndexes(new LocalSecondaryIndexDescription()
+            .withIndexName("lsi")
+            .withKeySchema(new KeySchemaElement("hk", KeyType.HASH), new KeySchemaElement("gsihk", KeyType.RANGE))
+            .withProjection(new Projection().withProjectionType(ProjectionType.INCLUDE).withNonKeyAttributes("a", "b")))
+        .withGlobalSecondaryIndexes(new GlobalSecondaryIndexDescription()
+            .withIndexName("gsi")
+            .withKeySchema(new KeySchemaElement("gsihk", KeyType.HASH))
+            .withProjection(new Projection().withProjectionType(ProjectionType.KEYS_ONLY))
+            .withProvisionedThroughput(new ProvisionedThroughputDescription()
+                .withReadCapacityUnits(3L)
+                .withWriteCapacityUnits(4L)));
+
+    private final TableDescriptionCodec codec = new BinaryTableDescriptionCodec();
+
+    @Test
+    void roundTrip() {
+        AttributeValue value = codec.encode(TABLE_DESCRIPTION);
+        assertNotNull(value.getB());
+        assertEquals(TABLE_DESCRIPTION, codec.decode(value));
+    }
+
+    @Test
+    void roundTripMinimal() {
+        TableDescription tableDescription = new TableDescription()
+            .withTableName("table")
+            .withKeySchema(new KeySchemaElement("hk", KeyType.HASH))
+            .withAttributeDefinitions(new AttributeDefinition("hk", ScalarAttributeType.S));
+        TableDescription decoded = codec.decode(codec.encode(tableDescription));
+        assertEquals(tableDescription, decoded);
+        assertNull(decoded.getStreamSpecification());
+        assertNull(decoded.getGlobalSecondaryIndexes());
+    }
+
+    @Test
+    void smallerThanJson() {
+        int binarySize = codec.encode(TABLE_DESCRIPTION).getB().remaining();
+        int jsonSize = new JsonTableDescriptionCodec().encode(TABLE_DESCRIPTION).getS().length();
+        assertTrue(binarySize * 2 < jsonSize, "binary: " + binarySize + ", json: " + jsonSize);
+    }
+
+    @Test
+    void decodeJson() {
+        AttributeValue json = new JsonTableDescriptionCodec().encode(TABLE_DESCRIPTION);
+        assertEquals(TABLE_DESCRIPTION, codec.decode(json));
+    }
+
+    @Test
+    void decodeUnknownVersion() {
+        assertThrows(IllegalArgumentException.class,
+            () -> codec.decode(new AttributeValue().withB(ByteBuffer.wrap(new byte[] {2}))));
+    }
+
+    /**
+     * Fails if the SDK adds enum values that the codec cannot encode.
+     */
+    @Test
+    void roundTripAllEnumValues() {
+        for (StreamViewType streamViewType : StreamViewType.values()) {
+            for (ProjectionType projectionType : ProjectionType.values()) {
+                for (ScalarAttributeType attributeType : ScalarAttributeType.values()) {
+                    TableDescription tableDescription = new TableDescription()
+                        .withTableName("table")
+                        .withKeySchema(new KeySchemaElement("hk", KeyType.HASH),
+                            new KeySchemaElement("rk", KeyType.RANGE))
+                        .withAttributeDefinitions(new AttributeDefinition("hk", attributeType))
+                        .withStreamSpecification(new StreamSpecification()
+                            .withStreamEnabled(true)
+                            .withStreamViewType(streamViewType))
+                        .withGlobalSecondaryIndexes(new GlobalSecondaryIndexDescription()
+                            .withIndexName("gsi")
+                            .withKeySchema(new KeySchemaElement("hk", KeyType.HASH))
+                            .withProjection(new Projection().withProjectionType(projectionType)));
+                    assertEquals(tableDescription, codec.decode(codec.encode(tableDescription)));
+                }
+            }
+        }
+    }
+
+    @Test
+    void decodeTruncated() {
+        ByteBuffer encoded = codec.encode(TABLE_DESCRIPTION).getB();
+        encoded.limit(encoded.limit() / 2);
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(new AttributeValue().withB(encoded)));
+    }
+
+}
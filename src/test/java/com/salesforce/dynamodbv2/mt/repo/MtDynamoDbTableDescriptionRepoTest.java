@@ -1,17 +1,39 @@
 package com.salesforce.dynamodbv2.mt.repo;
 
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
 import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
 import com.amazonaws.services.dynamodbv2.model.KeyType;
 import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
+import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
 import com.amazonaws.services.dynamodbv2.model.UpdateTableRequest;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.salesforce.dynamodbv2.dynamodblocal.AmazonDynamoDbLocal;
 import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
 import com.salesforce.dynamodbv2.mt.context.impl.MtAmazonDynamoDbContextProviderImpl;
 import com.salesforce.dynamodbv2.mt.repo.MtDynamoDbTableDescriptionRepo.MtDynamoDbTableDescriptionRepoBuilder;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.Test;
 
 public class MtDynamoDbTableDescriptionRepoTest {
@@ -55,4 +77,163 @@ public class MtDynamoDbTableDescriptionRepoTest {
             throw e;
         }
     }
+
+    /**
+     * Verifies that table descriptions are loaded into the cache for the given tenants only, even if tenant or table
+     * names contain the delimiter.
+     */
+    @Test
+    void testLoadTableDescriptions() {
+        AmazonDynamoDB dynamoDb = mock(AmazonDynamoDB.class, delegatesTo(AmazonDynamoDbLocal.getAmazonDynamoDbLocal()));
+        MtAmazonDynamoDbContextProvider ctx = new MtAmazonDynamoDbContextProviderImpl();
+        MtDynamoDbTableDescriptionRepo repo = MtDynamoDbTableDescriptionRepo.builder()
+            .withAmazonDynamoDb(dynamoDb)
+            .withContext(ctx)
+            .withTableDescriptionTableName("MtDynamoDbTableDescriptionRepoTest_testLoadTableDescriptions_metadata")
+            .build();
+        // the hash keys of tenant "a"'s table "b.x" and tenant "a.b"'s table "table" both start with "a.b."
+        for (String[] tenantAndTable : new String[][] {{"a", "b.x"}, {"a.b", "table"}, {"c", "table"}}) {
+            ctx.withContext(tenantAndTable[0], () ->
+                repo.createTable(new CreateTableRequest()
+                    .withTableName(tenantAndTable[1])
+                    .withKeySchema(new KeySchemaElement("id", KeyType.HASH))
+                    .withProvisionedThroughput(new ProvisionedThroughput(1L, 1L))));
+        }
+        repo.invalidateCaches();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Map<String, List<TableDescription>> tableDescriptions;
+        try {
+            tableDescriptions = repo.loadTableDescriptions(ImmutableSet.of("a", "a.b")::contains, 3, executor);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(ImmutableSet.of("a", "a.b"), tableDescriptions.keySet());
+        assertEquals(ImmutableSet.of("b.x"), tableNames(tableDescriptions.get("a")));
+        assertEquals(ImmutableSet.of("table"), tableNames(tableDescriptions.get("a.b")));
+
+        // loaded descriptions are served from the cache
+        clearInvocations(dynamoDb);
+        ctx.withContext("a", () -> assertEquals("b.x", repo.getTableDescription("b.x").getTableName()));
+        ctx.withContext("a.b", () -> assertEquals("table", repo.getTableDescription("table").getTableName()));
+        verify(dynamoDb, never()).getItem(any(GetItemRequest.class));
+    }
+
+    /**
+     * Verifies that table descriptions stored as JSON remain readable by a repo that stores them in binary.
+     */
+    @Test
+    void testReadJsonTableDescription() {
+        AmazonDynamoDB dynamoDb = AmazonDynamoDbLocal.getAmazonDynamoDbLocal();
+        MtAmazonDynamoDbContextProvider ctx = new MtAmazonDynamoDbContextProviderImpl();
+        String tableName = "MtDynamoDbTableDescriptionRepoTest_testReadJsonTableDescription_metadata";
+        MtDynamoDbTableDescriptionRepo jsonRepo = MtDynamoDbTableDescriptionRepo.builder()
+            .withAmazonDynamoDb(dynamoDb)
+            .withContext(ctx)
+            .withTableDescriptionTableName(tableName)
+            .withTableDescriptionCodec(new JsonTableDescriptionCodec())
+            .build();
+        TableDescription created = ctx.withContext("1", jsonRepo::createTable, new CreateTableRequest()
+            .withTableName("test")
+            .withKeySchema(new KeySchemaElement("id", KeyType.HASH))
+            .withProvisionedThroughput(new ProvisionedThroughput(1L, 1L)));
+
+        MtDynamoDbTableDescriptionRepo binaryRepo = MtDynamoDbTableDescriptionRepo.builder()
+            .withAmazonDynamoDb(dynamoDb)
+            .withContext(ctx)
+            .withTableDescriptionTableName(tableName)
+            .build();
+        assertEquals(created, ctx.withContext("1", binaryRepo::getTableDescription, "test"));
+    }
+
+    /**
+     * Verifies that a repo that polls the table description table's stream sees tables created and deleted through
+     * another repo.
+     */
+    @Test
+    void testCacheInvalidation() {
+        AmazonDynamoDB dynamoDb = AmazonDynamoDbLocal.getAmazonDynamoDbLocal();
+        AmazonDynamoDB dynamoDb2 = mock(AmazonDynamoDB.class, delegatesTo(dynamoDb));
+        MtAmazonDynamoDbContextProvider ctx = new MtAmazonDynamoDbContextProviderImpl();
+        MtDynamoDbTableDescriptionRepoBuilder b = MtDynamoDbTableDescriptionRepo.builder()
+            .withAmazonDynamoDb(dynamoDb)
+            .withContext(ctx)
+            .withTableDescriptionTableName("MtDynamoDbTableDescriptionRepoTest_testCacheInvalidation_metadata")
+            .withCacheInvalidationStreams(AmazonDynamoDbLocal.getAmazonDynamoDbStreamsLocal())
+            .withCacheInvalidationPollIntervalMillis(50L);
+        MtDynamoDbTableDescriptionRepo repo1 = b.build();
+        MtDynamoDbTableDescriptionRepo repo2 = b.withAmazonDynamoDb(dynamoDb2).build();
+        List<List<String>> changes = new CopyOnWriteArrayList<>();
+        repo2.addTableDescriptionChangeListener((context, tableName) ->
+            changes.add(ImmutableList.of(context, tableName)));
+        try {
+            ctx.withContext("1", () -> {
+                repo1.createTable(new CreateTableRequest()
+                    .withTableName("test")
+                    .withKeySchema(new KeySchemaElement("id", KeyType.HASH))
+                    .withProvisionedThroughput(new ProvisionedThroughput(1L, 1L)));
+                await().atMost(10, SECONDS).until(() -> changes.contains(ImmutableList.of("1", "test")));
+                // the change does not add the table to repo2's cache, since repo2 has not read it before
+                clearInvocations(dynamoDb2);
+                assertEquals("test", repo2.getTableDescription("test").getTableName());
+                verify(dynamoDb2).getItem(any(GetItemRequest.class));
+
+                changes.clear();
+                repo1.deleteTable("test");
+                await().atMost(10, SECONDS).until(() -> changes.contains(ImmutableList.of("1", "test")));
+                assertThrows(ResourceNotFoundException.class, () -> repo2.getTableDescription("test"));
+            });
+        } finally {
+            repo1.shutdown();
+            repo2.shutdown();
+        }
+    }
+
+    /**
+     * Verifies that cache invalidation can be enabled on an existing table description table without a stream, and
+     * that instances with and without cache invalidation can share the table.
+     */
+    @Test
+    void testCacheInvalidationEnabledOnExistingTable() {
+        AmazonDynamoDB dynamoDb = AmazonDynamoDbLocal.getAmazonDynamoDbLocal();
+        MtAmazonDynamoDbContextProvider ctx = new MtAmazonDynamoDbContextProviderImpl();
+        String tableName = "MtDynamoDbTableDescriptionRepoTest_testCacheInvalidationEnabledOnExistingTable_metadata";
+        MtDynamoDbTableDescriptionRepo repo1 = MtDynamoDbTableDescriptionRepo.builder()
+            .withAmazonDynamoDb(dynamoDb)
+            .withContext(ctx)
+            .withTableDescriptionTableName(tableName)
+            .build();
+        ctx.withContext("1", () ->
+            repo1.createTable(new CreateTableRequest()
+                .withTableName("test")
+                .withKeySchema(new KeySchemaElement("id", KeyType.HASH))
+                .withProvisionedThroughput(new ProvisionedThroughput(1L, 1L))));
+
+        MtDynamoDbTableDescriptionRepo repo2 = MtDynamoDbTableDescriptionRepo.builder()
+            .withAmazonDynamoDb(dynamoDb)
+            .withContext(ctx)
+            .withTableDescriptionTableName(tableName)
+            .withCacheInvalidationStreams(AmazonDynamoDbLocal.getAmazonDynamoDbStreamsLocal())
+            .withCacheInvalidationPollIntervalMillis(50L)
+            .build();
+        try {
+            assertEquals("NEW_AND_OLD_IMAGES",
+                dynamoDb.describeTable(tableName).getTable().getStreamSpecification().getStreamViewType());
+            MtDynamoDbTableDescriptionRepo repo3 = MtDynamoDbTableDescriptionRepo.builder()
+                .withAmazonDynamoDb(dynamoDb)
+                .withContext(ctx)
+                .withTableDescriptionTableName(tableName)
+                .build();
+            ctx.withContext("1", () -> {
+                assertEquals("test", repo2.getTableDescription("test").getTableName());
+                assertEquals("test", repo3.getTableDescription("test").getTableName());
+            });
+        } finally {
+            repo2.shutdown();
+        }
+    }
+
+    private static Set<String> tableNames(List<TableDescription> tableDescriptions) {
+        return tableDescriptions.stream().map(TableDescription::getTableName).collect(Collectors.toSet());
+    }
 }
@@ -5,6 +5,7 @@ import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.S;
 import static com.amazonaws.services.dynamodbv2.model.StreamViewType.NEW_IMAGE;
 import static com.google.common.collect.Iterables.getLast;
 import static com.salesforce.dynamodbv2.mt.util.CachingAmazonDynamoDbStreams.GET_RECORDS_LIMIT;
+import static com.salesforce.dynamodbv2.mt.util.RetainedSizeEstimator.estimateRetainedSize;
 import static java.util.stream.Collectors.toList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -18,6 +19,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -49,14 +51,26 @@ import com.amazonaws.services.dynamodbv2.model.StreamStatus;
 import com.amazonaws.services.dynamodbv2.model.TableDescription;
 import com.amazonaws.services.dynamodbv2.model.TrimmedDataAccessException;
 import com.amazonaws.services.dynamodbv2.util.TableUtils;
+import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableMap;
 import com.salesforce.dynamodbv2.dynamodblocal.AmazonDynamoDbLocal;
-import com.salesforce.dynamodbv2.mt.util.CachingAmazonDynamoDbStreams.Sleeper;
 import com.salesforce.dynamodbv2.testsupport.CountingAmazonDynamoDbStreams;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
 import java.util.stream.IntStream;
 import jdk.nashorn.internal.ir.annotations.Ignore;
 import org.junit.jupiter.api.AfterAll;
@@ -402,6 +416,16 @@ class CachingAmazonDynamoDbStreamsTest {
         return cachingStreams;
     }
 
+    /*
+     * Estimates the cached size of the given records. Overestimates slightly, since mock iterators are longer than the
+     * iterators of cached results.
+     */
+    private static long estimateCachedSize(int from, int to) {
+        return estimateRetainedSize(new GetRecordsResult()
+            .withRecords(records.subList(from, to))
+            .withNextShardIterator(mockShardIterator(newAfterSequenceNumberRequest(to - 1))));
+    }
+
     private static void assertCacheMisses(AmazonDynamoDBStreams streams, int numGetShardIterators, int numGetRecords) {
         verify(streams, times(numGetShardIterators)).getShardIterator(any());
         verify(streams, times(numGetRecords)).getRecords(any());
@@ -612,6 +636,33 @@ class CachingAmazonDynamoDbStreamsTest {
      */
     @Test
     void testCloseGap() {
+        assertCloseGap(builder -> builder);
+    }
+
+    /**
+     * Verifies that records stored serialized in direct buffers are served and merged like records on the heap.
+     */
+    @Test
+    void testDirectRecordsStorage() {
+        assertCloseGap(CachingAmazonDynamoDbStreams.Builder::withDirectRecordsStorage);
+    }
+
+    /**
+     * Verifies that records stored serialized in a mapped file are served and merged like records on the heap.
+     */
+    @Test
+    void testMappedRecordsStorage() throws IOException {
+        Path file = Files.createTempFile(CachingAmazonDynamoDbStreamsTest.class.getSimpleName(), ".records");
+        try {
+            assertCloseGap(builder -> builder
+                .withMaxRecordsByteSize(1024 * 1024)
+                .withMappedRecordsStorage(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void assertCloseGap(UnaryOperator<CachingAmazonDynamoDbStreams.Builder> configurer) {
         AmazonDynamoDBStreams streams = mock(AmazonDynamoDBStreams.class);
 
         final GetShardIteratorRequest thRequest = newTrimHorizonRequest();
@@ -625,7 +676,8 @@ class CachingAmazonDynamoDbStreamsTest {
         final GetShardIteratorRequest afterRequest = newAfterSequenceNumberRequest(4);
         mockGetRecords(streams, afterIterator, 5, 10);
 
-        CachingAmazonDynamoDbStreams cachingStreams = new CachingAmazonDynamoDbStreams.Builder(streams).build();
+        CachingAmazonDynamoDbStreams cachingStreams =
+            configurer.apply(new CachingAmazonDynamoDbStreams.Builder(streams)).build();
 
         assertGetRecords(cachingStreams, thRequest, null, 0, 5);
         assertGetRecords(cachingStreams, atRequest, null, 5, 10);
@@ -771,8 +823,9 @@ class CachingAmazonDynamoDbStreamsTest {
         String secondIterator = mockGetShardIterator(streams, secondRequest);
         mockGetRecords(streams, secondIterator, 5, 9);
 
+        // room for one segment, but not two
         CachingAmazonDynamoDbStreams cachingStreams = new CachingAmazonDynamoDbStreams.Builder(streams)
-            .withMaxRecordsByteSize(4L)
+            .withMaxRecordsByteSize(estimateCachedSize(0, 4) * 3 / 2)
             .withMaxIteratorCacheSize(1)
             .build();
 
@@ -819,6 +872,261 @@ class CachingAmazonDynamoDbStreamsTest {
         assertCacheMisses(streams, 2, 2);
     }
 
+    /**
+     * Verifies that segments are evicted in insertion order across shards.
+     */
+    @Test
+    void testCacheEvictionAcrossShards() {
+        AmazonDynamoDBStreams streams = mock(AmazonDynamoDBStreams.class);
+
+        GetShardIteratorRequest firstRequest = newAtSequenceNumberRequest(0);
+        mockGetRecords(streams, mockGetShardIterator(streams, firstRequest), 0, 5);
+        GetShardIteratorRequest secondRequest = newAtSequenceNumberRequest(0).withShardId("shard2");
+        mockGetRecords(streams, mockGetShardIterator(streams, secondRequest), 0, 5);
+
+        // room for one segment, but not two
+        CachingAmazonDynamoDbStreams cachingStreams = new CachingAmazonDynamoDbStreams.Builder(streams)
+            .withMaxRecordsByteSize(estimateCachedSize(0, 5) * 3 / 2)
+            .withMaxIteratorCacheSize(0)
+            .build();
+
+        assertGetRecords(cachingStreams, firstRequest, null, 0, 5);
+        assertGetRecords(cachingStreams, secondRequest, null, 0, 5);
+        assertCacheMisses(streams, 2, 2);
+
+        // second shard is still cached, but first shard was evicted when second shard was added
+        assertGetRecords(cachingStreams, secondRequest, null, 0, 5);
+        assertCacheMisses(streams, 2, 2);
+        assertGetRecords(cachingStreams, firstRequest, null, 0, 5);
+        assertCacheMisses(streams, 3, 3);
+    }
+
+    /**
+     * Verifies that segments that have been read since they were added are evicted after segments that have not.
+     */
+    @Test
+    void testCacheEvictionLeastRecentlyUsed() {
+        AmazonDynamoDBStreams streams = mock(AmazonDynamoDBStreams.class);
+
+        GetShardIteratorRequest firstRequest = newAtSequenceNumberRequest(0);
+        mockGetRecords(streams, mockGetShardIterator(streams, firstRequest), 0, 3);
+        GetShardIteratorRequest secondRequest = newAtSequenceNumberRequest(4);
+        mockGetRecords(streams, mockGetShardIterator(streams, secondRequest), 4, 7);
+        GetShardIteratorRequest thirdRequest = newAtSequenceNumberRequest(7);
+        mockGetRecords(streams, mockGetShardIterator(streams, thirdRequest), 7, 10);
+
+        // room for the first two segments, but not all three
+        CachingAmazonDynamoDbStreams cachingStreams = new CachingAmazonDynamoDbStreams.Builder(streams)
+            .withMaxRecordsByteSize(estimateCachedSize(0, 3) * 5 / 2)
+            .withMaxIteratorCacheSize(0)
+            .build();
+
+        assertGetRecords(cachingStreams, firstRequest, null, 0, 3);
+        assertGetRecords(cachingStreams, secondRequest, null, 4, 7);
+        assertCacheMisses(streams, 2, 2);
+
+        // read first segment again, so that second segment is evicted when third segment is added
+        assertGetRecords(cachingStreams, firstRequest, null, 0, 3);
+        assertGetRecords(cachingStreams, thirdRequest, null, 7, 10);
+        assertCacheMisses(streams, 3, 3);
+
+        assertGetRecords(cachingStreams, firstRequest, null, 0, 3);
+        assertGetRecords(cachingStreams, thirdRequest, null, 7, 10);
+        assertCacheMisses(streams, 3, 3);
+        assertGetRecords(cachingStreams, secondRequest, null, 4, 7);
+        assertCacheMisses(streams, 4, 4);
+    }
+
+    /**
+     * Verifies that cached records expire after the configured time to live.
+     */
+    @Test
+    void testCacheExpiration() {
+        AmazonDynamoDBStreams streams = mock(AmazonDynamoDBStreams.class);
+
+        GetShardIteratorRequest request = newAtSequenceNumberRequest(0);
+        mockGetRecords(streams, mockGetShardIterator(streams, request), 0, 5);
+
+        AtomicLong nanos = new AtomicLong();
+        CachingAmazonDynamoDbStreams cachingStreams = new CachingAmazonDynamoDbStreams.Builder(streams)
+            .withRecordsCacheTtlInMillis(1000L)
+            .withTicker(new Ticker() {
+                @Override
+                public long read() {
+                    return nanos.get();
+                }
+            })
+            .withMaxIteratorCacheSize(0)
+            .build();
+
+        assertGetRecords(cachingStreams, request, null, 0, 5);
+        assertCacheMisses(streams, 1, 1);
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(999L));
+        assertGetRecords(cachingStreams, request, null, 0, 5);
+        assertCacheMisses(streams, 1, 1);
+
+        // expired records are loaded again and replace the expired segment
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1L));
+        assertGetRecords(cachingStreams, request, null, 0, 5);
+        assertCacheMisses(streams, 2, 2);
+        assertGetRecords(cachingStreams, request, null, 0, 5);
+        assertCacheMisses(streams, 2, 2);
+    }
+
+    /**
+     * Verifies that concurrent consumers of different shards each see their own shard's records.
+     */
+    @Test
+    void testConcurrentShards() throws Exception {
+        AmazonDynamoDBStreams streams = mock(AmazonDynamoDBStreams.class);
+        int shards = 8;
+        List<GetShardIteratorRequest> requests = IntStream.range(0, shards)
+            .mapToObj(shard -> newAtSequenceNumberRequest(0).withShardId("shard" + shard))
+            .collect(toList());
+        requests.forEach(request -> mockGetRecords(streams, mockGetShardIterator(streams, request), 0, 10));
+
+        CachingAmazonDynamoDbStreams cachingStreams = new CachingAmazonDynamoDbStreams.Builder(streams).build();
+
+        ExecutorService executor = Executors.newFixedThreadPool(shards);
+        try {
+            List<Future<?>> futures = requests.stream()
+                .map(request -> executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        assertGetRecords(cachingStreams, request, null, 0, 10);
+                    }
+                }))
+                .collect(toList());
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // each shard is loaded only once
+        assertCacheMisses(streams, shards, shards);
+    }
+
+    /**
+     * Verifies that concurrent cache misses at the same position load records from the underlying stream only once.
+     */
+    @Test
+    void testConcurrentMissesCoalesced() throws Exception {
+        AmazonDynamoDBStreams streams = mock(AmazonDynamoDBStreams.class);
+        GetShardIteratorRequest request = newAtSequenceNumberRequest(0);
+        String iterator = mockGetShardIterator(streams, request);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch waiting = new CountDownLatch(1);
+        when(streams.getRecords(eq(new GetRecordsRequest().withShardIterator(iterator)))).thenAnswer(invocation -> {
+            loading.countDown();
+            waiting.await();
+            return new GetRecordsResult().withRecords(records).withNextShardIterator(null);
+        });
+
+        CachingAmazonDynamoDbStreams cachingStreams = new CachingAmazonDynamoDbStreams.Builder(streams).build();
+
+        int consumers = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(consumers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> assertGetRecords(cachingStreams, request, null, 0, 10)));
+            loading.await();
+            // other consumers miss the cache while the first one is still loading
+            for (int i = 1; i < consumers; i++) {
+                futures.add(executor.submit(() -> assertGetRecords(cachingStreams, request, null, 0, 10)));
+            }
+            Thread.sleep(100L);
+            waiting.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertCacheMisses(streams, 1, 1);
+    }
+
+    /**
+     * Verifies that records are prefetched ahead of the position a client has read up to.
+     */
+    @Test
+    void testPrefetch() {
+        AmazonDynamoDBStreams streams = mock(AmazonDynamoDBStreams.class);
+        GetShardIteratorRequest request = newAtSequenceNumberRequest(0);
+        String iterator = mockGetShardIterator(streams, request);
+        String nextIterator = mockGetRecords(streams, iterator, 0, 5);
+        mockGetRecords(streams, nextIterator, 5, 10);
+
+        CachingAmazonDynamoDbStreams cachingStreams = new CachingAmazonDynamoDbStreams.Builder(streams)
+            .withMaxPrefetchDepth(2)
+            .withPrefetchIntervalInMillis(10L)
+            .build();
+        try {
+            String next = assertGetRecords(cachingStreams, request, null, 0, 5);
+
+            // the next page is loaded in the background, so the client's next read is served from the cache
+            verify(streams, timeout(5000L).times(2)).getRecords(any());
+            assertGetRecords(cachingStreams, next, null, records.subList(5, 10));
+            assertCacheMisses(streams, 1, 2);
+        } finally {
+            cachingStreams.shutdown();
+        }
+    }
+
+    /**
+     * Verifies that prefetching stops for shards that are no longer read.
+     */
+    @Test
+    void testPrefetchIdleShard() throws InterruptedException {
+        AmazonDynamoDBStreams streams = mock(AmazonDynamoDBStreams.class);
+        GetShardIteratorRequest request = newAtSequenceNumberRequest(0);
+        String iterator = mockGetShardIterator(streams, request);
+        String nextIterator = mockGetRecords(streams, iterator, 0, 5);
+        mockGetRecords(streams, nextIterator, 5, 10);
+
+        CachingAmazonDynamoDbStreams cachingStreams = new CachingAmazonDynamoDbStreams.Builder(streams)
+            .withMaxPrefetchDepth(2)
+            .withPrefetchIntervalInMillis(10L)
+            .withPrefetchIdleTimeoutInMillis(0L)
+            .build();
+        try {
+            assertGetRecords(cachingStreams, request, null, 0, 5);
+
+            for (int i = 0; i < 500 && cachingStreams.getPrefetchedShardCount() > 0; i++) {
+                Thread.sleep(10L);
+            }
+            assertEquals(0, cachingStreams.getPrefetchedShardCount());
+            assertCacheMisses(streams, 1, 1);
+        } finally {
+            cachingStreams.shutdown();
+        }
+    }
+
+    /**
+     * Verifies that a prefetch executor that rejects tasks does not fail client reads.
+     */
+    @Test
+    void testPrefetchRejected() {
+        AmazonDynamoDBStreams streams = mock(AmazonDynamoDBStreams.class);
+        GetShardIteratorRequest request = newAtSequenceNumberRequest(0);
+        String iterator = mockGetShardIterator(streams, request);
+        String nextIterator = mockGetRecords(streams, iterator, 0, 5);
+        mockGetRecords(streams, nextIterator, 5, 10);
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        executor.shutdown();
+        CachingAmazonDynamoDbStreams cachingStreams = new CachingAmazonDynamoDbStreams.Builder(streams)
+            .withMaxPrefetchDepth(2)
+            .withPrefetchExecutor(executor)
+            .build();
+        String next = assertGetRecords(cachingStreams, request, null, 0, 5);
+        assertEquals(0, cachingStreams.getPrefetchedShardCount());
+        assertGetRecords(cachingStreams, next, null, records.subList(5, 10));
+        assertCacheMisses(streams, 1, 2);
+    }
+
     /**
      * Verifies that cache properly separates streams and shards.
      */
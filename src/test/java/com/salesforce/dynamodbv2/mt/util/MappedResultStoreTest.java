@@ -0,0 +1,82 @@
+package com.salesforce.dynamodbv2.mt.util;
+
+import static com.salesforce.dynamodbv2.mt.util.RetainedSizeEstimator.estimateRetainedSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import com.amazonaws.services.dynamodbv2.model.Record;
+import com.salesforce.dynamodbv2.mt.util.ResultStore.StoredResult;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests storing results in a memory-mapped file.
+ */
+class MappedResultStoreTest {
+
+    private static final GetRecordsResult RESULT = new GetRecordsResult()
+        .withRecords(new Record().withEventID("0123456789"))
+        .withNextShardIterator("iterator");
+    private static final int SIZE = RecordsCodec.encode(RESULT).length;
+
+    private Path file;
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        file = Files.createTempFile(MappedResultStoreTest.class.getSimpleName(), ".records");
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void testStore() {
+        MappedResultStore store = new MappedResultStore(file, 3 * SIZE);
+        StoredResult first = store.store(RESULT);
+        StoredResult second = store.store(RESULT);
+        assertEquals(RESULT, first.get());
+        assertEquals(RESULT, second.get());
+        assertEquals(SIZE, first.getByteSize());
+    }
+
+    @Test
+    void testReleaseAndReuse() {
+        MappedResultStore store = new MappedResultStore(file, 3 * SIZE);
+        StoredResult first = store.store(RESULT);
+        StoredResult second = store.store(RESULT);
+        StoredResult third = store.store(RESULT);
+
+        // releasing adjacent regions coalesces them, so that a result twice the size fits
+        first.release();
+        second.release();
+        GetRecordsResult larger = new GetRecordsResult()
+            .withRecords(RESULT.getRecords().get(0), RESULT.getRecords().get(0))
+            .withNextShardIterator("iterator");
+        assertTrue(RecordsCodec.encode(larger).length <= 2 * SIZE);
+        StoredResult fourth = store.store(larger);
+        assertEquals(larger, fourth.get());
+        assertEquals(RESULT, third.get());
+    }
+
+    @Test
+    void testFallbackWhenFull() {
+        MappedResultStore store = new MappedResultStore(file, SIZE);
+        StoredResult first = store.store(RESULT);
+        StoredResult second = store.store(RESULT);
+        assertEquals(RESULT, first.get());
+        assertEquals(SIZE, first.getByteSize());
+
+        // results that do not fit are kept on the heap and count with their estimated retained size
+        assertSame(RESULT, second.get());
+        assertEquals(estimateRetainedSize(RESULT), second.getByteSize());
+    }
+
+}
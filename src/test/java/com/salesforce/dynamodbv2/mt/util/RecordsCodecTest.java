@@ -0,0 +1,82 @@
+package com.salesforce.dynamodbv2.mt.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import com.amazonaws.services.dynamodbv2.model.Identity;
+import com.amazonaws.services.dynamodbv2.model.OperationType;
+import com.amazonaws.services.dynamodbv2.model.Record;
+import com.amazonaws.services.dynamodbv2.model.StreamRecord;
+import com.amazonaws.services.dynamodbv2.model.StreamViewType;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the binary encoding of cached stream records.
+ */
+class RecordsCodecTest {
+
+    private static GetRecordsResult roundTrip(GetRecordsResult result) {
+        return RecordsCodec.decode(ByteBuffer.wrap(RecordsCodec.encode(result)));
+    }
+
+    @Test
+    void testEmpty() {
+        GetRecordsResult result = new GetRecordsResult().withRecords(Collections.emptyList());
+        assertEquals(result, roundTrip(result));
+    }
+
+    @Test
+    void testAllFields() {
+        GetRecordsResult result = new GetRecordsResult()
+            .withNextShardIterator("iterator")
+            .withRecords(new Record()
+                .withEventID("id")
+                .withEventName(OperationType.MODIFY)
+                .withEventVersion("1.1")
+                .withEventSource("aws:dynamodb")
+                .withAwsRegion("us-east-1")
+                .withUserIdentity(new Identity().withPrincipalId("dynamodb.amazonaws.com").withType("Service"))
+                .withDynamodb(new StreamRecord()
+                    .withApproximateCreationDateTime(new Date(1546300800000L))
+                    .withKeys(ImmutableMap.of("id", new AttributeValue("1")))
+                    .withNewImage(ImmutableMap.<String, AttributeValue>builder()
+                        .put("id", new AttributeValue("1"))
+                        .put("n", new AttributeValue().withN("1.5"))
+                        .put("b", new AttributeValue().withB(ByteBuffer.wrap("b".getBytes(UTF_8))))
+                        .put("ss", new AttributeValue().withSS("a", "b"))
+                        .put("ns", new AttributeValue().withNS("1", "2"))
+                        .put("bs", new AttributeValue().withBS(ByteBuffer.wrap(new byte[] {1, 2})))
+                        .put("m", new AttributeValue().withM(ImmutableMap.of("k", new AttributeValue("v"))))
+                        .put("l", new AttributeValue().withL(new AttributeValue("x"), new AttributeValue().withN("2")))
+                        .put("null", new AttributeValue().withNULL(true))
+                        .put("bool", new AttributeValue().withBOOL(false))
+                        .build())
+                    .withOldImage(ImmutableMap.of("id", new AttributeValue("1")))
+                    .withSequenceNumber("100000000000000000001")
+                    .withSizeBytes(42L)
+                    .withStreamViewType(StreamViewType.NEW_AND_OLD_IMAGES)),
+                new Record()
+                    .withEventName(OperationType.REMOVE)
+                    .withDynamodb(new StreamRecord()
+                        .withKeys(ImmutableMap.of("id", new AttributeValue(Strings.repeat("\u00e9", 70000))))
+                        .withSequenceNumber("100000000000000000002")));
+        assertEquals(result, roundTrip(result));
+    }
+
+    @Test
+    void testInvalid() {
+        byte[] bytes = RecordsCodec.encode(new GetRecordsResult().withRecords(new Record().withEventID("id")));
+        assertThrows(IllegalArgumentException.class,
+            () -> RecordsCodec.decode(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 1))));
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.salesforce.dynamodbv2.mt.util;
+
+import static com.salesforce.dynamodbv2.mt.util.RetainedSizeEstimator.estimateRetainedSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import com.amazonaws.services.dynamodbv2.model.OperationType;
+import com.amazonaws.services.dynamodbv2.model.Record;
+import com.amazonaws.services.dynamodbv2.model.StreamRecord;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the retained size estimates of stream records.
+ */
+class RetainedSizeEstimatorTest {
+
+    private static GetRecordsResult newResult(String value) {
+        return new GetRecordsResult().withRecords(new Record()
+            .withEventID("1")
+            .withEventName(OperationType.INSERT)
+            .withDynamodb(new StreamRecord()
+                .withSequenceNumber("1")
+                .withKeys(ImmutableMap.of("id", new AttributeValue("1")))
+                .withNewImage(ImmutableMap.of("id", new AttributeValue("1"), "value", new AttributeValue(value)))
+                .withSizeBytes((long) (6 + value.length()))));
+    }
+
+    @Test
+    void testEmptyResult() {
+        // result (32), empty list (24), and empty element array (16)
+        assertEquals(72L, estimateRetainedSize(new GetRecordsResult().withRecords()));
+    }
+
+    @Test
+    void testAttributeValueSize() {
+        // each additional character adds two bytes to the estimate (modulo alignment)
+        long small = estimateRetainedSize(newResult(Strings.repeat("a", 8)));
+        long large = estimateRetainedSize(newResult(Strings.repeat("a", 1008)));
+        assertEquals(2000L, large - small);
+    }
+
+    @Test
+    void testExceedsRecordSize() {
+        GetRecordsResult result = newResult("a");
+        assertTrue(estimateRetainedSize(result) > 10 * result.getRecords().get(0).getDynamodb().getSizeBytes());
+    }
+
+}